@@ -0,0 +1,344 @@
+package ed.inf.adbs.blazedb;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * The BPlusTree class is a persistent B+ tree index on an int column of a table. The index is stored in its own file
+ * of NODE_SIZE byte nodes, which are read through the BufferPool like the table files.
+ * Every entry of the index holds a key and the row id of a row, as collected by IndexEntries. The leaves hold the
+ * entries sorted by key and row id, and every inner node holds the first key of each of its children but the first.
+ * <br><br>
+ * The index is bulk loaded bottom-up from the sorted entries: the leaves are written full and in key order, followed
+ * by the inner levels, with the root last. Since all leaves but the last are full and stored one after the other,
+ * the position of an entry among all entries follows from its leaf and slot, so the number of entries within a range
+ * of keys is known from two descents of the tree, which the IndexScanOperator uses to cost an index scan.
+ * <br><br>
+ * An index is clustered if the rows of the table file are stored in key order, so the rows of a range of keys are
+ * read one after the other. The DatabaseCatalog sorts the table file before it builds a clustered index.
+ * Like a ZoneMap, the index is built again once the table file changes, see IndexFile.
+ * <br><br>
+ * Node 0 of the file is the header: the magic number, the format version, the key column, the clustered flag,
+ * the root node, the height, the number of leaves, the number of distinct keys, the number of entries, and the size
+ * and modification time of the table file. The leaves start at node 1. A leaf holds its entry count, the next leaf,
+ * LEAF_CAPACITY keys and LEAF_CAPACITY row ids. An inner node holds its key count, INNER_CAPACITY + 1 children and
+ * INNER_CAPACITY keys.
+ * <br><br>
+ * The BPlusTree class contains the following methods:<br>
+ * - build(String tableName, String column, String path): Scans a table and bulk loads the index of a column.<br>
+ * - bulkLoad(String path, int keyColumn, int[] keys, long[] rowIds, int count, boolean clustered, File tableFile):
+ *   Writes the index of sorted entries.<br>
+ * - load(String path): Opens an index file.<br>
+ * - lowerBound(long key), upperBound(long key): Return the position of the first entry with a key at least, or
+ *   above, the given key.<br>
+ * - count(long low, long high): Returns the number of entries with a key within a range.<br>
+ * - readLeaf(int leaf, int[] keys, long[] rowIds): Reads the entries of a leaf.<br>
+ * - matches(File tableFile): Checks if the index was built from the current version of a table file.<br>
+ * - getPath(String tableFilePath, String column): Returns the path of the index file of a column.
+ * <br><br>
+ * The BPlusTree class also contains the following instance variables:<br>
+ * - path: The path of the index file.<br>
+ * - keyColumn: The index of the key column in the table schema.<br>
+ * - clustered: Whether the rows of the table file are stored in key order.<br>
+ * - rootNode, height: The root node and the number of levels, 1 if the root is a leaf.<br>
+ * - leafCount, entryCount, distinctKeyCount: The number of leaves, entries and distinct keys.<br>
+ * - tableFileSize, tableLastModified: The size and modification time of the table file the index was built from.
+ */
+public class BPlusTree {
+    public static final int MAGIC = 0x42505452; // "BPTR"
+    public static final int VERSION = 2;
+    public static final int NODE_SIZE = 4096;
+    public static final int LEAF_CAPACITY = (NODE_SIZE - 8) / 12;
+    public static final int INNER_CAPACITY = (NODE_SIZE - 12) / 8;
+    private static final int FIRST_LEAF = 1;
+    private static final int LEAF_KEYS = 8;
+    private static final int LEAF_ROW_IDS = LEAF_KEYS + 4 * LEAF_CAPACITY;
+    private static final int INNER_CHILDREN = 8;
+    private static final int INNER_KEYS = INNER_CHILDREN + 4 * (INNER_CAPACITY + 1);
+
+    private final String path;
+    private final int keyColumn;
+    private final boolean clustered;
+    private final int rootNode;
+    private final int height;
+    private final int leafCount;
+    private final long entryCount;
+    private final int distinctKeyCount;
+    private final long tableFileSize;
+    private final long tableLastModified;
+
+    private BPlusTree(String path, int keyColumn, boolean clustered, int rootNode, int height, int leafCount,
+                      long entryCount, int distinctKeyCount, long tableFileSize, long tableLastModified) {
+        this.path = path;
+        this.keyColumn = keyColumn;
+        this.clustered = clustered;
+        this.rootNode = rootNode;
+        this.height = height;
+        this.leafCount = leafCount;
+        this.entryCount = entryCount;
+        this.distinctKeyCount = distinctKeyCount;
+        this.tableFileSize = tableFileSize;
+        this.tableLastModified = tableLastModified;
+    }
+
+    /**
+     * Scans a table and bulk loads the index of a column of the file the table is currently stored in.
+     * @param tableName The name of the table.
+     * @param column The fully qualified name of the key column.
+     * @param path The path of the index file to write.
+     * @return The index, clustered if the rows of the table file are stored in key order.
+     */
+    public static BPlusTree build(String tableName, String column, String path) throws IOException {
+        IndexEntries entries = IndexEntries.collect(tableName, column);
+        return bulkLoad(path, entries.getKeyColumn(), entries.getKeys(), entries.getRowIds(), entries.getCount(),
+                entries.isClustered(), entries.getTableFile());
+    }
+
+    /**
+     * Writes the index of the given entries, which must be sorted by key and row id.
+     * @param path The path of the index file to write.
+     * @param keyColumn The index of the key column in the table schema.
+     * @param keys The keys of the entries.
+     * @param rowIds The row ids of the entries.
+     * @param count The number of entries.
+     * @param clustered Whether the rows of the table file are stored in key order.
+     * @param tableFile The table file the entries were read from.
+     * @return The index.
+     *
+     * @Description
+     * The leaves are written first, each filled with LEAF_CAPACITY entries. Every level above is then built from the
+     * first keys of the nodes of the level below, INNER_CAPACITY + 1 children per node, until a level has a single
+     * node, the root. The header is written last, and the complete file is committed by IndexFile.commit().
+     */
+    public static BPlusTree bulkLoad(String path, int keyColumn, int[] keys, long[] rowIds, int count,
+                                     boolean clustered, File tableFile) throws IOException {
+        int leafCount = Math.max(1, (count + LEAF_CAPACITY - 1) / LEAF_CAPACITY);
+        int rootNode;
+        int height = 1;
+        int distinctKeyCount = 0;
+
+        try (FileChannel channel = IndexFile.createNodeFile(path)) {
+            ByteBuffer node = ByteBuffer.allocate(NODE_SIZE);
+            int nextNode = FIRST_LEAF;
+            int[] levelKeys = new int[leafCount];
+            for (int leaf = 0; leaf < leafCount; leaf++) {
+                int first = leaf * LEAF_CAPACITY;
+                int size = Math.min(LEAF_CAPACITY, count - first);
+                Arrays.fill(node.array(), (byte) 0);
+                node.putInt(0, size);
+                node.putInt(4, leaf + 1 < leafCount ? nextNode + 1 : -1);
+                for (int slot = 0; slot < size; slot++) {
+                    if (first + slot == 0 || keys[first + slot] != keys[first + slot - 1]) {
+                        distinctKeyCount++;
+                    }
+                    node.putInt(LEAF_KEYS + 4 * slot, keys[first + slot]);
+                    node.putLong(LEAF_ROW_IDS + 8 * slot, rowIds[first + slot]);
+                }
+                IndexFile.writeNode(channel, node, nextNode++);
+                levelKeys[leaf] = size > 0 ? keys[first] : 0;
+            }
+
+            int levelStart = FIRST_LEAF;
+            int levelCount = leafCount;
+            while (levelCount > 1) {
+                int parentCount = (levelCount + INNER_CAPACITY) / (INNER_CAPACITY + 1);
+                int[] parentKeys = new int[parentCount];
+                int parentStart = nextNode;
+                for (int parent = 0; parent < parentCount; parent++) {
+                    int first = parent * (INNER_CAPACITY + 1);
+                    int children = Math.min(INNER_CAPACITY + 1, levelCount - first);
+                    Arrays.fill(node.array(), (byte) 0);
+                    node.putInt(0, children - 1);
+                    for (int child = 0; child < children; child++) {
+                        node.putInt(INNER_CHILDREN + 4 * child, levelStart + first + child);
+                        if (child > 0) {
+                            node.putInt(INNER_KEYS + 4 * (child - 1), levelKeys[first + child]);
+                        }
+                    }
+                    IndexFile.writeNode(channel, node, nextNode++);
+                    parentKeys[parent] = levelKeys[first];
+                }
+                levelKeys = parentKeys;
+                levelStart = parentStart;
+                levelCount = parentCount;
+                height++;
+            }
+            rootNode = levelStart;
+
+            Arrays.fill(node.array(), (byte) 0);
+            node.clear();
+            node.putInt(MAGIC).putInt(VERSION).putInt(keyColumn).putInt(clustered ? 1 : 0)
+                    .putInt(rootNode).putInt(height).putInt(leafCount).putInt(distinctKeyCount)
+                    .putLong(count).putLong(tableFile.length()).putLong(tableFile.lastModified());
+            IndexFile.writeNode(channel, node, 0);
+        }
+        IndexFile.commit(path);
+        return new BPlusTree(path, keyColumn, clustered, rootNode, height, leafCount, count, distinctKeyCount,
+                tableFile.length(), tableFile.lastModified());
+    }
+
+    /**
+     * Opens an index file written by bulkLoad() and reads its header.
+     * @param path The path of the index file.
+     * @return The index.
+     */
+    public static BPlusTree load(String path) throws IOException {
+        ByteBuffer header = readNode(path, 0);
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not a B+ tree index file: " + path);
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported B+ tree index version " + version + ": " + path);
+        }
+        int keyColumn = header.getInt();
+        boolean clustered = header.getInt() == 1;
+        int rootNode = header.getInt();
+        int height = header.getInt();
+        int leafCount = header.getInt();
+        int distinctKeyCount = header.getInt();
+        long entryCount = header.getLong();
+        long tableFileSize = header.getLong();
+        long tableLastModified = header.getLong();
+        return new BPlusTree(path, keyColumn, clustered, rootNode, height, leafCount, entryCount, distinctKeyCount,
+                tableFileSize, tableLastModified);
+    }
+
+    /**
+     * Reads a node of an index file through the BufferPool.
+     */
+    private static ByteBuffer readNode(String path, int nodeNumber) throws IOException {
+        return IndexFile.read(path, (long) nodeNumber * NODE_SIZE, NODE_SIZE, "B+ tree index");
+    }
+
+    /**
+     * Returns the position of the first entry whose key is at least the given key.
+     * @param key The key.
+     * @return The position among all entries in key order, entryCount if every key is smaller.
+     *
+     * @Description
+     * Every inner node on the way down is searched for the number of its keys below the given key, which is the
+     * child to descend to: the keys of the children before it are all smaller, and the first key of the next child
+     * is not. The leaf is then searched for the first key not below the given key. If there is none, the entry
+     * sought is the first of the next leaf, whose position is the same since all leaves but the last are full.
+     */
+    public long lowerBound(long key) throws IOException {
+        if (key > Integer.MAX_VALUE) {
+            return entryCount;
+        }
+        int target = (int) Math.max(Integer.MIN_VALUE, key);
+        int node = rootNode;
+        for (int level = height; level > 1; level--) {
+            ByteBuffer inner = readNode(path, node);
+            int low = 0;
+            int high = inner.getInt(0);
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (inner.getInt(INNER_KEYS + 4 * middle) < target) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            node = inner.getInt(INNER_CHILDREN + 4 * low);
+        }
+        ByteBuffer leaf = readNode(path, node);
+        int low = 0;
+        int high = leaf.getInt(0);
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (leaf.getInt(LEAF_KEYS + 4 * middle) < target) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return (long) (node - FIRST_LEAF) * LEAF_CAPACITY + low;
+    }
+
+    /**
+     * Returns the position of the first entry whose key is above the given key.
+     * @param key The key.
+     * @return The position among all entries in key order, entryCount if no key is larger.
+     */
+    public long upperBound(long key) throws IOException {
+        return key >= Integer.MAX_VALUE ? entryCount : lowerBound(key + 1);
+    }
+
+    /**
+     * Returns the number of entries whose key lies within a range.
+     * @param low The smallest key of the range.
+     * @param high The largest key of the range.
+     * @return The number of entries.
+     */
+    public long count(long low, long high) throws IOException {
+        return low > high ? 0 : upperBound(high) - lowerBound(low);
+    }
+
+    /**
+     * Reads the entries of a leaf.
+     * @param leaf The number of the leaf, starting at 0, which holds the entries from leaf * LEAF_CAPACITY on.
+     * @param keys The array to copy the keys into, with room for LEAF_CAPACITY entries.
+     * @param rowIds The array to copy the row ids into, with room for LEAF_CAPACITY entries.
+     * @return The number of entries of the leaf.
+     */
+    public int readLeaf(int leaf, int[] keys, long[] rowIds) throws IOException {
+        ByteBuffer node = readNode(path, FIRST_LEAF + leaf);
+        int size = node.getInt(0);
+        node.position(LEAF_KEYS);
+        node.asIntBuffer().get(keys, 0, size);
+        node.position(LEAF_ROW_IDS);
+        node.asLongBuffer().get(rowIds, 0, size);
+        return size;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public int getKeyColumn() {
+        return keyColumn;
+    }
+
+    public boolean isClustered() {
+        return clustered;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getLeafCount() {
+        return leafCount;
+    }
+
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    public int getDistinctKeyCount() {
+        return distinctKeyCount;
+    }
+
+    /**
+     * Checks if the index was built from the current version of a table file.
+     * @param tableFile The table file.
+     * @return True if the size and modification time of the file are unchanged, false otherwise.
+     */
+    public boolean matches(File tableFile) {
+        return IndexFile.matches(tableFile, tableFileSize, tableLastModified);
+    }
+
+    /**
+     * Returns the path of the index file of a column of a table file.
+     * @param tableFilePath The path of the table file.
+     * @param column The fully qualified name of the key column.
+     * @return The path of the index file, e.g. data/Student.csv.A.bptree.
+     */
+    public static String getPath(String tableFilePath, String column) {
+        return tableFilePath + "." + column.substring(column.indexOf('.') + 1) + ".bptree";
+    }
+}
@@ -0,0 +1,314 @@
+package ed.inf.adbs.blazedb;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The BitmapIndex class is a persistent bitmap index on an int column with few distinct values, for selections that
+ * combine comparisons of such columns with AND and OR.
+ * The index holds one RoaringBitmap per distinct value, with the numbers of the rows holding the value in file order.
+ * A comparison of the column with a constant is answered by the union of the bitmaps of the values it accepts, and
+ * the conjunctions and disjunctions of comparisons by the intersections and unions of their bitmaps, so the rows
+ * of a selection are known, and counted, before any of them is read.
+ * <br><br>
+ * Since the bitmaps hold row numbers, the index of a CSV table file also stores the byte offset of every row, which
+ * the BitmapScanOperator reads the rows at. The rows of a columnar table file are fetched by their numbers.
+ * An index of a table file that has changed since it was built is built again, see IndexFile.
+ * <br><br>
+ * The file starts with a header of HEADER_SIZE bytes: the magic number, the format version, the key column, the
+ * number of values, the number of rows, the position of the row offsets, or -1 for a columnar table file, and the
+ * size and modification time of the table file. It is followed by the directory, holding the value, the number of
+ * rows, the position and the length of every bitmap in ascending order of the values, then by the bitmaps, and by
+ * the row offsets.
+ * <br><br>
+ * The BitmapIndex class contains the following methods:<br>
+ * - build(String tableName, String column, String path): Scans a table and writes the index of a column.<br>
+ * - bulkLoad(String path, IndexEntries entries): Writes the index of sorted entries.<br>
+ * - load(String path): Opens an index file and reads its directory.<br>
+ * - lookup(long low, long high): Returns the rows holding a value within a range.<br>
+ * - countRows(long low, long high): Returns the number of rows holding a value within a range.<br>
+ * - readRowIds(int firstRow, long[] rowIds): Returns the row ids of consecutive rows.<br>
+ * - matches(File tableFile): Checks if the index was built from the current version of a table file.<br>
+ * - getPath(String tableFilePath, String column): Returns the path of the index file of a column.
+ * <br><br>
+ * The BitmapIndex class also contains the following instance variables:<br>
+ * - path: The path of the index file.<br>
+ * - keyColumn: The index of the key column in the table schema.<br>
+ * - rowCount: The number of rows of the table.<br>
+ * - offsetsPosition: The position of the row offsets in the file, or -1 if the rows are fetched by their numbers.<br>
+ * - values, cardinalities, positions, lengths: The directory of the bitmaps.<br>
+ * - tableFileSize, tableLastModified: The size and modification time of the table file the index was built from.
+ */
+public class BitmapIndex {
+    public static final int MAGIC = 0x42494458; // "BIDX"
+    public static final int VERSION = 1;
+    public static final int MAX_VALUE_COUNT = 1024;
+    private static final int HEADER_SIZE = 48;
+    private static final int DIRECTORY_ENTRY_SIZE = 20;
+
+    private final String path;
+    private final int keyColumn;
+    private final int rowCount;
+    private final long offsetsPosition;
+    private final int[] values;
+    private final int[] cardinalities;
+    private final long[] positions;
+    private final int[] lengths;
+    private final long tableFileSize;
+    private final long tableLastModified;
+
+    private BitmapIndex(String path, int keyColumn, int rowCount, long offsetsPosition, int[] values,
+                        int[] cardinalities, long[] positions, int[] lengths, long tableFileSize, long tableLastModified) {
+        this.path = path;
+        this.keyColumn = keyColumn;
+        this.rowCount = rowCount;
+        this.offsetsPosition = offsetsPosition;
+        this.values = values;
+        this.cardinalities = cardinalities;
+        this.positions = positions;
+        this.lengths = lengths;
+        this.tableFileSize = tableFileSize;
+        this.tableLastModified = tableLastModified;
+    }
+
+    /**
+     * Scans a table and writes the index of a column of the file the table is currently stored in.
+     * @param tableName The name of the table.
+     * @param column The fully qualified name of the key column.
+     * @param path The path of the index file to write.
+     * @return The index.
+     */
+    public static BitmapIndex build(String tableName, String column, String path) throws IOException {
+        return bulkLoad(path, IndexEntries.collect(tableName, column));
+    }
+
+    /**
+     * Writes the index of the given entries.
+     * @param path The path of the index file to write.
+     * @param entries The entries, sorted by key and row id.
+     * @return The index.
+     *
+     * @Description
+     * The entries of every key are adjacent and ascending by row id. The row id of an entry is the number of its row
+     * in a columnar table file, and the number of a row of a CSV table file is found by a binary search of its
+     * offset among the row offsets, which are ascending as well. The rows of every key are thus ascending and form
+     * its bitmap directly.
+     */
+    public static BitmapIndex bulkLoad(String path, IndexEntries entries) throws IOException {
+        if (entries.getDistinctKeyCount() > MAX_VALUE_COUNT) {
+            throw new RuntimeException("Too many distinct values for a bitmap index: " + entries.getDistinctKeyCount()
+                    + " > " + MAX_VALUE_COUNT);
+        }
+        int count = entries.getCount();
+        int[] keys = entries.getKeys();
+        long[] rowIds = entries.getRowIds();
+        long[] rowOffsets = entries.getRowOffsets();
+        int[] rows = new int[count];
+        for (int i = 0; i < count; i++) {
+            rows[i] = rowOffsets != null ? Arrays.binarySearch(rowOffsets, rowIds[i]) : (int) rowIds[i];
+        }
+
+        int valueCount = entries.getDistinctKeyCount();
+        int[] values = new int[valueCount];
+        int[] cardinalities = new int[valueCount];
+        long[] positions = new long[valueCount];
+        int[] lengths = new int[valueCount];
+        RoaringBitmap[] bitmaps = new RoaringBitmap[valueCount];
+        long position = HEADER_SIZE + (long) DIRECTORY_ENTRY_SIZE * valueCount;
+        int first = 0;
+        for (int value = 0; value < valueCount; value++) {
+            int last = first;
+            while (last < count && keys[last] == keys[first]) {
+                last++;
+            }
+            bitmaps[value] = RoaringBitmap.of(rows, first, last);
+            values[value] = keys[first];
+            cardinalities[value] = last - first;
+            positions[value] = position;
+            lengths[value] = bitmaps[value].getSerializedSize();
+            position += lengths[value];
+            first = last;
+        }
+        long offsetsPosition = rowOffsets != null ? position : -1;
+        File tableFile = entries.getTableFile();
+
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(IndexFile.getTemporaryFile(path))))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(entries.getKeyColumn());
+            output.writeInt(valueCount);
+            output.writeInt(count);
+            output.writeInt(0);
+            output.writeLong(offsetsPosition);
+            output.writeLong(tableFile.length());
+            output.writeLong(tableFile.lastModified());
+            for (int value = 0; value < valueCount; value++) {
+                output.writeInt(values[value]);
+                output.writeInt(cardinalities[value]);
+                output.writeLong(positions[value]);
+                output.writeInt(lengths[value]);
+            }
+            for (RoaringBitmap bitmap : bitmaps) {
+                ByteBuffer buffer = ByteBuffer.allocate(bitmap.getSerializedSize());
+                bitmap.serialize(buffer);
+                output.write(buffer.array());
+            }
+            if (rowOffsets != null) {
+                for (int row = 0; row < count; row++) {
+                    output.writeLong(rowOffsets[row]);
+                }
+            }
+        }
+        IndexFile.commit(path);
+        return new BitmapIndex(path, entries.getKeyColumn(), count, offsetsPosition, values, cardinalities, positions,
+                lengths, tableFile.length(), tableFile.lastModified());
+    }
+
+    /**
+     * Opens an index file written by bulkLoad() and reads its header and directory.
+     * @param path The path of the index file.
+     * @return The index.
+     */
+    public static BitmapIndex load(String path) throws IOException {
+        ByteBuffer header = read(path, 0, HEADER_SIZE);
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not a bitmap index file: " + path);
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported bitmap index version " + version + ": " + path);
+        }
+        int keyColumn = header.getInt();
+        int valueCount = header.getInt();
+        int rowCount = header.getInt();
+        header.getInt();
+        long offsetsPosition = header.getLong();
+        long tableFileSize = header.getLong();
+        long tableLastModified = header.getLong();
+
+        ByteBuffer directory = read(path, HEADER_SIZE, DIRECTORY_ENTRY_SIZE * valueCount);
+        int[] values = new int[valueCount];
+        int[] cardinalities = new int[valueCount];
+        long[] positions = new long[valueCount];
+        int[] lengths = new int[valueCount];
+        for (int value = 0; value < valueCount; value++) {
+            values[value] = directory.getInt();
+            cardinalities[value] = directory.getInt();
+            positions[value] = directory.getLong();
+            lengths[value] = directory.getInt();
+        }
+        return new BitmapIndex(path, keyColumn, rowCount, offsetsPosition, values, cardinalities, positions, lengths,
+                tableFileSize, tableLastModified);
+    }
+
+    /**
+     * Reads a part of an index file through the BufferPool.
+     */
+    private static ByteBuffer read(String path, long position, int length) throws IOException {
+        return IndexFile.read(path, position, length, "bitmap index");
+    }
+
+    /**
+     * Returns the rows holding a value within a range.
+     * @param low The smallest value of the range.
+     * @param high The largest value of the range.
+     * @return The union of the bitmaps of the values within the range.
+     */
+    public RoaringBitmap lookup(long low, long high) throws IOException {
+        RoaringBitmap rows = new RoaringBitmap();
+        for (int value = firstValue(low); value < values.length && values[value] <= high; value++) {
+            rows = rows.or(RoaringBitmap.deserialize(read(path, positions[value], lengths[value])));
+        }
+        return rows;
+    }
+
+    /**
+     * Returns the number of rows holding a value within a range, from the directory alone.
+     * @param low The smallest value of the range.
+     * @param high The largest value of the range.
+     * @return The number of rows.
+     */
+    public long countRows(long low, long high) {
+        long count = 0;
+        for (int value = firstValue(low); value < values.length && values[value] <= high; value++) {
+            count += cardinalities[value];
+        }
+        return count;
+    }
+
+    /**
+     * Returns the position in the directory of the first value not below a bound.
+     */
+    private int firstValue(long low) {
+        int first = 0;
+        int last = values.length;
+        while (first < last) {
+            int middle = (first + last) >>> 1;
+            if (values[middle] < low) {
+                first = middle + 1;
+            } else {
+                last = middle;
+            }
+        }
+        return first;
+    }
+
+    /**
+     * Returns the row ids of consecutive rows: their byte offsets in a CSV table file, or their numbers in a
+     * columnar table file.
+     * @param firstRow The number of the first row.
+     * @param rowIds The buffer to fill.
+     * @return The number of row ids read, less than the length of the buffer at the end of the table.
+     */
+    public int readRowIds(int firstRow, long[] rowIds) throws IOException {
+        int count = Math.max(0, Math.min(rowIds.length, rowCount - firstRow));
+        if (offsetsPosition < 0) {
+            for (int i = 0; i < count; i++) {
+                rowIds[i] = firstRow + i;
+            }
+        } else if (count > 0) {
+            read(path, offsetsPosition + 8L * firstRow, 8 * count).asLongBuffer().get(rowIds, 0, count);
+        }
+        return count;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public int getKeyColumn() {
+        return keyColumn;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getValueCount() {
+        return values.length;
+    }
+
+    /**
+     * Checks if the index was built from the current version of a table file.
+     * @param tableFile The table file.
+     * @return True if the size and modification time of the file are unchanged, false otherwise.
+     */
+    public boolean matches(File tableFile) {
+        return IndexFile.matches(tableFile, tableFileSize, tableLastModified);
+    }
+
+    /**
+     * Returns the path of the index file of a column of a table file.
+     * @param tableFilePath The path of the table file.
+     * @param column The fully qualified name of the key column.
+     * @return The path of the index file, e.g. data/Student.csv.B.bitmap.
+     */
+    public static String getPath(String tableFilePath, String column) {
+        return tableFilePath + "." + column.substring(column.indexOf('.') + 1) + ".bitmap";
+    }
+}
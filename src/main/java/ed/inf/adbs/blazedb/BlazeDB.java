@@ -1,5 +1,9 @@
 package ed.inf.adbs.blazedb;
 
+import ed.inf.adbs.blazedb.operator.HashJoinOperator;
+import ed.inf.adbs.blazedb.operator.Operator;
+import ed.inf.adbs.blazedb.operator.SortOperator;
+
 /**
  * BlazeDB is a lightweight in-memory database system that supports SQL queries with SELECT statements.
  * It reads the schema from a database directory and executes queries from input files.
@@ -28,11 +32,47 @@ public class BlazeDB {
 			DatabaseCatalog.getInstance(databaseDir);
 
 			// Execute query from input file
-			Interpreter.executeQuery(inputFile, outputFile);
+			Operator plan = Interpreter.executeQuery(inputFile, outputFile);
+
+			// Report the memory used by the tables kept in memory, if any
+			if (!BlazeDBConfig.getResidentTables().isEmpty()) {
+				System.err.println(DatabaseCatalog.getInstance(databaseDir).getResidentReport());
+			}
+
+			// Report the operators of the query that spilled to disk, if asked for
+			if (plan != null && BlazeDBConfig.isSpillReportEnabled()) {
+				StringBuilder report = new StringBuilder();
+				appendSpillReport(plan, report);
+				System.err.print(report);
+			}
 
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
 
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Describes the operators of a plan that wrote spill files, one line per operator.
+	 * @param operator The root of the plan or of a part of it.
+	 * @param report The report to append to.
+	 */
+	private static void appendSpillReport(Operator operator, StringBuilder report) {
+		if (operator instanceof HashJoinOperator && ((HashJoinOperator) operator).getSpilledBytes() > 0) {
+			HashJoinOperator hashJoin = (HashJoinOperator) operator;
+			report.append("HashJoinOperator on ").append(hashJoin.getTableName()).append(" spilled ")
+					.append(hashJoin.getSpilledBytes()).append(" bytes into ").append(hashJoin.getPartitionCount())
+					.append(" partitions").append(System.lineSeparator());
+		}
+		if (operator instanceof SortOperator && ((SortOperator) operator).getSpilledBytes() > 0) {
+			SortOperator sort = (SortOperator) operator;
+			report.append("SortOperator on ").append(sort.getTableName()).append(" spilled ")
+					.append(sort.getSpilledBytes()).append(" bytes in ").append(sort.getRunCount())
+					.append(" runs and ").append(sort.getMergePassCount()).append(" merge passes")
+					.append(System.lineSeparator());
+		}
+		for (Operator child : operator.getChildren()) {
+			appendSpillReport(child, report);
+		}
+	}
+}
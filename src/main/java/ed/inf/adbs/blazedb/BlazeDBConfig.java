@@ -0,0 +1,145 @@
+package ed.inf.adbs.blazedb;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The BlazeDBConfig class holds the tuning switches of the database system.
+ * Every setting is read from a Java system property, so it can be given on the command line
+ * (e.g. java -Dblazedb.execution=interpreted -jar blazedb.jar ...) or set programmatically before planning a query.
+ * <br><br>
+ * The BlazeDBConfig class contains the following settings:<br>
+ * - blazedb.execution: The execution mode of the query planner, one of auto, compiled and interpreted (default auto).<br>
+ * - blazedb.scan: The scan of CSV tables, one of mapped and buffered (default mapped).<br>
+ * - blazedb.scan.parallelism: The number of worker threads of a ParallelScanOperator (default the number of cores).<br>
+ * - blazedb.scan.prefetch: The number of pages the buffered ScanOperator reads ahead on a background thread
+ *   (default 0, reading on the query thread).<br>
+ * - blazedb.bufferpool.size: The number of bytes of the BufferPool shared by the table scans (default 128 MiB).<br>
+ * - blazedb.resident: The comma-separated names of the tables the DatabaseCatalog keeps in memory (default none).<br>
+ * - blazedb.resident.memory: The number of bytes all resident tables together may use (default 64 MiB).<br>
+ * - blazedb.join.memory: The number of bytes a join may use to buffer tuples (default 64 MiB).<br>
+ * - blazedb.sort.memory: The number of bytes a sort may use to buffer tuples before it spills sorted runs
+ *   (default 64 MiB).<br>
+ * - blazedb.spill.dir: The directory for the temporary files of operators that exceed their memory budget
+ *   (default the system temporary directory).<br>
+ * - blazedb.spill.report: Whether BlazeDB reports the spilling of the operators of a query on the standard error
+ *   stream (default false).
+ */
+public final class BlazeDBConfig {
+
+    /**
+     * The execution modes of the query planner.<br>
+     * - AUTO: Fuse the pipelines that CompiledPipelineOperator.isWorthCompiling() expects to be faster, i.e. those
+     *   over tables of more than one batch of rows, and interpret the rest.<br>
+     * - COMPILED: Fuse every pipeline of a supported shape; other shapes are still interpreted.<br>
+     * - INTERPRETED: Never compile, always use the operator tree as built.
+     */
+    public enum ExecutionMode {
+        AUTO, COMPILED, INTERPRETED
+    }
+
+    /**
+     * The scans of tables stored as CSV files.<br>
+     * - MAPPED: Memory-map the file and parse the values straight from its bytes (MappedScanOperator).<br>
+     * - BUFFERED: Read the file line by line with a BufferedReader (ScanOperator).
+     */
+    public enum ScanMode {
+        MAPPED, BUFFERED
+    }
+
+    private BlazeDBConfig() {}
+
+    /**
+     * Returns the execution mode of the query planner.
+     * @return The configured execution mode.
+     */
+    public static ExecutionMode getExecutionMode() {
+        return ExecutionMode.valueOf(System.getProperty("blazedb.execution", "auto").toUpperCase());
+    }
+
+    /**
+     * Returns the scan of tables stored as CSV files.
+     * @return The configured scan mode.
+     */
+    public static ScanMode getScanMode() {
+        return ScanMode.valueOf(System.getProperty("blazedb.scan", "mapped").toUpperCase());
+    }
+
+    /**
+     * Returns the number of worker threads a parallel scan may use.
+     * @return The configured parallelism, at least 1.
+     */
+    public static int getScanParallelism() {
+        return Math.max(1, Integer.getInteger("blazedb.scan.parallelism", Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Returns the read-ahead depth of the buffered scan.
+     * @return The number of pages a PrefetchInputStream may read ahead, or 0 to read without prefetching.
+     */
+    public static int getScanPrefetchDepth() {
+        return Math.max(0, Integer.getInteger("blazedb.scan.prefetch", 0));
+    }
+
+    /**
+     * Returns the size of the buffer pool, read once when the pool is created.
+     * @return The number of bytes of the BufferPool.
+     */
+    public static long getBufferPoolSize() {
+        return Long.getLong("blazedb.bufferpool.size", 128L * 1024 * 1024);
+    }
+
+    /**
+     * Returns the tables to keep in memory.
+     * @return The names of the resident tables, empty if none are configured.
+     */
+    public static List<String> getResidentTables() {
+        List<String> tableNames = new ArrayList<>();
+        for (String tableName : System.getProperty("blazedb.resident", "").split(",")) {
+            if (!tableName.trim().isEmpty()) {
+                tableNames.add(tableName.trim());
+            }
+        }
+        return tableNames;
+    }
+
+    /**
+     * Returns the memory limit of the resident tables.
+     * @return The number of bytes all resident tables together may use.
+     */
+    public static long getResidentMemoryLimit() {
+        return Long.getLong("blazedb.resident.memory", 64L * 1024 * 1024);
+    }
+
+    /**
+     * Returns the memory budget of a join operator.
+     * @return The number of bytes a join may use to buffer tuples.
+     */
+    public static long getJoinMemoryBudget() {
+        return Long.getLong("blazedb.join.memory", 64L * 1024 * 1024);
+    }
+
+    /**
+     * Returns the memory budget of a sort operator.
+     * @return The number of bytes a sort may use to buffer tuples.
+     */
+    public static long getSortMemoryBudget() {
+        return Long.getLong("blazedb.sort.memory", 64L * 1024 * 1024);
+    }
+
+    /**
+     * Returns the directory for the temporary files of operators that exceed their memory budget.
+     * @return The path of the spill directory.
+     */
+    public static String getSpillDirectory() {
+        return System.getProperty("blazedb.spill.dir", System.getProperty("java.io.tmpdir"));
+    }
+
+    /**
+     * Returns whether the spilling of the operators of a query is reported.
+     * @return True if BlazeDB reports the spill files written by the query, false otherwise.
+     */
+    public static boolean isSpillReportEnabled() {
+        return Boolean.getBoolean("blazedb.spill.report");
+    }
+}
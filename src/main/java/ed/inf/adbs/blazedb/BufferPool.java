@@ -0,0 +1,331 @@
+package ed.inf.adbs.blazedb;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The BufferPool class is a process-wide cache of fixed-size pages of the table files, shared by all scans.
+ * A page holds PAGE_SIZE bytes of a file at an offset that is a multiple of PAGE_SIZE. Scans pin the pages they
+ * read and unpin them when done, so repeated scans of the same table, such as the inner input of a join or a table
+ * used by several queries, are served from memory instead of the operating system.
+ * <br><br>
+ * The number of frames follows from the pool size in BlazeDBConfig (blazedb.bufferpool.size). Frames are allocated
+ * when first needed. Once all are in use, a page is evicted with the clock algorithm: the clock hand sweeps over the
+ * frames, skips pinned frames, clears the reference bit of recently used frames and evicts the first unpinned frame
+ * whose reference bit is already clear. All methods are synchronized, so scans on several threads share the pool.
+ * <br><br>
+ * The BufferPool class contains the following methods:<br>
+ * - getInstance(): Returns the buffer pool of the process.<br>
+ * - pin(String path, long pageNumber): Pins a page of a file, reading it on a miss.<br>
+ * - unpin(Page page): Releases a pinned page.<br>
+ * - read(String path, long position, byte[] buffer, int offset, int length): Copies bytes of a file through the pool.<br>
+ * - openInputStream(String path): Opens a stream over a file that reads through the pool.<br>
+ * - invalidate(String path): Drops the cached pages of a file that has been rewritten.<br>
+ * - getHitCount(), getMissCount(), getEvictionCount(): Return the counters of the pool.
+ * <br><br>
+ * The BufferPool class also contains the following instance variables:<br>
+ * - instance: The buffer pool of the process.<br>
+ * - frames: The frames of the pool, null until first used.<br>
+ * - pageTable: A map from the cached pages to their frames.<br>
+ * - channels: The open channels of the files read through the pool.<br>
+ * - clockHand: The next frame the clock algorithm looks at.<br>
+ * - hitCount, missCount, evictionCount: The number of pins served from the pool, pins that read the file and
+ *   evicted pages.
+ */
+public class BufferPool {
+    public static final int PAGE_SIZE = 64 * 1024;
+
+    private static BufferPool instance;
+
+    private final Page[] frames;
+    private final Map<PageKey, Page> pageTable;
+    private final Map<String, FileChannel> channels;
+    private int clockHand;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * Creates a buffer pool of the given size.
+     * @param size The size of the pool in bytes, rounded down to whole pages but at least one page.
+     */
+    BufferPool(long size) {
+        this.frames = new Page[(int) Math.max(1, Math.min(Integer.MAX_VALUE, size / PAGE_SIZE))];
+        this.pageTable = new HashMap<>();
+        this.channels = new HashMap<>();
+    }
+
+    /**
+     * Returns the buffer pool of the process, created with the size configured in BlazeDBConfig.
+     * @return The buffer pool.
+     */
+    public static synchronized BufferPool getInstance() {
+        if (instance == null) {
+            instance = new BufferPool(BlazeDBConfig.getBufferPoolSize());
+        }
+        return instance;
+    }
+
+    /**
+     * Pins a page of a file, so it stays in the pool until it is unpinned.
+     * @param path The path of the file.
+     * @param pageNumber The number of the page, the offset in the file divided by PAGE_SIZE.
+     * @return The pinned page. Its length is less than PAGE_SIZE for the last page and 0 beyond the end of the file.
+     */
+    public synchronized Page pin(String path, long pageNumber) throws IOException {
+        PageKey key = new PageKey(path, pageNumber);
+        Page page = pageTable.get(key);
+        if (page != null) {
+            hitCount++;
+        } else {
+            missCount++;
+            page = findFreeFrame();
+            page.length = readPage(path, pageNumber, page.data);
+            page.key = key;
+            pageTable.put(key, page);
+        }
+        page.pinCount++;
+        page.referenced = true;
+        return page;
+    }
+
+    /**
+     * Releases a page pinned by pin().
+     * @param page The page to unpin.
+     */
+    public synchronized void unpin(Page page) {
+        if (page.pinCount == 0) {
+            throw new RuntimeException("Buffer pool page is not pinned: " + page.key);
+        }
+        page.pinCount--;
+    }
+
+    /**
+     * Returns an unused frame, allocating a new one while the pool is not full and evicting a page otherwise.
+     * @return The frame, not in the page table.
+     */
+    private Page findFreeFrame() {
+        // Sweep at most twice: the first pass may only clear reference bits
+        for (int step = 0; step < 2 * frames.length; step++) {
+            int index = clockHand;
+            clockHand = (clockHand + 1) % frames.length;
+            Page frame = frames[index];
+            if (frame == null) {
+                frames[index] = new Page();
+                return frames[index];
+            }
+            if (frame.pinCount > 0) {
+                continue;
+            }
+            if (frame.referenced) {
+                frame.referenced = false;
+                continue;
+            }
+            if (frame.key != null) {
+                pageTable.remove(frame.key);
+                frame.key = null;
+                evictionCount++;
+            }
+            return frame;
+        }
+        throw new RuntimeException("All " + frames.length + " buffer pool frames are pinned");
+    }
+
+    /**
+     * Reads a page of a file into the given array.
+     * @return The number of bytes read.
+     */
+    private int readPage(String path, long pageNumber, byte[] data) throws IOException {
+        FileChannel channel = getChannel(path);
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        long position = pageNumber * PAGE_SIZE;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                break;
+            }
+        }
+        return buffer.position();
+    }
+
+    /**
+     * Returns the open channel of a file, opening it on first use.
+     */
+    private FileChannel getChannel(String path) throws IOException {
+        FileChannel channel = channels.get(path);
+        if (channel == null) {
+            channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+            channels.put(path, channel);
+        }
+        return channel;
+    }
+
+    /**
+     * Copies bytes of a file into the given array, reading the pages through the pool.
+     * @param path The path of the file.
+     * @param position The offset of the first byte in the file.
+     * @param buffer The array to copy the bytes into.
+     * @param offset The position in the array of the first byte.
+     * @param length The number of bytes to copy.
+     * @return The number of bytes copied, less than length only at the end of the file, or -1 if position is at or
+     *         beyond the end of the file.
+     */
+    public int read(String path, long position, byte[] buffer, int offset, int length) throws IOException {
+        int copied = 0;
+        while (copied < length) {
+            long current = position + copied;
+            Page page = pin(path, current / PAGE_SIZE);
+            try {
+                int pageOffset = (int) (current % PAGE_SIZE);
+                int count = Math.min(length - copied, page.length - pageOffset);
+                if (count <= 0) {
+                    break; // End of the file
+                }
+                System.arraycopy(page.data, pageOffset, buffer, offset + copied, count);
+                copied += count;
+            } finally {
+                unpin(page);
+            }
+        }
+        return copied == 0 && length > 0 ? -1 : copied;
+    }
+
+    /**
+     * Opens a stream over a file that reads through the pool.
+     * @param path The path of the file.
+     * @return The stream, positioned at the start of the file.
+     */
+    public InputStream openInputStream(String path) throws IOException {
+        synchronized (this) {
+            getChannel(path); // Fail now if the file does not exist
+        }
+        return new PageInputStream(path);
+    }
+
+    /**
+     * Drops the cached pages of a file, e.g. after it has been rewritten. Pinned pages stay with their readers but
+     * are no longer found by pin().
+     * @param path The path of the file.
+     */
+    public synchronized void invalidate(String path) {
+        Iterator<Map.Entry<PageKey, Page>> entries = pageTable.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<PageKey, Page> entry = entries.next();
+            if (entry.getKey().path.equals(path)) {
+                entry.getValue().key = null;
+                entry.getValue().referenced = false;
+                entries.remove();
+            }
+        }
+        FileChannel channel = channels.remove(path);
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // The channel is reopened on the next read
+            }
+        }
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public int getFrameCount() {
+        return frames.length;
+    }
+
+    /**
+     * The Page class is a frame of the pool and the page of a file it currently holds.
+     */
+    public static class Page {
+        private final byte[] data = new byte[PAGE_SIZE];
+        private int length;
+        private PageKey key;
+        private int pinCount;
+        private boolean referenced;
+
+        public byte[] getData() {
+            return data;
+        }
+
+        public int getLength() {
+            return length;
+        }
+    }
+
+    /**
+     * The PageKey class identifies a page by the path of its file and its page number.
+     */
+    private static class PageKey {
+        private final String path;
+        private final long pageNumber;
+
+        private PageKey(String path, long pageNumber) {
+            this.path = path;
+            this.pageNumber = pageNumber;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof PageKey)) {
+                return false;
+            }
+            PageKey key = (PageKey) other;
+            return pageNumber == key.pageNumber && path.equals(key.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, pageNumber);
+        }
+
+        @Override
+        public String toString() {
+            return path + "#" + pageNumber;
+        }
+    }
+
+    /**
+     * The PageInputStream class reads a file sequentially through the pool.
+     */
+    private class PageInputStream extends InputStream {
+        private final String path;
+        private long position;
+
+        private PageInputStream(String path) {
+            this.path = path;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = BufferPool.this.read(path, position, buffer, offset, length);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+    }
+}
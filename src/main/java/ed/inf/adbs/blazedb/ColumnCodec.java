@@ -0,0 +1,367 @@
+package ed.inf.adbs.blazedb;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The ColumnCodec class encodes the column chunks of the columnar format, the values of one column in one page.
+ * Every chunk is stored with the encoding that makes it smallest, chosen from the statistics of the chunk:<br>
+ * - PLAIN: The values as 4-byte integers.<br>
+ * - RUN_LENGTH: The number of runs, followed by the value and the length of every run of equal values.<br>
+ * - DICTIONARY: The number of distinct values, the sorted distinct values and the bit-packed position of every value
+ *   in the dictionary.<br>
+ * - FRAME_OF_REFERENCE: The minimum and the bit-packed difference of every value to the minimum.<br>
+ * - DELTA: The first value, the minimum difference between consecutive values and the bit-packed differences
+ *   to that minimum, e.g. for sorted keys.
+ * <br><br>
+ * Range conditions can be evaluated on most encodings without decoding the chunk: once per run for RUN_LENGTH,
+ * on the codes for DICTIONARY, whose dictionary is sorted so the matching codes form a range, and on the packed
+ * differences for FRAME_OF_REFERENCE, after moving the range by the minimum.
+ * <br><br>
+ * The ColumnCodec class contains the following methods:<br>
+ * - choose(int[] values, int count): Chooses the encoding that stores a chunk in the fewest bytes.<br>
+ * - encode(Encoding encoding, int[] values, int count, ByteBuffer out): Appends an encoded chunk to a buffer.<br>
+ * - decode(Encoding encoding, ByteBuffer in, int offset, int count, int[] out): Decodes a chunk.<br>
+ * - select(Encoding encoding, ByteBuffer in, int offset, int count, long low, long high, boolean[] keep):
+ *   Clears the rows of a chunk whose value lies outside a range.
+ */
+public final class ColumnCodec {
+
+    /**
+     * The encodings of a column chunk, in the order they are preferred for chunks of equal size.
+     */
+    public enum Encoding {
+        RUN_LENGTH, DICTIONARY, FRAME_OF_REFERENCE, DELTA, PLAIN
+    }
+
+    private ColumnCodec() {}
+
+    /**
+     * Chooses the encoding that stores a chunk in the fewest bytes.
+     * @param values The values of the chunk.
+     * @param count The number of values.
+     * @return The chosen encoding.
+     */
+    public static Encoding choose(int[] values, int count) {
+        if (count == 0) {
+            return Encoding.PLAIN;
+        }
+        long min = values[0];
+        long max = values[0];
+        long minDelta = Long.MAX_VALUE;
+        long maxDelta = Long.MIN_VALUE;
+        int runs = 1;
+        for (int i = 1; i < count; i++) {
+            min = Math.min(min, values[i]);
+            max = Math.max(max, values[i]);
+            long delta = (long) values[i] - values[i - 1];
+            minDelta = Math.min(minDelta, delta);
+            maxDelta = Math.max(maxDelta, delta);
+            if (delta != 0) {
+                runs++;
+            }
+        }
+        int distinct = countDistinct(values, count);
+
+        long[] sizes = new long[Encoding.values().length];
+        sizes[Encoding.RUN_LENGTH.ordinal()] = 4 + 8L * runs;
+        sizes[Encoding.DICTIONARY.ordinal()] = 4 + 4L * distinct + 1 + packedSize(count, bitWidth(distinct - 1));
+        sizes[Encoding.FRAME_OF_REFERENCE.ordinal()] = 4 + 1 + packedSize(count, bitWidth(max - min));
+        sizes[Encoding.DELTA.ordinal()] = count > 1 ? 4 + 8 + 1 + packedSize(count - 1, bitWidth(maxDelta - minDelta)) : Long.MAX_VALUE;
+        sizes[Encoding.PLAIN.ordinal()] = 4L * count;
+
+        Encoding best = Encoding.PLAIN;
+        for (Encoding encoding : Encoding.values()) {
+            if (sizes[encoding.ordinal()] < sizes[best.ordinal()]) {
+                best = encoding;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Appends a chunk in the given encoding to a buffer.
+     * @param encoding The encoding.
+     * @param values The values of the chunk.
+     * @param count The number of values.
+     * @param out The buffer to append to, with enough room for a PLAIN chunk.
+     */
+    public static void encode(Encoding encoding, int[] values, int count, ByteBuffer out) {
+        switch (encoding) {
+            case RUN_LENGTH: {
+                int runsPosition = out.position();
+                out.putInt(0);
+                int runs = 0;
+                for (int start = 0; start < count; ) {
+                    int end = start + 1;
+                    while (end < count && values[end] == values[start]) {
+                        end++;
+                    }
+                    out.putInt(values[start]).putInt(end - start);
+                    runs++;
+                    start = end;
+                }
+                out.putInt(runsPosition, runs);
+                break;
+            }
+            case DICTIONARY: {
+                int[] dictionary = Arrays.copyOf(values, count);
+                Arrays.sort(dictionary);
+                int size = 0;
+                for (int i = 0; i < count; i++) {
+                    if (i == 0 || dictionary[i] != dictionary[i - 1]) {
+                        dictionary[size++] = dictionary[i];
+                    }
+                }
+                out.putInt(size);
+                for (int i = 0; i < size; i++) {
+                    out.putInt(dictionary[i]);
+                }
+                long[] codes = new long[count];
+                for (int i = 0; i < count; i++) {
+                    codes[i] = Arrays.binarySearch(dictionary, 0, size, values[i]);
+                }
+                pack(codes, count, bitWidth(size - 1), out);
+                break;
+            }
+            case FRAME_OF_REFERENCE: {
+                int min = Integer.MAX_VALUE;
+                int max = Integer.MIN_VALUE;
+                for (int i = 0; i < count; i++) {
+                    min = Math.min(min, values[i]);
+                    max = Math.max(max, values[i]);
+                }
+                out.putInt(min);
+                long[] offsets = new long[count];
+                for (int i = 0; i < count; i++) {
+                    offsets[i] = (long) values[i] - min;
+                }
+                pack(offsets, count, bitWidth((long) max - min), out);
+                break;
+            }
+            case DELTA: {
+                long minDelta = Long.MAX_VALUE;
+                long maxDelta = Long.MIN_VALUE;
+                for (int i = 1; i < count; i++) {
+                    long delta = (long) values[i] - values[i - 1];
+                    minDelta = Math.min(minDelta, delta);
+                    maxDelta = Math.max(maxDelta, delta);
+                }
+                out.putInt(values[0]).putLong(minDelta);
+                long[] deltas = new long[count - 1];
+                for (int i = 1; i < count; i++) {
+                    deltas[i - 1] = (long) values[i] - values[i - 1] - minDelta;
+                }
+                pack(deltas, count - 1, bitWidth(maxDelta - minDelta), out);
+                break;
+            }
+            default:
+                for (int i = 0; i < count; i++) {
+                    out.putInt(values[i]);
+                }
+        }
+    }
+
+    /**
+     * Decodes a chunk.
+     * @param encoding The encoding of the chunk.
+     * @param in The buffer holding the chunk.
+     * @param offset The position of the chunk in the buffer.
+     * @param count The number of values of the chunk.
+     * @param out The array to decode the values into.
+     */
+    public static void decode(Encoding encoding, ByteBuffer in, int offset, int count, int[] out) {
+        switch (encoding) {
+            case RUN_LENGTH: {
+                int runs = in.getInt(offset);
+                int row = 0;
+                for (int run = 0; run < runs; run++) {
+                    int value = in.getInt(offset + 4 + 8 * run);
+                    int length = in.getInt(offset + 8 + 8 * run);
+                    Arrays.fill(out, row, row + length, value);
+                    row += length;
+                }
+                break;
+            }
+            case DICTIONARY: {
+                int size = in.getInt(offset);
+                int[] dictionary = new int[size];
+                for (int i = 0; i < size; i++) {
+                    dictionary[i] = in.getInt(offset + 4 + 4 * i);
+                }
+                int packed = offset + 4 + 4 * size;
+                int width = in.get(packed);
+                for (int i = 0; i < count; i++) {
+                    out[i] = dictionary[(int) unpack(in, packed + 1, width, i)];
+                }
+                break;
+            }
+            case FRAME_OF_REFERENCE: {
+                int min = in.getInt(offset);
+                int width = in.get(offset + 4);
+                for (int i = 0; i < count; i++) {
+                    out[i] = (int) (min + unpack(in, offset + 5, width, i));
+                }
+                break;
+            }
+            case DELTA: {
+                long value = in.getInt(offset);
+                long minDelta = in.getLong(offset + 4);
+                int width = in.get(offset + 12);
+                out[0] = (int) value;
+                for (int i = 1; i < count; i++) {
+                    value += minDelta + unpack(in, offset + 13, width, i - 1);
+                    out[i] = (int) value;
+                }
+                break;
+            }
+            default:
+                for (int i = 0; i < count; i++) {
+                    out[i] = in.getInt(offset + 4 * i);
+                }
+        }
+    }
+
+    /**
+     * Clears the rows of a chunk whose value lies outside the range [low, high].
+     * @param encoding The encoding of the chunk.
+     * @param in The buffer holding the chunk.
+     * @param offset The position of the chunk in the buffer.
+     * @param count The number of values of the chunk.
+     * @param low The smallest value to keep.
+     * @param high The largest value to keep.
+     * @param keep One flag per row, cleared for the rows outside the range.
+     *
+     * @Description
+     * RUN_LENGTH tests every run once. DICTIONARY finds the codes of the values in the range by binary search in the
+     * sorted dictionary and compares the packed codes with them. FRAME_OF_REFERENCE moves the range by the minimum and
+     * compares the packed differences. DELTA is decoded first, since every value depends on the previous ones.
+     */
+    public static void select(Encoding encoding, ByteBuffer in, int offset, int count, long low, long high, boolean[] keep) {
+        // Clamp to the int values, so the range can be moved by the minimum without overflow
+        low = Math.max(low, Integer.MIN_VALUE);
+        high = Math.min(high, Integer.MAX_VALUE);
+        switch (encoding) {
+            case RUN_LENGTH: {
+                int runs = in.getInt(offset);
+                int row = 0;
+                for (int run = 0; run < runs; run++) {
+                    int value = in.getInt(offset + 4 + 8 * run);
+                    int length = in.getInt(offset + 8 + 8 * run);
+                    if (value < low || value > high) {
+                        Arrays.fill(keep, row, row + length, false);
+                    }
+                    row += length;
+                }
+                break;
+            }
+            case DICTIONARY: {
+                int size = in.getInt(offset);
+                int lowCode = 0;
+                while (lowCode < size && in.getInt(offset + 4 + 4 * lowCode) < low) {
+                    lowCode++;
+                }
+                int highCode = size - 1;
+                while (highCode >= 0 && in.getInt(offset + 4 + 4 * highCode) > high) {
+                    highCode--;
+                }
+                selectPacked(in, offset + 4 + 4 * size, count, lowCode, highCode, keep);
+                break;
+            }
+            case FRAME_OF_REFERENCE: {
+                long min = in.getInt(offset);
+                selectPacked(in, offset + 4, count, low - min, high - min, keep);
+                break;
+            }
+            default: {
+                int[] values = new int[count];
+                decode(encoding, in, offset, count, values);
+                for (int i = 0; i < count; i++) {
+                    if (values[i] < low || values[i] > high) {
+                        keep[i] = false;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Clears the rows whose packed value, at the given position after the bit width byte, lies outside [low, high].
+     */
+    private static void selectPacked(ByteBuffer in, int offset, int count, long low, long high, boolean[] keep) {
+        int width = in.get(offset);
+        for (int i = 0; i < count; i++) {
+            long value = unpack(in, offset + 1, width, i);
+            if (value < low || value > high) {
+                keep[i] = false;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of bits needed for the non-negative values up to the given maximum.
+     */
+    private static int bitWidth(long max) {
+        return max <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(max);
+    }
+
+    /**
+     * Returns the number of bytes of the given number of bit-packed values: a byte for the bit width and whole longs.
+     */
+    private static long packedSize(int count, int width) {
+        return 8L * (((long) count * width + 63) / 64);
+    }
+
+    /**
+     * Appends the bit width and the given non-negative values, packed into longs of consecutive bits.
+     */
+    private static void pack(long[] values, int count, int width, ByteBuffer out) {
+        out.put((byte) width);
+        long word = 0;
+        int bits = 0;
+        for (int i = 0; i < count; i++) {
+            word |= values[i] << bits;
+            bits += width;
+            if (bits >= 64) {
+                out.putLong(word);
+                bits -= 64;
+                word = bits > 0 ? values[i] >>> (width - bits) : 0;
+            }
+        }
+        if (bits > 0) {
+            out.putLong(word);
+        }
+    }
+
+    /**
+     * Returns the index-th of the values packed with the given bit width at the given position.
+     */
+    private static long unpack(ByteBuffer in, int offset, int width, int index) {
+        if (width == 0) {
+            return 0;
+        }
+        long bit = (long) index * width;
+        int word = (int) (bit >>> 6);
+        int shift = (int) (bit & 63);
+        long value = in.getLong(offset + 8 * word) >>> shift;
+        if (shift + width > 64) {
+            value |= in.getLong(offset + 8 * word + 8) << (64 - shift);
+        }
+        return width == 64 ? value : value & ((1L << width) - 1);
+    }
+
+    /**
+     * Returns the number of distinct values of a chunk.
+     */
+    private static int countDistinct(int[] values, int count) {
+        int[] sorted = Arrays.copyOf(values, count);
+        Arrays.sort(sorted);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                distinct++;
+            }
+        }
+        return distinct;
+    }
+}
@@ -0,0 +1,132 @@
+package ed.inf.adbs.blazedb;
+
+/**
+ * The ColumnStatistics class holds the statistics of a column collected by ANALYZE and estimates the selectivity
+ * of comparisons between the column and a constant.
+ * The equi-depth histogram divides the values into buckets that each hold the same number of rows, so frequent
+ * values get narrow buckets and the estimates stay accurate for skewed data.
+ * <br><br>
+ * The ColumnStatistics class contains the following methods:<br>
+ * - getMin(), getMax(): Return the smallest and largest value of the column.<br>
+ * - getDistinctCount(): Returns the estimated number of distinct values.<br>
+ * - getHistogramBounds(): Returns the bucket bounds of the equi-depth histogram.<br>
+ * - estimateEqualsSelectivity(int value): Estimates the fraction of rows equal to a value.<br>
+ * - estimateLessThanSelectivity(int value): Estimates the fraction of rows less than a value.<br>
+ * - toString(): Returns the statistics in the format of the statistics file.<br>
+ * - parse(String line): Reads statistics from a line of the statistics file.
+ * <br><br>
+ * The ColumnStatistics class also contains the following instance variables:<br>
+ * - column: The fully qualified name of the column.<br>
+ * - min, max: The smallest and largest value of the column.<br>
+ * - distinctCount: The estimated number of distinct values.<br>
+ * - histogramBounds: The bounds of the histogram buckets, from the minimum to the maximum. Bucket i holds the
+ *   values between histogramBounds[i] and histogramBounds[i + 1].
+ */
+public class ColumnStatistics {
+    private final String column;
+    private final int min;
+    private final int max;
+    private final long distinctCount;
+    private final int[] histogramBounds;
+
+    public ColumnStatistics(String column, int min, int max, long distinctCount, int[] histogramBounds) {
+        this.column = column;
+        this.min = min;
+        this.max = max;
+        this.distinctCount = distinctCount;
+        this.histogramBounds = histogramBounds;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    public int getMin() {
+        return min;
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    public long getDistinctCount() {
+        return distinctCount;
+    }
+
+    public int[] getHistogramBounds() {
+        return histogramBounds.clone();
+    }
+
+    /**
+     * Estimates the fraction of rows whose value equals the given value,
+     * assuming the values within the range of the column are equally frequent.
+     * @param value The value to compare with.
+     * @return The estimated selectivity between 0 and 1.
+     */
+    public double estimateEqualsSelectivity(int value) {
+        if (value < min || value > max) {
+            return 0;
+        }
+        return 1.0 / Math.max(distinctCount, 1);
+    }
+
+    /**
+     * Estimates the fraction of rows whose value is less than the given value.
+     * @param value The value to compare with.
+     * @return The estimated selectivity between 0 and 1.
+     *
+     * @Description
+     * The buckets below the bucket containing the value count fully, and the containing bucket counts
+     * in proportion to the position of the value between its bounds.
+     */
+    public double estimateLessThanSelectivity(int value) {
+        if (value <= min) {
+            return 0;
+        }
+        if (value > max) {
+            return 1;
+        }
+        int bucketCount = histogramBounds.length - 1;
+        if (bucketCount < 1) {
+            return 0.5;
+        }
+        int bucket = 0;
+        while (bucket < bucketCount - 1 && histogramBounds[bucket + 1] < value) {
+            bucket++;
+        }
+        long low = histogramBounds[bucket];
+        long high = histogramBounds[bucket + 1];
+        double fraction = high > low ? (double) (value - low) / (high - low) : 0;
+        return (bucket + Math.min(Math.max(fraction, 0), 1)) / bucketCount;
+    }
+
+    /**
+     * Returns the statistics as one line of the statistics file:
+     * the column name, the minimum, the maximum, the distinct count and the histogram bounds, separated by spaces.
+     * @return The line representing the statistics.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(column).append(' ').append(min).append(' ').append(max).append(' ').append(distinctCount);
+        for (int bound : histogramBounds) {
+            builder.append(' ').append(bound);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Reads statistics from a line of the statistics file.
+     * @param line The line written by toString().
+     * @return The parsed ColumnStatistics.
+     */
+    public static ColumnStatistics parse(String line) {
+        String[] parts = line.trim().split(" ");
+        int[] histogramBounds = new int[parts.length - 4];
+        for (int i = 0; i < histogramBounds.length; i++) {
+            histogramBounds[i] = Integer.parseInt(parts[i + 4]);
+        }
+        return new ColumnStatistics(parts[0], Integer.parseInt(parts[1]), Integer.parseInt(parts[2]),
+                Long.parseLong(parts[3]), histogramBounds);
+    }
+}
@@ -0,0 +1,171 @@
+package ed.inf.adbs.blazedb;
+
+import ed.inf.adbs.blazedb.operator.ScanOperator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The ColumnarConverter class converts the CSV files of a database into the binary columnar format of ColumnarFile.
+ * The converted file of a table is written next to its CSV file as data/Table.bin. When the database is opened,
+ * the DatabaseCatalog detects the converted tables, and the QueryPlanner scans them with the ColumnarScanOperator
+ * instead of parsing the CSV files again. The CSV files are kept, so the conversion can be repeated at any time.
+ * The ZoneMap of the pages is built during the conversion and saved as data/Table.bin.zonemap.
+ * <br><br>
+ * Usage: ColumnarConverter database_dir [table ...]<br>
+ * Without table names, every table of the schema is converted.
+ * <br><br>
+ * The ColumnarConverter class contains the following methods:<br>
+ * - main(String[] args): Converts the tables of a database.<br>
+ * - convert(String tableName, String outputPath): Converts a table into a columnar file.
+ */
+public class ColumnarConverter {
+    public static final int DEFAULT_ROWS_PER_PAGE = TupleBatch.DEFAULT_CAPACITY;
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: ColumnarConverter database_dir [table ...]");
+            return;
+        }
+
+        try {
+            DatabaseCatalog catalog = DatabaseCatalog.getInstance(args[0]);
+            List<String> tableNames = args.length > 1
+                    ? Arrays.asList(args).subList(1, args.length)
+                    : new ArrayList<>(catalog.getTableNames());
+            for (String tableName : tableNames) {
+                long rowCount = convert(tableName, catalog.getColumnarFilePath(tableName));
+                System.out.println("Converted " + tableName + ": " + rowCount + " rows");
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Converts the CSV file of a table into a columnar file with pages of DEFAULT_ROWS_PER_PAGE rows.
+     * @param tableName The name of the table.
+     * @param outputPath The path of the columnar file to write.
+     * @return The number of rows converted.
+     */
+    public static long convert(String tableName, String outputPath) throws IOException {
+        return convert(tableName, outputPath, DEFAULT_ROWS_PER_PAGE);
+    }
+
+    /**
+     * Converts the CSV file of a table into a columnar file.
+     * @param tableName The name of the table.
+     * @param outputPath The path of the columnar file to write.
+     * @param rowsPerPage The number of rows per page.
+     * @return The number of rows converted.
+     *
+     * @Description
+     * The CSV file is read in batches, whose column vectors are copied into the column arrays of the current page.
+     * Every full page is encoded and written as it is filled, and its bounds are added to the zone map. The page
+     * directory follows the last page, and the header is written last, once the row and page counts are known. The file
+     * is written under a temporary name and renamed at the end, so a failed conversion never leaves a partial file that
+     * the DatabaseCatalog would detect.
+     */
+    public static long convert(String tableName, String outputPath, int rowsPerPage) throws IOException {
+        ScanOperator scan = new ScanOperator(tableName);
+        int columnCount = scan.getTableSchema().size();
+        Path temporaryPath = Paths.get(outputPath + ".tmp");
+        long rowCount = 0;
+        int pageCount = 0;
+        ZoneMap.Builder zoneMap = new ZoneMap.Builder(columnCount, rowsPerPage);
+
+        try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer page = ByteBuffer.allocateDirect(ColumnarFile.getMaxPageSize(columnCount, rowsPerPage));
+            int[][] columns = new int[columnCount][rowsPerPage];
+            List<Long> pageOffsets = new ArrayList<>();
+            int rows = 0;
+            channel.position(ColumnarFile.HEADER_SIZE);
+
+            TupleBatch batch;
+            while ((batch = scan.getNextBatch()) != null) {
+                int offset = 0;
+                while (offset < batch.getRowCount()) {
+                    int count = Math.min(rowsPerPage - rows, batch.getRowCount() - offset);
+                    for (int column = 0; column < columnCount; column++) {
+                        System.arraycopy(batch.getColumn(column), offset, columns[column], rows, count);
+                    }
+                    rows += count;
+                    offset += count;
+                    if (rows == rowsPerPage) {
+                        zoneMap.beginBlock(pageOffsets.size());
+                        zoneMap.addColumns(columns, rows);
+                        pageOffsets.add(channel.position());
+                        writePage(channel, page, columns, rows);
+                        rowCount += rows;
+                        rows = 0;
+                    }
+                }
+            }
+            if (rows > 0) {
+                zoneMap.beginBlock(pageOffsets.size());
+                zoneMap.addColumns(columns, rows);
+                pageOffsets.add(channel.position());
+                writePage(channel, page, columns, rows);
+                rowCount += rows;
+            }
+
+            ByteBuffer directory = ByteBuffer.allocate(8 * pageOffsets.size());
+            for (long pageOffset : pageOffsets) {
+                directory.putLong(pageOffset);
+            }
+            directory.flip();
+            writeFully(channel, directory, channel.position());
+
+            ByteBuffer header = ByteBuffer.allocate(ColumnarFile.HEADER_SIZE);
+            header.putInt(ColumnarFile.MAGIC).putInt(ColumnarFile.VERSION).putInt(columnCount).putInt(rowsPerPage)
+                    .putLong(rowCount).putInt(pageOffsets.size()).putInt(0);
+            header.flip();
+            writeFully(channel, header, 0);
+        }
+        Files.move(temporaryPath, new File(outputPath).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        BufferPool.getInstance().invalidate(outputPath);
+        zoneMap.build(new File(outputPath)).save(ZoneMap.getPath(outputPath));
+        return rowCount;
+    }
+
+    /**
+     * Writes a page at the current position of the channel: the row count followed by one chunk per column,
+     * each in the encoding ColumnCodec chooses for its values.
+     */
+    private static void writePage(FileChannel channel, ByteBuffer page, int[][] columns, int rows) throws IOException {
+        page.clear();
+        page.putInt(rows);
+        for (int[] column : columns) {
+            ColumnCodec.Encoding encoding = ColumnCodec.choose(column, rows);
+            page.put((byte) encoding.ordinal());
+            int lengthPosition = page.position();
+            page.putInt(0);
+            ColumnCodec.encode(encoding, column, rows, page);
+            page.putInt(lengthPosition, page.position() - lengthPosition - 4);
+        }
+        page.flip();
+        while (page.hasRemaining()) {
+            channel.write(page);
+        }
+    }
+
+    /**
+     * Writes the whole buffer to the channel at the given position.
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package ed.inf.adbs.blazedb;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The ColumnarFile class reads a table stored in the binary columnar format, the alternative to the CSV format
+ * written by the ColumnarConverter. The values are stored as binary integers, so scanning the table
+ * needs no text parsing at all. The file is read through the BufferPool, so repeated scans are served from memory.
+ * <br><br>
+ * The file starts with a header of HEADER_SIZE bytes: the magic number, the format version, the number of columns,
+ * the number of rows per page, the number of rows and the number of pages. It is followed by the pages, which hold
+ * rowsPerPage rows each except for the last one.
+ * In version 2 every page starts with the number of rows it holds, followed by one column chunk per column: the
+ * ColumnCodec encoding of the chunk as a byte, the length of the encoded values and the encoded values.
+ * The pages differ in size, so the file ends with a page directory holding the offset of every page.
+ * In version 1, which is still read, the pages have the same size and hold one plain int array of rowsPerPage
+ * entries per column.
+ * <br><br>
+ * A page is loaded with loadPage(). The rows of the loaded page can then be filtered on the encoded chunks with
+ * selectRows(), before decodeColumns() decodes them.
+ * <br><br>
+ * The ColumnarFile class contains the following methods:<br>
+ * - readPage(int page, int[][] columns): Reads the columns of a page into the given arrays.<br>
+ * - loadPage(int page): Loads a page without decoding it.<br>
+ * - selectRows(RangePredicate predicate, int[] selection): Selects the rows of the loaded page within the ranges.<br>
+ * - decodeColumns(int[][] columns): Decodes the columns of the loaded page.<br>
+ * - decodeColumn(int column, int[] values): Decodes one column of the loaded page.<br>
+ * - getEncoding(int column): Returns the encoding of a column chunk of the loaded page.<br>
+ * - getColumnCount(), getRowsPerPage(), getRowCount(), getPageCount(): Return the fields of the header.<br>
+ * - isColumnarFile(String path): Checks if a file starts with the magic number of the format.
+ * <br><br>
+ * The ColumnarFile class also contains the following instance variables:<br>
+ * - path: The path of the file.<br>
+ * - version: The format version of the file.<br>
+ * - columnCount, rowsPerPage, rowCount, pageCount: The fields of the header.<br>
+ * - pageOffsets: The offset of every page, followed by the end of the last page.<br>
+ * - pageBuffer: The buffer a page is copied into from the BufferPool.<br>
+ * - pageRows, chunkOffsets, encodings: The row count, and the position and encoding of every chunk, of the loaded page.<br>
+ * - keep: The rows of the loaded page that selectRows() has not ruled out.
+ */
+public class ColumnarFile {
+    public static final int MAGIC = 0x425A4442; // "BZDB"
+    public static final int VERSION = 2;
+    public static final int HEADER_SIZE = 32;
+
+    private final String path;
+    private final int version;
+    private final int columnCount;
+    private final int rowsPerPage;
+    private final long rowCount;
+    private final int pageCount;
+    private final long[] pageOffsets;
+    private final ByteBuffer pageBuffer;
+    private final int[] chunkOffsets;
+    private final ColumnCodec.Encoding[] encodings;
+    private final boolean[] keep;
+    private int pageRows;
+
+    /**
+     * Opens a columnar file and reads its header and page directory.
+     * @param path The path of the file.
+     */
+    public ColumnarFile(String path) throws IOException {
+        this.path = path;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(header, 0, HEADER_SIZE);
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not a columnar table file: " + path);
+        }
+        this.version = header.getInt();
+        if (version != 1 && version != VERSION) {
+            throw new IOException("Unsupported columnar table version " + version + ": " + path);
+        }
+        this.columnCount = header.getInt();
+        this.rowsPerPage = header.getInt();
+        this.rowCount = header.getLong();
+        this.pageCount = header.getInt();
+
+        this.pageOffsets = new long[pageCount + 1];
+        int maxPageSize = 0;
+        if (version == 1) {
+            int pageSize = 4 + 4 * columnCount * rowsPerPage;
+            for (int page = 0; page <= pageCount; page++) {
+                pageOffsets[page] = HEADER_SIZE + (long) page * pageSize;
+            }
+            maxPageSize = pageSize;
+        } else {
+            long directoryOffset = new File(path).length() - 8L * pageCount;
+            ByteBuffer directory = ByteBuffer.allocate(8 * pageCount);
+            readFully(directory, directoryOffset, directory.capacity());
+            for (int page = 0; page < pageCount; page++) {
+                pageOffsets[page] = directory.getLong();
+            }
+            pageOffsets[pageCount] = directoryOffset;
+            for (int page = 0; page < pageCount; page++) {
+                maxPageSize = (int) Math.max(maxPageSize, pageOffsets[page + 1] - pageOffsets[page]);
+            }
+        }
+        this.pageBuffer = ByteBuffer.allocate(maxPageSize);
+        this.chunkOffsets = new int[columnCount];
+        this.encodings = new ColumnCodec.Encoding[columnCount];
+        this.keep = new boolean[rowsPerPage];
+    }
+
+    /**
+     * Reads the columns of a page into the given arrays.
+     * @param page The number of the page, starting at 0.
+     * @param columns One array per column with room for at least rowsPerPage values.
+     * @return The number of rows of the page.
+     */
+    public int readPage(int page, int[][] columns) throws IOException {
+        int rows = loadPage(page);
+        decodeColumns(columns);
+        return rows;
+    }
+
+    /**
+     * Loads a page and locates its column chunks without decoding them.
+     * @param page The number of the page, starting at 0.
+     * @return The number of rows of the page.
+     */
+    public int loadPage(int page) throws IOException {
+        readFully(pageBuffer, pageOffsets[page], (int) (pageOffsets[page + 1] - pageOffsets[page]));
+        pageRows = pageBuffer.getInt(0);
+        int offset = 4;
+        for (int column = 0; column < columnCount; column++) {
+            if (version == 1) {
+                encodings[column] = ColumnCodec.Encoding.PLAIN;
+                chunkOffsets[column] = 4 + 4 * column * rowsPerPage;
+            } else {
+                encodings[column] = ColumnCodec.Encoding.values()[pageBuffer.get(offset)];
+                chunkOffsets[column] = offset + 5;
+                offset += 5 + pageBuffer.getInt(offset + 1);
+            }
+        }
+        return pageRows;
+    }
+
+    /**
+     * Selects the rows of the loaded page whose values lie within the ranges of a predicate.
+     * @param predicate The ranges of the columns.
+     * @param selection The array to write the selected row positions into, in ascending order.
+     * @return The number of selected rows.
+     *
+     * @Description
+     * The ranges are checked on the encoded chunks with ColumnCodec.select(), and the columns are checked one after
+     * the other, so checking stops at the first column that rules out every row of the page.
+     */
+    public int selectRows(RangePredicate predicate, int[] selection) {
+        Arrays.fill(keep, 0, pageRows, true);
+        for (int column = 0; column < columnCount; column++) {
+            if (!predicate.isConstrained(column)) {
+                continue;
+            }
+            ColumnCodec.select(encodings[column], pageBuffer, chunkOffsets[column], pageRows,
+                    predicate.getLow(column), predicate.getHigh(column), keep);
+            boolean any = false;
+            for (int row = 0; row < pageRows && !any; row++) {
+                any = keep[row];
+            }
+            if (!any) {
+                return 0;
+            }
+        }
+        int count = 0;
+        for (int row = 0; row < pageRows; row++) {
+            if (keep[row]) {
+                selection[count++] = row;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Decodes the columns of the loaded page into the given arrays.
+     * @param columns One array per column with room for at least rowsPerPage values.
+     */
+    public void decodeColumns(int[][] columns) {
+        for (int column = 0; column < columnCount; column++) {
+            decodeColumn(column, columns[column]);
+        }
+    }
+
+    /**
+     * Decodes a column of the loaded page into the given array.
+     * @param column The index of the column.
+     * @param values An array with room for at least rowsPerPage values.
+     */
+    public void decodeColumn(int column, int[] values) {
+        ColumnCodec.decode(encodings[column], pageBuffer, chunkOffsets[column], pageRows, values);
+    }
+
+    /**
+     * Returns the encoding of a column chunk of the loaded page.
+     * @param column The index of the column.
+     * @return The encoding of the chunk.
+     */
+    public ColumnCodec.Encoding getEncoding(int column) {
+        return encodings[column];
+    }
+
+    /**
+     * Fills the array of the given heap buffer with the given number of bytes of the file at the given position.
+     */
+    private void readFully(ByteBuffer buffer, long position, int length) throws IOException {
+        int read = BufferPool.getInstance().read(path, position, buffer.array(), 0, length);
+        if (read < length) {
+            throw new EOFException("Truncated columnar table file: " + path);
+        }
+        buffer.clear();
+    }
+
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    public int getRowsPerPage() {
+        return rowsPerPage;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * Returns the largest size of a page of a file with the given layout, which holds plain column chunks.
+     * @param columnCount The number of columns.
+     * @param rowsPerPage The number of rows per page.
+     * @return The page size in bytes.
+     */
+    static int getMaxPageSize(int columnCount, int rowsPerPage) {
+        return 4 + columnCount * (5 + 4 * rowsPerPage);
+    }
+
+    /**
+     * Checks if a file starts with the magic number of the columnar format.
+     * @param path The path of the file.
+     * @return True if the file exists and is a columnar table file, false otherwise.
+     */
+    public static boolean isColumnarFile(String path) {
+        try (FileChannel file = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            return file.read(magic, 0) == 4 && magic.getInt(0) == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
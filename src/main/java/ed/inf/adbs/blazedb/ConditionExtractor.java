@@ -2,13 +2,24 @@ package ed.inf.adbs.blazedb;
 
 import net.sf.jsqlparser.expression.BinaryExpression;
 import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.ExpressionVisitorAdapter;
 import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.expression.Parenthesis;
 import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.conditional.OrExpression;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThan;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThanEquals;
+import net.sf.jsqlparser.expression.operators.relational.MinorThan;
+import net.sf.jsqlparser.expression.operators.relational.MinorThanEquals;
 import net.sf.jsqlparser.schema.Column;
 import net.sf.jsqlparser.statement.select.PlainSelect;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 
 /**
@@ -19,9 +30,14 @@ import java.util.Map;
  * The ConditionExtractor class contains the following methods:<br>
  * - extract(): Extracts selection and join conditions from the given expression.<br>
  * - categorizeCondition(): Categorizes the condition as a selection or join condition.<br>
+ * - categorizeDisjunction(): Adds an OR of conditions as a selection condition to the table it refers to.<br>
  * - mergeSelectionCondition(): Merges the existing selection condition with the new condition.<br>
  * - isJoinCondition(): Checks if the condition is a join condition between the given tables.<br>
- * - getTableName(): Returns the table name of the given expression.
+ * - getConjuncts(): Splits a condition into the conditions joined by AND.<br>
+ * - isEquiJoinCondition(): Checks if the condition is an equality between a column of each join input.<br>
+ * - isInequalityJoinCondition(): Checks if the condition is a range comparison between a column of each join input.<br>
+ * - getTableName(): Returns the table name of the given expression.<br>
+ * - getTableNames(): Returns the names of the tables whose columns an expression refers to.
  */
 
 public class ConditionExtractor {
@@ -34,7 +50,8 @@ public class ConditionExtractor {
      * @param joinConditions The list to store join conditions.
      *
      * @Description:
-     * Recursively extract conditions if the expression is an AndExpression.
+     * Recursively extract conditions if the expression is an AndExpression or in parentheses.
+     * An OrExpression is kept whole as a selection condition, see categorizeDisjunction().
      * Otherwise, categorize the condition as a selection or join condition.
      */
     public static void extract(Expression expression, PlainSelect select, Map<String, Expression> selectionConditions, List<Expression> joinConditions) {
@@ -42,6 +59,10 @@ public class ConditionExtractor {
             AndExpression andExpr = (AndExpression) expression;
             extract(andExpr.getLeftExpression(), select, selectionConditions, joinConditions);
             extract(andExpr.getRightExpression(), select, selectionConditions, joinConditions);
+        } else if (expression instanceof Parenthesis) {
+            extract(((Parenthesis) expression).getExpression(), select, selectionConditions, joinConditions);
+        } else if (expression instanceof OrExpression) {
+            categorizeDisjunction((OrExpression) expression, select, selectionConditions);
         } else if (expression instanceof BinaryExpression) {
             categorizeCondition((BinaryExpression) expression, select, selectionConditions, joinConditions);
         }
@@ -75,6 +96,26 @@ public class ConditionExtractor {
         }
     }
 
+    /**
+     * Adds an OR of conditions as a selection condition to the table whose columns it refers to, or to the first
+     * table in the FROM clause if it refers to none.
+     * @param condition The condition to categorize.
+     * @param select The select statement to categorize the condition for.
+     * @param selectionConditions The map to store selection conditions.
+     *
+     * @Description:
+     * A disjunction cannot be split into the conditions of single tables, and the joins only check conjunctions of
+     * comparisons between two tables, so a disjunction over the columns of several tables is rejected.
+     */
+    private static void categorizeDisjunction(OrExpression condition, PlainSelect select, Map<String, Expression> selectionConditions) {
+        Set<String> tables = getTableNames(condition);
+        if (tables.size() > 1) {
+            throw new RuntimeException("Disjunctions over several tables are not supported: " + condition);
+        }
+        String table = tables.isEmpty() ? select.getFromItem().toString() : tables.iterator().next();
+        selectionConditions.put(table, mergeSelectionCondition(selectionConditions.get(table), condition));
+    }
+
     /**
      * Merges the existing selection condition with the new condition.
      * @param existing The existing selection condition.
@@ -102,6 +143,80 @@ public class ConditionExtractor {
         return false;
     }
 
+    /**
+     * Splits a condition into the conditions joined by AND.
+     * @param condition The condition to split.
+     * @return The list of conditions that are not AndExpressions themselves.
+     */
+    public static List<Expression> getConjuncts(Expression condition) {
+        List<Expression> conjuncts = new ArrayList<>();
+        if (condition instanceof AndExpression) {
+            conjuncts.addAll(getConjuncts(((AndExpression) condition).getLeftExpression()));
+            conjuncts.addAll(getConjuncts(((AndExpression) condition).getRightExpression()));
+        } else if (condition != null) {
+            conjuncts.add(condition);
+        }
+        return conjuncts;
+    }
+
+    /**
+     * Checks if the condition is an equality between a column of the left input and a column of the right input.
+     * @param condition The condition to check.
+     * @param leftSchema The schema of the left join input.
+     * @param rightSchema The schema of the right join input.
+     * @return True if the condition is an equi-join condition between the two inputs, false otherwise.
+     */
+    public static boolean isEquiJoinCondition(Expression condition, List<String> leftSchema, List<String> rightSchema) {
+        if (!(condition instanceof EqualsTo)) {
+            return false;
+        }
+        EqualsTo equalsTo = (EqualsTo) condition;
+        if (!(equalsTo.getLeftExpression() instanceof Column) || !(equalsTo.getRightExpression() instanceof Column)) {
+            return false;
+        }
+        String left = ((Column) equalsTo.getLeftExpression()).getFullyQualifiedName();
+        String right = ((Column) equalsTo.getRightExpression()).getFullyQualifiedName();
+        return (leftSchema.contains(left) && rightSchema.contains(right)) || (leftSchema.contains(right) && rightSchema.contains(left));
+    }
+
+    /**
+     * Checks if the condition is a range comparison (<, <=, >, >=) between a column of the left input
+     * and a column of the right input.
+     * @param condition The condition to check.
+     * @param leftSchema The schema of the left join input.
+     * @param rightSchema The schema of the right join input.
+     * @return True if the condition is an inequality join condition between the two inputs, false otherwise.
+     */
+    public static boolean isInequalityJoinCondition(Expression condition, List<String> leftSchema, List<String> rightSchema) {
+        if (!(condition instanceof GreaterThan || condition instanceof GreaterThanEquals
+                || condition instanceof MinorThan || condition instanceof MinorThanEquals)) {
+            return false;
+        }
+        BinaryExpression comparison = (BinaryExpression) condition;
+        if (!(comparison.getLeftExpression() instanceof Column) || !(comparison.getRightExpression() instanceof Column)) {
+            return false;
+        }
+        String left = ((Column) comparison.getLeftExpression()).getFullyQualifiedName();
+        String right = ((Column) comparison.getRightExpression()).getFullyQualifiedName();
+        return (leftSchema.contains(left) && rightSchema.contains(right)) || (leftSchema.contains(right) && rightSchema.contains(left));
+    }
+
+    /**
+     * Returns the names of the tables whose columns an expression refers to.
+     * @param expression The expression.
+     * @return The table names, in the order of their first column in the expression.
+     */
+    public static Set<String> getTableNames(Expression expression) {
+        Set<String> tables = new LinkedHashSet<>();
+        expression.accept(new ExpressionVisitorAdapter() {
+            @Override
+            public void visit(Column column) {
+                tables.add(column.getTable().getName());
+            }
+        });
+        return tables;
+    }
+
     /**
      * Returns the table name of the given expression.
      * @param expr The expression to get the table name from.
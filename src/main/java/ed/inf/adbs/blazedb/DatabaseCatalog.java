@@ -1,32 +1,116 @@
 package ed.inf.adbs.blazedb;
 
+import ed.inf.adbs.blazedb.operator.Operator;
+import ed.inf.adbs.blazedb.operator.ScanOperator;
+import ed.inf.adbs.blazedb.operator.SortOperator;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.select.OrderByElement;
+
 import java.util.HashMap;
 import java.util.Map;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+import java.util.stream.Collectors;
 
 /**
  * DatabaseCatalog class is a singleton class that stores the schema of the database.
  * It reads the schema from the schema.txt file and stores it in a map.
  * It also stores the file path of the table in a map.
+ * A table is stored either as a CSV file data/Table.csv or, once converted by the ColumnarConverter, as a binary
+ * columnar file data/Table.bin. The format of every table is detected when the schema is loaded.
+ * ANALYZE also builds the ZoneMap of every table, saved next to its table file.
+ * The statistics collected by ANALYZE are kept in statistics.txt next to schema.txt and loaded with the schema.
+ * Tables marked as resident, e.g. with the blazedb.resident setting of BlazeDBConfig, are loaded into memory as a
+ * ResidentTable on first use and scanned from memory afterwards, as long as they fit into the resident memory limit.
+ * The BPlusTree, HashIndex and BitmapIndex indexes of the database are defined in the index_info.txt file next to
+ * schema.txt, one line per index with the table, the column and 1 for a clustered B+ tree, 0 for an unclustered B+
+ * tree, hash for a hash index or bitmap for a bitmap index. Every index is saved next to its table file and built again
+ * on first use if it is missing or the table file has changed since.
  * <br><br>
  * The DatabaseCatalog class contains the following methods:<br>
  * - getInstance(): Returns the instance of the DatabaseCatalog class.<br>
+ * - reopen(): Replaces the instance with a catalog of another database directory.<br>
  * - loadSchema(): Loads the schema from the schema.txt file.<br>
- * - getTableFilePath(): Returns the file path of the table.<br>
- * - getTableSchema(): Returns the schema of the table.
+ * - getTableNames(): Returns the names of all tables.<br>
+ * - getTableFilePath(): Returns the file path of the CSV file of the table.<br>
+ * - getColumnarFilePath(): Returns the file path of the columnar file of the table.<br>
+ * - isColumnar(): Checks if the table is stored in the columnar format.<br>
+ * - getTableSchema(): Returns the schema of the table.<br>
+ * - getTableRowCount(): Returns the estimated number of rows of the table.<br>
+ * - getTableStatistics(): Returns the statistics of the table collected by ANALYZE.<br>
+ * - getZoneMap(): Returns the zone map of the current table file.<br>
+ * - markResident(): Marks a table to be kept in memory.<br>
+ * - releaseResident(): Drops a table from memory and unmarks it.<br>
+ * - getResidentTable(): Returns the table held in memory, loading it on first use.<br>
+ * - getResidentFootprint(): Returns the number of bytes of the tables held in memory.<br>
+ * - getResidentReport(): Describes the resident tables and their footprint.<br>
+ * - createIndex(): Builds a B+ tree index on a column and registers it in the index_info.txt file.<br>
+ * - createHashIndex(): Builds a hash index on a column and registers it in the index_info.txt file.<br>
+ * - createBitmapIndex(): Builds a bitmap index on a column and registers it in the index_info.txt file.<br>
+ * - dropIndex(): Deletes the indexes of a column and their registration.<br>
+ * - getIndexedColumns(), getHashIndexedColumns(), getBitmapIndexedColumns(): Return the columns of a table with a
+ *   B+ tree, hash or bitmap index.<br>
+ * - getIndex(), getHashIndex(), getBitmapIndex(): Return the B+ tree, hash or bitmap index of a column, building it
+ *   if needed.<br>
+ * - analyze(): Collects and saves the statistics and zone maps of the given tables.<br>
+ * - analyzeAll(): Collects and saves the statistics and zone maps of all tables.<br>
+ * - loadStatistics(): Loads the statistics from the statistics.txt file.<br>
+ * - saveStatistics(): Saves the statistics to the statistics.txt file.
  * <br><br>
  * The DatabaseCatalog class also contains the following instance variables:<br>
+ * - B_PLUS_TREE, HASH_INDEX, BITMAP_INDEX: The kinds of indexes, opened and built by getIndex(IndexKind, ...).<br>
  * - instance: The instance of the DatabaseCatalog class.<br>
  * - tableFileMap: A map that stores the file path of the table.<br>
- * - tableSchemaMap: A map that stores the schema of the table.
+ * - columnarTables: The tables stored in the columnar format.<br>
+ * - tableSchemaMap: A map that stores the schema of the table.<br>
+ * - tableRowCountMap: A map that caches the estimated number of rows of the table.<br>
+ * - tableStatisticsMap: A map that stores the statistics of the analyzed tables.<br>
+ * - tableZoneMapMap: A map that caches the zone maps read from disk or built by ANALYZE.<br>
+ * - residentTableNames: The tables marked as resident.<br>
+ * - residentTableMap: A map that stores the resident tables loaded into memory.<br>
+ * - oversizedTables: The resident tables that did not fit into the memory limit and are read from disk.<br>
+ * - indexDefinitions: Maps the indexed columns to whether their index is clustered.<br>
+ * - indexMap: A map that caches the B+ tree indexes read from disk or built.<br>
+ * - hashIndexedColumns: The columns with a hash index.<br>
+ * - hashIndexMap: A map that caches the hash indexes read from disk or built.<br>
+ * - bitmapIndexedColumns: The columns with a bitmap index.<br>
+ * - bitmapIndexMap: A map that caches the bitmap indexes read from disk or built.<br>
+ * - databaseDir: The directory where the database files are stored.
  */
 
 public class DatabaseCatalog {
+    private static final IndexKind<BPlusTree> B_PLUS_TREE = new IndexKind<>("index", BPlusTree::getPath,
+            BPlusTree::load, BPlusTree::build, BPlusTree::matches);
+    private static final IndexKind<HashIndex> HASH_INDEX = new IndexKind<>("hash index", HashIndex::getPath,
+            HashIndex::load, HashIndex::build, HashIndex::matches);
+    private static final IndexKind<BitmapIndex> BITMAP_INDEX = new IndexKind<>("bitmap index", BitmapIndex::getPath,
+            BitmapIndex::load, BitmapIndex::build, BitmapIndex::matches);
+
     private static DatabaseCatalog instance;
     private final Map<String, String> tableFileMap; // Maps table names to file paths
     private final Map<String, List<String>> tableSchemaMap; // Maps table names to their schemas
+    private final Set<String> columnarTables; // Tables with a columnar file
+    private final Map<String, Long> tableRowCountMap; // Maps table names to their estimated row counts
+    private final Map<String, TableStatistics> tableStatisticsMap; // Maps table names to their statistics
+    private final Map<String, ZoneMap> tableZoneMapMap; // Maps table names to their zone maps
+    private final Set<String> residentTableNames; // Tables to keep in memory
+    private final Map<String, ResidentTable> residentTableMap; // Maps table names to their loaded resident tables
+    private final Set<String> oversizedTables; // Resident tables that exceed the memory limit
+    private final Map<String, Boolean> indexDefinitions; // Maps indexed columns to whether they are clustered
+    private final Map<String, BPlusTree> indexMap; // Maps indexed columns to their loaded indexes
+    private final Set<String> hashIndexedColumns; // Columns with a hash index
+    private final Map<String, HashIndex> hashIndexMap; // Maps hash indexed columns to their loaded indexes
+    private final Set<String> bitmapIndexedColumns; // Columns with a bitmap index
+    private final Map<String, BitmapIndex> bitmapIndexMap; // Maps bitmap indexed columns to their loaded indexes
+    private final String databaseDir;
 
     /**
      * Constructor for DatabaseCatalog class.
@@ -35,8 +119,27 @@ public class DatabaseCatalog {
      */
     private DatabaseCatalog(String databaseDir) throws IOException {
         tableFileMap = new HashMap<>();
-        tableSchemaMap = new HashMap<>();
+        tableSchemaMap = new LinkedHashMap<>();
+        columnarTables = new HashSet<>();
+        tableRowCountMap = new HashMap<>();
+        tableStatisticsMap = new LinkedHashMap<>();
+        tableZoneMapMap = new HashMap<>();
+        residentTableNames = new LinkedHashSet<>();
+        residentTableMap = new HashMap<>();
+        oversizedTables = new HashSet<>();
+        indexDefinitions = new LinkedHashMap<>();
+        indexMap = new HashMap<>();
+        hashIndexedColumns = new LinkedHashSet<>();
+        hashIndexMap = new HashMap<>();
+        bitmapIndexedColumns = new LinkedHashSet<>();
+        bitmapIndexMap = new HashMap<>();
+        this.databaseDir = databaseDir;
         loadSchema(databaseDir);
+        loadStatistics();
+        loadIndexDefinitions();
+        for (String tableName : BlazeDBConfig.getResidentTables()) {
+            markResident(tableName);
+        }
     }
 
     /**
@@ -52,7 +155,18 @@ public class DatabaseCatalog {
     }
 
     /**
-     * Loads the schema from the schema.txt file.
+     * Replaces the instance with a catalog of another database directory, e.g. for the tests that create indexes
+     * in a copy of the sample database instead of the sample database itself.
+     * @param databaseDir The directory where the database files are stored.
+     * @return The new instance of the DatabaseCatalog class.
+     */
+    static DatabaseCatalog reopen(String databaseDir) throws IOException {
+        instance = new DatabaseCatalog(databaseDir);
+        return instance;
+    }
+
+    /**
+     * Loads the schema from the schema.txt file and detects the storage format of every table.
      * @param databaseDir The directory where the database files are stored.
      */
     private void loadSchema(String databaseDir) throws IOException {
@@ -68,12 +182,23 @@ public class DatabaseCatalog {
                 }
                 tableSchemaMap.put(tableName, columns);
                 tableFileMap.put(tableName, databaseDir + "/data/" + tableName + ".csv");
+                if (ColumnarFile.isColumnarFile(getColumnarFilePath(tableName))) {
+                    columnarTables.add(tableName);
+                }
             }
         }
     }
 
     /**
-     * Returns the file path of the table.
+     * Returns the names of all tables in the order of the schema.txt file.
+     * @return The names of the tables.
+     */
+    public Set<String> getTableNames() {
+        return tableSchemaMap.keySet();
+    }
+
+    /**
+     * Returns the file path of the CSV file of the table.
      * @param tableName The name of the table.
      * @return The file path of the table.
      */
@@ -81,6 +206,24 @@ public class DatabaseCatalog {
         return tableFileMap.get(tableName);
     }
 
+    /**
+     * Returns the file path of the columnar file of the table, whether or not the table has been converted.
+     * @param tableName The name of the table.
+     * @return The file path of the columnar file.
+     */
+    public String getColumnarFilePath(String tableName) {
+        return databaseDir + "/data/" + tableName + ".bin";
+    }
+
+    /**
+     * Checks if the table is stored in the columnar format.
+     * @param tableName The name of the table.
+     * @return True if a columnar file of the table was found when the schema was loaded, false otherwise.
+     */
+    public boolean isColumnar(String tableName) {
+        return columnarTables.contains(tableName);
+    }
+
     /**
      * Returns the schema of the table.
      * @param tableName The name of the table.
@@ -89,4 +232,588 @@ public class DatabaseCatalog {
     public List<String> getTableSchema(String tableName) {
         return tableSchemaMap.get(tableName);
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the estimated number of rows of the table, e.g. for the join order of the QueryPlanner.
+     * @param tableName The name of the table.
+     * @return The number of rows of the table, estimated from the file size and the length of the first rows.
+     *
+     * @Description
+     * If the table has been analyzed, the exact row count of its statistics is returned.<br>
+     * If the table is stored in the columnar format, the exact row count of the file header is returned.<br>
+     * Otherwise, the first rows of the file are read to compute the average row length. If the whole file is read, the
+     * row count is exact. Otherwise, the file size is divided by the average row length.
+     * The estimate is cached, so every file is sampled only once.
+     */
+    public long getTableRowCount(String tableName) {
+        TableStatistics statistics = tableStatisticsMap.get(tableName);
+        if (statistics != null) {
+            return statistics.getRowCount();
+        }
+        Long rowCount = tableRowCountMap.get(tableName);
+        if (rowCount != null) {
+            return rowCount;
+        }
+
+        if (isColumnar(tableName)) {
+            try {
+                rowCount = new ColumnarFile(getColumnarFilePath(tableName)).getRowCount();
+            } catch (IOException e) {
+                throw new RuntimeException("Error reading table file: " + getColumnarFilePath(tableName), e);
+            }
+            tableRowCountMap.put(tableName, rowCount);
+            return rowCount;
+        }
+
+        File tableFile = new File(getTableFilePath(tableName));
+        try (BufferedReader br = new BufferedReader(new FileReader(tableFile))) {
+            long sampledLength = 0;
+            long sampledRows = 0;
+            String line = "";
+            while (sampledRows < 100 && (line = br.readLine()) != null) {
+                sampledLength += line.length() + 1;
+                sampledRows++;
+            }
+            if (line == null || br.readLine() == null) {
+                rowCount = sampledRows;
+            } else {
+                rowCount = Math.max(sampledRows, Math.round((double) tableFile.length() * sampledRows / sampledLength));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading table file: " + tableFile, e);
+        }
+        tableRowCountMap.put(tableName, rowCount);
+        return rowCount;
+    }
+
+    /**
+     * Returns the statistics of the table collected by ANALYZE.
+     * @param tableName The name of the table.
+     * @return The statistics of the table, or null if the table has not been analyzed.
+     */
+    public TableStatistics getTableStatistics(String tableName) {
+        return tableStatisticsMap.get(tableName);
+    }
+
+    /**
+     * Returns the zone map of the file the table is currently stored in.
+     * @param tableName The name of the table.
+     * @return The zone map, or null if none has been built or the table file has changed since.
+     */
+    public ZoneMap getZoneMap(String tableName) {
+        String tableFilePath = isColumnar(tableName) ? getColumnarFilePath(tableName) : getTableFilePath(tableName);
+        ZoneMap zoneMap = tableZoneMapMap.get(tableName);
+        if (zoneMap == null) {
+            File zoneMapFile = new File(ZoneMap.getPath(tableFilePath));
+            if (!zoneMapFile.exists()) {
+                return null;
+            }
+            try {
+                zoneMap = ZoneMap.load(zoneMapFile.getPath());
+            } catch (IOException e) {
+                return null; // An unreadable zone map only disables block skipping
+            }
+            tableZoneMapMap.put(tableName, zoneMap);
+        }
+        return zoneMap.matches(new File(tableFilePath)) ? zoneMap : null;
+    }
+
+    /**
+     * Marks a table to be kept in memory from its first scan on.
+     * @param tableName The name of the table.
+     */
+    public synchronized void markResident(String tableName) {
+        if (!tableSchemaMap.containsKey(tableName)) {
+            throw new RuntimeException("Unknown resident table: " + tableName);
+        }
+        residentTableNames.add(tableName);
+    }
+
+    /**
+     * Releases the memory of a resident table and scans it from its table file again.
+     * @param tableName The name of the table.
+     */
+    public synchronized void releaseResident(String tableName) {
+        residentTableNames.remove(tableName);
+        residentTableMap.remove(tableName);
+        oversizedTables.remove(tableName);
+    }
+
+    /**
+     * Returns the table held in memory, loading it on first use.
+     * @param tableName The name of the table.
+     * @return The resident table, or null if the table is not marked as resident or does not fit into the memory
+     *         left by the resident memory limit of BlazeDBConfig.
+     *
+     * @Description
+     * A table that does not fit is not tried again, and its scans read the table file.
+     */
+    public synchronized ResidentTable getResidentTable(String tableName) {
+        if (!residentTableNames.contains(tableName) || oversizedTables.contains(tableName)) {
+            return null;
+        }
+        ResidentTable residentTable = residentTableMap.get(tableName);
+        if (residentTable == null) {
+            try {
+                residentTable = ResidentTable.load(tableName, BlazeDBConfig.getResidentMemoryLimit() - getResidentFootprint());
+            } catch (IOException e) {
+                throw new RuntimeException("Error loading resident table: " + tableName, e);
+            }
+            if (residentTable == null) {
+                oversizedTables.add(tableName);
+                return null;
+            }
+            residentTableMap.put(tableName, residentTable);
+        }
+        return residentTable;
+    }
+
+    /**
+     * Returns the memory used by the tables held in memory.
+     * @return The number of bytes of the loaded resident tables.
+     */
+    public synchronized long getResidentFootprint() {
+        long footprint = 0;
+        for (ResidentTable residentTable : residentTableMap.values()) {
+            footprint += residentTable.getFootprint();
+        }
+        return footprint;
+    }
+
+    /**
+     * Describes the tables marked as resident.
+     * @return One line per table with its rows and bytes in memory, or why it is not in memory, followed by
+     *         the total footprint and the memory limit.
+     */
+    public synchronized String getResidentReport() {
+        StringBuilder report = new StringBuilder();
+        for (String tableName : residentTableNames) {
+            ResidentTable residentTable = residentTableMap.get(tableName);
+            report.append(tableName).append(": ");
+            if (residentTable != null) {
+                report.append(residentTable.getRowCount()).append(" rows, ")
+                        .append(residentTable.getFootprint()).append(" bytes");
+            } else if (oversizedTables.contains(tableName)) {
+                report.append("exceeds the resident memory limit");
+            } else {
+                report.append("not loaded yet");
+            }
+            report.append(System.lineSeparator());
+        }
+        report.append("Resident footprint: ").append(getResidentFootprint()).append(" of ")
+                .append(BlazeDBConfig.getResidentMemoryLimit()).append(" bytes");
+        return report.toString();
+    }
+
+    /**
+     * Builds a B+ tree index on a column and registers it in the index_info.txt file.
+     * @param tableName The name of the table.
+     * @param column The fully qualified name of the column.
+     * @param clustered Whether to sort the table file on the column first, so the index is clustered.
+     * @return The index.
+     *
+     * @Description
+     * A table has at most one clustered index, since its file can only be sorted on one column. Sorting the table
+     * file changes it, so the other indexes of the table are built again on their next use.
+     */
+    public synchronized BPlusTree createIndex(String tableName, String column, boolean clustered) throws IOException {
+        if (!tableSchemaMap.containsKey(tableName) || !getTableSchema(tableName).contains(column)) {
+            throw new RuntimeException("Unknown index column: " + column);
+        }
+        if (clustered) {
+            for (String indexedColumn : getIndexedColumns(tableName)) {
+                if (indexDefinitions.get(indexedColumn) && !indexedColumn.equals(column)) {
+                    throw new RuntimeException("Table already has a clustered index: " + indexedColumn);
+                }
+            }
+            sortTableFile(tableName, column);
+        }
+        BPlusTree index = BPlusTree.build(tableName, column, getIndexFilePath(B_PLUS_TREE, tableName, column));
+        indexDefinitions.put(column, clustered);
+        indexMap.put(column, index);
+        saveIndexDefinitions();
+        return index;
+    }
+
+    /**
+     * Builds a hash index on a column and registers it in the index_info.txt file.
+     * @param tableName The name of the table.
+     * @param column The fully qualified name of the column.
+     * @return The index.
+     */
+    public synchronized HashIndex createHashIndex(String tableName, String column) throws IOException {
+        if (!tableSchemaMap.containsKey(tableName) || !getTableSchema(tableName).contains(column)) {
+            throw new RuntimeException("Unknown index column: " + column);
+        }
+        HashIndex index = HashIndex.build(tableName, column, getIndexFilePath(HASH_INDEX, tableName, column));
+        hashIndexedColumns.add(column);
+        hashIndexMap.put(column, index);
+        saveIndexDefinitions();
+        return index;
+    }
+
+    /**
+     * Builds a bitmap index on a column and registers it in the index_info.txt file.
+     * @param tableName The name of the table.
+     * @param column The fully qualified name of the column, with at most BitmapIndex.MAX_VALUE_COUNT distinct values.
+     * @return The index.
+     */
+    public synchronized BitmapIndex createBitmapIndex(String tableName, String column) throws IOException {
+        if (!tableSchemaMap.containsKey(tableName) || !getTableSchema(tableName).contains(column)) {
+            throw new RuntimeException("Unknown index column: " + column);
+        }
+        BitmapIndex index = BitmapIndex.build(tableName, column, getIndexFilePath(BITMAP_INDEX, tableName, column));
+        bitmapIndexedColumns.add(column);
+        bitmapIndexMap.put(column, index);
+        saveIndexDefinitions();
+        return index;
+    }
+
+    /**
+     * Deletes the B+ tree, hash and bitmap indexes of a column and removes them from the index_info.txt file.
+     * @param column The fully qualified name of the column.
+     */
+    public synchronized void dropIndex(String column) throws IOException {
+        String tableName = column.substring(0, column.indexOf('.'));
+        List<String> indexFilePaths = new ArrayList<>();
+        if (indexDefinitions.remove(column) != null) {
+            indexMap.remove(column);
+            indexFilePaths.add(getIndexFilePath(B_PLUS_TREE, tableName, column));
+        }
+        if (hashIndexedColumns.remove(column)) {
+            hashIndexMap.remove(column);
+            indexFilePaths.add(getIndexFilePath(HASH_INDEX, tableName, column));
+        }
+        if (bitmapIndexedColumns.remove(column)) {
+            bitmapIndexMap.remove(column);
+            indexFilePaths.add(getIndexFilePath(BITMAP_INDEX, tableName, column));
+        }
+        if (indexFilePaths.isEmpty()) {
+            return;
+        }
+        for (String indexFilePath : indexFilePaths) {
+            BufferPool.getInstance().invalidate(indexFilePath);
+            Files.deleteIfExists(Paths.get(indexFilePath));
+        }
+        saveIndexDefinitions();
+    }
+
+    /**
+     * Returns the indexed columns of a table.
+     * @param tableName The name of the table.
+     * @return The fully qualified names of the columns with an index.
+     */
+    public synchronized List<String> getIndexedColumns(String tableName) {
+        return getColumnsOfTable(indexDefinitions.keySet(), tableName);
+    }
+
+    /**
+     * Returns the index of a column for the file the table is currently stored in.
+     * @param column The fully qualified name of the column.
+     * @return The index, or null if the column has no index.
+     *
+     * @Description
+     * The index is opened with getIndex(IndexKind, ...). An index built again without sorting the table file is only
+     * clustered if the table file is still sorted on the column.
+     */
+    public synchronized BPlusTree getIndex(String column) {
+        return indexDefinitions.containsKey(column) ? getIndex(B_PLUS_TREE, column, indexMap) : null;
+    }
+
+    /**
+     * Returns the columns of a table with a hash index.
+     * @param tableName The name of the table.
+     * @return The fully qualified names of the columns with a hash index.
+     */
+    public synchronized List<String> getHashIndexedColumns(String tableName) {
+        return getColumnsOfTable(hashIndexedColumns, tableName);
+    }
+
+    /**
+     * Returns the hash index of a column for the file the table is currently stored in.
+     * @param column The fully qualified name of the column.
+     * @return The index, or null if the column has no hash index.
+     */
+    public synchronized HashIndex getHashIndex(String column) {
+        return hashIndexedColumns.contains(column) ? getIndex(HASH_INDEX, column, hashIndexMap) : null;
+    }
+
+    /**
+     * Returns the columns of a table with a bitmap index.
+     * @param tableName The name of the table.
+     * @return The fully qualified names of the columns with a bitmap index.
+     */
+    public synchronized List<String> getBitmapIndexedColumns(String tableName) {
+        return getColumnsOfTable(bitmapIndexedColumns, tableName);
+    }
+
+    /**
+     * Returns the bitmap index of a column for the file the table is currently stored in.
+     * @param column The fully qualified name of the column.
+     * @return The index, or null if the column has no bitmap index.
+     */
+    public synchronized BitmapIndex getBitmapIndex(String column) {
+        return bitmapIndexedColumns.contains(column) ? getIndex(BITMAP_INDEX, column, bitmapIndexMap) : null;
+    }
+
+    /**
+     * Returns the columns of a table among the given columns.
+     */
+    private static List<String> getColumnsOfTable(Collection<String> columns, String tableName) {
+        List<String> tableColumns = new ArrayList<>();
+        for (String column : columns) {
+            if (column.startsWith(tableName + ".")) {
+                tableColumns.add(column);
+            }
+        }
+        return tableColumns;
+    }
+
+    /**
+     * Returns the index of a registered column for the file the table is currently stored in.
+     * @param kind The kind of the index.
+     * @param column The fully qualified name of the column.
+     * @param cache The indexes of this kind opened so far, by column.
+     * @return The index.
+     *
+     * @Description
+     * The index is taken from the cache or read from its file, and built if the file is missing, unreadable or was
+     * built from an older version of the table file.
+     */
+    private <I> I getIndex(IndexKind<I> kind, String column, Map<String, I> cache) {
+        String tableName = column.substring(0, column.indexOf('.'));
+        String indexFilePath = getIndexFilePath(kind, tableName, column);
+        File tableFile = new File(isColumnar(tableName) ? getColumnarFilePath(tableName) : getTableFilePath(tableName));
+        I index = cache.get(column);
+        if (index == null && new File(indexFilePath).exists()) {
+            try {
+                index = kind.opener.open(indexFilePath);
+            } catch (IOException e) {
+                index = null; // An unreadable index is built again
+            }
+        }
+        if (index == null || !kind.validator.test(index, tableFile)) {
+            try {
+                index = kind.builder.build(tableName, column, indexFilePath);
+            } catch (IOException e) {
+                throw new RuntimeException("Error building " + kind.name + ": " + column, e);
+            }
+        }
+        cache.put(column, index);
+        return index;
+    }
+
+    /**
+     * Returns the path of the index file of a column, next to the file the table is currently stored in.
+     */
+    private String getIndexFilePath(IndexKind<?> kind, String tableName, String column) {
+        String tableFilePath = isColumnar(tableName) ? getColumnarFilePath(tableName) : getTableFilePath(tableName);
+        return kind.pathFunction.apply(tableFilePath, column);
+    }
+
+    /**
+     * Sorts the rows of the CSV file of a table on a column, and converts the table again if it is stored in the
+     * columnar format.
+     *
+     * @Description
+     * The rows are sorted by a SortOperator over a scan of the CSV file and written to a temporary file, which then
+     * replaces the table file. The cached pages, zone map and resident copy of the old file are dropped.
+     */
+    private void sortTableFile(String tableName, String column) throws IOException {
+        String tableFilePath = getTableFilePath(tableName);
+        Path temporaryPath = Paths.get(tableFilePath + ".tmp");
+        OrderByElement orderBy = new OrderByElement();
+        orderBy.setExpression(new Column(new Table(tableName), column.substring(column.indexOf('.') + 1)));
+        Operator sort = new SortOperator(new ScanOperator(tableName), Collections.singletonList(orderBy));
+        try (BufferedWriter writer = Files.newBufferedWriter(temporaryPath)) {
+            Tuple tuple;
+            while ((tuple = sort.getNextTuple()) != null) {
+                writer.write(tuple.toString());
+                writer.newLine();
+            }
+        }
+        Files.move(temporaryPath, Paths.get(tableFilePath), StandardCopyOption.REPLACE_EXISTING);
+        BufferPool.getInstance().invalidate(tableFilePath);
+        if (isColumnar(tableName)) {
+            ColumnarConverter.convert(tableName, getColumnarFilePath(tableName));
+        }
+        tableZoneMapMap.remove(tableName);
+        residentTableMap.remove(tableName);
+    }
+
+    /**
+     * Collects the statistics and zone maps of the given tables.
+     * The statistics are saved to the statistics.txt file, and every zone map next to its table file.
+     * The tables are scanned in parallel.
+     * @param tableNames The names of the tables to analyze.
+     */
+    public void analyze(List<String> tableNames) throws IOException {
+        List<TableStatistics> statistics = tableNames.parallelStream().map(tableName -> {
+            try {
+                return TableStatistics.collect(tableName);
+            } catch (IOException e) {
+                throw new RuntimeException("Error analyzing table: " + tableName, e);
+            }
+        }).collect(Collectors.toList());
+        for (TableStatistics tableStatistics : statistics) {
+            tableStatisticsMap.put(tableStatistics.getTableName(), tableStatistics);
+        }
+        saveStatistics();
+
+        List<ZoneMap> zoneMaps = tableNames.parallelStream().map(tableName -> {
+            try {
+                return ZoneMap.collect(tableName);
+            } catch (IOException e) {
+                throw new RuntimeException("Error building zone map of table: " + tableName, e);
+            }
+        }).collect(Collectors.toList());
+        for (int i = 0; i < tableNames.size(); i++) {
+            String tableName = tableNames.get(i);
+            String tableFilePath = isColumnar(tableName) ? getColumnarFilePath(tableName) : getTableFilePath(tableName);
+            zoneMaps.get(i).save(ZoneMap.getPath(tableFilePath));
+            tableZoneMapMap.put(tableName, zoneMaps.get(i));
+        }
+    }
+
+    /**
+     * Collects the statistics and zone maps of all tables.
+     */
+    public void analyzeAll() throws IOException {
+        analyze(new ArrayList<>(getTableNames()));
+    }
+
+    /**
+     * Loads the statistics from the statistics.txt file, if the database has been analyzed.
+     *
+     * @Description
+     * Every table starts with a line holding the table name and the row count, followed by one line per column
+     * in the format of ColumnStatistics.
+     */
+    private void loadStatistics() throws IOException {
+        File statisticsFile = new File(databaseDir + "/statistics.txt");
+        if (!statisticsFile.exists()) {
+            return;
+        }
+        try (BufferedReader br = new BufferedReader(new FileReader(statisticsFile))) {
+            String line;
+            String tableName = null;
+            long rowCount = 0;
+            List<ColumnStatistics> columnStatistics = new ArrayList<>();
+            while ((line = br.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                String[] parts = line.trim().split(" ");
+                if (parts[0].contains(".")) {
+                    columnStatistics.add(ColumnStatistics.parse(line));
+                    continue;
+                }
+                if (tableName != null) {
+                    tableStatisticsMap.put(tableName, new TableStatistics(tableName, rowCount, columnStatistics));
+                }
+                tableName = parts[0];
+                rowCount = Long.parseLong(parts[1]);
+                columnStatistics = new ArrayList<>();
+            }
+            if (tableName != null) {
+                tableStatisticsMap.put(tableName, new TableStatistics(tableName, rowCount, columnStatistics));
+            }
+        }
+    }
+
+    /**
+     * Loads the index definitions from the index_info.txt file, if any index has been created.
+     */
+    private void loadIndexDefinitions() throws IOException {
+        File indexInfoFile = new File(databaseDir + "/index_info.txt");
+        if (!indexInfoFile.exists()) {
+            return;
+        }
+        try (BufferedReader br = new BufferedReader(new FileReader(indexInfoFile))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                String[] parts = line.trim().split(" ");
+                if (parts.length > 2 && parts[2].equals("hash")) {
+                    hashIndexedColumns.add(parts[0] + "." + parts[1]);
+                } else if (parts.length > 2 && parts[2].equals("bitmap")) {
+                    bitmapIndexedColumns.add(parts[0] + "." + parts[1]);
+                } else {
+                    indexDefinitions.put(parts[0] + "." + parts[1], parts.length > 2 && parts[2].equals("1"));
+                }
+            }
+        }
+    }
+
+    /**
+     * Saves the index definitions to the index_info.txt file, or deletes the file if there are none.
+     */
+    private void saveIndexDefinitions() throws IOException {
+        File indexInfoFile = new File(databaseDir + "/index_info.txt");
+        if (indexDefinitions.isEmpty() && hashIndexedColumns.isEmpty() && bitmapIndexedColumns.isEmpty()) {
+            Files.deleteIfExists(indexInfoFile.toPath());
+            return;
+        }
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(indexInfoFile)))) {
+            for (Map.Entry<String, Boolean> definition : indexDefinitions.entrySet()) {
+                String column = definition.getKey();
+                writer.println(column.substring(0, column.indexOf('.')) + " " + column.substring(column.indexOf('.') + 1)
+                        + " " + (definition.getValue() ? 1 : 0));
+            }
+            for (String column : hashIndexedColumns) {
+                writer.println(column.substring(0, column.indexOf('.')) + " " + column.substring(column.indexOf('.') + 1)
+                        + " hash");
+            }
+            for (String column : bitmapIndexedColumns) {
+                writer.println(column.substring(0, column.indexOf('.')) + " " + column.substring(column.indexOf('.') + 1)
+                        + " bitmap");
+            }
+        }
+    }
+
+    /**
+     * Saves the statistics of all analyzed tables to the statistics.txt file.
+     */
+    private void saveStatistics() throws IOException {
+        File statisticsFile = new File(databaseDir + "/statistics.txt");
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(statisticsFile)))) {
+            for (TableStatistics statistics : tableStatisticsMap.values()) {
+                writer.println(statistics.getTableName() + " " + statistics.getRowCount());
+                for (ColumnStatistics columnStatistics : statistics.getAllColumnStatistics()) {
+                    writer.println(columnStatistics);
+                }
+            }
+        }
+    }
+
+    /**
+     * The IndexKind class describes how the indexes of one kind are stored: the path of the index file of a column,
+     * and how an index is opened from its file, built from its table and checked against the current table file.
+     */
+    private static final class IndexKind<I> {
+        private final String name;
+        private final BiFunction<String, String, String> pathFunction;
+        private final Opener<I> opener;
+        private final Builder<I> builder;
+        private final BiPredicate<I, File> validator;
+
+        private IndexKind(String name, BiFunction<String, String, String> pathFunction, Opener<I> opener,
+                          Builder<I> builder, BiPredicate<I, File> validator) {
+            this.name = name;
+            this.pathFunction = pathFunction;
+            this.opener = opener;
+            this.builder = builder;
+            this.validator = validator;
+        }
+
+        private interface Opener<I> {
+            I open(String path) throws IOException;
+        }
+
+        private interface Builder<I> {
+            I build(String tableName, String column, String path) throws IOException;
+        }
+    }
+}
@@ -3,154 +3,581 @@ package ed.inf.adbs.blazedb;
 import net.sf.jsqlparser.expression.*;
 import net.sf.jsqlparser.expression.operators.arithmetic.Multiplication;
 import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.conditional.OrExpression;
 import net.sf.jsqlparser.expression.operators.relational.*;
 import net.sf.jsqlparser.schema.Column;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.List;
 
 /**
- * The ExpressionEvaluator class is responsible for evaluating the expressions in the WHERE clause.
- * It evaluates the expressions based on the tuple values and the schema of the table.
+ * The ExpressionEvaluator class is responsible for evaluating the expressions in the WHERE clause and in SUM functions.
+ * An expression is compiled once per query against the schema of its input into a tree of evaluator nodes.
+ * Column references are bound to their offsets and every comparison gets its own node class,
+ * so evaluating the tree on a tuple performs no schema lookups, string switches or allocations.
  * <br><br>
  * The ExpressionEvaluator class contains the following methods:<br>
- * - getResult(): Returns the result of the evaluation.<br>
- * - getValue(): Returns the value of the evaluated expression.<br>
- * - evaluateComparison(): Evaluates the comparison expressions.<br>
- * - The other methods are overridden from the ExpressionVisitorAdapter class to visit different types of expressions.
+ * - compile(): Compiles an expression against a schema into an evaluator tree.<br>
+ * - test(): Evaluates a condition on a tuple or on a row of a batch.<br>
+ * - evaluate(): Evaluates an integer expression on a tuple or on a row of a batch.<br>
+ * - generateTest(): Generates the code of a condition as a MethodHandle over the column vectors of a batch.<br>
+ * - generateEvaluate(): Generates the code of an integer expression as a MethodHandle over the column vectors.
  * <br><br>
- * The ExpressionEvaluator class also contains the following instance variables:<br>
- * - tuple: The tuple containing the values of the table.<br>
- * - schema: The schema of the table.<br>
- * - result: The result of the evaluation.<br>
- * - value: The value of the evaluated expression.
+ * The evaluator nodes are nested classes of ExpressionEvaluator, and the Compiler nested class
+ * visits the JSqlParser expression to build them. The Generator nested class holds the method handles
+ * the nodes compose their generated code from.
  */
-public class ExpressionEvaluator extends ExpressionVisitorAdapter {
-    private final Tuple tuple;
-    private final List<String> schema;
-    private boolean result;
-    private int value;
+public abstract class ExpressionEvaluator {
 
-    public ExpressionEvaluator(Tuple tuple, List<String> schema) {
-        this.tuple = tuple;
-        this.schema = schema;
-        this.result = false;
+    /**
+     * Compiles the expression against the schema of the tuples it will be evaluated on.
+     * @param expression The expression to compile.
+     * @param schema The schema of the input tuples.
+     * @return The root of the evaluator tree.
+     */
+    public static ExpressionEvaluator compile(Expression expression, List<String> schema) {
+        Compiler compiler = new Compiler(schema);
+        expression.accept(compiler);
+        if (compiler.compiled == null) {
+            throw new RuntimeException("Unsupported expression: " + expression);
+        }
+        return compiler.compiled;
+    }
+
+    /**
+     * Evaluates the condition on a tuple.
+     * @param tuple The tuple to evaluate on.
+     * @return True if the condition holds.
+     */
+    public boolean test(Tuple tuple) {
+        return evaluate(tuple) != 0;
+    }
+
+    /**
+     * Evaluates the condition on a row of a batch.
+     * @param batch The batch holding the row.
+     * @param row The physical row index in the batch.
+     * @return True if the condition holds.
+     */
+    public boolean test(TupleBatch batch, int row) {
+        return evaluate(batch, row) != 0;
     }
 
-    public boolean getResult() {
-        return result;
+    /**
+     * Evaluates the integer expression on a tuple.
+     * @param tuple The tuple to evaluate on.
+     * @return The value of the expression.
+     */
+    public int evaluate(Tuple tuple) {
+        return test(tuple) ? 1 : 0;
     }
 
-    public int getValue() {
-        return value;
+    /**
+     * Evaluates the integer expression on a row of a batch.
+     * @param batch The batch holding the row.
+     * @param row The physical row index in the batch.
+     * @return The value of the expression.
+     */
+    public int evaluate(TupleBatch batch, int row) {
+        return test(batch, row) ? 1 : 0;
     }
 
     /**
-     * Recursively evaluate the left and right expressions of the AND expression.
+     * Generates the code of the condition on a row of column vectors.
+     * @return A MethodHandle of type (int[][] columns, int row) boolean.
      *
-     * @param andExpr The AND expression.
+     * @Description
+     * Every node composes the handles of its children with the java.lang.invoke combinators, so the generated
+     * handle is one tree of lambda forms that the JIT compiles and inlines into straight-line code for the query,
+     * without the virtual call per node of the evaluator tree.
+     */
+    public MethodHandle generateTest() {
+        return MethodHandles.filterReturnValue(generateEvaluate(), Generator.IS_TRUE);
+    }
+
+    /**
+     * Generates the code of the integer expression on a row of column vectors.
+     * @return A MethodHandle of type (int[][] columns, int row) int.
+     */
+    public MethodHandle generateEvaluate() {
+        return MethodHandles.filterReturnValue(generateTest(), Generator.TO_INT);
+    }
+
+    /**
+     * Reads a column at an offset bound at compile time.
      */
-    @Override
-    public void visit(AndExpression andExpr) {
-        ExpressionEvaluator leftEval = new ExpressionEvaluator(tuple, schema);
-        andExpr.getLeftExpression().accept(leftEval);
+    static final class ColumnEvaluator extends ExpressionEvaluator {
+        private final int index;
 
-        ExpressionEvaluator rightEval = new ExpressionEvaluator(tuple, schema);
-        andExpr.getRightExpression().accept(rightEval);
+        ColumnEvaluator(int index) {
+            this.index = index;
+        }
 
-        result = leftEval.getResult() && rightEval.getResult();
+        @Override
+        public int evaluate(Tuple tuple) {
+            return tuple.getValue(index);
+        }
+
+        @Override
+        public int evaluate(TupleBatch batch, int row) {
+            return batch.getValue(index, row);
+        }
+
+        @Override
+        public MethodHandle generateEvaluate() {
+            return Generator.column(index);
+        }
     }
 
-    @Override
-    public void visit(EqualsTo equalsTo) {
-        evaluateComparison(equalsTo, "=");
+    /**
+     * Returns a constant value.
+     */
+    static final class ConstantEvaluator extends ExpressionEvaluator {
+        private final int value;
+
+        ConstantEvaluator(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public int evaluate(Tuple tuple) {
+            return value;
+        }
+
+        @Override
+        public int evaluate(TupleBatch batch, int row) {
+            return value;
+        }
+
+        @Override
+        public MethodHandle generateEvaluate() {
+            return Generator.constant(int.class, value);
+        }
+    }
+
+    /**
+     * Multiplies the values of two expressions.
+     */
+    static final class MultiplicationEvaluator extends ExpressionEvaluator {
+        private final ExpressionEvaluator left;
+        private final ExpressionEvaluator right;
+
+        MultiplicationEvaluator(ExpressionEvaluator left, ExpressionEvaluator right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public int evaluate(Tuple tuple) {
+            return left.evaluate(tuple) * right.evaluate(tuple);
+        }
+
+        @Override
+        public int evaluate(TupleBatch batch, int row) {
+            return left.evaluate(batch, row) * right.evaluate(batch, row);
+        }
+
+        @Override
+        public MethodHandle generateEvaluate() {
+            return Generator.combine(Generator.MULTIPLY, left.generateEvaluate(), right.generateEvaluate());
+        }
     }
 
-    @Override
-    public void visit(NotEqualsTo notEqualsTo) {
-        evaluateComparison(notEqualsTo, "!=");
+    /**
+     * Holds both conditions of an AND expression and short-circuits on the left one.
+     */
+    static final class AndEvaluator extends ExpressionEvaluator {
+        private final ExpressionEvaluator left;
+        private final ExpressionEvaluator right;
+
+        AndEvaluator(ExpressionEvaluator left, ExpressionEvaluator right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean test(Tuple tuple) {
+            return left.test(tuple) && right.test(tuple);
+        }
+
+        @Override
+        public boolean test(TupleBatch batch, int row) {
+            return left.test(batch, row) && right.test(batch, row);
+        }
+
+        @Override
+        public MethodHandle generateTest() {
+            return MethodHandles.guardWithTest(left.generateTest(), right.generateTest(), Generator.constant(boolean.class, false));
+        }
     }
 
-    @Override
-    public void visit(GreaterThan greaterThan) {
-        evaluateComparison(greaterThan, ">");
+    /**
+     * Holds both conditions of an OR expression and short-circuits on the left one.
+     */
+    static final class OrEvaluator extends ExpressionEvaluator {
+        private final ExpressionEvaluator left;
+        private final ExpressionEvaluator right;
+
+        OrEvaluator(ExpressionEvaluator left, ExpressionEvaluator right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean test(Tuple tuple) {
+            return left.test(tuple) || right.test(tuple);
+        }
+
+        @Override
+        public boolean test(TupleBatch batch, int row) {
+            return left.test(batch, row) || right.test(batch, row);
+        }
+
+        @Override
+        public MethodHandle generateTest() {
+            return MethodHandles.guardWithTest(left.generateTest(), Generator.constant(boolean.class, true), right.generateTest());
+        }
     }
 
-    @Override
-    public void visit(GreaterThanEquals greaterThanEquals) {
-        evaluateComparison(greaterThanEquals, ">=");
+    /**
+     * Base class of the comparison nodes, holding the two compared expressions.
+     */
+    abstract static class ComparisonEvaluator extends ExpressionEvaluator {
+        final ExpressionEvaluator left;
+        final ExpressionEvaluator right;
+
+        ComparisonEvaluator(ExpressionEvaluator left, ExpressionEvaluator right) {
+            this.left = left;
+            this.right = right;
+        }
     }
 
-    @Override
-    public void visit(MinorThan minorThan) {
-        evaluateComparison(minorThan, "<");
+    static final class EqualsToEvaluator extends ComparisonEvaluator {
+        EqualsToEvaluator(ExpressionEvaluator left, ExpressionEvaluator right) {
+            super(left, right);
+        }
+
+        @Override
+        public boolean test(Tuple tuple) {
+            return left.evaluate(tuple) == right.evaluate(tuple);
+        }
+
+        @Override
+        public boolean test(TupleBatch batch, int row) {
+            return left.evaluate(batch, row) == right.evaluate(batch, row);
+        }
+
+        @Override
+        public MethodHandle generateTest() {
+            return Generator.combine(Generator.EQUALS_TO, left.generateEvaluate(), right.generateEvaluate());
+        }
     }
 
-    @Override
-    public void visit(MinorThanEquals minorThanEquals) {
-        evaluateComparison(minorThanEquals, "<=");
+    static final class NotEqualsToEvaluator extends ComparisonEvaluator {
+        NotEqualsToEvaluator(ExpressionEvaluator left, ExpressionEvaluator right) {
+            super(left, right);
+        }
+
+        @Override
+        public boolean test(Tuple tuple) {
+            return left.evaluate(tuple) != right.evaluate(tuple);
+        }
+
+        @Override
+        public boolean test(TupleBatch batch, int row) {
+            return left.evaluate(batch, row) != right.evaluate(batch, row);
+        }
+
+        @Override
+        public MethodHandle generateTest() {
+            return Generator.combine(Generator.NOT_EQUALS_TO, left.generateEvaluate(), right.generateEvaluate());
+        }
+    }
+
+    static final class GreaterThanEvaluator extends ComparisonEvaluator {
+        GreaterThanEvaluator(ExpressionEvaluator left, ExpressionEvaluator right) {
+            super(left, right);
+        }
+
+        @Override
+        public boolean test(Tuple tuple) {
+            return left.evaluate(tuple) > right.evaluate(tuple);
+        }
+
+        @Override
+        public boolean test(TupleBatch batch, int row) {
+            return left.evaluate(batch, row) > right.evaluate(batch, row);
+        }
+
+        @Override
+        public MethodHandle generateTest() {
+            return Generator.combine(Generator.GREATER_THAN, left.generateEvaluate(), right.generateEvaluate());
+        }
+    }
+
+    static final class GreaterThanEqualsEvaluator extends ComparisonEvaluator {
+        GreaterThanEqualsEvaluator(ExpressionEvaluator left, ExpressionEvaluator right) {
+            super(left, right);
+        }
+
+        @Override
+        public boolean test(Tuple tuple) {
+            return left.evaluate(tuple) >= right.evaluate(tuple);
+        }
+
+        @Override
+        public boolean test(TupleBatch batch, int row) {
+            return left.evaluate(batch, row) >= right.evaluate(batch, row);
+        }
+
+        @Override
+        public MethodHandle generateTest() {
+            return Generator.combine(Generator.GREATER_THAN_EQUALS, left.generateEvaluate(), right.generateEvaluate());
+        }
+    }
+
+    static final class MinorThanEvaluator extends ComparisonEvaluator {
+        MinorThanEvaluator(ExpressionEvaluator left, ExpressionEvaluator right) {
+            super(left, right);
+        }
+
+        @Override
+        public boolean test(Tuple tuple) {
+            return left.evaluate(tuple) < right.evaluate(tuple);
+        }
+
+        @Override
+        public boolean test(TupleBatch batch, int row) {
+            return left.evaluate(batch, row) < right.evaluate(batch, row);
+        }
+
+        @Override
+        public MethodHandle generateTest() {
+            return Generator.combine(Generator.MINOR_THAN, left.generateEvaluate(), right.generateEvaluate());
+        }
+    }
+
+    static final class MinorThanEqualsEvaluator extends ComparisonEvaluator {
+        MinorThanEqualsEvaluator(ExpressionEvaluator left, ExpressionEvaluator right) {
+            super(left, right);
+        }
+
+        @Override
+        public boolean test(Tuple tuple) {
+            return left.evaluate(tuple) <= right.evaluate(tuple);
+        }
+
+        @Override
+        public boolean test(TupleBatch batch, int row) {
+            return left.evaluate(batch, row) <= right.evaluate(batch, row);
+        }
+
+        @Override
+        public MethodHandle generateTest() {
+            return Generator.combine(Generator.MINOR_THAN_EQUALS, left.generateEvaluate(), right.generateEvaluate());
+        }
     }
 
     /**
-     * Evaluates the comparison expressions.
-     *
-     * @param expr The comparison expression.
-     * @param operator The operator of the comparison expression.
+     * Holds the method handles the evaluator nodes generate their code from.
+     * Every generated handle takes the column vectors of a batch and a physical row index.
      */
-    private void evaluateComparison(BinaryExpression expr, String operator) {
-        ExpressionEvaluator leftEval = new ExpressionEvaluator(tuple, schema);
-        expr.getLeftExpression().accept(leftEval);
-
-        ExpressionEvaluator rightEval = new ExpressionEvaluator(tuple, schema);
-        expr.getRightExpression().accept(rightEval);
-
-        int leftValue = leftEval.value;
-        int rightValue = rightEval.value;
-
-        switch (operator) {
-            case "=":
-                result = leftValue == rightValue;
-                break;
-            case "!=":
-                result = leftValue != rightValue;
-                break;
-            case ">":
-                result = leftValue > rightValue;
-                break;
-            case ">=":
-                result = leftValue >= rightValue;
-                break;
-            case "<":
-                result = leftValue < rightValue;
-                break;
-            case "<=":
-                result = leftValue <= rightValue;
-                break;
-        }
-    }
-
-    @Override
-    public void visit(Column column) {
-        String columnFullName = column.getFullyQualifiedName();
-        if (schema.contains(columnFullName)) {
-            value = tuple.getValue(schema.indexOf(columnFullName));
-        } else {
-            throw new RuntimeException("Column " + columnFullName + " not found in schema.");
-        }
-    }
-
-    @Override
-    public void visit(LongValue longValue) {
-        value = (int) longValue.getValue();
-    }
-
-    @Override
-    public void visit(Multiplication multiplication) {
-        ExpressionEvaluator leftEval = new ExpressionEvaluator(tuple, schema);
-        multiplication.getLeftExpression().accept(leftEval);
-
-        ExpressionEvaluator rightEval = new ExpressionEvaluator(tuple, schema);
-        multiplication.getRightExpression().accept(rightEval);
-
-        value = leftEval.value * rightEval.value;
+    static final class Generator {
+        static final MethodHandle MULTIPLY;
+        static final MethodHandle EQUALS_TO;
+        static final MethodHandle NOT_EQUALS_TO;
+        static final MethodHandle GREATER_THAN;
+        static final MethodHandle GREATER_THAN_EQUALS;
+        static final MethodHandle MINOR_THAN;
+        static final MethodHandle MINOR_THAN_EQUALS;
+        static final MethodHandle IS_TRUE;
+        static final MethodHandle TO_INT;
+        private static final MethodHandle COLUMN_GETTER = MethodHandles.arrayElementGetter(int[][].class);
+        private static final MethodHandle VALUE_GETTER = MethodHandles.arrayElementGetter(int[].class);
+
+        static {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodType intOperator = MethodType.methodType(int.class, int.class, int.class);
+            MethodType comparison = MethodType.methodType(boolean.class, int.class, int.class);
+            try {
+                MULTIPLY = lookup.findStatic(Generator.class, "multiply", intOperator);
+                EQUALS_TO = lookup.findStatic(Generator.class, "equalsTo", comparison);
+                NOT_EQUALS_TO = lookup.findStatic(Generator.class, "notEqualsTo", comparison);
+                GREATER_THAN = lookup.findStatic(Generator.class, "greaterThan", comparison);
+                GREATER_THAN_EQUALS = lookup.findStatic(Generator.class, "greaterThanEquals", comparison);
+                MINOR_THAN = lookup.findStatic(Generator.class, "minorThan", comparison);
+                MINOR_THAN_EQUALS = lookup.findStatic(Generator.class, "minorThanEquals", comparison);
+                IS_TRUE = lookup.findStatic(Generator.class, "isTrue", MethodType.methodType(boolean.class, int.class));
+                TO_INT = lookup.findStatic(Generator.class, "toInt", MethodType.methodType(int.class, boolean.class));
+            } catch (ReflectiveOperationException e) {
+                throw new RuntimeException("Error looking up the operators of the code generator", e);
+            }
+        }
+
+        private Generator() {}
+
+        /**
+         * Generates the read of a column value, columns[index][row].
+         */
+        static MethodHandle column(int index) {
+            return MethodHandles.filterArguments(VALUE_GETTER, 0, MethodHandles.insertArguments(COLUMN_GETTER, 1, index));
+        }
+
+        /**
+         * Generates a constant that ignores the row.
+         */
+        static MethodHandle constant(Class<?> type, Object value) {
+            return MethodHandles.dropArguments(MethodHandles.constant(type, value), 0, int[][].class, int.class);
+        }
+
+        /**
+         * Generates a binary operator applied to the values of two generated expressions on the same row.
+         * @param operator The operator, taking the two values.
+         * @param left The generated left expression.
+         * @param right The generated right expression.
+         * @return A MethodHandle of type (int[][] columns, int row) with the return type of the operator.
+         */
+        static MethodHandle combine(MethodHandle operator, MethodHandle left, MethodHandle right) {
+            MethodHandle both = MethodHandles.collectArguments(MethodHandles.collectArguments(operator, 1, right), 0, left);
+            MethodType rowType = MethodType.methodType(operator.type().returnType(), int[][].class, int.class);
+            return MethodHandles.permuteArguments(both, rowType, 0, 1, 0, 1);
+        }
+
+        private static int multiply(int left, int right) {
+            return left * right;
+        }
+
+        private static boolean equalsTo(int left, int right) {
+            return left == right;
+        }
+
+        private static boolean notEqualsTo(int left, int right) {
+            return left != right;
+        }
+
+        private static boolean greaterThan(int left, int right) {
+            return left > right;
+        }
+
+        private static boolean greaterThanEquals(int left, int right) {
+            return left >= right;
+        }
+
+        private static boolean minorThan(int left, int right) {
+            return left < right;
+        }
+
+        private static boolean minorThanEquals(int left, int right) {
+            return left <= right;
+        }
+
+        private static boolean isTrue(int value) {
+            return value != 0;
+        }
+
+        private static int toInt(boolean value) {
+            return value ? 1 : 0;
+        }
+    }
+
+    /**
+     * Visits a JSqlParser expression and builds the evaluator tree for it.
+     * Columns are resolved against the schema here, once per query instead of once per tuple.
+     */
+    private static class Compiler extends ExpressionVisitorAdapter {
+        private final List<String> schema;
+        private ExpressionEvaluator compiled;
+
+        Compiler(List<String> schema) {
+            this.schema = schema;
+        }
+
+        private ExpressionEvaluator compileChild(Expression expression) {
+            return compile(expression, schema);
+        }
+
+        @Override
+        public void visit(AndExpression andExpr) {
+            compiled = new AndEvaluator(compileChild(andExpr.getLeftExpression()), compileChild(andExpr.getRightExpression()));
+        }
+
+        @Override
+        public void visit(OrExpression orExpr) {
+            compiled = new OrEvaluator(compileChild(orExpr.getLeftExpression()), compileChild(orExpr.getRightExpression()));
+        }
+
+        @Override
+        public void visit(EqualsTo equalsTo) {
+            compiled = new EqualsToEvaluator(compileChild(equalsTo.getLeftExpression()), compileChild(equalsTo.getRightExpression()));
+        }
+
+        @Override
+        public void visit(NotEqualsTo notEqualsTo) {
+            compiled = new NotEqualsToEvaluator(compileChild(notEqualsTo.getLeftExpression()), compileChild(notEqualsTo.getRightExpression()));
+        }
+
+        @Override
+        public void visit(GreaterThan greaterThan) {
+            compiled = new GreaterThanEvaluator(compileChild(greaterThan.getLeftExpression()), compileChild(greaterThan.getRightExpression()));
+        }
+
+        @Override
+        public void visit(GreaterThanEquals greaterThanEquals) {
+            compiled = new GreaterThanEqualsEvaluator(compileChild(greaterThanEquals.getLeftExpression()), compileChild(greaterThanEquals.getRightExpression()));
+        }
+
+        @Override
+        public void visit(MinorThan minorThan) {
+            compiled = new MinorThanEvaluator(compileChild(minorThan.getLeftExpression()), compileChild(minorThan.getRightExpression()));
+        }
+
+        @Override
+        public void visit(MinorThanEquals minorThanEquals) {
+            compiled = new MinorThanEqualsEvaluator(compileChild(minorThanEquals.getLeftExpression()), compileChild(minorThanEquals.getRightExpression()));
+        }
+
+        @Override
+        public void visit(Column column) {
+            String columnFullName = column.getFullyQualifiedName();
+            int index = schema.indexOf(columnFullName);
+            if (index < 0) {
+                throw new RuntimeException("Column " + columnFullName + " not found in schema.");
+            }
+            compiled = new ColumnEvaluator(index);
+        }
+
+        @Override
+        public void visit(LongValue longValue) {
+            compiled = new ConstantEvaluator((int) longValue.getValue());
+        }
+
+        /**
+         * Multiplications of two constants are folded into a single constant.
+         */
+        @Override
+        public void visit(Multiplication multiplication) {
+            ExpressionEvaluator left = compileChild(multiplication.getLeftExpression());
+            ExpressionEvaluator right = compileChild(multiplication.getRightExpression());
+            if (left instanceof ConstantEvaluator && right instanceof ConstantEvaluator) {
+                compiled = new ConstantEvaluator(((ConstantEvaluator) left).value * ((ConstantEvaluator) right).value);
+            } else {
+                compiled = new MultiplicationEvaluator(left, right);
+            }
+        }
+
+        @Override
+        public void visit(Parenthesis parenthesis) {
+            compiled = compileChild(parenthesis.getExpression());
+        }
+
+        /**
+         * A SUM function is compiled to the expression it sums up.
+         */
+        @Override
+        public void visit(Function function) {
+            compiled = compileChild((Expression) function.getParameters().get(0));
+        }
     }
 }
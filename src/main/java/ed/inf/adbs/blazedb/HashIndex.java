@@ -0,0 +1,342 @@
+package ed.inf.adbs.blazedb;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The HashIndex class is a persistent extendible hash index on an int column of a table, for equality lookups.
+ * The index is stored in its own file of BUCKET_SIZE byte buckets, which are read through the BufferPool like the
+ * table files. Every entry holds a key and the row id of a row, as collected by IndexEntries.
+ * <br><br>
+ * The entries are spread over the buckets by the lowest bits of the hash of their key. The directory maps the lowest
+ * globalDepth bits of a hash to a bucket, and a bucket of local depth d holds all keys whose hashes share their lowest
+ * d bits, so it is referenced by 2^(globalDepth - d) directory slots. The index is bulk loaded top-down: a bucket
+ * that holds more than BUCKET_CAPACITY entries is split on the next bit of the hashes, like an insertion into a full
+ * bucket would split it, until every bucket fits. Entries that cannot be separated, because their keys are equal or
+ * their hashes collide, or whose bucket has reached MAX_DEPTH, are kept in a chain of overflow buckets stored right
+ * after their primary bucket. A lookup thus reads the directory slot of the key and one bucket, plus the overflow
+ * buckets of keys with more than BUCKET_CAPACITY rows.
+ * The file is written and checked against the table file as described in IndexFile.
+ * <br><br>
+ * Node 0 of the file is the header: the magic number, the format version, the key column, the clustered flag,
+ * the global depth, the number of buckets, the first directory node, the number of distinct keys, the number of
+ * entries, and the size and modification time of the table file. The buckets start at node 1, followed by the
+ * directory. A bucket holds its entry count, the next overflow bucket, its local depth, BUCKET_CAPACITY keys and
+ * BUCKET_CAPACITY row ids.
+ * <br><br>
+ * The HashIndex class contains the following methods:<br>
+ * - build(String tableName, String column, String path): Scans a table and bulk loads the index of a column.<br>
+ * - bulkLoad(String path, IndexEntries entries): Writes the index of sorted entries.<br>
+ * - load(String path): Opens an index file and reads its directory.<br>
+ * - lookup(int key): Returns the row ids of the entries with a key.<br>
+ * - matches(File tableFile): Checks if the index was built from the current version of a table file.<br>
+ * - getPath(String tableFilePath, String column): Returns the path of the index file of a column.
+ * <br><br>
+ * The HashIndex class also contains the following instance variables:<br>
+ * - path: The path of the index file.<br>
+ * - keyColumn: The index of the key column in the table schema.<br>
+ * - clustered: Whether the rows of the table file are stored in key order.<br>
+ * - globalDepth, directory: The number of hash bits the directory is indexed by, and the bucket of every slot.<br>
+ * - bucketCount: The number of buckets, including the overflow buckets.<br>
+ * - entryCount, distinctKeyCount: The number of entries and distinct keys.<br>
+ * - tableFileSize, tableLastModified: The size and modification time of the table file the index was built from.
+ */
+public class HashIndex {
+    public static final int MAGIC = 0x48494458; // "HIDX"
+    public static final int VERSION = 1;
+    public static final int BUCKET_SIZE = 4096;
+    public static final int BUCKET_CAPACITY = (BUCKET_SIZE - 12) / 12;
+    public static final int MAX_DEPTH = 20;
+    private static final int FIRST_BUCKET = 1;
+    private static final int BUCKET_KEYS = 12;
+    private static final int BUCKET_ROW_IDS = BUCKET_KEYS + 4 * BUCKET_CAPACITY;
+    private static final int SLOTS_PER_NODE = BUCKET_SIZE / 4;
+    private static final long[] NO_ROW_IDS = new long[0];
+
+    private final String path;
+    private final int keyColumn;
+    private final boolean clustered;
+    private final int globalDepth;
+    private final int[] directory;
+    private final int bucketCount;
+    private final long entryCount;
+    private final int distinctKeyCount;
+    private final long tableFileSize;
+    private final long tableLastModified;
+
+    private HashIndex(String path, int keyColumn, boolean clustered, int globalDepth, int[] directory, int bucketCount,
+                      long entryCount, int distinctKeyCount, long tableFileSize, long tableLastModified) {
+        this.path = path;
+        this.keyColumn = keyColumn;
+        this.clustered = clustered;
+        this.globalDepth = globalDepth;
+        this.directory = directory;
+        this.bucketCount = bucketCount;
+        this.entryCount = entryCount;
+        this.distinctKeyCount = distinctKeyCount;
+        this.tableFileSize = tableFileSize;
+        this.tableLastModified = tableLastModified;
+    }
+
+    /**
+     * Scans a table and bulk loads the index of a column of the file the table is currently stored in.
+     * @param tableName The name of the table.
+     * @param column The fully qualified name of the key column.
+     * @param path The path of the index file to write.
+     * @return The index.
+     */
+    public static HashIndex build(String tableName, String column, String path) throws IOException {
+        return bulkLoad(path, IndexEntries.collect(tableName, column));
+    }
+
+    /**
+     * Writes the index of the given entries.
+     * @param path The path of the index file to write.
+     * @param entries The entries, sorted by key and row id.
+     * @return The index.
+     *
+     * @Description
+     * The entries are ordered by their hashes with the bits reversed, so the entries whose hashes share their lowest
+     * d bits are adjacent for every d, and each bucket is a range of the order. Since equal hashes are ordered by the
+     * position of the entry, the entries of a key stay sorted by row id. The buckets are split recursively, see
+     * split(), written in hash order with their overflow buckets, and followed by the directory and the header.
+     */
+    public static HashIndex bulkLoad(String path, IndexEntries entries) throws IOException {
+        int count = entries.getCount();
+        int[] keys = entries.getKeys();
+        long[] rowIds = entries.getRowIds();
+
+        // Reversed hash in the upper 32 bits, position of the entry in the lower 31 bits
+        long[] order = new long[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = (Integer.toUnsignedLong(Integer.reverse(hash(keys[i]))) << 31) | i;
+        }
+        Arrays.sort(order);
+        int[] hashes = new int[count];
+        int[] orderedKeys = new int[count];
+        long[] orderedRowIds = new long[count];
+        for (int i = 0; i < count; i++) {
+            int entry = (int) (order[i] & Integer.MAX_VALUE);
+            hashes[i] = hash(keys[entry]);
+            orderedKeys[i] = keys[entry];
+            orderedRowIds[i] = rowIds[entry];
+        }
+
+        // Every bucket as {first entry, entry after the last, local depth, hash bits}
+        List<int[]> buckets = new ArrayList<>();
+        split(hashes, 0, count, 0, 0, buckets);
+        int globalDepth = 0;
+        for (int[] bucket : buckets) {
+            globalDepth = Math.max(globalDepth, bucket[2]);
+        }
+        int[] directory = new int[1 << globalDepth];
+
+        int nextNode = FIRST_BUCKET;
+        int bucketCount;
+        try (FileChannel channel = IndexFile.createNodeFile(path)) {
+            ByteBuffer node = ByteBuffer.allocate(BUCKET_SIZE);
+            for (int[] bucket : buckets) {
+                for (int slot = bucket[3]; slot < directory.length; slot += 1 << bucket[2]) {
+                    directory[slot] = nextNode;
+                }
+                int first = bucket[0];
+                do {
+                    int size = Math.min(BUCKET_CAPACITY, bucket[1] - first);
+                    Arrays.fill(node.array(), (byte) 0);
+                    node.putInt(0, size);
+                    node.putInt(4, first + size < bucket[1] ? nextNode + 1 : -1);
+                    node.putInt(8, bucket[2]);
+                    for (int slot = 0; slot < size; slot++) {
+                        node.putInt(BUCKET_KEYS + 4 * slot, orderedKeys[first + slot]);
+                        node.putLong(BUCKET_ROW_IDS + 8 * slot, orderedRowIds[first + slot]);
+                    }
+                    IndexFile.writeNode(channel, node, nextNode++);
+                    first += size;
+                } while (first < bucket[1]);
+            }
+
+            int directoryNode = nextNode;
+            bucketCount = directoryNode - FIRST_BUCKET;
+            for (int start = 0; start < directory.length; start += SLOTS_PER_NODE) {
+                Arrays.fill(node.array(), (byte) 0);
+                for (int slot = start; slot < Math.min(directory.length, start + SLOTS_PER_NODE); slot++) {
+                    node.putInt(4 * (slot - start), directory[slot]);
+                }
+                IndexFile.writeNode(channel, node, nextNode++);
+            }
+
+            Arrays.fill(node.array(), (byte) 0);
+            node.clear();
+            node.putInt(MAGIC).putInt(VERSION).putInt(entries.getKeyColumn()).putInt(entries.isClustered() ? 1 : 0)
+                    .putInt(globalDepth).putInt(bucketCount).putInt(directoryNode)
+                    .putInt(entries.getDistinctKeyCount()).putLong(count)
+                    .putLong(entries.getTableFile().length()).putLong(entries.getTableFile().lastModified());
+            IndexFile.writeNode(channel, node, 0);
+        }
+        IndexFile.commit(path);
+        return new HashIndex(path, entries.getKeyColumn(), entries.isClustered(), globalDepth, directory,
+                bucketCount, count, entries.getDistinctKeyCount(), entries.getTableFile().length(),
+                entries.getTableFile().lastModified());
+    }
+
+    /**
+     * Splits the entries between first and last, whose hashes share their lowest depth bits, into buckets.
+     * @param hashes The hashes of the entries, ordered by their reversed bits.
+     * @param first The first entry.
+     * @param last The entry after the last.
+     * @param depth The number of lowest bits the hashes share.
+     * @param bits The value of the shared bits.
+     * @param buckets The list to append the buckets of the entries to, in hash order.
+     *
+     * @Description
+     * The entries fit into one bucket, of local depth depth, if there are at most BUCKET_CAPACITY of them, if all of
+     * them have the same hash, or if depth has reached MAX_DEPTH. Otherwise, the entries whose next bit is 0 precede
+     * those whose next bit is 1, and both halves are split with one more bit, even if one of them is empty.
+     */
+    private static void split(int[] hashes, int first, int last, int depth, int bits, List<int[]> buckets) {
+        if (last - first <= BUCKET_CAPACITY || depth == MAX_DEPTH || hashes[first] == hashes[last - 1]) {
+            buckets.add(new int[] {first, last, depth, bits});
+            return;
+        }
+        int middle = first;
+        while (middle < last && (hashes[middle] & (1 << depth)) == 0) {
+            middle++;
+        }
+        split(hashes, first, middle, depth + 1, bits, buckets);
+        split(hashes, middle, last, depth + 1, bits | (1 << depth), buckets);
+    }
+
+    /**
+     * Returns the hash of a key, mixed so that the lowest bits depend on all bits of the key.
+     */
+    private static int hash(int key) {
+        int hash = key;
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+    /**
+     * Opens an index file written by bulkLoad() and reads its header and directory.
+     * @param path The path of the index file.
+     * @return The index.
+     */
+    public static HashIndex load(String path) throws IOException {
+        ByteBuffer header = readNode(path, 0);
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not a hash index file: " + path);
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported hash index version " + version + ": " + path);
+        }
+        int keyColumn = header.getInt();
+        boolean clustered = header.getInt() == 1;
+        int globalDepth = header.getInt();
+        int bucketCount = header.getInt();
+        int directoryNode = header.getInt();
+        int distinctKeyCount = header.getInt();
+        long entryCount = header.getLong();
+        long tableFileSize = header.getLong();
+        long tableLastModified = header.getLong();
+
+        int[] directory = new int[1 << globalDepth];
+        for (int start = 0; start < directory.length; start += SLOTS_PER_NODE) {
+            ByteBuffer node = readNode(path, directoryNode + start / SLOTS_PER_NODE);
+            node.asIntBuffer().get(directory, start, Math.min(SLOTS_PER_NODE, directory.length - start));
+        }
+        return new HashIndex(path, keyColumn, clustered, globalDepth, directory, bucketCount, entryCount,
+                distinctKeyCount, tableFileSize, tableLastModified);
+    }
+
+    /**
+     * Reads a node of an index file through the BufferPool.
+     */
+    private static ByteBuffer readNode(String path, int nodeNumber) throws IOException {
+        return IndexFile.read(path, (long) nodeNumber * BUCKET_SIZE, BUCKET_SIZE, "hash index");
+    }
+
+    /**
+     * Returns the row ids of the entries with a key.
+     * @param key The key.
+     * @return The row ids in ascending order, empty if no entry has the key.
+     *
+     * @Description
+     * The directory slot of the lowest globalDepth bits of the hash of the key leads to the bucket, which is read
+     * along with its overflow buckets. The entries of a key are adjacent within the chain.
+     */
+    public long[] lookup(int key) throws IOException {
+        int bucket = directory[hash(key) & (directory.length - 1)];
+        long[] rowIds = NO_ROW_IDS;
+        int matches = 0;
+        while (bucket >= 0) {
+            ByteBuffer node = readNode(path, bucket);
+            int size = node.getInt(0);
+            for (int slot = 0; slot < size; slot++) {
+                if (node.getInt(BUCKET_KEYS + 4 * slot) == key) {
+                    if (matches == rowIds.length) {
+                        rowIds = Arrays.copyOf(rowIds, Math.max(8, 2 * matches));
+                    }
+                    rowIds[matches++] = node.getLong(BUCKET_ROW_IDS + 8 * slot);
+                }
+            }
+            bucket = node.getInt(4);
+        }
+        return matches == rowIds.length ? rowIds : Arrays.copyOf(rowIds, matches);
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public int getKeyColumn() {
+        return keyColumn;
+    }
+
+    public boolean isClustered() {
+        return clustered;
+    }
+
+    public int getGlobalDepth() {
+        return globalDepth;
+    }
+
+    public int getBucketCount() {
+        return bucketCount;
+    }
+
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    public int getDistinctKeyCount() {
+        return distinctKeyCount;
+    }
+
+    /**
+     * Checks if the index was built from the current version of a table file.
+     * @param tableFile The table file.
+     * @return True if the size and modification time of the file are unchanged, false otherwise.
+     */
+    public boolean matches(File tableFile) {
+        return IndexFile.matches(tableFile, tableFileSize, tableLastModified);
+    }
+
+    /**
+     * Returns the path of the index file of a column of a table file.
+     * @param tableFilePath The path of the table file.
+     * @param column The fully qualified name of the key column.
+     * @return The path of the index file, e.g. data/Student.csv.B.hash.
+     */
+    public static String getPath(String tableFilePath, String column) {
+        return tableFilePath + "." + column.substring(column.indexOf('.') + 1) + ".hash";
+    }
+}
@@ -0,0 +1,70 @@
+package ed.inf.adbs.blazedb;
+
+/**
+ * The HyperLogLog class estimates the number of distinct values of a column in a single pass with a fixed,
+ * small amount of memory, used by ANALYZE for the distinct counts in the column statistics.
+ * Every value is hashed, the first PRECISION bits of the hash select a register, and the register keeps the
+ * largest number of leading zeros seen in the remaining bits. The harmonic mean of the registers gives the estimate,
+ * with the usual linear counting correction for small cardinalities. The standard error is about 1.6%.
+ * <br><br>
+ * The HyperLogLog class contains the following methods:<br>
+ * - add(int value): Adds a value to the sketch.<br>
+ * - estimate(): Returns the estimated number of distinct values added.
+ * <br><br>
+ * The HyperLogLog class also contains the following instance variables:<br>
+ * - registers: The largest rank seen per register.
+ */
+public class HyperLogLog {
+    private static final int PRECISION = 12;
+    private static final int REGISTER_COUNT = 1 << PRECISION;
+
+    private final byte[] registers = new byte[REGISTER_COUNT];
+
+    /**
+     * Adds a value to the sketch.
+     * @param value The value to add.
+     */
+    public void add(int value) {
+        long hash = hash(value);
+        int register = (int) (hash >>> (64 - PRECISION));
+        int rank = Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1;
+        if (rank > registers[register]) {
+            registers[register] = (byte) rank;
+        }
+    }
+
+    /**
+     * Returns the estimated number of distinct values added.
+     * @return The estimated distinct count.
+     */
+    public long estimate() {
+        double sum = 0;
+        int emptyRegisters = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                emptyRegisters++;
+            }
+        }
+        double alpha = 0.7213 / (1 + 1.079 / REGISTER_COUNT);
+        double estimate = alpha * REGISTER_COUNT * REGISTER_COUNT / sum;
+        if (estimate <= 2.5 * REGISTER_COUNT && emptyRegisters > 0) {
+            // Linear counting is more accurate for small cardinalities
+            estimate = REGISTER_COUNT * Math.log((double) REGISTER_COUNT / emptyRegisters);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Hashes a value with the finalizer of MurmurHash3, which spreads consecutive integers over all bits.
+     */
+    private static long hash(int value) {
+        long hash = value;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb3fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
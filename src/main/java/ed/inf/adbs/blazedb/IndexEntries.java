@@ -0,0 +1,180 @@
+package ed.inf.adbs.blazedb;
+
+import ed.inf.adbs.blazedb.operator.ColumnarScanOperator;
+import ed.inf.adbs.blazedb.operator.MappedScanOperator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * The IndexEntries class holds the entries of an index on an int column of a table, sorted by key and row id,
+ * which the BPlusTree, the HashIndex and the BitmapIndex are built from.
+ * Every entry holds a key, the value of the column in a row, and the row id of the row: the byte offset of the row
+ * in a CSV table file, or the number of the row in a columnar table file.
+ * <br><br>
+ * The IndexEntries class contains the following methods:<br>
+ * - collect(String tableName, String column): Scans a table and sorts the entries of a column.<br>
+ * - getKeyColumn(), getKeys(), getRowIds(), getCount(): Return the key column and the sorted entries.<br>
+ * - getDistinctKeyCount(): Returns the number of distinct keys.<br>
+ * - isClustered(): Checks if the rows of the table file are stored in key order.<br>
+ * - getRowOffsets(): Returns the byte offset of every row of a CSV table file.<br>
+ * - getTableFile(): Returns the table file the entries were read from.
+ * <br><br>
+ * The IndexEntries class also contains the following instance variables:<br>
+ * - keyColumn: The index of the key column in the table schema.<br>
+ * - keys, rowIds, count: The keys and row ids of the entries, and the number of entries.<br>
+ * - distinctKeyCount: The number of distinct keys.<br>
+ * - clustered: Whether the row ids are ascending in key order.<br>
+ * - rowOffsets: The byte offset of every row in file order for a CSV table file, or null for a columnar one.<br>
+ * - tableFile: The table file the entries were read from.
+ */
+public class IndexEntries {
+    private final int keyColumn;
+    private final int[] keys;
+    private final long[] rowIds;
+    private final int count;
+    private final int distinctKeyCount;
+    private final boolean clustered;
+    private final long[] rowOffsets;
+    private final File tableFile;
+
+    public IndexEntries(int keyColumn, int[] keys, long[] rowIds, int count, int distinctKeyCount,
+                        boolean clustered, File tableFile) {
+        this(keyColumn, keys, rowIds, count, distinctKeyCount, clustered, null, tableFile);
+    }
+
+    public IndexEntries(int keyColumn, int[] keys, long[] rowIds, int count, int distinctKeyCount,
+                        boolean clustered, long[] rowOffsets, File tableFile) {
+        this.keyColumn = keyColumn;
+        this.keys = keys;
+        this.rowIds = rowIds;
+        this.count = count;
+        this.distinctKeyCount = distinctKeyCount;
+        this.clustered = clustered;
+        this.rowOffsets = rowOffsets;
+        this.tableFile = tableFile;
+    }
+
+    /**
+     * Scans a table and sorts the entries of a column of the file the table is currently stored in.
+     * @param tableName The name of the table.
+     * @param column The fully qualified name of the key column.
+     * @return The entries, sorted by key and row id.
+     *
+     * @Description
+     * Only the key column is read. A columnar table is read in batches and the rows are numbered. A CSV table is read
+     * with the MappedScanOperator, and the file position is recorded before every row, like ZoneMap.collect().
+     * Every entry is packed into a long with the key in the upper and the number of the row in the lower half,
+     * so a single sort orders the entries by key and then by position in the file. The entries are clustered if the
+     * row ids are then ascending.
+     */
+    public static IndexEntries collect(String tableName, String column) throws IOException {
+        DatabaseCatalog catalog = DatabaseCatalog.getInstance("");
+        int keyColumn = catalog.getTableSchema(tableName).indexOf(column);
+        if (keyColumn < 0) {
+            throw new RuntimeException("Unknown index column: " + column);
+        }
+        long[] entries = new long[TupleBatch.DEFAULT_CAPACITY];
+        long[] offsets = null;
+        int count = 0;
+        File tableFile;
+
+        if (catalog.isColumnar(tableName)) {
+            tableFile = new File(catalog.getColumnarFilePath(tableName));
+            ColumnarScanOperator scan = new ColumnarScanOperator(tableName);
+            scan.setColumns(Collections.singletonList(column));
+            TupleBatch batch;
+            while ((batch = scan.getNextBatch()) != null) {
+                if (count + batch.size() > entries.length) {
+                    entries = Arrays.copyOf(entries, Math.max(2 * entries.length, count + batch.size()));
+                }
+                for (int i = 0; i < batch.size(); i++) {
+                    entries[count] = pack(batch.getValue(0, batch.getRowIndex(i)), count);
+                    count++;
+                }
+            }
+        } else {
+            tableFile = new File(catalog.getTableFilePath(tableName));
+            offsets = new long[entries.length];
+            MappedScanOperator scan = new MappedScanOperator(tableName);
+            scan.setColumns(Collections.singletonList(column));
+            while (true) {
+                long offset = scan.getFilePosition();
+                Tuple tuple = scan.getNextTuple();
+                if (tuple == null) {
+                    break;
+                }
+                if (count == entries.length) {
+                    entries = Arrays.copyOf(entries, 2 * count);
+                    offsets = Arrays.copyOf(offsets, 2 * count);
+                }
+                offsets[count] = offset;
+                entries[count] = pack(tuple.getValue(0), count);
+                count++;
+            }
+        }
+
+        Arrays.sort(entries, 0, count);
+        int[] keys = new int[count];
+        long[] rowIds = new long[count];
+        int distinctKeyCount = 0;
+        boolean clustered = true;
+        for (int i = 0; i < count; i++) {
+            keys[i] = (int) (entries[i] >> 32);
+            int row = (int) entries[i];
+            rowIds[i] = offsets != null ? offsets[row] : row;
+            clustered &= i == 0 || rowIds[i] > rowIds[i - 1];
+            if (i == 0 || keys[i] != keys[i - 1]) {
+                distinctKeyCount++;
+            }
+        }
+        return new IndexEntries(keyColumn, keys, rowIds, count, distinctKeyCount, clustered,
+                offsets != null ? Arrays.copyOf(offsets, count) : null, tableFile);
+    }
+
+    /**
+     * Packs a key and a row number into a long that sorts by key first.
+     */
+    private static long pack(int key, int row) {
+        return ((long) key << 32) | row;
+    }
+
+    public int getKeyColumn() {
+        return keyColumn;
+    }
+
+    public int[] getKeys() {
+        return keys;
+    }
+
+    public long[] getRowIds() {
+        return rowIds;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getDistinctKeyCount() {
+        return distinctKeyCount;
+    }
+
+    public boolean isClustered() {
+        return clustered;
+    }
+
+    /**
+     * Returns the byte offset of every row of a CSV table file, in file order, so the number of the row of an entry
+     * can be found by a binary search for its row id.
+     * @return The offsets, or null for a columnar table file, whose row ids are the numbers of the rows.
+     */
+    public long[] getRowOffsets() {
+        return rowOffsets;
+    }
+
+    public File getTableFile() {
+        return tableFile;
+    }
+}
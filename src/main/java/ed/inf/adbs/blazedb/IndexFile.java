@@ -0,0 +1,102 @@
+package ed.inf.adbs.blazedb;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The IndexFile class holds the file handling shared by the BPlusTree, HashIndex and BitmapIndex.
+ * An index file is written under a temporary name and renamed once it is complete, so a failed build never leaves a
+ * partial index, and it is read through the BufferPool like the table files. Every index records the size and
+ * modification time of the table file it was built from, and the DatabaseCatalog builds an index again once
+ * matches() no longer holds for it.
+ * <br><br>
+ * The IndexFile class contains the following methods:<br>
+ * - getTemporaryFile(String path): Returns the file an index is written to before it is complete.<br>
+ * - createNodeFile(String path): Opens the temporary file of an index of fixed-size nodes.<br>
+ * - writeNode(FileChannel channel, ByteBuffer node, int nodeNumber): Writes a node at its position in the file.<br>
+ * - commit(String path): Renames the temporary file to the index file.<br>
+ * - read(String path, long position, int length, String kind): Reads a part of an index file.<br>
+ * - matches(File tableFile, long tableFileSize, long tableLastModified): Checks if an index was built from the
+ *   current version of a table file.
+ */
+final class IndexFile {
+
+    private IndexFile() {}
+
+    /**
+     * Returns the file an index is written to before it is complete.
+     * @param path The path of the index file.
+     * @return The temporary file, next to the index file.
+     */
+    static File getTemporaryFile(String path) {
+        return new File(path + ".tmp");
+    }
+
+    /**
+     * Opens the temporary file of an index made of fixed-size nodes, replacing the file of an earlier failed build.
+     * @param path The path of the index file.
+     * @return A channel to write the nodes with, see writeNode().
+     */
+    static FileChannel createNodeFile(String path) throws IOException {
+        return FileChannel.open(getTemporaryFile(path).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Writes a node at its position in the file, all nodes having the size of the given buffer.
+     * @param channel The channel of the temporary file.
+     * @param node The node.
+     * @param nodeNumber The number of the node.
+     */
+    static void writeNode(FileChannel channel, ByteBuffer node, int nodeNumber) throws IOException {
+        node.clear();
+        long start = (long) nodeNumber * node.capacity();
+        while (node.hasRemaining()) {
+            channel.write(node, start + node.position());
+        }
+    }
+
+    /**
+     * Renames the complete temporary file to the index file and drops the pages of the replaced index
+     * from the BufferPool.
+     * @param path The path of the index file.
+     */
+    static void commit(String path) throws IOException {
+        Files.move(getTemporaryFile(path).toPath(), Paths.get(path), StandardCopyOption.REPLACE_EXISTING);
+        BufferPool.getInstance().invalidate(path);
+    }
+
+    /**
+     * Reads a part of an index file through the BufferPool.
+     * @param path The path of the index file.
+     * @param position The offset of the part in the file.
+     * @param length The length of the part.
+     * @param kind The kind of index, for the error message, e.g. "hash index".
+     * @return A buffer holding the part.
+     */
+    static ByteBuffer read(String path, long position, int length, String kind) throws IOException {
+        byte[] data = new byte[length];
+        if (BufferPool.getInstance().read(path, position, data, 0, length) < length) {
+            throw new EOFException("Truncated " + kind + " file: " + path);
+        }
+        return ByteBuffer.wrap(data);
+    }
+
+    /**
+     * Checks if an index was built from the current version of a table file.
+     * @param tableFile The table file.
+     * @param tableFileSize The size of the table file recorded by the index.
+     * @param tableLastModified The modification time of the table file recorded by the index.
+     * @return True if the size and modification time of the file are unchanged, false otherwise.
+     */
+    static boolean matches(File tableFile, long tableFileSize, long tableLastModified) {
+        return tableFile.length() == tableFileSize && tableFile.lastModified() == tableLastModified;
+    }
+}
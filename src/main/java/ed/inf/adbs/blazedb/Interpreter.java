@@ -3,18 +3,27 @@ package ed.inf.adbs.blazedb;
 import ed.inf.adbs.blazedb.operator.Operator;
 import net.sf.jsqlparser.parser.CCJSqlParserUtil;
 import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.analyze.Analyze;
+import net.sf.jsqlparser.statement.create.index.CreateIndex;
 import net.sf.jsqlparser.statement.select.PlainSelect;
 import net.sf.jsqlparser.statement.select.Select;
 
 import java.io.*;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * The Interpreter class is responsible for executing the query in the provided file
  * and writing the result to the output file.
  * <br><br>
  * The Interpreter class contains the following methods:<br>
- * - executeQuery(): Executes the query in the provided file and writes the result to the output file.<br>
- * - execute(): Executes the provided query plan by repeatedly calling `getNextTuple()`
+ * - executeQuery(): Executes the query in the provided file and writes the result to the output file.
+ *                   ANALYZE statements collect the statistics of one table (ANALYZE Student) or of all tables
+ *                   (ANALYZE) and write an empty output file. CREATE [CLUSTERED] INDEX name ON Table (column)
+ *                   statements build a BPlusTree index, CREATE INDEX name ON Table USING HASH (column) statements
+ *                   a HashIndex, CREATE BITMAP INDEX name ON Table (column) statements a BitmapIndex, and all of
+ *                   them write an empty output file.<br>
+ * - execute(): Executes the provided query plan by repeatedly calling `getNextBatch()`
  */
 
  public class Interpreter {
@@ -23,11 +32,45 @@ import java.io.*;
      *
      * @param queryFile The name of the file containing the query.
      * @param outputFile The name of the file where the result will be written.
+     * @return The root operator of the executed plan, or null if the statement is not a query or failed.
      */
-    public static void executeQuery(String queryFile, String outputFile) {
+    public static Operator executeQuery(String queryFile, String outputFile) {
         try (BufferedReader reader = new BufferedReader(new FileReader(queryFile))) {
             String query = reader.readLine(); // Assume one query per file
+            if (query.trim().replace(";", "").trim().equalsIgnoreCase("ANALYZE")) {
+                DatabaseCatalog.getInstance("").analyzeAll();
+                new FileWriter(outputFile).close();
+                return null;
+            }
             Statement statement = CCJSqlParserUtil.parse(query);
+            if (statement instanceof Analyze) {
+                String tableName = ((Analyze) statement).getTable().getName();
+                DatabaseCatalog.getInstance("").analyze(Collections.singletonList(tableName));
+                new FileWriter(outputFile).close();
+                return null;
+            }
+            if (statement instanceof CreateIndex) {
+                CreateIndex createIndex = (CreateIndex) statement;
+                String tableName = createIndex.getTable().getName();
+                List<String> columns = createIndex.getIndex().getColumnsNames();
+                if (columns.size() != 1) {
+                    throw new RuntimeException("Only single-column indexes are supported: " + query);
+                }
+                String column = tableName + "." + columns.get(0);
+                String type = createIndex.getIndex().getUsing() != null
+                        ? createIndex.getIndex().getUsing() : createIndex.getIndex().getType();
+                if ("HASH".equalsIgnoreCase(type)) {
+                    DatabaseCatalog.getInstance("").createHashIndex(tableName, column);
+                } else if ("BITMAP".equalsIgnoreCase(type)) {
+                    DatabaseCatalog.getInstance("").createBitmapIndex(tableName, column);
+                } else if (type == null || "BTREE".equalsIgnoreCase(type) || "CLUSTERED".equalsIgnoreCase(type)) {
+                    DatabaseCatalog.getInstance("").createIndex(tableName, column, "CLUSTERED".equalsIgnoreCase(type));
+                } else {
+                    throw new RuntimeException("Unsupported index type " + type + ": " + query);
+                }
+                new FileWriter(outputFile).close();
+                return null;
+            }
 
             Select selectStatement = (Select) statement;
             PlainSelect plainSelect = (PlainSelect) selectStatement;
@@ -38,13 +81,18 @@ import java.io.*;
 
             // Execute and write output
             execute(rootOperator, outputFile);
+            return rootOperator;
         } catch (Exception e) {
             e.printStackTrace();
+            return null;
+        } finally {
+            // Remove the spill files the plan left behind, e.g. when an operator failed
+            SpillFile.deleteAll();
         }
     }
 
     /**
-     * Executes the provided query plan by repeatedly calling `getNextTuple()`
+     * Executes the provided query plan by repeatedly calling `getNextBatch()`
      * on the root object of the operator tree. Writes the result to `outputFile`.
      *
      * @param root The root operator of the operator tree (assumed to be non-null).
@@ -52,10 +100,18 @@ import java.io.*;
      */
     private static void execute(Operator root, String outputFile) {
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile))) {
-            Tuple tuple;
-            while ((tuple = root.getNextTuple()) != null) {
-                writer.write(tuple.toString());
-                writer.newLine();
+            TupleBatch batch;
+            while ((batch = root.getNextBatch()) != null) {
+                for (int i = 0; i < batch.size(); i++) {
+                    int row = batch.getRowIndex(i);
+                    for (int column = 0; column < batch.getColumnCount(); column++) {
+                        if (column > 0) {
+                            writer.write(", ");
+                        }
+                        writer.write(Integer.toString(batch.getValue(column, row)));
+                    }
+                    writer.newLine();
+                }
             }
         } catch (IOException e) {
             e.printStackTrace();
@@ -0,0 +1,461 @@
+package ed.inf.adbs.blazedb;
+
+import ed.inf.adbs.blazedb.operator.IndexScanOperator;
+import net.sf.jsqlparser.expression.BinaryExpression;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThan;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThanEquals;
+import net.sf.jsqlparser.expression.operators.relational.MinorThan;
+import net.sf.jsqlparser.expression.operators.relational.MinorThanEquals;
+import net.sf.jsqlparser.expression.operators.relational.NotEqualsTo;
+import net.sf.jsqlparser.schema.Column;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The JoinOrderOptimizer class chooses the order in which the QueryPlanner joins the FROM clause tables
+ * into a left deep join tree.
+ * Every order is costed with the estimated number of tuples the joins read and produce. The estimates are based on the
+ * row counts and ANALYZE statistics of the DatabaseCatalog and the selectivities of the selection and join conditions,
+ * and each join is costed like the join operator the QueryPlanner picks for its condition: hash and sort-merge joins
+ * read both inputs once, inequality joins sort one input, and nested loop joins combine every pair of tuples. A table
+ * with an index on an equality join column is joined by an IndexNestedLoopJoinOperator if one index lookup per outer
+ * tuple is cheaper than reading the whole table, so small tables are placed first to drive lookups into large indexed
+ * tables.
+ * <br><br>
+ * Up to DP_TABLE_LIMIT tables, the cheapest order is found by dynamic programming over the subsets of the tables.
+ * For wider joins, a greedy search starts from the smallest table and repeatedly adds the table that is cheapest
+ * to join next. Both only join a table without a join condition (a cross product) if no remaining table has a join
+ * condition with the tables joined so far. On equal costs, the order of the FROM clause is kept.
+ * <br><br>
+ * The JoinOrderOptimizer class contains the following methods:<br>
+ * - getJoinOrder(): Returns the tables in the order they should be joined.<br>
+ * - optimizeExhaustively(): Finds the cheapest order by dynamic programming over subsets.<br>
+ * - optimizeGreedily(): Builds an order by repeatedly adding the cheapest table.<br>
+ * - join(): Costs joining a table to a partial order.<br>
+ * - estimateCardinality(): Estimates the number of tuples of a join of the given tables.<br>
+ * - getIndexJoinCondition(): Returns the equality join condition to join a table through an index, if any.<br>
+ * - findIndexJoinCondition(): Finds the cheapest equality join condition with an index on the column of a table.<br>
+ * - canJoin(): Checks if a table may be joined next without an avoidable cross product.<br>
+ * - estimateSelectivity(): Estimates the fraction of tuples that satisfy a condition.<br>
+ * - estimateSelectivityFromStatistics(): Estimates the selectivity of a comparison from the column statistics.
+ * <br><br>
+ * The JoinOrderOptimizer class also contains the following instance variables:<br>
+ * - tables: The FROM clause tables.<br>
+ * - cardinalities: The estimated number of tuples of each table after its selection conditions.<br>
+ * - joinConditions: The join conditions between two tables.<br>
+ * - conditionTables: The positions of the two tables of each join condition.<br>
+ * - lookupCosts: The estimated cost of an index lookup per join column, cached as the join orders are costed.
+ */
+public class JoinOrderOptimizer {
+    private static final int DP_TABLE_LIMIT = 10;
+    private static final double EQUALS_SELECTIVITY = 0.1;
+    private static final double NOT_EQUALS_SELECTIVITY = 0.9;
+    private static final double RANGE_SELECTIVITY = 1.0 / 3;
+
+    private final List<String> tables;
+    private final double[] cardinalities;
+    private final List<Expression> joinConditions;
+    private final int[][] conditionTables;
+    private final Map<String, Double> lookupCosts;
+
+    public JoinOrderOptimizer(List<String> tables, Map<String, Expression> selectionConditions, List<Expression> joinConditions) {
+        this.tables = tables;
+        this.joinConditions = joinConditions;
+        this.cardinalities = new double[tables.size()];
+        for (int i = 0; i < tables.size(); i++) {
+            double cardinality = getRowCount(tables.get(i));
+            for (Expression condition : ConditionExtractor.getConjuncts(selectionConditions.get(tables.get(i)))) {
+                cardinality *= estimateSelectivity(condition);
+            }
+            cardinalities[i] = Math.max(cardinality, 1);
+        }
+        this.lookupCosts = new HashMap<>();
+        this.conditionTables = new int[joinConditions.size()][];
+        for (int i = 0; i < joinConditions.size(); i++) {
+            BinaryExpression condition = (BinaryExpression) joinConditions.get(i);
+            conditionTables[i] = new int[] {
+                    tables.indexOf(((Column) condition.getLeftExpression()).getTable().getName()),
+                    tables.indexOf(((Column) condition.getRightExpression()).getTable().getName())};
+        }
+    }
+
+    /**
+     * A partial left deep join order with its estimated output size and cost.
+     */
+    private static class Plan {
+        private final List<Integer> order;
+        private final int tableSet;
+        private final double cardinality;
+        private final double cost;
+
+        private Plan(List<Integer> order, int tableSet, double cardinality, double cost) {
+            this.order = order;
+            this.tableSet = tableSet;
+            this.cardinality = cardinality;
+            this.cost = cost;
+        }
+
+        /**
+         * Checks if this plan is cheaper than another one, preferring the order closer to the FROM clause on ties.
+         */
+        private boolean isBetterThan(Plan other) {
+            if (other == null || cost < other.cost * (1 - 1e-9)) {
+                return true;
+            }
+            if (cost > other.cost * (1 + 1e-9)) {
+                return false;
+            }
+            for (int i = 0; i < order.size(); i++) {
+                if (!order.get(i).equals(other.order.get(i))) {
+                    return order.get(i) < other.order.get(i);
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Returns the tables in the order they should be joined.
+     * @return The table names, starting with the leftmost table of the join tree.
+     */
+    public List<String> getJoinOrder() {
+        if (tables.size() == 1) {
+            return tables;
+        }
+        Plan plan = tables.size() <= DP_TABLE_LIMIT ? optimizeExhaustively() : optimizeGreedily();
+        List<String> joinOrder = new ArrayList<>();
+        for (int table : plan.order) {
+            joinOrder.add(tables.get(table));
+        }
+        return joinOrder;
+    }
+
+    /**
+     * Finds the cheapest order by dynamic programming over the subsets of the tables.
+     * @return The cheapest plan joining all tables.
+     *
+     * @Description
+     * The cheapest plan of every subset is the cheapest of the cheapest plans of its subsets with one table less,
+     * each joined with the missing table. The subsets are visited in increasing order of their bit masks,
+     * so all smaller subsets of a subset are planned before it.
+     */
+    private Plan optimizeExhaustively() {
+        int tableCount = tables.size();
+        Plan[] bestPlans = new Plan[1 << tableCount];
+        for (int table = 0; table < tableCount; table++) {
+            List<Integer> order = new ArrayList<>();
+            order.add(table);
+            bestPlans[1 << table] = new Plan(order, 1 << table, cardinalities[table], 0);
+        }
+
+        for (int tableSet = 1; tableSet < bestPlans.length; tableSet++) {
+            if (Integer.bitCount(tableSet) < 2) {
+                continue;
+            }
+            for (int table = 0; table < tableCount; table++) {
+                Plan left = bestPlans[tableSet & ~(1 << table)];
+                if ((tableSet & (1 << table)) == 0 || left == null || !canJoin(left.tableSet, table)) {
+                    continue;
+                }
+                Plan plan = join(left, table);
+                if (plan.isBetterThan(bestPlans[tableSet])) {
+                    bestPlans[tableSet] = plan;
+                }
+            }
+        }
+        return bestPlans[bestPlans.length - 1];
+    }
+
+    /**
+     * Builds an order by starting with the smallest table and repeatedly adding the table that is cheapest to join.
+     * @return The plan joining all tables.
+     */
+    private Plan optimizeGreedily() {
+        int first = 0;
+        for (int table = 1; table < tables.size(); table++) {
+            if (cardinalities[table] < cardinalities[first]) {
+                first = table;
+            }
+        }
+        List<Integer> order = new ArrayList<>();
+        order.add(first);
+        Plan plan = new Plan(order, 1 << first, cardinalities[first], 0);
+
+        while (plan.order.size() < tables.size()) {
+            Plan next = null;
+            for (int table = 0; table < tables.size(); table++) {
+                if ((plan.tableSet & (1 << table)) != 0 || !canJoin(plan.tableSet, table)) {
+                    continue;
+                }
+                Plan candidate = join(plan, table);
+                if (next == null || candidate.cost < next.cost) {
+                    next = candidate;
+                }
+            }
+            plan = next;
+        }
+        return plan;
+    }
+
+    /**
+     * Costs joining a table to a partial order.
+     * @param left The plan of the tables joined so far.
+     * @param table The position of the table to join next.
+     * @return The plan with the table joined as right input of a new join.
+     *
+     * @Description
+     * The output size is the product of the input sizes and the selectivities of the join conditions between them.
+     * The cost adds the output size and the work of the join operator the QueryPlanner picks for the conditions.
+     * An index nested loop join costs one index lookup per tuple of the left input, see findIndexJoinCondition().
+     */
+    private Plan join(Plan left, int table) {
+        double selectivity = 1;
+        boolean hasEquality = false;
+        boolean hasRange = false;
+        for (int i = 0; i < joinConditions.size(); i++) {
+            int first = conditionTables[i][0];
+            int second = conditionTables[i][1];
+            boolean connects = (first == table && (left.tableSet & (1 << second)) != 0)
+                    || (second == table && (left.tableSet & (1 << first)) != 0);
+            if (connects) {
+                Expression condition = joinConditions.get(i);
+                selectivity *= estimateSelectivity(condition);
+                hasEquality |= condition instanceof EqualsTo;
+                hasRange |= !(condition instanceof EqualsTo) && !(condition instanceof NotEqualsTo);
+            }
+        }
+
+        double right = cardinalities[table];
+        int indexJoinCondition = hasEquality ? findIndexJoinCondition(left.tableSet, table, left.cardinality) : -1;
+        double joinCost;
+        if (indexJoinCondition >= 0) {
+            joinCost = left.cardinality * getLookupCost(indexJoinCondition, table);
+        } else if (hasEquality) {
+            joinCost = left.cardinality + right;
+        } else if (hasRange) {
+            joinCost = (left.cardinality + right) * (Math.log(Math.min(left.cardinality, right) + 2) / Math.log(2));
+        } else {
+            joinCost = left.cardinality * right;
+        }
+        double cardinality = Math.max(left.cardinality * right * selectivity, 1);
+
+        List<Integer> order = new ArrayList<>(left.order);
+        order.add(table);
+        return new Plan(order, left.tableSet | (1 << table), cardinality, left.cost + joinCost + cardinality);
+    }
+
+    /**
+     * Estimates the number of tuples of a join of the given tables.
+     * @param joinedTables The tables, in the order they are joined.
+     * @return The estimated number of tuples after the selection and join conditions between the tables.
+     */
+    public double estimateCardinality(List<String> joinedTables) {
+        return planOrder(joinedTables).cardinality;
+    }
+
+    /**
+     * Returns the equality join condition to join a table to the tables joined so far through an index.
+     * @param joinedTables The tables joined so far, in the order they are joined.
+     * @param table The name of the table to join next.
+     * @return The condition with an index on the column of the table, or null if no index lookup per joined tuple is
+     *         cheaper than reading the whole table.
+     */
+    public Expression getIndexJoinCondition(List<String> joinedTables, String table) {
+        Plan left = planOrder(joinedTables);
+        int condition = findIndexJoinCondition(left.tableSet, tables.indexOf(table), left.cardinality);
+        return condition >= 0 ? joinConditions.get(condition) : null;
+    }
+
+    /**
+     * Costs the given order of tables.
+     */
+    private Plan planOrder(List<String> joinedTables) {
+        int first = tables.indexOf(joinedTables.get(0));
+        List<Integer> order = new ArrayList<>();
+        order.add(first);
+        Plan plan = new Plan(order, 1 << first, cardinalities[first], 0);
+        for (int i = 1; i < joinedTables.size(); i++) {
+            plan = join(plan, tables.indexOf(joinedTables.get(i)));
+        }
+        return plan;
+    }
+
+    /**
+     * Finds the equality join condition that joins a table cheapest through an index on the column of the table.
+     * @param tableSet The bit mask of the tables joined so far.
+     * @param table The position of the table to join next.
+     * @param outerCardinality The estimated number of tuples of the tables joined so far.
+     * @return The position of the condition in joinConditions, or -1 if no condition has an index whose lookups for
+     *         all outer tuples cost less than a hash join, which reads the outer tuples and the whole table.
+     */
+    private int findIndexJoinCondition(int tableSet, int table, double outerCardinality) {
+        int best = -1;
+        double bestCost = outerCardinality + getRowCount(tables.get(table));
+        for (int i = 0; i < joinConditions.size(); i++) {
+            int first = conditionTables[i][0];
+            int second = conditionTables[i][1];
+            boolean connects = (first == table && (tableSet & (1 << second)) != 0)
+                    || (second == table && (tableSet & (1 << first)) != 0);
+            if (!connects || !(joinConditions.get(i) instanceof EqualsTo)) {
+                continue;
+            }
+            double cost = outerCardinality * getLookupCost(i, table);
+            if (cost < bestCost) {
+                best = i;
+                bestCost = cost;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the estimated cost of an index lookup on the column of a table in a join condition.
+     */
+    private double getLookupCost(int condition, int table) {
+        BinaryExpression equalsTo = (BinaryExpression) joinConditions.get(condition);
+        Column column = (Column) (conditionTables[condition][0] == table
+                ? equalsTo.getLeftExpression() : equalsTo.getRightExpression());
+        return lookupCosts.computeIfAbsent(column.getFullyQualifiedName(), name -> {
+            try {
+                return IndexScanOperator.estimateLookupCost(name, false);
+            } catch (IOException e) {
+                throw new RuntimeException("Error reading index of column: " + name, e);
+            }
+        });
+    }
+
+    /**
+     * Checks if a table may be joined next without an avoidable cross product.
+     * @param tableSet The bit mask of the tables joined so far.
+     * @param table The position of the table to join next.
+     * @return True if the table has a join condition with the joined tables,
+     *         or if no remaining table has one, false otherwise.
+     */
+    private boolean canJoin(int tableSet, int table) {
+        if (isConnected(tableSet, table)) {
+            return true;
+        }
+        for (int other = 0; other < tables.size(); other++) {
+            if ((tableSet & (1 << other)) == 0 && isConnected(tableSet, other)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isConnected(int tableSet, int table) {
+        for (int[] pair : conditionTables) {
+            if ((pair[0] == table && (tableSet & (1 << pair[1])) != 0)
+                    || (pair[1] == table && (tableSet & (1 << pair[0])) != 0)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Estimates the fraction of tuples that satisfy a condition.
+     * @param condition A selection or join condition.
+     * @return The estimated selectivity between 0 and 1.
+     *
+     * @Description
+     * If the compared columns have been analyzed, the statistics are used: an equality between two columns keeps
+     * one in the larger of their distinct counts, and a comparison with a constant is estimated from the histogram.<br>
+     * Otherwise, an equality between the columns of two tables is assumed to match every tuple of the larger table
+     * with one tuple of the smaller table, as for a foreign key referencing the smaller table. Other equalities
+     * keep a tenth of the tuples, inequalities (!=) nearly all of them and range comparisons a third.
+     */
+    private double estimateSelectivity(Expression condition) {
+        if (condition instanceof BinaryExpression) {
+            Double selectivity = estimateSelectivityFromStatistics((BinaryExpression) condition);
+            if (selectivity != null) {
+                return selectivity;
+            }
+        }
+        if (condition instanceof EqualsTo) {
+            EqualsTo equalsTo = (EqualsTo) condition;
+            if (equalsTo.getLeftExpression() instanceof Column && equalsTo.getRightExpression() instanceof Column) {
+                String leftTable = ((Column) equalsTo.getLeftExpression()).getTable().getName();
+                String rightTable = ((Column) equalsTo.getRightExpression()).getTable().getName();
+                if (!leftTable.equals(rightTable)) {
+                    return 1.0 / Math.max(Math.min(getRowCount(leftTable), getRowCount(rightTable)), 1);
+                }
+            }
+            return EQUALS_SELECTIVITY;
+        }
+        if (condition instanceof NotEqualsTo) {
+            return NOT_EQUALS_SELECTIVITY;
+        }
+        return RANGE_SELECTIVITY;
+    }
+
+    /**
+     * Estimates the selectivity of a comparison from the column statistics collected by ANALYZE.
+     * @param condition The comparison.
+     * @return The estimated selectivity, or null if the statistics of the compared columns are missing
+     *         or the comparison is not between two columns or between a column and a constant.
+     */
+    private static Double estimateSelectivityFromStatistics(BinaryExpression condition) {
+        Expression left = condition.getLeftExpression();
+        Expression right = condition.getRightExpression();
+        if (left instanceof Column && right instanceof Column) {
+            ColumnStatistics leftStatistics = getColumnStatistics((Column) left);
+            ColumnStatistics rightStatistics = getColumnStatistics((Column) right);
+            if (leftStatistics == null || rightStatistics == null || !(condition instanceof EqualsTo)) {
+                return null;
+            }
+            return 1.0 / Math.max(Math.max(leftStatistics.getDistinctCount(), rightStatistics.getDistinctCount()), 1);
+        }
+
+        // Normalize to <column> <comparison> <constant>
+        boolean columnOnLeft = left instanceof Column && right instanceof LongValue;
+        if (!columnOnLeft && !(right instanceof Column && left instanceof LongValue)) {
+            return null;
+        }
+        ColumnStatistics statistics = getColumnStatistics((Column) (columnOnLeft ? left : right));
+        if (statistics == null) {
+            return null;
+        }
+        int value = (int) ((LongValue) (columnOnLeft ? right : left)).getValue();
+        double equals = statistics.estimateEqualsSelectivity(value);
+        double lessThan = statistics.estimateLessThanSelectivity(value);
+        if (condition instanceof EqualsTo) {
+            return equals;
+        } else if (condition instanceof NotEqualsTo) {
+            return 1 - equals;
+        } else if (condition instanceof MinorThan) {
+            return columnOnLeft ? lessThan : 1 - lessThan - equals;
+        } else if (condition instanceof MinorThanEquals) {
+            return columnOnLeft ? lessThan + equals : 1 - lessThan;
+        } else if (condition instanceof GreaterThan) {
+            return columnOnLeft ? 1 - lessThan - equals : lessThan;
+        } else if (condition instanceof GreaterThanEquals) {
+            return columnOnLeft ? 1 - lessThan : lessThan + equals;
+        }
+        return null;
+    }
+
+    private static ColumnStatistics getColumnStatistics(Column column) {
+        try {
+            TableStatistics statistics = DatabaseCatalog.getInstance("").getTableStatistics(column.getTable().getName());
+            return statistics != null ? statistics.getColumnStatistics(column.getFullyQualifiedName()) : null;
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading catalog for column: " + column, e);
+        }
+    }
+
+    private static long getRowCount(String table) {
+        try {
+            return DatabaseCatalog.getInstance("").getTableRowCount(table);
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading catalog for table: " + table, e);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package ed.inf.adbs.blazedb;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * The PrefetchInputStream class reads a file through the BufferPool ahead of its consumer on a background thread,
+ * so reading the file overlaps with parsing and evaluating the rows already read.
+ * The reader fills buffers of BufferPool.PAGE_SIZE bytes and hands them over through a queue. The buffers are
+ * recycled: the consumer returns every buffer it has used up, and the reader waits for a free buffer once depth
+ * buffers are filled ahead, so the read-ahead and its memory are bounded.
+ * <br><br>
+ * The PrefetchInputStream class contains the following methods:<br>
+ * - read(byte[] buffer, int offset, int length): Copies the next bytes from the prefetched buffers.<br>
+ * - close(): Stops the reader.
+ * <br><br>
+ * The PrefetchInputStream class also contains the following instance variables:<br>
+ * - READERS: The thread pool shared by all prefetching streams.<br>
+ * - path: The path of the file.<br>
+ * - filled: The buffers filled by the reader, in file order, or END after the last one.<br>
+ * - free: The buffers the reader may fill next.<br>
+ * - closed: Whether close() has asked the reader to stop.<br>
+ * - failure: The error thrown by the reader, if any.<br>
+ * - current: The buffer the consumer reads from, and position the next byte to read in it.
+ */
+public class PrefetchInputStream extends InputStream {
+    private static final Chunk END = new Chunk(new byte[0]);
+    private static final ExecutorService READERS = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "blazedb-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String path;
+    private final BlockingQueue<Chunk> filled;
+    private final BlockingQueue<Chunk> free;
+    private volatile boolean closed;
+    private volatile IOException failure;
+    private Chunk current;
+    private int position;
+
+    /**
+     * Opens a file and starts reading it ahead.
+     * @param path The path of the file.
+     * @param depth The number of buffers the reader may fill ahead of the consumer, at least 1.
+     *
+     * @Description
+     * depth + 1 buffers are allocated, one of which the consumer reads from. Since the reader never holds more
+     * buffers than exist, the filled queue never blocks it; it only waits for free buffers.
+     */
+    public PrefetchInputStream(String path, int depth) throws IOException {
+        this.path = path;
+        BufferPool.getInstance().openInputStream(path); // Fail now if the file does not exist
+        int buffers = Math.max(1, depth) + 1;
+        this.filled = new ArrayBlockingQueue<>(buffers + 1);
+        this.free = new LinkedBlockingQueue<>();
+        for (int i = 0; i < buffers; i++) {
+            free.add(new Chunk(new byte[BufferPool.PAGE_SIZE]));
+        }
+        READERS.execute(this::readAhead);
+    }
+
+    /**
+     * Fills free buffers with the next bytes of the file until the end of the file or until closed.
+     * The reader is stopped with a flag rather than interrupted, since an interrupt during I/O would close the file
+     * channel shared through the BufferPool.
+     */
+    private void readAhead() {
+        long filePosition = 0;
+        try {
+            while (!closed) {
+                Chunk chunk = free.take();
+                if (closed) {
+                    break;
+                }
+                chunk.length = BufferPool.getInstance().read(path, filePosition, chunk.data, 0, chunk.data.length);
+                if (chunk.length <= 0) {
+                    break;
+                }
+                filePosition += chunk.length;
+                filled.add(chunk);
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            filled.add(END);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+    }
+
+    /**
+     * Copies the next bytes of the file from the prefetched buffers.
+     * @return The number of bytes copied, at most up to the end of the current buffer, or -1 at the end of the file.
+     */
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (current == END) {
+            return -1;
+        }
+        if (current == null || position == current.length) {
+            if (current != null) {
+                free.add(current);
+            }
+            try {
+                current = filled.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while prefetching " + path, e);
+            }
+            position = 0;
+            if (current == END) {
+                if (failure != null) {
+                    throw failure;
+                }
+                return -1;
+            }
+        }
+        int count = Math.min(length, current.length - position);
+        System.arraycopy(current.data, position, buffer, offset, count);
+        position += count;
+        return count;
+    }
+
+    /**
+     * Stops the reader, which lets go of the file after the read it is doing, if any.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        free.add(END); // Wakes the reader if it waits for a free buffer
+        current = END;
+    }
+
+    /**
+     * The Chunk class is a recycled buffer together with the number of bytes filled into it.
+     */
+    private static class Chunk {
+        private final byte[] data;
+        private int length;
+
+        private Chunk(byte[] data) {
+            this.data = data;
+        }
+    }
+}
@@ -2,9 +2,15 @@ package ed.inf.adbs.blazedb;
 
 import ed.inf.adbs.blazedb.operator.*;
 import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.ExpressionVisitorAdapter;
+import net.sf.jsqlparser.expression.Function;
 import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.schema.Column;
 import net.sf.jsqlparser.statement.select.AllColumns;
+import net.sf.jsqlparser.statement.select.OrderByElement;
 import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.SelectItem;
 
 import java.io.IOException;
 import java.util.*;
@@ -17,9 +23,27 @@ import java.util.*;
  * The QueryPlanner class contains the following methods:<br>
  * - generatePlan(): Generates the query plan for the provided SQL query.<br>
  * - extractConditions(Expression where): Extracts the selection and join conditions from the WHERE clause.<br>
- * - buildTableScans(): Builds the table scan operators for the FROM clause tables.
+ * - buildTableScans(): Builds the table scan operators for the FROM clause tables, a ColumnarScanOperator for
+ *                      tables in the columnar format and a ScanOperator otherwise.
  *                      If selection conditions are present, a SelectOperator is added on top of the ScanOperator.<br>
- * - buildOperatorTree(): Builds the operator tree based on the extracted conditions and table scans.<br>
+ * - createTableScan(): Creates the cheapest scan of a table for its selection condition: a BitmapScanOperator,
+ *                      an IndexScanOperator, a ParallelScanOperator or a scan of the table file.<br>
+ * - getRequiredColumns(): Returns the columns the query refers to, so the scans return only those.<br>
+ * - buildOperatorTree(): Builds the operator tree based on the extracted conditions and table scans.
+ *                        The tables are joined in the order chosen by the JoinOrderOptimizer.
+ *                        A SUM of constants over a single table selected by its bitmap indexes is answered by a
+ *                        BitmapCountOperator.
+ *                        Depending on the execution mode of BlazeDBConfig, single-table pipelines below the
+ *                        ORDER BY and DISTINCT operators are replaced by a CompiledPipelineOperator: always when
+ *                        compiled execution is forced, and only if the pipeline is worth compiling in AUTO mode.<br>
+ * - createIndexJoinOperator(): Creates an IndexNestedLoopJoinOperator that looks up the tuples of the joined table
+ *                              in the index on its join column, where the JoinOrderOptimizer finds it cheaper.<br>
+ * - createJoinOperator(): Creates a SortMergeJoinOperator for equi-joins on sorted inputs or on the ORDER BY columns,
+ *                         a HashJoinOperator for other equi-joins, an InequalityJoinOperator for range comparisons
+ *                         between the inputs and a BlockNestedLoopJoinOperator otherwise.<br>
+ * - orderJoinConditions(): Picks the equality join conditions that follow a given column order.<br>
+ * - isSortedForOrderBy(): Checks whether the output of an operator already follows the ORDER BY clause.<br>
+ * - getEquivalentColumns(): Returns the columns that are equal to a column through the equality join conditions.<br>
  * - findJoinCondition(String leftTable, String rightTable): Finds the join condition between two tables.<br>
  * - getFromTables(): Returns a list of table names from the FROM clause.
  * <br><br>
@@ -27,7 +51,8 @@ import java.util.*;
  * - select: The PlainSelect object representing the SQL query.<br>
  * - tableScansMapping: A mapping of table names to table ScanOperators or SelectOperator.<br>
  * - joinConditions: A list of join conditions extracted from the WHERE clause.<br>
- * - selectionConditions: A mapping of table names to selection conditions.
+ * - selectionConditions: A mapping of table names to selection conditions.<br>
+ * - requiredColumns: The columns the query refers to, see getRequiredColumns().
  */
 
  public class QueryPlanner {
@@ -35,6 +60,7 @@ import java.util.*;
     private final Map<String, Operator> tableScansMapping;
     private final List<Expression> joinConditions;
     private final Map<String, Expression> selectionConditions;
+    private Set<String> requiredColumns;
 
     public QueryPlanner(PlainSelect select) {
         this.select = select;
@@ -67,18 +93,96 @@ import java.util.*;
     }
 
     /**
-     * Builds the table scan operators for the FROM clause tables.
+     * Builds the table scan operators for the FROM clause tables, matching the storage format of each table.
+     * The scans skip the blocks of rows that the zone map of the table excludes for the selection conditions.
+     * Large tables with a selection condition are scanned and filtered by a ParallelScanOperator.
+     * Every scan returns only the columns the query refers to, see getRequiredColumns(), and a scan that answers
+     * the selection condition of its table exactly drops the columns only the condition refers to.
      * If selection conditions are present, a SelectOperator is added on top of the ScanOperator.
      */
     private void buildTableScans() throws IOException {
+        requiredColumns = getRequiredColumns(true);
+        Set<String> resultColumns = getRequiredColumns(false);
+
         // Create ScanOperators for each table in the FROM clause
         for (String table : getFromTables()) {
-            Operator scan = new ScanOperator(table);
-            if (selectionConditions.containsKey(table)) {
-                scan = new SelectOperator(scan, selectionConditions.get(table));
+            tableScansMapping.put(table, createTableScan(table, selectionConditions.get(table), requiredColumns, resultColumns));
+        }
+    }
+
+    /**
+     * Creates the scan of a table, filtered by its selection condition.
+     *
+     * @param table              The name of the table.
+     * @param selectionCondition The selection condition of the table, or null.
+     * @param requiredColumns    The columns the query refers to, or null for all columns.
+     * @param resultColumns      The columns the query refers to outside the selection conditions, or null for all.
+     * @return A BitmapScanOperator if the bitmap indexes of the table select fewer rows than a scan reads, under a
+     *         SelectOperator unless the bitmaps answer the whole condition, otherwise an IndexScanOperator under a
+     *         SelectOperator if an index of the table is cheaper than a scan, otherwise a ParallelScanOperator for
+     *         large tables, otherwise the scan of the table file, under a SelectOperator if there is a selection
+     *         condition.
+     */
+    private Operator createTableScan(String table, Expression selectionCondition, Set<String> requiredColumns,
+                                     Set<String> resultColumns) throws IOException {
+        if (selectionCondition == null) {
+            return ScanOperator.forTable(table, null, requiredColumns);
+        }
+        BitmapScanOperator bitmapScan = BitmapScanOperator.forTable(table, selectionCondition, requiredColumns, resultColumns);
+        if (bitmapScan != null) {
+            return bitmapScan.isExact() ? bitmapScan : new SelectOperator(bitmapScan, selectionCondition);
+        }
+        Operator scan = IndexScanOperator.forTable(table, selectionCondition, requiredColumns);
+        if (scan != null) {
+            return new SelectOperator(scan, selectionCondition);
+        }
+        scan = ParallelScanOperator.forTable(table, selectionCondition, requiredColumns);
+        if (scan != null) {
+            return scan;
+        }
+        return new SelectOperator(ScanOperator.forTable(table, selectionCondition, requiredColumns), selectionCondition);
+    }
+
+    /**
+     * Returns the columns the query refers to, which are all the scans have to return.
+     *
+     * @param withSelectionConditions Whether to include the columns of the selection conditions, or only those of the
+     *                                join conditions of the WHERE clause.
+     * @return The fully qualified names of the columns in the SELECT list, including the SUM expressions, and in the
+     *         WHERE, GROUP BY and ORDER BY clauses, or null if the SELECT list holds * and every column is needed.
+     */
+    private Set<String> getRequiredColumns(boolean withSelectionConditions) {
+        Set<String> columns = new HashSet<>();
+        ExpressionVisitorAdapter columnCollector = new ExpressionVisitorAdapter() {
+            @Override
+            public void visit(Column column) {
+                columns.add(column.getFullyQualifiedName());
+            }
+        };
+
+        for (SelectItem<?> item : select.getSelectItems()) {
+            if (item.getExpression() instanceof AllColumns) {
+                return null;
+            }
+            item.getExpression().accept(columnCollector);
+        }
+        if (withSelectionConditions && select.getWhere() != null) {
+            select.getWhere().accept(columnCollector);
+        }
+        for (Expression joinCondition : joinConditions) {
+            joinCondition.accept(columnCollector);
+        }
+        if (select.getGroupBy() != null) {
+            for (Object expression : select.getGroupBy().getGroupByExpressionList()) {
+                ((Expression) expression).accept(columnCollector);
+            }
+        }
+        if (select.getOrderByElements() != null) {
+            for (OrderByElement element : select.getOrderByElements()) {
+                element.getExpression().accept(columnCollector);
             }
-            tableScansMapping.put(table, scan);
         }
+        return columns;
     }
 
     /**
@@ -87,18 +191,46 @@ import java.util.*;
      * @return The root operator of the operator tree.
      */
     private Operator buildOperatorTree() throws IOException {
-        // Ensure left deep join tree, starting with the first table
-        Iterator<String> tableNames = getFromTables().iterator();
-        Operator root = tableScansMapping.get(tableNames.next());
+        // Ensure left deep join tree, starting with the first table of the cheapest join order
+        List<String> fromTables = getFromTables();
+        JoinOrderOptimizer optimizer = new JoinOrderOptimizer(fromTables, selectionConditions, joinConditions);
+        List<String> joinOrder = optimizer.getJoinOrder();
+        Iterator<String> tableNames = joinOrder.iterator();
+        List<String> joinedTables = new ArrayList<>();
+        joinedTables.add(tableNames.next());
+        Operator root = tableScansMapping.get(joinedTables.get(0));
 
         // Build the join tree by adding JoinOperators with the appropriate join conditions
         while (tableNames.hasNext()) {
             String nextTableName = tableNames.next();
             Operator right = tableScansMapping.get(nextTableName);
             Expression joinCondition = findJoinCondition(root.getTableName(), nextTableName);
-            root = new JoinOperator(root, right, joinCondition); //joinCondition can be null indicating cross product
+            Expression indexJoinCondition = optimizer.getIndexJoinCondition(joinedTables, nextTableName);
+            Operator join = indexJoinCondition != null
+                    ? createIndexJoinOperator(root, nextTableName, indexJoinCondition, joinCondition) : null;
+            root = join != null ? join : createJoinOperator(root, right, joinCondition, !tableNames.hasNext()); //joinCondition can be null indicating cross product
+            joinedTables.add(nextTableName);
+        }
+
+        // Answer SUM functions of constants over the rows selected by bitmap indexes from their number alone
+        if (root instanceof BitmapScanOperator && ((BitmapScanOperator) root).isRowsOnly() && select.getGroupBy() == null
+                && select.getSelectItems().stream().allMatch(item -> item.getExpression() instanceof Function)) {
+            return new BitmapCountOperator((BitmapScanOperator) root, select.getSelectItems());
+        }
+
+        // Restore the column order of the FROM clause if the joins were reordered
+        if (!joinOrder.equals(fromTables)) {
+            List<String> fromSchema = new ArrayList<>();
+            for (String table : fromTables) {
+                fromSchema.addAll(tableScansMapping.get(table).getTableSchema());
+            }
+            root = new ProjectOperator(root, fromSchema);
         }
 
+        // Projection and aggregation-free plans keep the order of the join output, which may already follow ORDER BY
+        boolean hasAggregation = select.getSelectItems().stream().anyMatch(item -> item.toString().contains("SUM")) || select.getGroupBy() != null;
+        boolean sortedForOrderBy = !hasAggregation && isSortedForOrderBy(root);
+
         // Add ProjectOperator on top if the first select item is not AllColumns (there are projection conditions)
         // or if the first item is AllColumn but there are SUM clauses in the select list
         if (!(select.getSelectItems().get(0).getExpression() instanceof AllColumns) ||
@@ -115,8 +247,17 @@ import java.util.*;
             }
         }
 
-        // Add SortOperator on top if there is an ORDER BY clause
-        if (select.getOrderByElements() != null) {
+        // Fuse a single-table Scan -> Select -> Project -> Sum chain into one loop if the mode and the pipeline call for it
+        BlazeDBConfig.ExecutionMode executionMode = BlazeDBConfig.getExecutionMode();
+        if (executionMode != BlazeDBConfig.ExecutionMode.INTERPRETED) {
+            CompiledPipelineOperator compiled = CompiledPipelineOperator.compile(root);
+            if (compiled != null && (executionMode == BlazeDBConfig.ExecutionMode.COMPILED || compiled.isWorthCompiling())) {
+                root = compiled;
+            }
+        }
+
+        // Add SortOperator on top if there is an ORDER BY clause that the plan does not already satisfy
+        if (select.getOrderByElements() != null && !sortedForOrderBy) {
             root = new SortOperator(root, select.getOrderByElements());
         }
 
@@ -128,6 +269,189 @@ import java.util.*;
         return root;
     }
 
+    /**
+     * Creates an index nested loop join of the given input with a table.
+     *
+     * @param left               The outer input of the join.
+     * @param table              The name of the table to join.
+     * @param indexJoinCondition The equality join condition whose column of the table has an index.
+     * @param joinCondition      The join condition between the input and the table.
+     * @return An IndexNestedLoopJoinOperator that probes the index with the values of the outer column and applies
+     *         the join condition and the selection condition of the table, or null if the index is gone.
+     */
+    private Operator createIndexJoinOperator(Operator left, String table, Expression indexJoinCondition,
+                                             Expression joinCondition) throws IOException {
+        Column first = (Column) ((EqualsTo) indexJoinCondition).getLeftExpression();
+        Column second = (Column) ((EqualsTo) indexJoinCondition).getRightExpression();
+        boolean firstIsInner = first.getTable().getName().equals(table);
+        Column innerColumn = firstIsInner ? first : second;
+        Column outerColumn = firstIsInner ? second : first;
+
+        IndexScanOperator innerScan = IndexScanOperator.forLookup(innerColumn.getFullyQualifiedName(), requiredColumns);
+        if (innerScan == null) {
+            return null;
+        }
+        Expression condition = joinCondition;
+        Expression selectionCondition = selectionConditions.get(table);
+        if (selectionCondition != null) {
+            condition = condition == null ? selectionCondition : new AndExpression(condition, selectionCondition);
+        }
+        return new IndexNestedLoopJoinOperator(left, innerScan, outerColumn.getFullyQualifiedName(), condition);
+    }
+
+    /**
+     * Creates the join operator for the given inputs and join condition.
+     *
+     * @param left          The left input of the join.
+     * @param right         The right input of the join.
+     * @param joinCondition The join condition, or null for a cross product.
+     * @param lastJoin      Whether this is the topmost join of the tree.
+     * @return A SortMergeJoinOperator if the join condition contains an equality between the two inputs and
+     *         an input is already sorted on it or it matches the ORDER BY clause, a HashJoinOperator for other
+     *         equalities, an InequalityJoinOperator if it contains a range comparison between the two inputs,
+     *         a BlockNestedLoopJoinOperator otherwise.
+     *
+     * @Description
+     * The equality conditions that follow the sort order of the left or right input are used as the leading
+     * merge keys, so the sorted input is merged without sorting it again.<br>
+     * For the topmost join of a query without aggregation, the equality conditions that follow the ORDER BY
+     * columns are tried as well. If they cover all ORDER BY columns, the join output already has the requested
+     * order and the final SortOperator is dropped.
+     */
+    private Operator createJoinOperator(Operator left, Operator right, Expression joinCondition, boolean lastJoin) throws IOException {
+        List<Expression> equiConditions = new ArrayList<>();
+        for (Expression condition : ConditionExtractor.getConjuncts(joinCondition)) {
+            if (ConditionExtractor.isEquiJoinCondition(condition, left.getTableSchema(), right.getTableSchema())) {
+                equiConditions.add(condition);
+            }
+        }
+        if (equiConditions.isEmpty()) {
+            for (Expression condition : ConditionExtractor.getConjuncts(joinCondition)) {
+                if (ConditionExtractor.isInequalityJoinCondition(condition, left.getTableSchema(), right.getTableSchema())) {
+                    return new InequalityJoinOperator(left, right, joinCondition);
+                }
+            }
+            return new BlockNestedLoopJoinOperator(left, right, joinCondition);
+        }
+
+        List<Expression> mergeKeys = orderJoinConditions(equiConditions, left.getSortOrder());
+        if (mergeKeys.isEmpty()) {
+            mergeKeys = orderJoinConditions(equiConditions, right.getSortOrder());
+        }
+        boolean hasAggregation = select.getSelectItems().stream().anyMatch(item -> item.toString().contains("SUM")) || select.getGroupBy() != null;
+        if (mergeKeys.isEmpty() && lastJoin && !hasAggregation && select.getOrderByElements() != null) {
+            List<String> orderByColumns = new ArrayList<>();
+            for (OrderByElement element : select.getOrderByElements()) {
+                orderByColumns.add(((Column) element.getExpression()).getFullyQualifiedName());
+            }
+            List<Expression> orderByKeys = orderJoinConditions(equiConditions, orderByColumns);
+            if (orderByKeys.size() == orderByColumns.size()) {
+                mergeKeys = orderByKeys;
+            }
+        }
+        if (mergeKeys.isEmpty()) {
+            return new HashJoinOperator(left, right, joinCondition);
+        }
+
+        // Put the merge keys first so they lead the sort order, followed by the remaining conditions
+        Expression mergeCondition = null;
+        List<Expression> conditions = new ArrayList<>(mergeKeys);
+        for (Expression condition : ConditionExtractor.getConjuncts(joinCondition)) {
+            if (!mergeKeys.contains(condition)) {
+                conditions.add(condition);
+            }
+        }
+        for (Expression condition : conditions) {
+            mergeCondition = (mergeCondition == null) ? condition : new AndExpression(mergeCondition, condition);
+        }
+        return new SortMergeJoinOperator(left, right, mergeCondition);
+    }
+
+    /**
+     * Picks the equality join conditions that follow a given column order.
+     *
+     * @param equiConditions The equality conditions between the two inputs of a join.
+     * @param columns        The column order to follow, e.g. the sort order of an input or the ORDER BY columns.
+     * @return For the longest prefix of the columns that each have an equivalent column in one of the equality
+     *         conditions, the matching conditions in column order. Empty if the first column has no match.
+     */
+    private List<Expression> orderJoinConditions(List<Expression> equiConditions, List<String> columns) {
+        List<Expression> ordered = new ArrayList<>();
+        for (String column : columns) {
+            Set<String> equivalentColumns = getEquivalentColumns(column);
+            Expression match = null;
+            for (Expression condition : equiConditions) {
+                EqualsTo equalsTo = (EqualsTo) condition;
+                String first = ((Column) equalsTo.getLeftExpression()).getFullyQualifiedName();
+                String second = ((Column) equalsTo.getRightExpression()).getFullyQualifiedName();
+                if (!ordered.contains(condition) && (equivalentColumns.contains(first) || equivalentColumns.contains(second))) {
+                    match = condition;
+                    break;
+                }
+            }
+            if (match == null) {
+                break;
+            }
+            ordered.add(match);
+        }
+        return ordered;
+    }
+
+    /**
+     * Checks whether the output of an operator already follows the ORDER BY clause.
+     *
+     * @param root The operator whose output would be sorted.
+     * @return True if there is an ORDER BY clause and the sort order of the operator starts with
+     *         the ORDER BY columns or columns equal to them, false otherwise.
+     */
+    private boolean isSortedForOrderBy(Operator root) {
+        if (select.getOrderByElements() == null) {
+            return false;
+        }
+        List<String> sortOrder = root.getSortOrder();
+        List<OrderByElement> orderByElements = select.getOrderByElements();
+        if (sortOrder.size() < orderByElements.size()) {
+            return false;
+        }
+        for (int i = 0; i < orderByElements.size(); i++) {
+            String column = ((Column) orderByElements.get(i).getExpression()).getFullyQualifiedName();
+            if (!getEquivalentColumns(column).contains(sortOrder.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the columns that are equal to a column through the equality join conditions.
+     * Every tuple of a join output holds the same value in all of these columns, so they sort alike.
+     *
+     * @param column The fully qualified name of the column.
+     * @return The column itself and all columns connected to it by equality join conditions.
+     */
+    private Set<String> getEquivalentColumns(String column) {
+        Set<String> equivalentColumns = new HashSet<>();
+        equivalentColumns.add(column);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Expression condition : joinConditions) {
+                if (!(condition instanceof EqualsTo)
+                        || !(((EqualsTo) condition).getLeftExpression() instanceof Column)
+                        || !(((EqualsTo) condition).getRightExpression() instanceof Column)) {
+                    continue;
+                }
+                String first = ((Column) ((EqualsTo) condition).getLeftExpression()).getFullyQualifiedName();
+                String second = ((Column) ((EqualsTo) condition).getRightExpression()).getFullyQualifiedName();
+                if (equivalentColumns.contains(first) && equivalentColumns.add(second)
+                        || equivalentColumns.contains(second) && equivalentColumns.add(first)) {
+                    changed = true;
+                }
+            }
+        }
+        return equivalentColumns;
+    }
+
     /**
      * Finds the join condition between two tables.
      *
@@ -0,0 +1,139 @@
+package ed.inf.adbs.blazedb;
+
+import net.sf.jsqlparser.expression.BinaryExpression;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThan;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThanEquals;
+import net.sf.jsqlparser.expression.operators.relational.MinorThan;
+import net.sf.jsqlparser.expression.operators.relational.MinorThanEquals;
+import net.sf.jsqlparser.schema.Column;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The RangePredicate class holds the range of allowed values per column implied by the conjuncts of a selection
+ * condition that compare a column with a constant (=, <, <=, >, >=). A row outside the range of some column cannot
+ * satisfy the condition, so storage structures can rule out rows with it before the condition is evaluated:
+ * the ZoneMap skips blocks, and the ColumnarScanOperator filters encoded column chunks. The other conjuncts are left
+ * to the SelectOperator, which still evaluates the whole condition. The CSV scans check the ranges while parsing.
+ * <br><br>
+ * The RangePredicate class contains the following methods:<br>
+ * - extract(Expression condition, List<String> schema): Builds the ranges of a condition.<br>
+ * - isConstrained(int column): Checks if a column has a range.<br>
+ * - getLow(int column), getHigh(int column): Return the bounds of the range of a column.<br>
+ * - overlaps(int column, int min, int max): Checks if a range of values may hold allowed values.<br>
+ * - contains(int column, int value): Checks if a value of a column is allowed.
+ * <br><br>
+ * The RangePredicate class also contains the following instance variables:<br>
+ * - low, high: The smallest and largest allowed value of every column.<br>
+ * - constrained: Whether a conjunct restricts the column.
+ */
+public class RangePredicate {
+    private final long[] low;
+    private final long[] high;
+    private final boolean[] constrained;
+
+    private RangePredicate(int columnCount) {
+        this.low = new long[columnCount];
+        this.high = new long[columnCount];
+        this.constrained = new boolean[columnCount];
+        Arrays.fill(low, Long.MIN_VALUE);
+        Arrays.fill(high, Long.MAX_VALUE);
+    }
+
+    /**
+     * Builds the ranges of the column-constant comparisons of a condition.
+     * @param condition The selection condition of a table.
+     * @param schema The schema of the table.
+     * @return The ranges, or null if the condition has no conjunct that compares a column of the table with a constant.
+     */
+    public static RangePredicate extract(Expression condition, List<String> schema) {
+        if (condition == null) {
+            return null;
+        }
+        RangePredicate predicate = new RangePredicate(schema.size());
+        boolean usable = false;
+        for (Expression conjunct : ConditionExtractor.getConjuncts(condition)) {
+            if (!(conjunct instanceof BinaryExpression)) {
+                continue;
+            }
+            Expression left = ((BinaryExpression) conjunct).getLeftExpression();
+            Expression right = ((BinaryExpression) conjunct).getRightExpression();
+            boolean columnOnLeft = left instanceof Column && right instanceof LongValue;
+            if (!columnOnLeft && !(right instanceof Column && left instanceof LongValue)) {
+                continue;
+            }
+            int column = schema.indexOf(((Column) (columnOnLeft ? left : right)).getFullyQualifiedName());
+            if (column < 0) {
+                continue;
+            }
+            long value = ((LongValue) (columnOnLeft ? right : left)).getValue();
+
+            // Normalize to <column> <comparison> <constant>
+            boolean less = columnOnLeft ? conjunct instanceof MinorThan : conjunct instanceof GreaterThan;
+            boolean lessEquals = columnOnLeft ? conjunct instanceof MinorThanEquals : conjunct instanceof GreaterThanEquals;
+            boolean greater = columnOnLeft ? conjunct instanceof GreaterThan : conjunct instanceof MinorThan;
+            boolean greaterEquals = columnOnLeft ? conjunct instanceof GreaterThanEquals : conjunct instanceof MinorThanEquals;
+            if (conjunct instanceof EqualsTo) {
+                predicate.restrict(column, value, value);
+            } else if (less) {
+                predicate.restrict(column, Long.MIN_VALUE, value - 1);
+            } else if (lessEquals) {
+                predicate.restrict(column, Long.MIN_VALUE, value);
+            } else if (greater) {
+                predicate.restrict(column, value + 1, Long.MAX_VALUE);
+            } else if (greaterEquals) {
+                predicate.restrict(column, value, Long.MAX_VALUE);
+            } else {
+                continue;
+            }
+            usable = true;
+        }
+        return usable ? predicate : null;
+    }
+
+    /**
+     * Intersects the range of a column with [low, high].
+     */
+    private void restrict(int column, long low, long high) {
+        this.low[column] = Math.max(this.low[column], low);
+        this.high[column] = Math.min(this.high[column], high);
+        constrained[column] = true;
+    }
+
+    public boolean isConstrained(int column) {
+        return constrained[column];
+    }
+
+    public long getLow(int column) {
+        return low[column];
+    }
+
+    public long getHigh(int column) {
+        return high[column];
+    }
+
+    /**
+     * Checks if the values between min and max of a column may include allowed values.
+     * @param column The index of the column.
+     * @param min The smallest value.
+     * @param max The largest value.
+     * @return True if [min, max] overlaps the range of the column, false otherwise.
+     */
+    public boolean overlaps(int column, int min, int max) {
+        return min <= high[column] && max >= low[column];
+    }
+
+    /**
+     * Checks if a value of a column is allowed.
+     * @param column The index of the column.
+     * @param value The value.
+     * @return True if the value lies within the range of the column or the column has no range, false otherwise.
+     */
+    public boolean contains(int column, int value) {
+        return value >= low[column] && value <= high[column];
+    }
+}
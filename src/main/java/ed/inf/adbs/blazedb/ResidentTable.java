@@ -0,0 +1,103 @@
+package ed.inf.adbs.blazedb;
+
+import ed.inf.adbs.blazedb.operator.Operator;
+import ed.inf.adbs.blazedb.operator.ScanOperator;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The ResidentTable class holds a whole table in memory as one primitive int array per column.
+ * The DatabaseCatalog loads the tables marked as resident once, on first use, and their scans are then served by the
+ * ResidentScanOperator from the arrays instead of reading and parsing the table file again, e.g. on every rescan
+ * of the inner table of a join.
+ * <br><br>
+ * The ResidentTable class contains the following methods:<br>
+ * - load(String tableName): Reads a table from its table file into memory.<br>
+ * - getColumn(int column): Returns the array of a column.<br>
+ * - getRowCount(): Returns the number of rows.<br>
+ * - getColumnCount(): Returns the number of columns.<br>
+ * - getFootprint(): Returns the number of bytes of the column arrays.
+ * <br><br>
+ * The ResidentTable class also contains the following instance variables:<br>
+ * - tableName: The name of the table.<br>
+ * - columns: The values of every column, exactly rowCount long.<br>
+ * - rowCount: The number of rows.
+ */
+public class ResidentTable {
+    private final String tableName;
+    private final int[][] columns;
+    private final int rowCount;
+
+    public ResidentTable(String tableName, int[][] columns, int rowCount) {
+        this.tableName = tableName;
+        this.columns = columns;
+        this.rowCount = rowCount;
+    }
+
+    /**
+     * Reads a table from its table file into memory.
+     * @param tableName The name of the table.
+     * @param maxBytes The largest footprint the table may have.
+     * @return The resident table, or null if the table does not fit into maxBytes.
+     *
+     * @Description
+     * The table file is read in batches by the scan operator for its format, and the column vectors of every batch
+     * are appended to the column arrays, which grow by doubling and are trimmed to the row count at the end.
+     * Reading stops as soon as the rows read exceed maxBytes.
+     */
+    public static ResidentTable load(String tableName, long maxBytes) throws IOException {
+        Operator scan = ScanOperator.forTableFile(tableName);
+        int columnCount = scan.getTableSchema().size();
+        int[][] columns = new int[columnCount][TupleBatch.DEFAULT_CAPACITY];
+        int rowCount = 0;
+        TupleBatch batch;
+        while ((batch = scan.getNextBatch()) != null) {
+            int size = batch.size();
+            if (4L * columnCount * ((long) rowCount + size) > maxBytes) {
+                return null;
+            }
+            if (rowCount + size > columns[0].length) {
+                int capacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(2L * columns[0].length, rowCount + size));
+                for (int column = 0; column < columnCount; column++) {
+                    columns[column] = Arrays.copyOf(columns[column], capacity);
+                }
+            }
+            for (int i = 0; i < size; i++) {
+                int row = batch.getRowIndex(i);
+                for (int column = 0; column < columnCount; column++) {
+                    columns[column][rowCount] = batch.getValue(column, row);
+                }
+                rowCount++;
+            }
+        }
+        for (int column = 0; column < columnCount; column++) {
+            columns[column] = Arrays.copyOf(columns[column], rowCount);
+        }
+        return new ResidentTable(tableName, columns, rowCount);
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public int[] getColumn(int column) {
+        return columns[column];
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    /**
+     * Returns the memory used by the values of the table.
+     * @return The number of bytes of the column arrays.
+     */
+    public long getFootprint() {
+        return 4L * columns.length * rowCount;
+    }
+}
@@ -0,0 +1,410 @@
+package ed.inf.adbs.blazedb;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The RoaringBitmap class is a compressed set of non-negative ints in the style of Roaring bitmaps, used by the
+ * BitmapIndex for the rows of every value.
+ * The ints are split into chunks of 2^16 by their upper 16 bits, and every non-empty chunk is stored in a container
+ * of its lower 16 bits: a sorted array of chars while the chunk holds at most ARRAY_LIMIT ints, or a bitmap of 2^16
+ * bits otherwise. A sparse chunk thus takes two bytes per int, and a dense one at most 8 KB. AND and OR are computed
+ * container by container on the chunks the two sets share, and the result of every pair of containers is stored in
+ * whichever kind is smaller.
+ * <br><br>
+ * The RoaringBitmap class contains the following methods:<br>
+ * - of(int[] values, int from, int to): Creates the set of sorted ints.<br>
+ * - and(RoaringBitmap other), or(RoaringBitmap other): Return the intersection and the union with another set.<br>
+ * - contains(int value): Checks if the set holds an int.<br>
+ * - getCardinality(): Returns the number of ints in the set.<br>
+ * - getBitmapContainerCount(): Returns the number of chunks stored as bitmaps.<br>
+ * - cursor(): Returns a cursor that reads the ints in ascending order.<br>
+ * - getSerializedSize(), serialize(ByteBuffer buffer), deserialize(ByteBuffer buffer): Write and read the set.
+ * <br><br>
+ * The RoaringBitmap class also contains the following instance variables:<br>
+ * - keys: The upper 16 bits of the chunks, ascending.<br>
+ * - containers: The container of every chunk.<br>
+ * - size: The number of chunks.
+ */
+public class RoaringBitmap {
+    public static final int ARRAY_LIMIT = 4096;
+    private static final int BITMAP_WORDS = (1 << 16) / 64;
+
+    private int[] keys;
+    private Container[] containers;
+    private int size;
+
+    public RoaringBitmap() {
+        this.keys = new int[4];
+        this.containers = new Container[4];
+    }
+
+    /**
+     * The lower 16 bits of the ints of a chunk, in a sorted array or in a bitmap, the other one is null.
+     */
+    private static final class Container {
+        private final char[] values;
+        private final long[] words;
+        private final int cardinality;
+
+        private Container(char[] values, long[] words, int cardinality) {
+            this.values = values;
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        /**
+         * Creates the container of the given lower bits in the cheaper representation.
+         */
+        private static Container of(char[] values, int cardinality) {
+            if (cardinality <= ARRAY_LIMIT) {
+                return new Container(values.length == cardinality ? values : Arrays.copyOf(values, cardinality), null, cardinality);
+            }
+            long[] words = new long[BITMAP_WORDS];
+            for (int i = 0; i < cardinality; i++) {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+            return new Container(null, words, cardinality);
+        }
+
+        /**
+         * Creates the container of the bits in the given words, converted to an array if it holds few bits.
+         */
+        private static Container of(long[] words) {
+            int cardinality = 0;
+            for (long word : words) {
+                cardinality += Long.bitCount(word);
+            }
+            if (cardinality > ARRAY_LIMIT) {
+                return new Container(null, words, cardinality);
+            }
+            char[] values = new char[cardinality];
+            int count = 0;
+            for (int word = 0; word < words.length; word++) {
+                long bits = words[word];
+                while (bits != 0) {
+                    values[count++] = (char) (word * 64 + Long.numberOfTrailingZeros(bits));
+                    bits &= bits - 1;
+                }
+            }
+            return new Container(values, null, cardinality);
+        }
+
+        private boolean contains(char value) {
+            return values != null ? Arrays.binarySearch(values, value) >= 0 : (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        /**
+         * Intersects two containers: word by word for two bitmaps, otherwise by walking the array.
+         */
+        private Container and(Container other) {
+            if (words != null && other.words != null) {
+                long[] result = new long[BITMAP_WORDS];
+                for (int i = 0; i < BITMAP_WORDS; i++) {
+                    result[i] = words[i] & other.words[i];
+                }
+                return of(result);
+            }
+            Container array = values != null ? this : other;
+            Container probe = array == this ? other : this;
+            char[] result = new char[array.cardinality];
+            int count = 0;
+            if (probe.values != null) {
+                int i = 0;
+                int j = 0;
+                while (i < array.cardinality && j < probe.cardinality) {
+                    if (array.values[i] < probe.values[j]) {
+                        i++;
+                    } else if (array.values[i] > probe.values[j]) {
+                        j++;
+                    } else {
+                        result[count++] = array.values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < array.cardinality; i++) {
+                    if (probe.contains(array.values[i])) {
+                        result[count++] = array.values[i];
+                    }
+                }
+            }
+            return of(result, count);
+        }
+
+        /**
+         * Unites two containers: by merging two arrays, otherwise word by word into a bitmap.
+         */
+        private Container or(Container other) {
+            if (values != null && other.values != null) {
+                char[] result = new char[cardinality + other.cardinality];
+                int count = 0;
+                int i = 0;
+                int j = 0;
+                while (i < cardinality || j < other.cardinality) {
+                    if (j == other.cardinality || i < cardinality && values[i] < other.values[j]) {
+                        result[count++] = values[i++];
+                    } else if (i == cardinality || values[i] > other.values[j]) {
+                        result[count++] = other.values[j++];
+                    } else {
+                        result[count++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+                return of(result, count);
+            }
+            long[] result = new long[BITMAP_WORDS];
+            for (Container container : new Container[] {this, other}) {
+                if (container.words != null) {
+                    for (int i = 0; i < BITMAP_WORDS; i++) {
+                        result[i] |= container.words[i];
+                    }
+                } else {
+                    for (int i = 0; i < container.cardinality; i++) {
+                        result[container.values[i] >>> 6] |= 1L << container.values[i];
+                    }
+                }
+            }
+            return of(result);
+        }
+
+        /**
+         * Writes the lower bits of the container, from the given position on, as full ints of the given chunk.
+         * @return The number of ints written.
+         */
+        private int read(int position, int high, int[] buffer, int offset, int length) {
+            int count = 0;
+            if (values != null) {
+                while (count < length && position + count < cardinality) {
+                    buffer[offset + count] = high | values[position + count];
+                    count++;
+                }
+                return count;
+            }
+            // The position counts the set bits before the next one to read
+            int skipped = 0;
+            for (int word = 0; word < BITMAP_WORDS && count < length; word++) {
+                long bits = words[word];
+                int bitCount = Long.bitCount(bits);
+                if (skipped + bitCount <= position) {
+                    skipped += bitCount;
+                    continue;
+                }
+                while (bits != 0 && count < length) {
+                    if (skipped++ >= position) {
+                        buffer[offset + count++] = high | (word * 64 + Long.numberOfTrailingZeros(bits));
+                    }
+                    bits &= bits - 1;
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Creates the set of the given ints.
+     * @param values The ints, non-negative and ascending.
+     * @param from The position of the first int.
+     * @param to The position after the last int.
+     * @return The set.
+     */
+    public static RoaringBitmap of(int[] values, int from, int to) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        char[] chunk = new char[1 << 16];
+        int start = from;
+        while (start < to) {
+            int high = values[start] >>> 16;
+            int end = start;
+            while (end < to && values[end] >>> 16 == high) {
+                chunk[end - start] = (char) values[end];
+                end++;
+            }
+            bitmap.append(high, Container.of(chunk, end - start));
+            start = end;
+        }
+        return bitmap;
+    }
+
+    /**
+     * Appends the container of a chunk above all chunks of the set.
+     */
+    private void append(int key, Container container) {
+        if (container == null || container.cardinality == 0) {
+            return;
+        }
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, 2 * size);
+            containers = Arrays.copyOf(containers, 2 * size);
+        }
+        keys[size] = key;
+        containers[size] = container;
+        size++;
+    }
+
+    /**
+     * Returns the intersection of this set and another set.
+     * @param other The other set.
+     * @return A new set with the ints in both sets.
+     */
+    public RoaringBitmap and(RoaringBitmap other) {
+        RoaringBitmap result = new RoaringBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                result.append(keys[i], containers[i].and(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the union of this set and another set.
+     * @param other The other set.
+     * @return A new set with the ints in either set.
+     */
+    public RoaringBitmap or(RoaringBitmap other) {
+        RoaringBitmap result = new RoaringBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || i < size && keys[i] < other.keys[j]) {
+                result.append(keys[i], containers[i]);
+                i++;
+            } else if (i == size || keys[i] > other.keys[j]) {
+                result.append(other.keys[j], other.containers[j]);
+                j++;
+            } else {
+                result.append(keys[i], containers[i].or(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    public boolean contains(int value) {
+        int chunk = Arrays.binarySearch(keys, 0, size, value >>> 16);
+        return value >= 0 && chunk >= 0 && containers[chunk].contains((char) value);
+    }
+
+    public long getCardinality() {
+        long cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality;
+        }
+        return cardinality;
+    }
+
+    /**
+     * Returns the number of chunks stored as bitmaps, the others are stored as arrays.
+     */
+    public int getBitmapContainerCount() {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            count += containers[i].words != null ? 1 : 0;
+        }
+        return count;
+    }
+
+    /**
+     * Returns a cursor that reads the ints of the set in ascending order.
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Reads the ints of the set in ascending order, a buffer at a time.
+     */
+    public final class Cursor {
+        private int chunk;
+        private int position;
+
+        /**
+         * Reads the next ints of the set into a buffer.
+         * @param buffer The buffer to fill.
+         * @return The number of ints read, 0 once all ints are read.
+         */
+        public int read(int[] buffer) {
+            int count = 0;
+            while (count < buffer.length && chunk < size) {
+                int read = containers[chunk].read(position, keys[chunk] << 16, buffer, count, buffer.length - count);
+                count += read;
+                position += read;
+                if (position == containers[chunk].cardinality) {
+                    chunk++;
+                    position = 0;
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Returns the number of bytes serialize() writes.
+     */
+    public int getSerializedSize() {
+        int bytes = 4;
+        for (int i = 0; i < size; i++) {
+            bytes += 8 + (containers[i].values != null ? 2 * containers[i].cardinality : 8 * BITMAP_WORDS);
+        }
+        return bytes;
+    }
+
+    /**
+     * Writes the set: the number of chunks, then the upper bits and the cardinality of every chunk followed by its
+     * sorted lower bits if it holds at most ARRAY_LIMIT ints, or by its bitmap otherwise.
+     * @param buffer The buffer to write to, with getSerializedSize() bytes remaining.
+     */
+    public void serialize(ByteBuffer buffer) {
+        buffer.putInt(size);
+        for (int i = 0; i < size; i++) {
+            Container container = containers[i];
+            buffer.putInt(keys[i]).putInt(container.cardinality);
+            if (container.values != null) {
+                for (int j = 0; j < container.cardinality; j++) {
+                    buffer.putChar(container.values[j]);
+                }
+            } else {
+                for (long word : container.words) {
+                    buffer.putLong(word);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a set written by serialize().
+     * @param buffer The buffer to read from.
+     * @return The set.
+     */
+    public static RoaringBitmap deserialize(ByteBuffer buffer) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        int chunks = buffer.getInt();
+        for (int i = 0; i < chunks; i++) {
+            int key = buffer.getInt();
+            int cardinality = buffer.getInt();
+            if (cardinality <= ARRAY_LIMIT) {
+                char[] values = new char[cardinality];
+                buffer.asCharBuffer().get(values);
+                buffer.position(buffer.position() + 2 * cardinality);
+                bitmap.append(key, new Container(values, null, cardinality));
+            } else {
+                long[] words = new long[BITMAP_WORDS];
+                buffer.asLongBuffer().get(words);
+                buffer.position(buffer.position() + 8 * BITMAP_WORDS);
+                bitmap.append(key, new Container(null, words, cardinality));
+            }
+        }
+        return bitmap;
+    }
+}
@@ -0,0 +1,190 @@
+package ed.inf.adbs.blazedb;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The SpillFile class is a temporary binary file of tuples for operators that do not fit into memory.
+ * Tuples are written once, in order, and can then be read back any number of times.
+ * Every tuple is stored as its number of values followed by the values, as 4-byte big-endian integers,
+ * so no text has to be formatted or parsed again.
+ * The file is created in the spill directory of BlazeDBConfig and is deleted on delete().
+ * The files that are not deleted yet are tracked, so that deleteAll() can remove the leftovers of a failed query,
+ * and a single shutdown hook removes the ones still left when the JVM exits.
+ * <br><br>
+ * The SpillFile class contains the following methods:<br>
+ * - write(Tuple tuple): Appends a tuple to the file.<br>
+ * - finishWriting(): Flushes and closes the file for writing.<br>
+ * - openReader(): Opens a new reader over all tuples of the file.<br>
+ * - delete(): Closes and deletes the file.<br>
+ * - getTupleCount(): Returns the number of tuples written.<br>
+ * - getSize(): Returns the number of bytes written.<br>
+ * - deleteAll(): Closes and deletes all spill files that are not deleted yet.
+ * <br><br>
+ * The SpillFile class also contains the following instance variables:<br>
+ * - file: The temporary file on disk.<br>
+ * - output: The stream the tuples are written to, or null once writing is finished.<br>
+ * - tupleCount: The number of tuples written.<br>
+ * - size: The number of bytes written.<br>
+ * - LIVE_FILES: The spill files that are not deleted yet.
+ */
+public class SpillFile {
+    public static final int BUFFER_SIZE = 64 * 1024;
+    private static final Set<SpillFile> LIVE_FILES = ConcurrentHashMap.newKeySet();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(SpillFile::deleteAll));
+    }
+
+    private final File file;
+    private DataOutputStream output;
+    private long tupleCount;
+    private long size;
+
+    public SpillFile() {
+        try {
+            File directory = new File(BlazeDBConfig.getSpillDirectory());
+            this.file = File.createTempFile("blazedb", ".spill", directory);
+            this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+            LIVE_FILES.add(this);
+        } catch (IOException e) {
+            throw new RuntimeException("Error creating spill file", e);
+        }
+    }
+
+    /**
+     * Appends a tuple to the file.
+     * @param tuple The tuple to write.
+     */
+    public void write(Tuple tuple) {
+        try {
+            output.writeInt(tuple.size());
+            for (int i = 0; i < tuple.size(); i++) {
+                output.writeInt(tuple.getValue(i));
+            }
+            tupleCount++;
+            size += 4L * (tuple.size() + 1);
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing spill file: " + file, e);
+        }
+    }
+
+    /**
+     * Flushes and closes the file for writing. Calling it again has no effect.
+     */
+    public void finishWriting() {
+        if (output == null) {
+            return;
+        }
+        try {
+            output.close();
+            output = null;
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing spill file: " + file, e);
+        }
+    }
+
+    /**
+     * Opens a new reader over all tuples of the file, finishing the writing first.
+     * @return A reader positioned before the first tuple.
+     */
+    public Reader openReader() {
+        finishWriting();
+        try {
+            return new Reader(new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE)), tupleCount);
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading spill file: " + file, e);
+        }
+    }
+
+    /**
+     * Closes and deletes the file.
+     */
+    public void delete() {
+        try {
+            if (output != null) {
+                output.close();
+                output = null;
+            }
+        } catch (IOException e) {
+            // The file is deleted anyway
+        }
+        file.delete();
+        LIVE_FILES.remove(this);
+    }
+
+    /**
+     * Closes and deletes all spill files that are not deleted yet.
+     * The Interpreter calls it once a query is done, so that the spill files of operators that failed
+     * before cleaning up do not pile up in the spill directory.
+     */
+    public static void deleteAll() {
+        for (SpillFile spillFile : new ArrayList<>(LIVE_FILES)) {
+            spillFile.delete();
+        }
+    }
+
+    public long getTupleCount() {
+        return tupleCount;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * The Reader class reads the tuples of a SpillFile back in the order they were written.
+     */
+    public static class Reader implements Closeable {
+        private final DataInputStream input;
+        private long remaining;
+
+        private Reader(DataInputStream input, long tupleCount) {
+            this.input = input;
+            this.remaining = tupleCount;
+        }
+
+        /**
+         * Reads the next tuple of the file.
+         * @return The next tuple, or NULL if all tuples have been read.
+         */
+        public Tuple readTuple() {
+            if (remaining == 0) {
+                return null;
+            }
+            try {
+                int[] values = new int[input.readInt()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = input.readInt();
+                }
+                remaining--;
+                return new Tuple(values);
+            } catch (IOException e) {
+                throw new RuntimeException("Error reading spill file", e);
+            }
+        }
+
+        public boolean hasRemaining() {
+            return remaining > 0;
+        }
+
+        @Override
+        public void close() {
+            try {
+                input.close();
+            } catch (IOException e) {
+                // Nothing left to read
+            }
+        }
+    }
+}
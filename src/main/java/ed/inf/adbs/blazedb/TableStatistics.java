@@ -0,0 +1,135 @@
+package ed.inf.adbs.blazedb;
+
+import ed.inf.adbs.blazedb.operator.Operator;
+import ed.inf.adbs.blazedb.operator.ScanOperator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The TableStatistics class holds the statistics of a table collected by ANALYZE:
+ * the row count and the ColumnStatistics of every column.
+ * <br><br>
+ * The TableStatistics class contains the following methods:<br>
+ * - collect(String tableName): Scans a table once and collects its statistics.<br>
+ * - getTableName(): Returns the name of the table.<br>
+ * - getRowCount(): Returns the number of rows of the table.<br>
+ * - getColumnStatistics(String column): Returns the statistics of a column.<br>
+ * - getAllColumnStatistics(): Returns the statistics of all columns in schema order.
+ * <br><br>
+ * The TableStatistics class also contains the following instance variables:<br>
+ * - tableName: The name of the table.<br>
+ * - rowCount: The number of rows of the table.<br>
+ * - columnStatistics: The statistics of every column in schema order.
+ */
+public class TableStatistics {
+    private static final int HISTOGRAM_BUCKETS = 32;
+    private static final int SAMPLE_SIZE = 16384;
+
+    private final String tableName;
+    private final long rowCount;
+    private final List<ColumnStatistics> columnStatistics;
+
+    public TableStatistics(String tableName, long rowCount, List<ColumnStatistics> columnStatistics) {
+        this.tableName = tableName;
+        this.rowCount = rowCount;
+        this.columnStatistics = columnStatistics;
+    }
+
+    /**
+     * Scans a table once and collects its statistics.
+     * @param tableName The name of the table.
+     * @return The statistics of the table.
+     *
+     * @Description
+     * The row count, minimums and maximums are exact. The distinct counts come from a HyperLogLog sketch per column.
+     * The histograms are built from a uniform reservoir sample of up to SAMPLE_SIZE rows, so tables of any size
+     * are analyzed in constant memory.
+     */
+    public static TableStatistics collect(String tableName) throws IOException {
+        Operator scan = ScanOperator.forTable(tableName);
+        List<String> schema = scan.getTableSchema();
+        int columnCount = schema.size();
+        int[] min = new int[columnCount];
+        int[] max = new int[columnCount];
+        Arrays.fill(min, Integer.MAX_VALUE);
+        Arrays.fill(max, Integer.MIN_VALUE);
+        HyperLogLog[] sketches = new HyperLogLog[columnCount];
+        for (int column = 0; column < columnCount; column++) {
+            sketches[column] = new HyperLogLog();
+        }
+        int[][] samples = new int[columnCount][SAMPLE_SIZE];
+        Random random = new Random(tableName.hashCode());
+
+        long rowCount = 0;
+        Tuple tuple;
+        while ((tuple = scan.getNextTuple()) != null) {
+            // Reservoir sampling: the n-th row replaces a random sampled row with probability SAMPLE_SIZE / n
+            long slot = rowCount < SAMPLE_SIZE ? rowCount : (long) (random.nextDouble() * (rowCount + 1));
+            for (int column = 0; column < columnCount; column++) {
+                int value = tuple.getValue(column);
+                min[column] = Math.min(min[column], value);
+                max[column] = Math.max(max[column], value);
+                sketches[column].add(value);
+                if (slot < SAMPLE_SIZE) {
+                    samples[column][(int) slot] = value;
+                }
+            }
+            rowCount++;
+        }
+
+        int sampleSize = (int) Math.min(rowCount, SAMPLE_SIZE);
+        List<ColumnStatistics> columnStatistics = new ArrayList<>();
+        for (int column = 0; column < columnCount; column++) {
+            int[] sample = Arrays.copyOf(samples[column], sampleSize);
+            Arrays.sort(sample);
+            int bucketCount = Math.min(HISTOGRAM_BUCKETS, sampleSize);
+            int[] bounds = new int[bucketCount > 0 ? bucketCount + 1 : 0];
+            for (int i = 0; i < bounds.length; i++) {
+                bounds[i] = sample[(int) ((long) i * (sampleSize - 1) / bucketCount)];
+            }
+            if (bounds.length > 0) {
+                // The sample may miss the extremes
+                bounds[0] = min[column];
+                bounds[bounds.length - 1] = max[column];
+            }
+            // The sketch may overestimate, but never more values exist than rows or integers in the range
+            if (rowCount == 0) {
+                columnStatistics.add(new ColumnStatistics(schema.get(column), 0, 0, 0, bounds));
+                continue;
+            }
+            long distinctCount = Math.min(sketches[column].estimate(), Math.min(rowCount, (long) max[column] - min[column] + 1));
+            columnStatistics.add(new ColumnStatistics(schema.get(column), min[column], max[column], distinctCount, bounds));
+        }
+        return new TableStatistics(tableName, rowCount, columnStatistics);
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns the statistics of a column.
+     * @param column The fully qualified name of the column.
+     * @return The statistics of the column, or null if the table has no such column.
+     */
+    public ColumnStatistics getColumnStatistics(String column) {
+        for (ColumnStatistics statistics : columnStatistics) {
+            if (statistics.getColumn().equals(column)) {
+                return statistics;
+            }
+        }
+        return null;
+    }
+
+    public List<ColumnStatistics> getAllColumnStatistics() {
+        return columnStatistics;
+    }
+}
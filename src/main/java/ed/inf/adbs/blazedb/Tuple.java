@@ -1,42 +1,89 @@
 package ed.inf.adbs.blazedb;
 
-import java.util.*;
+import java.util.Arrays;
 
 /**
  * The Tuple class represents a row of data.
- * Each Tuple object contains a list of integer values.
+ * Each Tuple object is backed by a primitive int array, so no boxing happens when tuples are created,
+ * combined or compared.
  * It provides methods to access the values and to compare Tuples.
  * <br><br>
  * The Tuple class contains the following methods:<br>
  * - getValue(int index) returns the value at the specified index.<br>
- * - getValues() returns an unmodifiable list of values.<br>
+ * - size() returns the number of values in the Tuple.<br>
+ * - getValues() returns a copy of the values as an int array.<br>
+ * - concat(Tuple other) returns a new Tuple with the values of this Tuple followed by the values of the other.<br>
+ * - project(int[] indexes) returns a new Tuple containing only the values at the given indexes.<br>
+ * - estimateSize() returns the approximate number of bytes the Tuple occupies on the heap.<br>
  * - toString() returns a string representation of the Tuple.<br>
  * - equals(Object o) checks if the Tuple is equal to another object.<br>
  * - hashCode() returns the hash code of the Tuple.<br>
  *
  * With the last 3 methods overridden, the Tuple instances can be used in collections like HashMap and HashSet.
+ * The array passed to the constructor is owned by the Tuple afterwards and must not be modified by the caller.
  */
 
 public class Tuple {
-    private List<Integer> values;
+    private final int[] values;
 
-    public Tuple() {}
+    public Tuple(int[] values) {
+        this.values = values;
+    }
+
+    public int getValue(int index) {
+        return values[index];
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    public int[] getValues() {
+        return values.clone();
+    }
 
-    public Tuple(List<Integer> values) {
-        this.values = new ArrayList<>(values);
+    /**
+     * Concatenates this tuple with another tuple, e.g. to build the output of a join.
+     * @param other The tuple whose values are appended after the values of this tuple.
+     * @return A new Tuple holding the values of both tuples.
+     */
+    public Tuple concat(Tuple other) {
+        int[] combined = Arrays.copyOf(values, values.length + other.values.length);
+        System.arraycopy(other.values, 0, combined, values.length, other.values.length);
+        return new Tuple(combined);
     }
 
-    public Integer getValue(int index) {
-        return values.get(index);
+    /**
+     * Projects this tuple onto the given column indexes.
+     * @param indexes The indexes of the values to keep, in output order.
+     * @return A new Tuple holding only the selected values.
+     */
+    public Tuple project(int[] indexes) {
+        int[] projected = new int[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            projected[i] = values[indexes[i]];
+        }
+        return new Tuple(projected);
     }
 
-    public List<Integer> getValues() {
-        return Collections.unmodifiableList(values);
+    /**
+     * Estimates the heap footprint of this tuple, used by operators that buffer tuples within a memory budget.
+     * @return The approximate size in bytes of the Tuple object and its value array.
+     */
+    public long estimateSize() {
+        return 16 + 16 + 4L * values.length;
     }
 
     @Override
     public String toString() {
-        return String.join(", ", values.stream().map(String::valueOf).toArray(String[]::new));
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(values[i]);
+        }
+        return builder.toString();
     }
 
     @Override
@@ -44,11 +91,11 @@ public class Tuple {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Tuple tuple = (Tuple) o;
-        return Objects.equals(values, tuple.values);
+        return Arrays.equals(values, tuple.values);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(values);
+        return Arrays.hashCode(values);
     }
 }
@@ -0,0 +1,144 @@
+package ed.inf.adbs.blazedb;
+
+/**
+ * The TupleBatch class represents a batch of rows stored column by column.
+ * Each column is a primitive int vector, and a selection vector lists the rows of the batch
+ * that are still alive, so filters can drop rows without copying any column data.
+ * <br><br>
+ * The TupleBatch class contains the following methods:<br>
+ * - size(): Returns the number of selected rows in the batch.<br>
+ * - getRowIndex(int i): Returns the physical row index of the i-th selected row.<br>
+ * - getValue(int column, int row): Returns the value of a column at a physical row index.<br>
+ * - getColumn(int column): Returns the vector of a column.<br>
+ * - getTuple(int i): Materializes the i-th selected row as a Tuple.<br>
+ * - appendRow(...): Appends a row at the end of the batch.<br>
+ * - setSelection(int[] selection, int count): Replaces the selection vector.<br>
+ * - isFull(): Checks if no more rows can be appended.
+ * <br><br>
+ * The TupleBatch class also contains the following instance variables:<br>
+ * - columns: The column vectors of the batch.<br>
+ * - capacity: The maximum number of rows the column vectors can hold.<br>
+ * - rowCount: The number of physical rows in the column vectors.<br>
+ * - selection: The selection vector, or null when every physical row is selected.<br>
+ * - selectedCount: The number of entries in the selection vector.
+ */
+public class TupleBatch {
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final int[][] columns;
+    private final int capacity;
+    private int rowCount;
+    private int[] selection;
+    private int selectedCount;
+
+    /**
+     * Creates an empty batch with the given number of columns and the default capacity.
+     * @param columnCount The number of columns.
+     */
+    public TupleBatch(int columnCount) {
+        this.columns = new int[columnCount][DEFAULT_CAPACITY];
+        this.capacity = DEFAULT_CAPACITY;
+        this.rowCount = 0;
+    }
+
+    /**
+     * Creates a batch over existing column vectors, e.g. to reorder the columns of another batch.
+     * @param columns The column vectors.
+     * @param rowCount The number of physical rows in the column vectors.
+     * @param selection The selection vector, or null when every row is selected.
+     * @param selectedCount The number of entries in the selection vector.
+     */
+    public TupleBatch(int[][] columns, int rowCount, int[] selection, int selectedCount) {
+        this.columns = columns;
+        this.capacity = rowCount;
+        this.rowCount = rowCount;
+        this.selection = selection;
+        this.selectedCount = selectedCount;
+    }
+
+    public int size() {
+        return selection == null ? rowCount : selectedCount;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    public int[][] getColumns() {
+        return columns;
+    }
+
+    public int[] getColumn(int column) {
+        return columns[column];
+    }
+
+    public int[] getSelection() {
+        return selection;
+    }
+
+    public int getRowIndex(int i) {
+        return selection == null ? i : selection[i];
+    }
+
+    public int getValue(int column, int row) {
+        return columns[column][row];
+    }
+
+    public boolean isFull() {
+        return rowCount == capacity;
+    }
+
+    /**
+     * Replaces the selection vector of the batch.
+     * @param selection The physical row indexes that remain selected, in ascending order.
+     * @param count The number of valid entries in the selection vector.
+     */
+    public void setSelection(int[] selection, int count) {
+        this.selection = selection;
+        this.selectedCount = count;
+    }
+
+    /**
+     * Materializes the i-th selected row of the batch as a Tuple.
+     * @param i The position in the selection vector.
+     * @return The row as a Tuple.
+     */
+    public Tuple getTuple(int i) {
+        int row = getRowIndex(i);
+        int[] values = new int[columns.length];
+        for (int column = 0; column < columns.length; column++) {
+            values[column] = columns[column][row];
+        }
+        return new Tuple(values);
+    }
+
+    /**
+     * Appends a tuple at the end of the batch.
+     * @param tuple The tuple to append.
+     */
+    public void appendRow(Tuple tuple) {
+        for (int column = 0; column < columns.length; column++) {
+            columns[column][rowCount] = tuple.getValue(column);
+        }
+        rowCount++;
+    }
+
+    /**
+     * Sets the number of physical rows, for operators that fill the column vectors directly.
+     * @param rowCount The number of filled rows.
+     */
+    public void setRowCount(int rowCount) {
+        this.rowCount = rowCount;
+    }
+
+    /**
+     * Removes the last appended row, e.g. when it turns out not to satisfy a join condition.
+     */
+    public void removeLastRow() {
+        rowCount--;
+    }
+}
@@ -0,0 +1,315 @@
+package ed.inf.adbs.blazedb;
+
+import ed.inf.adbs.blazedb.operator.ColumnarScanOperator;
+import ed.inf.adbs.blazedb.operator.MappedScanOperator;
+import net.sf.jsqlparser.expression.Expression;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The ZoneMap class holds the minimum and maximum of every column for every block of consecutive rows of a table file,
+ * so scans can skip the blocks that cannot satisfy a selection condition.
+ * For a columnar file every page is a block and its offset is the page number. For a CSV file every block holds
+ * BLOCK_ROWS rows and its offset is the byte offset of its first row.
+ * <br><br>
+ * Zone maps are built by the ColumnarConverter when it writes a columnar file and by ANALYZE for every table.
+ * They are saved next to the table file as data/Table.csv.zonemap or data/Table.bin.zonemap, together with the size
+ * and modification time of the table file, so a zone map of a file that has changed since is ignored.
+ * <br><br>
+ * The ZoneMap class contains the following methods:<br>
+ * - collect(String tableName): Scans a table and builds the zone map of its current file.<br>
+ * - selectBlocks(Expression condition, List<String> schema): Returns the blocks that may satisfy a condition.<br>
+ * - getBlockCount(), getBlockRows(), getBlockOffset(int block), getBlockRowCount(int block): Describe the blocks.<br>
+ * - getMin(int block, int column), getMax(int block, int column): Return the bounds of a column in a block.<br>
+ * - matches(File tableFile): Checks if the zone map was built from the current version of a table file.<br>
+ * - save(String path), load(String path): Write and read the zone map file.<br>
+ * - getPath(String tableFilePath): Returns the path of the zone map file of a table file.
+ * <br><br>
+ * The ZoneMap class also contains the following instance variables:<br>
+ * - fileSize, lastModified: The size and modification time of the table file the zone map was built from.<br>
+ * - blockRows: The number of rows of every block but the last.<br>
+ * - rowCount: The number of rows of the table.<br>
+ * - offsets: The offset of every block.<br>
+ * - min, max: The minimum and maximum of every column, indexed by block and column.
+ */
+public class ZoneMap {
+    public static final int BLOCK_ROWS = 1024;
+
+    private final long fileSize;
+    private final long lastModified;
+    private final int blockRows;
+    private final long rowCount;
+    private final long[] offsets;
+    private final int[][] min;
+    private final int[][] max;
+
+    public ZoneMap(long fileSize, long lastModified, int blockRows, long rowCount, long[] offsets, int[][] min, int[][] max) {
+        this.fileSize = fileSize;
+        this.lastModified = lastModified;
+        this.blockRows = blockRows;
+        this.rowCount = rowCount;
+        this.offsets = offsets;
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * Scans a table and builds the zone map of the file it is currently stored in.
+     * @param tableName The name of the table.
+     * @return The zone map of the table file.
+     *
+     * @Description
+     * A columnar table is read page by page and every page becomes a block. A CSV table is read with the
+     * MappedScanOperator, and the file position is recorded before the first row of every block.
+     */
+    public static ZoneMap collect(String tableName) throws IOException {
+        DatabaseCatalog catalog = DatabaseCatalog.getInstance("");
+        int columnCount = catalog.getTableSchema(tableName).size();
+        if (catalog.isColumnar(tableName)) {
+            String path = catalog.getColumnarFilePath(tableName);
+            ColumnarScanOperator scan = new ColumnarScanOperator(tableName, path);
+            Builder builder = new Builder(columnCount, new ColumnarFile(path).getRowsPerPage());
+            TupleBatch batch;
+            for (int page = 0; (batch = scan.getNextBatch()) != null; page++) {
+                builder.beginBlock(page);
+                builder.addColumns(batch.getColumns(), batch.getRowCount());
+            }
+            return builder.build(new File(path));
+        }
+
+        MappedScanOperator scan = new MappedScanOperator(tableName);
+        Builder builder = new Builder(columnCount, BLOCK_ROWS);
+        int[] values = new int[columnCount];
+        long row = 0;
+        while (true) {
+            long offset = scan.getFilePosition();
+            Tuple tuple = scan.getNextTuple();
+            if (tuple == null) {
+                break;
+            }
+            if (row++ % BLOCK_ROWS == 0) {
+                builder.beginBlock(offset);
+            }
+            for (int column = 0; column < columnCount; column++) {
+                values[column] = tuple.getValue(column);
+            }
+            builder.addRow(values);
+        }
+        return builder.build(new File(catalog.getTableFilePath(tableName)));
+    }
+
+    /**
+     * Returns the blocks that may hold rows satisfying a condition.
+     * @param condition The selection condition of the table.
+     * @param schema The schema of the table.
+     * @return The numbers of the blocks in ascending order, or null if the condition has no conjunct
+     *         that zone maps can check, so every block has to be scanned.
+     *
+     * @Description
+     * The conjuncts that compare a column with a constant (=, <, <=, >, >=) are turned into a RangePredicate.
+     * A block is skipped if, for some column, the range does not overlap the minimum and maximum
+     * of the column in the block. The other conjuncts are left to the SelectOperator.
+     */
+    public int[] selectBlocks(Expression condition, List<String> schema) {
+        RangePredicate predicate = RangePredicate.extract(condition, schema);
+        if (predicate == null) {
+            return null;
+        }
+
+        int[] blocks = new int[offsets.length];
+        int count = 0;
+        for (int block = 0; block < offsets.length; block++) {
+            boolean overlaps = true;
+            for (int column = 0; column < schema.size() && overlaps; column++) {
+                overlaps = predicate.overlaps(column, min[block][column], max[block][column]);
+            }
+            if (overlaps) {
+                blocks[count++] = block;
+            }
+        }
+        return Arrays.copyOf(blocks, count);
+    }
+
+    public int getBlockCount() {
+        return offsets.length;
+    }
+
+    public int getBlockRows() {
+        return blockRows;
+    }
+
+    public long getBlockOffset(int block) {
+        return offsets[block];
+    }
+
+    /**
+     * Returns the number of rows of a block, which is blockRows for every block but the last.
+     * @param block The number of the block.
+     * @return The number of rows of the block.
+     */
+    public int getBlockRowCount(int block) {
+        return (int) Math.min(blockRows, rowCount - (long) block * blockRows);
+    }
+
+    public int getMin(int block, int column) {
+        return min[block][column];
+    }
+
+    public int getMax(int block, int column) {
+        return max[block][column];
+    }
+
+    /**
+     * Checks if the zone map was built from the current version of a table file.
+     * @param tableFile The table file.
+     * @return True if the size and modification time of the file are unchanged, false otherwise.
+     */
+    public boolean matches(File tableFile) {
+        return tableFile.length() == fileSize && tableFile.lastModified() == lastModified;
+    }
+
+    /**
+     * Returns the path of the zone map file of a table file.
+     * @param tableFilePath The path of the table file.
+     * @return The path of the zone map file.
+     */
+    public static String getPath(String tableFilePath) {
+        return tableFilePath + ".zonemap";
+    }
+
+    /**
+     * Saves the zone map in binary form: the header fields, the block count and, for every block,
+     * its offset followed by the minimum and maximum of every column.
+     * @param path The path of the zone map file.
+     */
+    public void save(String path) throws IOException {
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)))) {
+            int columnCount = offsets.length > 0 ? min[0].length : 0;
+            output.writeLong(fileSize);
+            output.writeLong(lastModified);
+            output.writeInt(blockRows);
+            output.writeLong(rowCount);
+            output.writeInt(columnCount);
+            output.writeInt(offsets.length);
+            for (int block = 0; block < offsets.length; block++) {
+                output.writeLong(offsets[block]);
+                for (int column = 0; column < columnCount; column++) {
+                    output.writeInt(min[block][column]);
+                    output.writeInt(max[block][column]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads a zone map saved by save().
+     * @param path The path of the zone map file.
+     * @return The zone map.
+     */
+    public static ZoneMap load(String path) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(path)))) {
+            long fileSize = input.readLong();
+            long lastModified = input.readLong();
+            int blockRows = input.readInt();
+            long rowCount = input.readLong();
+            int columnCount = input.readInt();
+            int blockCount = input.readInt();
+            long[] offsets = new long[blockCount];
+            int[][] min = new int[blockCount][columnCount];
+            int[][] max = new int[blockCount][columnCount];
+            for (int block = 0; block < blockCount; block++) {
+                offsets[block] = input.readLong();
+                for (int column = 0; column < columnCount; column++) {
+                    min[block][column] = input.readInt();
+                    max[block][column] = input.readInt();
+                }
+            }
+            return new ZoneMap(fileSize, lastModified, blockRows, rowCount, offsets, min, max);
+        }
+    }
+
+    /**
+     * The Builder class collects the bounds of the blocks of a table file while it is written or scanned.
+     */
+    public static class Builder {
+        private final int columnCount;
+        private final int blockRows;
+        private final List<Long> offsets = new ArrayList<>();
+        private final List<int[]> min = new ArrayList<>();
+        private final List<int[]> max = new ArrayList<>();
+        private long rowCount;
+
+        /**
+         * Creates a builder for blocks of the given number of rows.
+         * @param columnCount The number of columns of the table.
+         * @param blockRows The number of rows of every block but the last.
+         */
+        public Builder(int columnCount, int blockRows) {
+            this.columnCount = columnCount;
+            this.blockRows = blockRows;
+        }
+
+        /**
+         * Starts a new block.
+         * @param offset The offset of the block in the table file.
+         */
+        public void beginBlock(long offset) {
+            offsets.add(offset);
+            int[] blockMin = new int[columnCount];
+            int[] blockMax = new int[columnCount];
+            Arrays.fill(blockMin, Integer.MAX_VALUE);
+            Arrays.fill(blockMax, Integer.MIN_VALUE);
+            min.add(blockMin);
+            max.add(blockMax);
+        }
+
+        /**
+         * Adds a row to the current block.
+         * @param values The values of the row.
+         */
+        public void addRow(int[] values) {
+            int[] blockMin = min.get(min.size() - 1);
+            int[] blockMax = max.get(max.size() - 1);
+            for (int column = 0; column < columnCount; column++) {
+                blockMin[column] = Math.min(blockMin[column], values[column]);
+                blockMax[column] = Math.max(blockMax[column], values[column]);
+            }
+            rowCount++;
+        }
+
+        /**
+         * Adds the first rows of the given column vectors to the current block.
+         * @param columns The column vectors.
+         * @param rows The number of rows to add.
+         */
+        public void addColumns(int[][] columns, int rows) {
+            int[] blockMin = min.get(min.size() - 1);
+            int[] blockMax = max.get(max.size() - 1);
+            for (int column = 0; column < columnCount; column++) {
+                int[] vector = columns[column];
+                for (int row = 0; row < rows; row++) {
+                    blockMin[column] = Math.min(blockMin[column], vector[row]);
+                    blockMax[column] = Math.max(blockMax[column], vector[row]);
+                }
+            }
+            rowCount += rows;
+        }
+
+        /**
+         * Builds the zone map of the given table file, which must not change afterwards.
+         * @param tableFile The table file the blocks were collected from.
+         * @return The zone map.
+         */
+        public ZoneMap build(File tableFile) {
+            long[] blockOffsets = new long[offsets.size()];
+            for (int block = 0; block < blockOffsets.length; block++) {
+                blockOffsets[block] = offsets.get(block);
+            }
+            return new ZoneMap(tableFile.length(), tableFile.lastModified(), blockRows, rowCount, blockOffsets,
+                    min.toArray(new int[0][]), max.toArray(new int[0][]));
+        }
+    }
+}
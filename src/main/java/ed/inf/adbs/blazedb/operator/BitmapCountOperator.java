@@ -0,0 +1,90 @@
+package ed.inf.adbs.blazedb.operator;
+
+import ed.inf.adbs.blazedb.ExpressionEvaluator;
+import ed.inf.adbs.blazedb.Tuple;
+import net.sf.jsqlparser.statement.select.SelectItem;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The BitmapCountOperator class answers a query whose SELECT list only holds SUM functions of constants, such as
+ * SUM(1), over a single table filtered by a BitmapScanOperator, from the number of rows in the bitmap alone.
+ * The sum of a constant over n rows is the constant times n, so no row of the table is read. Like the SumOperator
+ * without GROUP BY, it returns a single tuple, or none if no row is selected.
+ * <br><br>
+ * The BitmapCountOperator class contains the following methods:<br>
+ * - getNextTuple(): Retrieves the tuple of the sums.<br>
+ * - reset(): Resets the iterator to the start.<br>
+ * - getTableName(): Returns the name of the table.<br>
+ * - getTableSchema(): Returns the SUM functions of the SELECT list.
+ * <br><br>
+ * The BitmapCountOperator class also contains the following instance variables:<br>
+ * - scan: The exact bitmap scan of the table that counts the rows without reading them.<br>
+ * - selectItems: The SUM functions of the SELECT list.<br>
+ * - schema: The names of the SUM functions.<br>
+ * - returned: Whether the tuple has been returned.
+ */
+public class BitmapCountOperator extends Operator {
+    private final BitmapScanOperator scan;
+    private final List<SelectItem<?>> selectItems;
+    private final List<String> schema;
+    private boolean returned;
+
+    /**
+     * Creates the count of the rows of a bitmap scan.
+     * @param scan The bitmap scan, exact and only counting the rows.
+     * @param selectItems The SELECT list, SUM functions of constants only.
+     */
+    public BitmapCountOperator(BitmapScanOperator scan, List<SelectItem<?>> selectItems) {
+        if (!scan.isExact() || !scan.isRowsOnly()) {
+            throw new RuntimeException("A bitmap count needs an exact scan that reads no rows: " + scan.getTableName());
+        }
+        this.scan = scan;
+        this.selectItems = selectItems;
+        this.schema = new ArrayList<>();
+        for (SelectItem<?> item : selectItems) {
+            schema.add(item.toString());
+        }
+    }
+
+    /**
+     * Retrieves the tuple of the sums.
+     * @return The constant of every SUM function times the number of rows, or NULL if no row is selected or the
+     *         tuple has been returned.
+     *
+     * @Description
+     * The constant is computed by the ExpressionEvaluator of the SUM function on a tuple of the scan, since it refers
+     * to no column. The product wraps around like the int sum of the SumOperator.
+     */
+    @Override
+    public Tuple getNextTuple() {
+        long rowCount = scan.getRowCount();
+        if (returned || rowCount == 0) {
+            return null;
+        }
+        returned = true;
+        Tuple row = new Tuple(new int[scan.getTableSchema().size()]);
+        int[] sums = new int[selectItems.size()];
+        for (int i = 0; i < sums.length; i++) {
+            int value = ExpressionEvaluator.compile(selectItems.get(i).getExpression(), scan.getTableSchema()).evaluate(row);
+            sums[i] = (int) (value * rowCount);
+        }
+        return new Tuple(sums);
+    }
+
+    @Override
+    public void reset() {
+        returned = false;
+    }
+
+    @Override
+    public String getTableName() {
+        return scan.getTableName();
+    }
+
+    @Override
+    public List<String> getTableSchema() {
+        return schema;
+    }
+}
@@ -0,0 +1,290 @@
+package ed.inf.adbs.blazedb.operator;
+
+import ed.inf.adbs.blazedb.BitmapIndex;
+import ed.inf.adbs.blazedb.DatabaseCatalog;
+import ed.inf.adbs.blazedb.RangePredicate;
+import ed.inf.adbs.blazedb.RoaringBitmap;
+import ed.inf.adbs.blazedb.TupleBatch;
+import net.sf.jsqlparser.expression.BinaryExpression;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.expression.Parenthesis;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.conditional.OrExpression;
+import net.sf.jsqlparser.expression.operators.relational.NotEqualsTo;
+import net.sf.jsqlparser.schema.Column;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The BitmapScanOperator class scans the rows of a table selected by the BitmapIndex indexes of its columns.
+ * The selection condition is answered on the bitmaps before any row is read: every comparison of a column with a
+ * bitmap index and a constant selects the union of the bitmaps of the values it accepts, a conjunction the
+ * intersection and a disjunction the union of the rows of its conditions. The rows are then fetched in file order
+ * by a RowFetcher, like the rows of an IndexScanOperator.
+ * If the bitmaps answer the whole condition, the scan is exact and needs no SelectOperator on top, and if the query
+ * needs no column of the table either, the rows are counted without being read, so the QueryPlanner answers a SUM of
+ * constants from the number of rows in the bitmap with a BitmapCountOperator. Otherwise the rows are a superset of the
+ * selection and have to be filtered. It extends the ScanOperator, so it is also fused by the CompiledPipelineOperator.
+ * <br><br>
+ * The BitmapScanOperator class extends the ScanOperator class and implements the following methods:<br>
+ * - forTable(String tableName, Expression selectionCondition, Collection<String> columns,
+ *   Collection<String> resultColumns): Creates a bitmap scan if it is cheaper than a scan of the table.<br>
+ * - select(Expression condition, List<String> tableSchema, Map<String, BitmapIndex> indexes, boolean[] exact):
+ *   Returns the rows that may satisfy a condition according to the bitmaps.<br>
+ * - getNextBatch(): Retrieves the next batch of selected rows.<br>
+ * - setColumns(Collection<String> columns): Restricts the output to the given columns.<br>
+ * - getRowCount(): Returns the number of selected rows.<br>
+ * - isExact(): Checks if the rows satisfy the whole selection condition.<br>
+ * - isRowsOnly(): Checks if the rows are counted without being read.<br>
+ * - reset(): Resets the iterator to the first selected row.
+ * <br><br>
+ * The BitmapScanOperator class also contains the following instance variables:<br>
+ * - rows: The numbers of the selected rows.<br>
+ * - rowIndex: A bitmap index of the table, which holds the row ids of the rows.<br>
+ * - exact: Whether the bitmaps answer the whole selection condition.<br>
+ * - fetcher: The reader of the selected rows.<br>
+ * - tableColumns: The schema of the table.<br>
+ * - rowsOnly: Whether the query needs no column of the table, so the rows are not read.<br>
+ * - cursor, rowNumbers, bufferedRows, bufferPosition: The cursor over the rows and the row numbers read from it.<br>
+ * - blockRowIds, blockStart, blockSize: The row ids of the block of consecutive rows read last.
+ */
+public class BitmapScanOperator extends ScanOperator {
+    static final double BITMAP_ROW_COST = 2.0;
+    private static final int ROW_ID_BLOCK = 512;
+
+    private final RoaringBitmap rows;
+    private final BitmapIndex rowIndex;
+    private final boolean exact;
+    private final RowFetcher fetcher;
+    private final List<String> tableColumns;
+    private boolean rowsOnly;
+    private RoaringBitmap.Cursor cursor;
+    private final int[] rowNumbers = new int[TupleBatch.DEFAULT_CAPACITY];
+    private int bufferedRows;
+    private int bufferPosition;
+    private final long[] blockRowIds = new long[ROW_ID_BLOCK];
+    private int blockStart;
+    private int blockSize;
+
+    /**
+     * Creates a scan of the given rows of a table.
+     * @param tableName The name of the table.
+     * @param rows The numbers of the rows to return.
+     * @param rowIndex A bitmap index of the table, built from the current table file.
+     * @param exact Whether the rows satisfy the whole selection condition.
+     */
+    public BitmapScanOperator(String tableName, RoaringBitmap rows, BitmapIndex rowIndex, boolean exact) throws IOException {
+        super(tableName, false);
+        this.rows = rows;
+        this.rowIndex = rowIndex;
+        this.exact = exact;
+        this.fetcher = new RowFetcher(tableName);
+        this.tableColumns = DatabaseCatalog.getInstance("").getTableSchema(tableName);
+        setColumns(getTableSchema());
+        reset();
+    }
+
+    /**
+     * Creates a bitmap scan for the selection condition of a table.
+     * @param tableName The name of the table.
+     * @param selectionCondition The selection condition pushed down to the table, or null.
+     * @param columns The columns the query needs, including those of the selection condition, or null for all.
+     * @param resultColumns The columns the query needs above the selection, or null for all.
+     * @return The bitmap scan, returning the resultColumns if it is exact and the columns otherwise, or null if no
+     *         bitmap index of the table answers a comparison of the condition or a scan of the table is cheaper.
+     *
+     * @Description
+     * The rows are selected with select() first, since their number is the cost of the scan: BITMAP_ROW_COST per row,
+     * between the cost of a clustered and an unclustered index scan since the rows are read in file order but
+     * spread over the file, or nothing if the rows are only counted. A scan of the table costs one unit per row, as
+     * for the IndexScanOperator. Resident tables are scanned from memory and never through an index.
+     */
+    public static BitmapScanOperator forTable(String tableName, Expression selectionCondition, Collection<String> columns,
+                                              Collection<String> resultColumns) throws IOException {
+        DatabaseCatalog catalog = DatabaseCatalog.getInstance("");
+        if (selectionCondition == null || catalog.getResidentTable(tableName) != null
+                || catalog.getBitmapIndexedColumns(tableName).isEmpty()) {
+            return null;
+        }
+        Map<String, BitmapIndex> indexes = new HashMap<>();
+        for (String column : catalog.getBitmapIndexedColumns(tableName)) {
+            indexes.put(column, catalog.getBitmapIndex(column));
+        }
+        List<String> tableSchema = catalog.getTableSchema(tableName);
+        boolean[] exact = {true};
+        RoaringBitmap rows = select(selectionCondition, tableSchema, indexes, exact);
+        if (rows == null) {
+            return null;
+        }
+        Collection<String> scanColumns = exact[0] ? resultColumns : columns;
+        boolean rowsOnly = scanColumns != null && Collections.disjoint(scanColumns, tableSchema);
+        double cost = rowsOnly ? 0 : rows.getCardinality() * BITMAP_ROW_COST;
+        if (cost >= catalog.getTableRowCount(tableName) * IndexScanOperator.SCAN_ROW_COST) {
+            return null;
+        }
+        BitmapScanOperator scan = new BitmapScanOperator(tableName, rows, indexes.values().iterator().next(), exact[0]);
+        if (scanColumns != null) {
+            scan.setColumns(scanColumns);
+        }
+        return scan;
+    }
+
+    /**
+     * Returns the rows that may satisfy a condition according to the bitmap indexes of a table.
+     * @param condition The condition.
+     * @param tableSchema The schema of the table.
+     * @param indexes The bitmap indexes of the table by column.
+     * @param exact Set to false if the rows returned are a superset of those satisfying the condition.
+     * @return The numbers of the rows, or null if the bitmaps cannot narrow down the rows.
+     *
+     * @Description
+     * A comparison of a column with a bitmap index and a constant selects the rows of the values within its range,
+     * and an inequality (!=) the rows of the values on either side. A conjunction intersects the rows of its two
+     * conditions, or keeps the rows of the one the bitmaps answer, which is then a superset. A disjunction unites the
+     * rows of its conditions, and is only answered if both of them are.
+     */
+    static RoaringBitmap select(Expression condition, List<String> tableSchema, Map<String, BitmapIndex> indexes,
+                                boolean[] exact) throws IOException {
+        if (condition instanceof Parenthesis) {
+            return select(((Parenthesis) condition).getExpression(), tableSchema, indexes, exact);
+        }
+        if (condition instanceof AndExpression) {
+            RoaringBitmap left = select(((AndExpression) condition).getLeftExpression(), tableSchema, indexes, exact);
+            RoaringBitmap right = select(((AndExpression) condition).getRightExpression(), tableSchema, indexes, exact);
+            if (left == null || right == null) {
+                exact[0] = false;
+                return left != null ? left : right;
+            }
+            return left.and(right);
+        }
+        if (condition instanceof OrExpression) {
+            RoaringBitmap left = select(((OrExpression) condition).getLeftExpression(), tableSchema, indexes, exact);
+            RoaringBitmap right = select(((OrExpression) condition).getRightExpression(), tableSchema, indexes, exact);
+            return left == null || right == null ? null : left.or(right);
+        }
+        if (!(condition instanceof BinaryExpression)) {
+            return null;
+        }
+        Expression left = ((BinaryExpression) condition).getLeftExpression();
+        Expression right = ((BinaryExpression) condition).getRightExpression();
+        boolean columnOnLeft = left instanceof Column && right instanceof LongValue;
+        if (!columnOnLeft && !(right instanceof Column && left instanceof LongValue)) {
+            return null;
+        }
+        String column = ((Column) (columnOnLeft ? left : right)).getFullyQualifiedName();
+        BitmapIndex index = indexes.get(column);
+        if (index == null) {
+            return null;
+        }
+        if (condition instanceof NotEqualsTo) {
+            long value = ((LongValue) (columnOnLeft ? right : left)).getValue();
+            return index.lookup(Long.MIN_VALUE, value - 1).or(index.lookup(value + 1, Long.MAX_VALUE));
+        }
+        RangePredicate predicate = RangePredicate.extract(condition, tableSchema);
+        if (predicate == null) {
+            return null;
+        }
+        int keyColumn = tableSchema.indexOf(column);
+        return index.lookup(predicate.getLow(keyColumn), predicate.getHigh(keyColumn));
+    }
+
+    /**
+     * Restricts the output of the scan to the given columns, and only counts the rows if no column of the table is
+     * among them.
+     * @param columns The fully qualified names of the columns to return.
+     */
+    @Override
+    public void setColumns(Collection<String> columns) {
+        super.setColumns(columns);
+        if (fetcher == null) {
+            return; // Called by the constructor of the ScanOperator
+        }
+        rowsOnly = Collections.disjoint(columns, tableColumns);
+        fetcher.setColumns(columns, getOutputColumns());
+    }
+
+    /**
+     * Reads the next selected row into the given buffer.
+     * @param values The buffer to fill, one entry per output column, left untouched if the rows are only counted.
+     * @return False if all selected rows are read, true otherwise.
+     */
+    @Override
+    boolean readNextValues(int[] values) {
+        if (bufferPosition == bufferedRows) {
+            bufferedRows = cursor.read(rowNumbers);
+            bufferPosition = 0;
+            if (bufferedRows == 0) {
+                return false;
+            }
+        }
+        int row = rowNumbers[bufferPosition++];
+        if (!rowsOnly) {
+            try {
+                fetcher.read(getRowId(row), values);
+            } catch (IOException e) {
+                throw new RuntimeException("Error reading bitmap index of table: " + getTableName(), e);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the row id of a row, reading the row ids of the next ROW_ID_BLOCK rows from the index unless the row
+     * lies in the block read last. The rows are read in ascending order, so nearby rows share a block.
+     */
+    private long getRowId(int row) throws IOException {
+        if (row < blockStart || row >= blockStart + blockSize) {
+            blockSize = rowIndex.readRowIds(row, blockRowIds);
+            blockStart = row;
+            if (blockSize == 0) {
+                throw new RuntimeException("Bitmap index entry beyond the end of table: " + getTableName());
+            }
+        }
+        return blockRowIds[row - blockStart];
+    }
+
+    /**
+     * Retrieves the next batch of selected rows.
+     * @return A TupleBatch with up to DEFAULT_CAPACITY rows, or NULL if all selected rows are read.
+     */
+    @Override
+    public TupleBatch getNextBatch() {
+        TupleBatch batch = new TupleBatch(getTableSchema().size());
+        int[][] columns = batch.getColumns();
+        int[] values = new int[columns.length];
+        int row = 0;
+        while (row < TupleBatch.DEFAULT_CAPACITY && readNextValues(values)) {
+            for (int column = 0; column < values.length; column++) {
+                columns[column][row] = values[column];
+            }
+            row++;
+        }
+        batch.setRowCount(row);
+        return row == 0 ? null : batch;
+    }
+
+    public long getRowCount() {
+        return rows.getCardinality();
+    }
+
+    public boolean isExact() {
+        return exact;
+    }
+
+    public boolean isRowsOnly() {
+        return rowsOnly;
+    }
+
+    @Override
+    public void reset() {
+        cursor = rows.cursor();
+        bufferedRows = 0;
+        bufferPosition = 0;
+    }
+}
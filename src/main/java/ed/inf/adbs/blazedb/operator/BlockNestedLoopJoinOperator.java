@@ -0,0 +1,188 @@
+package ed.inf.adbs.blazedb.operator;
+
+import ed.inf.adbs.blazedb.BlazeDBConfig;
+import ed.inf.adbs.blazedb.ExpressionEvaluator;
+import ed.inf.adbs.blazedb.Tuple;
+import net.sf.jsqlparser.expression.Expression;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The BlockNestedLoopJoinOperator class joins two inputs with a nested loop over blocks of buffered tuples,
+ * for join conditions without an equality between the inputs and for cross products.
+ * If the whole right (inner) input fits into the memory budget, it is buffered once and never rescanned.
+ * Otherwise, the left input is read in blocks that fill the memory budget, and the right input is scanned
+ * once per block instead of once per left tuple.
+ * <br><br>
+ * The BlockNestedLoopJoinOperator class contains the following methods:<br>
+ * - getNextTuple(): Retrieves the next tuple that satisfies the join condition.<br>
+ * - reset(): Resets the iterator to the start.<br>
+ * - getTableName(): Returns the name of the table.<br>
+ * - getTableSchema(): Returns the schema of the table.<br>
+ * - getChildren(): Returns the child operators.
+ * <br><br>
+ * The BlockNestedLoopJoinOperator class also contains the following instance variables:<br>
+ * - leftChild, rightChild: The child operators of the BlockNestedLoopJoinOperator.<br>
+ * - schema: The schema of the joined table.<br>
+ * - evaluator: The join condition compiled against the joined schema, or null for a cross product.<br>
+ * - memoryBudget: The number of bytes available for buffering tuples.<br>
+ * - innerTuples: The whole right input if it fits into the memory budget, null otherwise.<br>
+ * - block: The current block of left tuples when the right input does not fit into the memory budget.<br>
+ * - outerTuple: The current tuple of the input that is not buffered.<br>
+ * - position: The position of the next buffered tuple to combine with the outer tuple.<br>
+ * - started: Whether the right input has been tried to be buffered.
+ */
+public class BlockNestedLoopJoinOperator extends Operator {
+    private final Operator leftChild;
+    private final Operator rightChild;
+    private final List<String> schema;
+    private final ExpressionEvaluator evaluator;
+    private final long memoryBudget;
+    private List<Tuple> innerTuples;
+    private List<Tuple> block;
+    private Tuple outerTuple;
+    private int position;
+    private boolean started;
+
+    public BlockNestedLoopJoinOperator(Operator leftChild, Operator rightChild, Expression joinCondition) {
+        this(leftChild, rightChild, joinCondition, BlazeDBConfig.getJoinMemoryBudget());
+    }
+
+    public BlockNestedLoopJoinOperator(Operator leftChild, Operator rightChild, Expression joinCondition, long memoryBudget) {
+        this.leftChild = leftChild;
+        this.rightChild = rightChild;
+        this.schema = new ArrayList<>();
+        this.schema.addAll(leftChild.getTableSchema());
+        this.schema.addAll(rightChild.getTableSchema());
+        this.evaluator = joinCondition != null ? ExpressionEvaluator.compile(joinCondition, schema) : null;
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Retrieves the next tuple that satisfies the join condition.
+     * @return A Tuple object representing the joined row of data, or NULL if EOF reached.
+     *
+     * @Description
+     * If the right input is buffered, every left tuple is combined with all buffered right tuples.<br>
+     * Otherwise, every right tuple is combined with all left tuples of the current block, and the next block
+     * is read and the right child rescanned once the right child is exhausted.
+     */
+    @Override
+    public Tuple getNextTuple() {
+        if (!started) {
+            bufferInnerInput();
+            started = true;
+        }
+
+        while (true) {
+            List<Tuple> buffered = innerTuples != null ? innerTuples : block;
+            while (outerTuple != null && position < buffered.size()) {
+                Tuple bufferedTuple = buffered.get(position++);
+                Tuple joinedTuple = innerTuples != null ? outerTuple.concat(bufferedTuple) : bufferedTuple.concat(outerTuple);
+                if (evaluator == null || evaluator.test(joinedTuple)) {
+                    return joinedTuple;
+                }
+            }
+
+            position = 0;
+            if (innerTuples != null) {
+                outerTuple = leftChild.getNextTuple();
+                if (outerTuple == null) {
+                    return null;
+                }
+            } else {
+                if (block.isEmpty()) {
+                    return null; // Empty left input
+                }
+                outerTuple = rightChild.getNextTuple();
+                if (outerTuple == null) {
+                    if (!readBlock()) {
+                        return null;
+                    }
+                    rightChild.reset();
+                    outerTuple = rightChild.getNextTuple();
+                    if (outerTuple == null) {
+                        return null; // Empty right input
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Tries to buffer the whole right input within the memory budget.
+     * If it does not fit, the right child is reset and the first block of left tuples is read instead.
+     */
+    private void bufferInnerInput() {
+        List<Tuple> tuples = new ArrayList<>();
+        long size = 0;
+        Tuple tuple;
+        while ((tuple = rightChild.getNextTuple()) != null) {
+            tuples.add(tuple);
+            size += tuple.estimateSize();
+            if (size > memoryBudget) {
+                break;
+            }
+        }
+
+        if (tuple == null) {
+            innerTuples = tuples;
+            position = 0;
+            outerTuple = leftChild.getNextTuple();
+        } else {
+            rightChild.reset();
+            block = new ArrayList<>();
+            readBlock();
+            position = 0;
+            outerTuple = rightChild.getNextTuple();
+        }
+    }
+
+    /**
+     * Reads the next block of left tuples that fills the memory budget.
+     * At least one tuple is read into every block.
+     * @return False if the left input is exhausted, true otherwise.
+     */
+    private boolean readBlock() {
+        block.clear();
+        long size = 0;
+        Tuple tuple;
+        while (size < memoryBudget && (tuple = leftChild.getNextTuple()) != null) {
+            block.add(tuple);
+            size += tuple.estimateSize();
+        }
+        return !block.isEmpty();
+    }
+
+    @Override
+    public void reset() {
+        leftChild.reset();
+        rightChild.reset();
+        innerTuples = null;
+        block = null;
+        outerTuple = null;
+        position = 0;
+        started = false;
+    }
+
+    /**
+     * Returns the name of the two tables with JOIN keyword in between.
+     * @return The name of the table.
+     */
+    @Override
+    public String getTableName() {
+        return leftChild.getTableName() + " JOIN " + rightChild.getTableName();
+    }
+
+    @Override
+    public List<String> getTableSchema() {
+        return schema;
+    }
+
+    @Override
+    public List<Operator> getChildren() {
+        return Arrays.asList(leftChild, rightChild);
+    }
+}
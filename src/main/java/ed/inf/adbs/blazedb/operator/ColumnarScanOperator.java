@@ -0,0 +1,234 @@
+package ed.inf.adbs.blazedb.operator;
+
+import ed.inf.adbs.blazedb.ColumnarFile;
+import ed.inf.adbs.blazedb.DatabaseCatalog;
+import ed.inf.adbs.blazedb.RangePredicate;
+import ed.inf.adbs.blazedb.Tuple;
+import ed.inf.adbs.blazedb.TupleBatch;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The ColumnarScanOperator class is the ScanOperator for tables stored in the binary columnar format.
+ * It reads the table page by page with a ColumnarFile. The column arrays of a page are decoded straight into int arrays,
+ * so no text is parsed, and every page becomes one batch without copying the values again.
+ * With a ZoneMap, whose blocks are the pages of the file, only the pages that may satisfy the selection are read.
+ * With a RangePredicate, the rows of every page are filtered on the encoded column chunks before the page is decoded,
+ * pages without a matching row are never decoded, and the batches carry the matching rows as their selection.
+ * The SelectOperator above the scan still evaluates the whole selection condition on the selected rows.
+ * With setColumns(), only the column chunks of the columns a query needs are decoded.
+ * <br><br>
+ * The ColumnarScanOperator class extends the Operator class and implements the following methods:<br>
+ * - getNextTuple(): Retrieves the next tuple from the table.<br>
+ * - getNextBatch(): Retrieves the rest of the current page, or the next page, as a batch.<br>
+ * - setPages(int[] pages): Restricts the scan to the given pages.<br>
+ * - setPredicate(RangePredicate predicate): Filters the rows on the encoded pages.<br>
+ * - setColumns(Collection<String> columns): Restricts the output to the given columns.<br>
+ * - reset(): Resets the iterator to the start of the table.<br>
+ * - getTableName(): Returns the name of the table.<br>
+ * - getTableSchema(): Returns the schema of the columns returned by the scan.
+ * <br><br>
+ * The ColumnarScanOperator class also contains the following instance variables:<br>
+ * - file: The columnar file of the table.<br>
+ * - tableName: The name of the table being scanned.<br>
+ * - tableSchema: The schema of the table being scanned.<br>
+ * - outputSchema: The columns returned by the scan, the tableSchema unless setColumns() restricts them.<br>
+ * - outputColumns: The index in tableSchema of every output column.<br>
+ * - pages: The numbers of the pages to read, or null to read all pages.<br>
+ * - predicate: The ranges the rows are filtered by, or null to return all rows.<br>
+ * - nextPage: The index of the next page to read, among pages if set.<br>
+ * - columns: The column arrays of the current page.<br>
+ * - selection: The positions of the selected rows of the current page, or null if all rows are selected.<br>
+ * - pageSelection: The array selection points to when set.<br>
+ * - loadedRowCount: The number of rows of the page read last.<br>
+ * - pageRowCount: The number of selected rows of the current page.<br>
+ * - position: The index of the selected row of the current page returned next.
+ */
+public class ColumnarScanOperator extends Operator {
+    private final ColumnarFile file;
+    private final String tableName;
+    private final List<String> tableSchema;
+    private List<String> outputSchema;
+    private int[] outputColumns;
+    private int[] pages;
+    private RangePredicate predicate;
+    private int nextPage;
+    private int[][] columns;
+    private int[] selection;
+    private int[] pageSelection;
+    private int loadedRowCount;
+    private int pageRowCount;
+    private int position;
+
+    public ColumnarScanOperator(String tableName) throws IOException {
+        this(tableName, DatabaseCatalog.getInstance("").getColumnarFilePath(tableName));
+    }
+
+    /**
+     * Creates a scan over the given columnar file of a table.
+     * @param tableName The name of the table.
+     * @param filePath The path of the columnar file.
+     */
+    public ColumnarScanOperator(String tableName, String filePath) throws IOException {
+        this.tableName = tableName;
+        this.tableSchema = DatabaseCatalog.getInstance("").getTableSchema(tableName);
+        this.file = new ColumnarFile(filePath);
+        if (file.getColumnCount() != tableSchema.size()) {
+            throw new IOException("Columnar file " + filePath + " does not match the schema of table " + tableName);
+        }
+        setColumns(tableSchema);
+    }
+
+    /**
+     * Restricts the output of the scan to the given columns, so the chunks of the other columns are not decoded.
+     * @param columns The fully qualified names of the columns to return, in any order. The columns are returned in
+     *                the order of the table schema.
+     */
+    public void setColumns(Collection<String> columns) {
+        outputColumns = ScanOperator.selectColumns(tableSchema, columns);
+        outputSchema = new ArrayList<>();
+        for (int column : outputColumns) {
+            outputSchema.add(tableSchema.get(column));
+        }
+        this.columns = null;
+        reset();
+    }
+
+    /**
+     * Restricts the scan to the given pages, e.g. the blocks selected by a ZoneMap.
+     * @param pages The numbers of the pages to read, in ascending order.
+     */
+    public void setPages(int[] pages) {
+        this.pages = pages;
+        reset();
+    }
+
+    /**
+     * Filters the rows of the scan by the ranges of a predicate, evaluated on the encoded column chunks.
+     * @param predicate The ranges of the columns, or null to return all rows.
+     */
+    public void setPredicate(RangePredicate predicate) {
+        this.predicate = predicate;
+        reset();
+    }
+
+    /**
+     * Returns the number of the page to read next.
+     * @return The page number, or -1 if all pages have been read.
+     */
+    private int nextPageNumber() {
+        int pageCount = pages != null ? pages.length : file.getPageCount();
+        if (nextPage == pageCount) {
+            return -1;
+        }
+        int page = pages != null ? pages[nextPage] : nextPage;
+        nextPage++;
+        return page;
+    }
+
+    @Override
+    public Tuple getNextTuple() {
+        if (position == pageRowCount) {
+            if (columns == null) {
+                columns = new int[outputColumns.length][file.getRowsPerPage()];
+                pageSelection = new int[file.getRowsPerPage()];
+            }
+            int selected = readPage(columns, pageSelection);
+            if (selected < 0) {
+                // Stay at EOF until reset(), also when the caller asks again
+                position = pageRowCount = 0;
+                return null; // EOF reached
+            }
+            selection = selected < loadedRowCount ? pageSelection : null;
+            pageRowCount = selected;
+            position = 0;
+        }
+        int row = selection != null ? selection[position] : position;
+        int[] values = new int[columns.length];
+        for (int column = 0; column < values.length; column++) {
+            values[column] = columns[column][row];
+        }
+        position++;
+        return new Tuple(values);
+    }
+
+    /**
+     * Retrieves the next batch of tuples from the table.
+     * @return The rows of the current page not yet returned by getNextTuple(), or else the next page with a matching
+     *         row, or NULL if EOF reached.
+     *
+     * @Description
+     * Every page is read into new column arrays, since the consumer may keep the batch after the next call.
+     * A page with rows ruled out by the predicate is returned with the matching rows as its selection vector.
+     */
+    @Override
+    public TupleBatch getNextBatch() {
+        if (position < pageRowCount) {
+            int rowCount = pageRowCount - position;
+            int[][] rest = new int[columns.length][rowCount];
+            for (int column = 0; column < columns.length; column++) {
+                for (int i = 0; i < rowCount; i++) {
+                    rest[column][i] = columns[column][selection != null ? selection[position + i] : position + i];
+                }
+            }
+            position = pageRowCount;
+            return new TupleBatch(rest, rowCount, null, 0);
+        }
+        int[][] batchColumns = new int[outputColumns.length][file.getRowsPerPage()];
+        int[] batchSelection = new int[file.getRowsPerPage()];
+        int selected = readPage(batchColumns, batchSelection);
+        if (selected < 0) {
+            return null; // EOF reached
+        }
+        return selected < loadedRowCount
+                ? new TupleBatch(batchColumns, loadedRowCount, batchSelection, selected)
+                : new TupleBatch(batchColumns, loadedRowCount, null, 0);
+    }
+
+    /**
+     * Reads the next page with a row that satisfies the predicate into the given column arrays.
+     * @return The number of selected rows of the page, whose positions are written into rowSelection unless all
+     *         loadedRowCount rows are selected, or -1 if all pages have been read.
+     */
+    private int readPage(int[][] pageColumns, int[] rowSelection) {
+        try {
+            int page;
+            while ((page = nextPageNumber()) >= 0) {
+                loadedRowCount = file.loadPage(page);
+                int selected = predicate != null ? file.selectRows(predicate, rowSelection) : loadedRowCount;
+                if (selected > 0) {
+                    for (int slot = 0; slot < outputColumns.length; slot++) {
+                        file.decodeColumn(outputColumns[slot], pageColumns[slot]);
+                    }
+                    return selected;
+                }
+            }
+            return -1;
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading columnar file of table: " + tableName, e);
+        }
+    }
+
+    @Override
+    public void reset() {
+        nextPage = 0;
+        pageRowCount = 0;
+        position = 0;
+    }
+
+    @Override
+    public String getTableName() {
+        return tableName;
+    }
+
+    public ColumnarFile getFile() {
+        return file;
+    }
+
+    public List<String> getTableSchema() {
+        return outputSchema;
+    }
+}
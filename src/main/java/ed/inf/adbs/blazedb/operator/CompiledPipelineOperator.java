@@ -0,0 +1,325 @@
+package ed.inf.adbs.blazedb.operator;
+
+import ed.inf.adbs.blazedb.DatabaseCatalog;
+import ed.inf.adbs.blazedb.ExpressionEvaluator;
+import ed.inf.adbs.blazedb.Tuple;
+import ed.inf.adbs.blazedb.TupleBatch;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The CompiledPipelineOperator class fuses a ScanOperator, or its MappedScanOperator or ResidentScanOperator
+ * subclass, with the SelectOperator, ProjectOperator and SumOperator on top of it into a single loop over the
+ * batches of the scan. The selection condition and the SUM expressions are compiled to code at run time: the
+ * ExpressionEvaluator generates a MethodHandle for each of them, which the JIT compiles into straight-line code for
+ * the query. Every batch is filtered, projected and aggregated in place, so the pipeline makes no calls between the
+ * fused operators and creates no intermediate Tuple objects.
+ * <br><br>
+ * The CompiledPipelineOperator class contains the following methods:<br>
+ * - compile(): Fuses an interpreted operator chain into a pipeline if its shape is supported.<br>
+ * - isWorthCompiling(): Checks if the pipeline is expected to be faster than the interpreted chain.<br>
+ * - getNextTuple(): Retrieves the next tuple produced by the pipeline.<br>
+ * - getNextBatch(): Retrieves the next batch produced by the pipeline.<br>
+ * - reset(): Resets the iterator to the start.<br>
+ * - getTableName(): Returns the name of the table.<br>
+ * - getTableSchema(): Returns the schema of the table.
+ * <br><br>
+ * The CompiledPipelineOperator class also contains the following instance variables:<br>
+ * - scan: The scan at the bottom of the pipeline.<br>
+ * - selection: The generated selection condition, or null if there is no SelectOperator.<br>
+ * - projectionIndexes: The projected columns, or null if there is no ProjectOperator.<br>
+ * - groupByIndexes, sums, outputIndexes: The aggregation taken over from the SumOperator with its generated SUM
+ *   expressions, or null.<br>
+ * - schema: The output schema of the fused chain.<br>
+ * - groups: A mapping of group by values to the group rows holding the tuple values and sum values.<br>
+ * - groupIterator: An iterator over the group rows.<br>
+ * - outputBatch, outputPosition: The batch getNextTuple() returns the rows of, and the position of its next row.
+ */
+public class CompiledPipelineOperator extends Operator {
+    private final ScanOperator scan;
+    private final MethodHandle selection;
+    private final int[] projectionIndexes;
+    private final int[] groupByIndexes;
+    private final MethodHandle[] sums;
+    private final int[] outputIndexes;
+    private final List<String> schema;
+    private final Map<Tuple, int[]> groups;
+    private Iterator<int[]> groupIterator;
+    private TupleBatch outputBatch;
+    private int outputPosition;
+
+    private CompiledPipelineOperator(ScanOperator scan, SelectOperator select, ProjectOperator project, SumOperator sum, List<String> schema) {
+        this.scan = scan;
+        this.selection = select != null ? select.getEvaluator().generateTest() : null;
+        this.projectionIndexes = project != null ? project.getProjectionIndexes() : null;
+        this.groupByIndexes = sum != null ? sum.getGroupByIndexes() : null;
+        this.outputIndexes = sum != null ? sum.getOutputIndexes() : null;
+        this.schema = schema;
+        this.groups = new HashMap<>();
+
+        if (sum != null) {
+            ExpressionEvaluator[] sumEvaluators = sum.getSumEvaluators();
+            this.sums = new MethodHandle[sumEvaluators.length];
+            for (int i = 0; i < sums.length; i++) {
+                sums[i] = sumEvaluators[i].generateEvaluate();
+            }
+        } else {
+            this.sums = null;
+        }
+    }
+
+    /**
+     * Fuses the operator chain below the given root into a pipeline.
+     * @param root The root of an interpreted chain of the form Scan [-> Select] [-> Project] [-> Sum].
+     * @return The fused pipeline, or null if the chain has another shape or nothing to fuse.
+     */
+    public static CompiledPipelineOperator compile(Operator root) {
+        List<String> schema = root.getTableSchema();
+        Operator current = root;
+
+        SumOperator sum = null;
+        if (current instanceof SumOperator) {
+            sum = (SumOperator) current;
+            current = sum.getChildOperator();
+        }
+        ProjectOperator project = null;
+        if (current instanceof ProjectOperator) {
+            project = (ProjectOperator) current;
+            current = project.getChildOperator();
+        }
+        SelectOperator select = null;
+        if (current instanceof SelectOperator) {
+            select = (SelectOperator) current;
+            current = select.getChildOperator();
+        }
+
+        if (!(current instanceof ScanOperator) || (select == null && sum == null)) {
+            return null;
+        }
+        return new CompiledPipelineOperator((ScanOperator) current, select, project, sum, schema);
+    }
+
+    /**
+     * Checks if the pipeline is expected to be faster than the interpreted chain it replaces.
+     * The planner only uses the pipeline in the AUTO execution mode if this holds.
+     * @return True if the table has more than one batch of rows, false otherwise.
+     *
+     * @Description
+     * Generating the code costs a few milliseconds before the first row, and the JIT only compiles the generated
+     * handles once they have run on many rows. A table of at most one batch of rows is read with a single call per
+     * interpreted operator, so it is left to the interpreted chain.
+     */
+    public boolean isWorthCompiling() {
+        try {
+            return DatabaseCatalog.getInstance("").getTableRowCount(scan.getTableName()) > TupleBatch.DEFAULT_CAPACITY;
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading catalog for table: " + scan.getTableName(), e);
+        }
+    }
+
+    /**
+     * Retrieves the next tuple produced by the pipeline.
+     * @return A Tuple object representing the row of data, or NULL if EOF reached.
+     *
+     * @Description
+     * With an aggregation, all rows are aggregated on the first call and the group rows are returned one by one.<br>
+     * Without an aggregation, the rows of the batches of getNextBatch() are copied into new Tuples one by one.
+     */
+    @Override
+    public Tuple getNextTuple() {
+        if (outputIndexes != null) {
+            if (groupIterator == null) {
+                aggregate();
+                groupIterator = groups.values().iterator();
+            }
+            return groupIterator.hasNext() ? new Tuple(getOutputValues(groupIterator.next())) : null;
+        }
+
+        while (outputBatch == null || outputPosition == outputBatch.size()) {
+            outputBatch = getNextBatch();
+            outputPosition = 0;
+            if (outputBatch == null) {
+                return null;
+            }
+        }
+        return outputBatch.getTuple(outputPosition++);
+    }
+
+    /**
+     * Retrieves the next batch produced by the pipeline.
+     * @return A TupleBatch with the output rows, or NULL if EOF reached.
+     *
+     * @Description
+     * With an aggregation, all rows are aggregated on the first call and the group rows are written straight into
+     * the output vectors.<br>
+     * Without an aggregation, the generated selection narrows the selection vector of every scanned batch, and the
+     * projection only reorders its column vectors, so no values are copied.
+     */
+    @Override
+    public TupleBatch getNextBatch() {
+        if (outputIndexes != null) {
+            if (groupIterator == null) {
+                aggregate();
+                groupIterator = groups.values().iterator();
+            }
+            if (!groupIterator.hasNext()) return null;
+
+            TupleBatch batch = new TupleBatch(outputIndexes.length);
+            int[][] columns = batch.getColumns();
+            int row = 0;
+            while (row < TupleBatch.DEFAULT_CAPACITY && groupIterator.hasNext()) {
+                int[] groupRow = groupIterator.next();
+                for (int i = 0; i < outputIndexes.length; i++) {
+                    columns[i][row] = groupRow[outputIndexes[i]];
+                }
+                row++;
+            }
+            batch.setRowCount(row);
+            return batch;
+        }
+
+        TupleBatch batch;
+        while ((batch = scan.getNextBatch()) != null) {
+            int[] rows = batch.getSelection();
+            int count = batch.size();
+            if (selection != null) {
+                rows = select(batch);
+                count = rows.length;
+                if (count == 0) {
+                    continue;
+                }
+            }
+            return new TupleBatch(project(batch.getColumns()), batch.getRowCount(), rows, count);
+        }
+        return null;
+    }
+
+    /**
+     * Runs the generated selection on the selected rows of a batch.
+     * @return The physical indexes of the rows that satisfy the selection.
+     */
+    private int[] select(TupleBatch batch) {
+        int[][] columns = batch.getColumns();
+        int[] rows = new int[batch.size()];
+        int count = 0;
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                int row = batch.getRowIndex(i);
+                if ((boolean) selection.invokeExact(columns, row)) {
+                    rows[count++] = row;
+                }
+            }
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+        return count == rows.length ? rows : Arrays.copyOf(rows, count);
+    }
+
+    /**
+     * Returns the column vectors the projection keeps, in output order.
+     */
+    private int[][] project(int[][] columns) {
+        if (projectionIndexes == null) {
+            return columns;
+        }
+        int[][] projected = new int[projectionIndexes.length][];
+        for (int i = 0; i < projectionIndexes.length; i++) {
+            projected[i] = columns[projectionIndexes[i]];
+        }
+        return projected;
+    }
+
+    /**
+     * Runs the fused scan, selection, projection and aggregation loop over the whole table, batch at a time.
+     * Without a GROUP BY, the single group row is kept aside and no group key is created.
+     */
+    private void aggregate() {
+        int sumCount = sums.length;
+        int[] singleGroup = null;
+        TupleBatch batch;
+        try {
+            while ((batch = scan.getNextBatch()) != null) {
+                int[][] scanColumns = batch.getColumns();
+                int[][] input = project(scanColumns);
+                int inputWidth = input.length;
+                for (int i = 0; i < batch.size(); i++) {
+                    int row = batch.getRowIndex(i);
+                    if (selection != null && !(boolean) selection.invokeExact(scanColumns, row)) {
+                        continue;
+                    }
+
+                    int[] groupRow = singleGroup;
+                    if (groupRow == null) {
+                        int[] groupKeyValues = new int[groupByIndexes.length];
+                        for (int k = 0; k < groupByIndexes.length; k++) {
+                            groupKeyValues[k] = input[groupByIndexes[k]][row];
+                        }
+                        Tuple groupKey = new Tuple(groupKeyValues);
+                        groupRow = groups.get(groupKey);
+                        if (groupRow == null) {
+                            groupRow = new int[inputWidth + sumCount];
+                            for (int column = 0; column < inputWidth; column++) {
+                                groupRow[column] = input[column][row];
+                            }
+                            groups.put(groupKey, groupRow);
+                        }
+                        if (groupByIndexes.length == 0) {
+                            singleGroup = groupRow;
+                        }
+                    }
+                    for (int k = 0; k < sumCount; k++) {
+                        groupRow[inputWidth + k] += (int) sums[k].invokeExact(input, row);
+                    }
+                }
+            }
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private int[] getOutputValues(int[] groupRow) {
+        int[] output = new int[outputIndexes.length];
+        for (int i = 0; i < outputIndexes.length; i++) {
+            output[i] = groupRow[outputIndexes[i]];
+        }
+        return output;
+    }
+
+    /**
+     * Passes on the unchecked exceptions of the scan and the generated code, and wraps the checked ones,
+     * which invokeExact() declares but the generated code never throws.
+     */
+    private RuntimeException rethrow(Throwable e) {
+        if (e instanceof RuntimeException) {
+            return (RuntimeException) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        return new RuntimeException("Error running the compiled pipeline of table: " + getTableName(), e);
+    }
+
+    @Override
+    public void reset() {
+        scan.reset();
+        groups.clear();
+        groupIterator = null;
+        outputBatch = null;
+    }
+
+    @Override
+    public String getTableName() {
+        return scan.getTableName();
+    }
+
+    @Override
+    public List<String> getTableSchema() {
+        return schema;
+    }
+}
@@ -1,7 +1,9 @@
 package ed.inf.adbs.blazedb.operator;
 
 import ed.inf.adbs.blazedb.Tuple;
+import ed.inf.adbs.blazedb.TupleBatch;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -12,9 +14,11 @@ import java.util.Set;
  * <br><br>
  * The DuplicateEliminationOperator class extends the Operator class and implements the following methods:<br>
  * - getNextTuple(): Retrieves the next tuple with duplicates removed.<br>
+ * - getNextBatch(): Retrieves the next batch with duplicates removed from its selection vector.<br>
  * - reset(): Resets the iterator to the start.<br>
  * - getTableName(): Returns the name of the table.<br>
- * - getTableSchema(): Returns the schema of the table.
+ * - getTableSchema(): Returns the schema of the table.<br>
+ * - getChildren(): Returns the child operators.
  * <br><br>
  * The DuplicateEliminationOperator class also contains the following instance variables:<br>
  * - childOperator: The child operator of the DuplicateEliminationOperator.<br>
@@ -42,6 +46,25 @@ public class DuplicateEliminationOperator extends Operator{
         return null;
     }
 
+    @Override
+    public TupleBatch getNextBatch() {
+        TupleBatch batch;
+        while ((batch = childOperator.getNextBatch()) != null) {
+            int[] selection = new int[batch.size()];
+            int selectedCount = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                if (tupleSet.add(batch.getTuple(i))) {
+                    selection[selectedCount++] = batch.getRowIndex(i);
+                }
+            }
+            if (selectedCount > 0) {
+                batch.setSelection(selection, selectedCount);
+                return batch;
+            }
+        }
+        return null;
+    }
+
     @Override
     public void reset() {
         childOperator.reset();
@@ -57,4 +80,14 @@ public class DuplicateEliminationOperator extends Operator{
     public List<String> getTableSchema() {
         return childOperator.getTableSchema();
     }
+
+    @Override
+    public List<String> getSortOrder() {
+        return childOperator.getSortOrder();
+    }
+
+    @Override
+    public List<Operator> getChildren() {
+        return Collections.singletonList(childOperator);
+    }
 }
@@ -0,0 +1,591 @@
+package ed.inf.adbs.blazedb.operator;
+
+import ed.inf.adbs.blazedb.BlazeDBConfig;
+import ed.inf.adbs.blazedb.ConditionExtractor;
+import ed.inf.adbs.blazedb.ExpressionEvaluator;
+import ed.inf.adbs.blazedb.SpillFile;
+import ed.inf.adbs.blazedb.Tuple;
+import ed.inf.adbs.blazedb.TupleBatch;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.schema.Column;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The HashJoinOperator class performs an equi-join between two inputs with an in-memory hash table.
+ * The hash table is built on the smaller input, keyed on the columns of the equality conditions
+ * between the two inputs, and probed with the tuples of the other input.
+ * The remaining join conditions that are not equalities between the inputs are applied after the probe.
+ * Both children are read batch at a time: the probe looks up every row of a probe batch and writes the joined rows
+ * straight into the column vectors of the output batch, and getNextTuple() returns the rows of the output batches.
+ * <br><br>
+ * If even the smaller input exceeds the memory budget, the join turns into a Grace hash join: both inputs are
+ * partitioned by the hash of their join key into spill files, and every pair of partitions is joined in memory.
+ * A partition pair whose smaller side still exceeds the budget is partitioned again with a different hash,
+ * up to MAX_PARTITION_DEPTH times. Beyond that (e.g. for a single very frequent key), the smaller side is loaded
+ * in chunks that fit the budget and the other side is scanned once per chunk.
+ * The number of spilled bytes and partitions is available from getSpilledBytes() and getPartitionCount().
+ * <br><br>
+ * The HashJoinOperator class contains the following methods:<br>
+ * - getNextTuple(): Retrieves the next tuple that satisfies the join condition.<br>
+ * - getNextBatch(): Retrieves the next batch of tuples that satisfy the join condition.<br>
+ * - reset(): Resets the iterator to the start.<br>
+ * - getTableName(): Returns the name of the table.<br>
+ * - getTableSchema(): Returns the schema of the table.<br>
+ * - getChildren(): Returns the child operators.<br>
+ * - getSpilledBytes(): Returns the number of bytes written to spill files.<br>
+ * - getPartitionCount(): Returns the number of partition pairs created.
+ * <br><br>
+ * The HashJoinOperator class also contains the following instance variables:<br>
+ * - leftChild, rightChild: The child operators of the HashJoinOperator.<br>
+ * - schema: The schema of the joined table.<br>
+ * - leftKeyIndexes, rightKeyIndexes: The positions of the equality columns in the left and right schemas.<br>
+ * - residualEvaluator: The remaining join conditions compiled against the joined schema, or null if there are none.<br>
+ * - hashTable: A mapping of join key values to the tuples of the build input.<br>
+ * - buildLeft: Whether the hash table is built on the left input.<br>
+ * - probeIterator: The tuples of the probe input that were read while finding the smaller input, probed before the
+ *   remaining batches of the probe child.<br>
+ * - probeExhausted: Whether the probe child has returned EOF.<br>
+ * - probeBatch, probePosition: The current probe batch and the position of its next row.<br>
+ * - probeRow, matches, matchIndex: The physical index of the current probe row, its matching build tuples and the
+ *   next match to return.<br>
+ * - outputBatch, outputPosition: The batch getNextTuple() returns the rows of, and the position of its next row.<br>
+ * - memoryBudget: The number of bytes available for the hash table.<br>
+ * - pendingPartitions: The partition pairs still to be joined, or null if the join runs in memory.<br>
+ * - currentPartition: The partition pair being joined.<br>
+ * - buildReader: The reader of the build partition if it is loaded in chunks, null otherwise.<br>
+ * - probeReader: The reader of the probe partition.<br>
+ * - spilledBytes, partitionCount: The number of bytes written to spill files and of partition pairs created.
+ */
+public class HashJoinOperator extends Operator {
+    private static final int PARTITION_FANOUT = 16;
+    private static final int MAX_PARTITION_DEPTH = 3;
+
+    private final Operator leftChild;
+    private final Operator rightChild;
+    private final List<String> schema;
+    private final int[] leftKeyIndexes;
+    private final int[] rightKeyIndexes;
+    private final ExpressionEvaluator residualEvaluator;
+    private Map<Tuple, List<Tuple>> hashTable;
+    private boolean buildLeft;
+    private Iterator<Tuple> probeIterator;
+    private boolean probeExhausted;
+    private TupleBatch probeBatch;
+    private int probePosition;
+    private int probeRow;
+    private List<Tuple> matches;
+    private int matchIndex;
+    private TupleBatch outputBatch;
+    private int outputPosition;
+    private final long memoryBudget;
+    private Deque<Partition> pendingPartitions;
+    private Partition currentPartition;
+    private SpillFile.Reader buildReader;
+    private SpillFile.Reader probeReader;
+    private long spilledBytes;
+    private int partitionCount;
+
+    public HashJoinOperator(Operator leftChild, Operator rightChild, Expression joinCondition) {
+        this(leftChild, rightChild, joinCondition, BlazeDBConfig.getJoinMemoryBudget());
+    }
+
+    public HashJoinOperator(Operator leftChild, Operator rightChild, Expression joinCondition, long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+        this.leftChild = leftChild;
+        this.rightChild = rightChild;
+        this.schema = new ArrayList<>();
+        this.schema.addAll(leftChild.getTableSchema());
+        this.schema.addAll(rightChild.getTableSchema());
+
+        // Split the join condition into the equality keys and the residual conditions
+        List<String> leftSchema = leftChild.getTableSchema();
+        List<String> rightSchema = rightChild.getTableSchema();
+        List<Integer> leftKeys = new ArrayList<>();
+        List<Integer> rightKeys = new ArrayList<>();
+        Expression residual = null;
+        for (Expression condition : ConditionExtractor.getConjuncts(joinCondition)) {
+            if (ConditionExtractor.isEquiJoinCondition(condition, leftSchema, rightSchema)) {
+                String first = ((Column) ((EqualsTo) condition).getLeftExpression()).getFullyQualifiedName();
+                String second = ((Column) ((EqualsTo) condition).getRightExpression()).getFullyQualifiedName();
+                boolean firstOnLeft = leftSchema.contains(first) && rightSchema.contains(second);
+                leftKeys.add(leftSchema.indexOf(firstOnLeft ? first : second));
+                rightKeys.add(rightSchema.indexOf(firstOnLeft ? second : first));
+            } else {
+                residual = (residual == null) ? condition : new AndExpression(residual, condition);
+            }
+        }
+        this.leftKeyIndexes = leftKeys.stream().mapToInt(Integer::intValue).toArray();
+        this.rightKeyIndexes = rightKeys.stream().mapToInt(Integer::intValue).toArray();
+        this.residualEvaluator = residual != null ? ExpressionEvaluator.compile(residual, schema) : null;
+    }
+
+    /**
+     * Retrieves the next tuple that satisfies the join condition.
+     * @return A Tuple object representing the joined row of data, or NULL if EOF reached.
+     */
+    @Override
+    public Tuple getNextTuple() {
+        while (outputBatch == null || outputPosition == outputBatch.size()) {
+            outputBatch = getNextBatch();
+            outputPosition = 0;
+            if (outputBatch == null) {
+                return null;
+            }
+        }
+        return outputBatch.getTuple(outputPosition++);
+    }
+
+    /**
+     * Retrieves the next batch of tuples that satisfy the join condition.
+     * @return A TupleBatch with the joined rows, or NULL if EOF reached.
+     *
+     * @Description
+     * On the first call the hash table is built. Afterwards, the matches of the current probe row are written into
+     * the output batch one by one, and the next row of the probe batch is looked up once they are used up.
+     * A joined row that fails the residual conditions is overwritten by the next one.
+     * The positions in the probe batch and in the matches are kept between calls, so the join resumes where it
+     * stopped when the output batch became full.
+     */
+    @Override
+    public TupleBatch getNextBatch() {
+        if (hashTable == null) {
+            build();
+        }
+
+        TupleBatch output = new TupleBatch(schema.size());
+        int row = 0;
+        while (row < TupleBatch.DEFAULT_CAPACITY) {
+            if (matches != null && matchIndex < matches.size()) {
+                writeJoinedRow(output.getColumns(), row, matches.get(matchIndex++));
+                if (residualEvaluator == null || residualEvaluator.test(output, row)) {
+                    row++;
+                }
+                continue;
+            }
+
+            if (probeBatch == null || probePosition == probeBatch.size()) {
+                probeBatch = nextProbeBatch();
+                probePosition = 0;
+                if (probeBatch == null) {
+                    break;
+                }
+            }
+            probeRow = probeBatch.getRowIndex(probePosition++);
+            matches = hashTable.get(getProbeKey());
+            matchIndex = 0;
+        }
+        output.setRowCount(row);
+        return row == 0 ? null : output;
+    }
+
+    /**
+     * Projects the current probe row onto the join key of the probe input.
+     * @return The join key, to look up in the hash table.
+     */
+    private Tuple getProbeKey() {
+        int[] keyIndexes = buildLeft ? rightKeyIndexes : leftKeyIndexes;
+        int[] key = new int[keyIndexes.length];
+        for (int i = 0; i < keyIndexes.length; i++) {
+            key[i] = probeBatch.getValue(keyIndexes[i], probeRow);
+        }
+        return new Tuple(key);
+    }
+
+    /**
+     * Writes the join of a build tuple and the current probe row into a row of the output vectors,
+     * with the values of the left input first.
+     */
+    private void writeJoinedRow(int[][] columns, int row, Tuple buildTuple) {
+        int[][] probeColumns = probeBatch.getColumns();
+        int buildOffset = buildLeft ? 0 : probeColumns.length;
+        int probeOffset = buildLeft ? buildTuple.size() : 0;
+        for (int column = 0; column < buildTuple.size(); column++) {
+            columns[buildOffset + column][row] = buildTuple.getValue(column);
+        }
+        for (int column = 0; column < probeColumns.length; column++) {
+            columns[probeOffset + column][row] = probeColumns[column][probeRow];
+        }
+    }
+
+    /**
+     * Builds the hash table on the smaller input.
+     *
+     * @Description
+     * Both children are read a batch at a time in turns until one of them is exhausted, which is the smaller input
+     * and becomes the build input. This needs no statistics and keeps at most twice the smaller input, plus a batch,
+     * in memory.
+     * The tuples already read from the larger input are probed first, before reading on from its child.
+     * On a tie, the right input is used as build input so the output keeps the order of the left input.<br>
+     * If both inputs exceed the memory budget before one of them is exhausted, both are partitioned instead.
+     */
+    private void build() {
+        List<Tuple> leftTuples = new ArrayList<>();
+        List<Tuple> rightTuples = new ArrayList<>();
+        long leftSize = 0;
+        long rightSize = 0;
+        boolean leftDone = false;
+        boolean rightDone = false;
+        while (!leftDone && !rightDone) {
+            TupleBatch batch = leftChild.getNextBatch();
+            if (batch == null) {
+                leftDone = true;
+            } else {
+                leftSize += addTuples(batch, leftTuples);
+            }
+            batch = rightChild.getNextBatch();
+            if (batch == null) {
+                rightDone = true;
+            } else {
+                rightSize += addTuples(batch, rightTuples);
+            }
+            if (leftSize > memoryBudget && rightSize > memoryBudget) {
+                partitionInputs(leftTuples, rightTuples);
+                return;
+            }
+        }
+
+        buildLeft = leftDone && !rightDone;
+        List<Tuple> buildTuples = buildLeft ? leftTuples : rightTuples;
+        int[] buildKeyIndexes = buildLeft ? leftKeyIndexes : rightKeyIndexes;
+
+        hashTable = new HashMap<>();
+        for (Tuple tuple : buildTuples) {
+            hashTable.computeIfAbsent(tuple.project(buildKeyIndexes), key -> new ArrayList<>(1)).add(tuple);
+        }
+
+        probeIterator = (buildLeft ? rightTuples : leftTuples).iterator();
+        probeExhausted = buildLeft ? rightDone : leftDone;
+    }
+
+    /**
+     * Materializes the selected rows of a batch as tuples.
+     * @param batch The batch to read.
+     * @param tuples The list the tuples are added to.
+     * @return The estimated heap size of the added tuples.
+     */
+    private static long addTuples(TupleBatch batch, List<Tuple> tuples) {
+        long size = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            Tuple tuple = batch.getTuple(i);
+            tuples.add(tuple);
+            size += tuple.estimateSize();
+        }
+        return size;
+    }
+
+    /**
+     * Partitions both inputs into spill files by the hash of their join key.
+     * @param leftTuples The tuples already read from the left child.
+     * @param rightTuples The tuples already read from the right child.
+     */
+    private void partitionInputs(List<Tuple> leftTuples, List<Tuple> rightTuples) {
+        Partition[] partitions = createPartitions(0);
+        for (Tuple tuple : leftTuples) {
+            partitions[partitionOf(tuple, leftKeyIndexes, 0)].left.write(tuple);
+        }
+        leftTuples.clear();
+        TupleBatch batch;
+        while ((batch = leftChild.getNextBatch()) != null) {
+            for (int i = 0; i < batch.size(); i++) {
+                Tuple tuple = batch.getTuple(i);
+                partitions[partitionOf(tuple, leftKeyIndexes, 0)].left.write(tuple);
+            }
+        }
+        for (Tuple tuple : rightTuples) {
+            partitions[partitionOf(tuple, rightKeyIndexes, 0)].right.write(tuple);
+        }
+        rightTuples.clear();
+        while ((batch = rightChild.getNextBatch()) != null) {
+            for (int i = 0; i < batch.size(); i++) {
+                Tuple tuple = batch.getTuple(i);
+                partitions[partitionOf(tuple, rightKeyIndexes, 0)].right.write(tuple);
+            }
+        }
+
+        pendingPartitions = new ArrayDeque<>();
+        addPartitions(partitions);
+        hashTable = new HashMap<>();
+        probeIterator = new ArrayList<Tuple>().iterator();
+    }
+
+    /**
+     * Partitions a partition pair again with the hash function of the next level.
+     * @param partition The partition pair whose smaller side exceeds the memory budget.
+     */
+    private void repartition(Partition partition) {
+        int depth = partition.depth + 1;
+        Partition[] partitions = createPartitions(depth);
+        try (SpillFile.Reader reader = partition.left.openReader()) {
+            Tuple tuple;
+            while ((tuple = reader.readTuple()) != null) {
+                partitions[partitionOf(tuple, leftKeyIndexes, depth)].left.write(tuple);
+            }
+        }
+        try (SpillFile.Reader reader = partition.right.openReader()) {
+            Tuple tuple;
+            while ((tuple = reader.readTuple()) != null) {
+                partitions[partitionOf(tuple, rightKeyIndexes, depth)].right.write(tuple);
+            }
+        }
+        partition.delete();
+        addPartitions(partitions);
+    }
+
+    private Partition[] createPartitions(int depth) {
+        Partition[] partitions = new Partition[PARTITION_FANOUT];
+        for (int i = 0; i < partitions.length; i++) {
+            partitions[i] = new Partition(depth);
+        }
+        partitionCount += partitions.length;
+        return partitions;
+    }
+
+    /**
+     * Queues the partition pairs that can produce output and deletes the others.
+     * @param partitions The partition pairs just written.
+     */
+    private void addPartitions(Partition[] partitions) {
+        for (Partition partition : partitions) {
+            partition.left.finishWriting();
+            partition.right.finishWriting();
+            spilledBytes += partition.left.getSize() + partition.right.getSize();
+            if (partition.left.getTupleCount() == 0 || partition.right.getTupleCount() == 0) {
+                partition.delete(); // No tuple can find a match
+            } else {
+                pendingPartitions.push(partition);
+            }
+        }
+    }
+
+    /**
+     * Computes the partition of a tuple from its join key.
+     * Every level mixes the key hash with a different seed, so a partition that is partitioned again
+     * spreads over the new partitions instead of landing in a single one.
+     * @param tuple The tuple to partition.
+     * @param keyIndexes The positions of the join key columns in the tuple.
+     * @param depth The partitioning level, 0 for the partitioning of the inputs.
+     * @return The index of the partition.
+     */
+    private static int partitionOf(Tuple tuple, int[] keyIndexes, int depth) {
+        int hash = 1;
+        for (int index : keyIndexes) {
+            hash = 31 * hash + tuple.getValue(index);
+        }
+        hash ^= (depth + 1) * 0x9E3779B9;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        hash ^= hash >>> 16;
+        return hash & (PARTITION_FANOUT - 1);
+    }
+
+    /**
+     * Starts joining the next partition pair.
+     * @return False if all partition pairs are joined, true otherwise.
+     *
+     * @Description
+     * The smaller side of the pair becomes the build side. If it fits into the memory budget, it is loaded into the
+     * hash table. Otherwise, the pair is partitioned again, or, at the deepest level, the build side is loaded in
+     * chunks that fit the budget.
+     */
+    private boolean nextPartition() {
+        while (!pendingPartitions.isEmpty()) {
+            Partition partition = pendingPartitions.pop();
+            buildLeft = partition.left.getSize() < partition.right.getSize();
+            SpillFile buildFile = buildLeft ? partition.left : partition.right;
+            if (buildFile.getSize() > memoryBudget && partition.depth < MAX_PARTITION_DEPTH) {
+                repartition(partition);
+                continue;
+            }
+
+            currentPartition = partition;
+            buildReader = buildFile.openReader();
+            loadChunk();
+            if (!buildReader.hasRemaining()) {
+                buildReader.close();
+                buildReader = null;
+            }
+            probeReader = (buildLeft ? partition.right : partition.left).openReader();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Loads the next tuples of the build partition into the hash table, up to the memory budget.
+     * At least one tuple is loaded into every chunk.
+     */
+    private void loadChunk() {
+        hashTable = new HashMap<>();
+        int[] buildKeyIndexes = buildLeft ? leftKeyIndexes : rightKeyIndexes;
+        long size = 0;
+        Tuple tuple;
+        while (size < memoryBudget && (tuple = buildReader.readTuple()) != null) {
+            hashTable.computeIfAbsent(tuple.project(buildKeyIndexes), key -> new ArrayList<>(1)).add(tuple);
+            size += tuple.estimateSize();
+        }
+    }
+
+    /**
+     * Returns the next batch of the probe input, first from the tuples read while building,
+     * then from the probe child.
+     * @return The next probe batch, or NULL if the probe input is exhausted.
+     */
+    private TupleBatch nextProbeBatch() {
+        if (pendingPartitions != null) {
+            return nextPartitionedProbeBatch();
+        }
+        if (hashTable.isEmpty()) {
+            return null; // Nothing can match
+        }
+        if (probeIterator.hasNext()) {
+            TupleBatch batch = new TupleBatch((buildLeft ? rightChild : leftChild).getTableSchema().size());
+            while (!batch.isFull() && probeIterator.hasNext()) {
+                batch.appendRow(probeIterator.next());
+            }
+            return batch;
+        }
+        if (probeExhausted) {
+            return null;
+        }
+        TupleBatch batch = buildLeft ? rightChild.getNextBatch() : leftChild.getNextBatch();
+        probeExhausted = batch == null;
+        return batch;
+    }
+
+    /**
+     * Returns the next batch of the probe partition, moving on to the next chunk of the build partition
+     * or to the next partition pair once the probe partition is exhausted.
+     * A batch never spans two chunks, so all of its rows are probed against the same hash table.
+     * @return The next probe batch, or NULL if all partition pairs are joined.
+     */
+    private TupleBatch nextPartitionedProbeBatch() {
+        while (true) {
+            if (probeReader != null) {
+                TupleBatch batch = null;
+                Tuple tuple;
+                while ((batch == null || !batch.isFull()) && (tuple = probeReader.readTuple()) != null) {
+                    if (batch == null) {
+                        batch = new TupleBatch(tuple.size());
+                    }
+                    batch.appendRow(tuple);
+                }
+                if (batch != null) {
+                    return batch;
+                }
+                probeReader.close();
+                probeReader = null;
+
+                if (buildReader != null) {
+                    // Scan the probe partition again for the next chunk of the build partition
+                    loadChunk();
+                    if (!buildReader.hasRemaining()) {
+                        buildReader.close();
+                        buildReader = null;
+                    }
+                    probeReader = (buildLeft ? currentPartition.right : currentPartition.left).openReader();
+                    continue;
+                }
+                currentPartition.delete();
+                currentPartition = null;
+            }
+
+            if (!nextPartition()) {
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public void reset() {
+        leftChild.reset();
+        rightChild.reset();
+        deleteSpillFiles();
+        hashTable = null;
+        probeIterator = null;
+        probeBatch = null;
+        matches = null;
+        outputBatch = null;
+        spilledBytes = 0;
+        partitionCount = 0;
+    }
+
+    /**
+     * Closes and deletes all spill files that are still in use.
+     */
+    private void deleteSpillFiles() {
+        if (buildReader != null) {
+            buildReader.close();
+            buildReader = null;
+        }
+        if (probeReader != null) {
+            probeReader.close();
+            probeReader = null;
+        }
+        if (currentPartition != null) {
+            currentPartition.delete();
+            currentPartition = null;
+        }
+        if (pendingPartitions != null) {
+            for (Partition partition : pendingPartitions) {
+                partition.delete();
+            }
+            pendingPartitions = null;
+        }
+    }
+
+    public long getSpilledBytes() {
+        return spilledBytes;
+    }
+
+    public int getPartitionCount() {
+        return partitionCount;
+    }
+
+    /**
+     * Returns the name of the two tables with JOIN keyword in between.
+     * @return The name of the table.
+     */
+    @Override
+    public String getTableName() {
+        return leftChild.getTableName() + " JOIN " + rightChild.getTableName();
+    }
+
+    @Override
+    public List<String> getTableSchema() {
+        return schema;
+    }
+
+    /**
+     * A pair of spill files holding the left and right tuples whose join keys hash to the same partition.
+     */
+    private static class Partition {
+        private final SpillFile left = new SpillFile();
+        private final SpillFile right = new SpillFile();
+        private final int depth;
+
+        private Partition(int depth) {
+            this.depth = depth;
+        }
+
+        private void delete() {
+            left.delete();
+            right.delete();
+        }
+    }
+
+    @Override
+    public List<Operator> getChildren() {
+        return Arrays.asList(leftChild, rightChild);
+    }
+}
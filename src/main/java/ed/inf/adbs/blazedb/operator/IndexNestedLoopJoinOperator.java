@@ -0,0 +1,190 @@
+package ed.inf.adbs.blazedb.operator;
+
+import ed.inf.adbs.blazedb.ExpressionEvaluator;
+import ed.inf.adbs.blazedb.Tuple;
+import ed.inf.adbs.blazedb.TupleBatch;
+import net.sf.jsqlparser.expression.Expression;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The IndexNestedLoopJoinOperator class joins an outer input with a table through an index on the join column of
+ * the table. Instead of rescanning the inner table for every outer tuple like the JoinOperator, it looks up the
+ * value of the outer join column in the index with IndexScanOperator.seek() and reads only the matching rows,
+ * so a small outer input costs a few index lookups however large the inner table is.
+ * The join condition, and the selection condition of the inner table, are applied to every combined row.
+ * The output follows the order of the outer input.
+ * <br><br>
+ * The IndexNestedLoopJoinOperator class contains the following methods:<br>
+ * - getNextTuple(): Retrieves the next tuple that satisfies the join condition.<br>
+ * - getNextBatch(): Retrieves the next batch of tuples that satisfy the join condition.<br>
+ * - reset(): Resets the iterator to the start.<br>
+ * - getTableName(): Returns the name of the table.<br>
+ * - getTableSchema(): Returns the schema of the table.<br>
+ * - getChildren(): Returns the child operators.<br>
+ * - getSortOrder(): Returns the sort order of the outer input.<br>
+ * - getLookupCount(): Returns the number of index lookups made.
+ * <br><br>
+ * The IndexNestedLoopJoinOperator class also contains the following instance variables:<br>
+ * - leftChild: The outer input.<br>
+ * - innerScan: The index scan of the inner table, moved to the key of every outer tuple.<br>
+ * - outerKeyIndex: The position of the outer join column in the schema of the outer input.<br>
+ * - schema: The schema of the joined table.<br>
+ * - evaluator: The join condition compiled against the joined schema, or null if there is none to check.<br>
+ * - outerTuple: The current outer tuple in tuple mode.<br>
+ * - outerBatch, outerPosition: The current outer batch in batch mode and the position of its current row.<br>
+ * - innerValues: The buffer the inner rows are read into in batch mode.<br>
+ * - lookupCount: The number of index lookups made.
+ */
+public class IndexNestedLoopJoinOperator extends Operator {
+    private final Operator leftChild;
+    private final IndexScanOperator innerScan;
+    private final int outerKeyIndex;
+    private final List<String> schema;
+    private final ExpressionEvaluator evaluator;
+    private Tuple outerTuple;
+    private TupleBatch outerBatch;
+    private int outerPosition;
+    private final int[] innerValues;
+    private long lookupCount;
+
+    /**
+     * Creates an index nested loop join.
+     * @param leftChild The outer input.
+     * @param innerScan The index scan of the inner table, on the inner join column.
+     * @param outerKeyColumn The fully qualified name of the outer join column, equal to the key of the index.
+     * @param joinCondition The conditions every combined row has to satisfy, or null.
+     */
+    public IndexNestedLoopJoinOperator(Operator leftChild, IndexScanOperator innerScan, String outerKeyColumn,
+                                       Expression joinCondition) {
+        this.leftChild = leftChild;
+        this.innerScan = innerScan;
+        this.outerKeyIndex = leftChild.getTableSchema().indexOf(outerKeyColumn);
+        if (outerKeyIndex < 0) {
+            throw new RuntimeException("Unknown join column: " + outerKeyColumn);
+        }
+        this.schema = new ArrayList<>();
+        this.schema.addAll(leftChild.getTableSchema());
+        this.schema.addAll(innerScan.getTableSchema());
+        this.evaluator = joinCondition != null ? ExpressionEvaluator.compile(joinCondition, schema) : null;
+        this.innerValues = new int[innerScan.getTableSchema().size()];
+    }
+
+    /**
+     * Retrieves the next tuple that satisfies the join condition.
+     * @return A Tuple object representing the joined row of data, or NULL if EOF reached.
+     */
+    @Override
+    public Tuple getNextTuple() {
+        while (true) {
+            if (outerTuple != null) {
+                Tuple innerTuple;
+                while ((innerTuple = innerScan.getNextTuple()) != null) {
+                    Tuple joinedTuple = outerTuple.concat(innerTuple);
+                    if (evaluator == null || evaluator.test(joinedTuple)) {
+                        return joinedTuple;
+                    }
+                }
+            }
+            outerTuple = leftChild.getNextTuple();
+            if (outerTuple == null) {
+                return null;
+            }
+            int key = outerTuple.getValue(outerKeyIndex);
+            innerScan.seek(key, key);
+            lookupCount++;
+        }
+    }
+
+    /**
+     * Retrieves the next batch of tuples that satisfy the join condition.
+     * @return A TupleBatch with the joined rows, or NULL if EOF reached.
+     *
+     * @Description
+     * The matching inner rows of every outer row are read straight into the output columns after the outer values,
+     * and the row is removed again if the join condition does not hold on it. The position in the outer batch and
+     * in the matches of the current outer row are kept between calls, so the join resumes where it stopped when the
+     * output batch became full.
+     */
+    @Override
+    public TupleBatch getNextBatch() {
+        TupleBatch output = new TupleBatch(schema.size());
+        int[][] columns = output.getColumns();
+        int outerWidth = schema.size() - innerValues.length;
+        while (true) {
+            if (outerBatch != null && outerPosition < outerBatch.size()) {
+                int outerRow = outerBatch.getRowIndex(outerPosition);
+                while (!output.isFull() && innerScan.readNextValues(innerValues)) {
+                    int row = output.getRowCount();
+                    for (int column = 0; column < outerWidth; column++) {
+                        columns[column][row] = outerBatch.getValue(column, outerRow);
+                    }
+                    for (int column = 0; column < innerValues.length; column++) {
+                        columns[outerWidth + column][row] = innerValues[column];
+                    }
+                    output.setRowCount(row + 1);
+                    if (evaluator != null && !evaluator.test(output, row)) {
+                        output.removeLastRow();
+                    }
+                }
+                if (output.isFull()) {
+                    return output;
+                }
+                outerPosition++;
+            } else {
+                outerBatch = leftChild.getNextBatch();
+                outerPosition = 0;
+                if (outerBatch == null) {
+                    return output.getRowCount() > 0 ? output : null;
+                }
+            }
+            if (outerPosition < outerBatch.size()) {
+                int key = outerBatch.getValue(outerKeyIndex, outerBatch.getRowIndex(outerPosition));
+                innerScan.seek(key, key);
+                lookupCount++;
+            }
+        }
+    }
+
+    @Override
+    public void reset() {
+        leftChild.reset();
+        outerTuple = null;
+        outerBatch = null;
+        outerPosition = 0;
+    }
+
+    /**
+     * Returns the name of the two tables with JOIN keyword in between.
+     * @return The name of the table.
+     */
+    @Override
+    public String getTableName() {
+        return leftChild.getTableName() + " JOIN " + innerScan.getTableName();
+    }
+
+    @Override
+    public List<String> getTableSchema() {
+        return schema;
+    }
+
+    /**
+     * Returns the columns the output is sorted on.
+     * @return The sort order of the outer input, since the matches of every outer tuple follow it.
+     */
+    @Override
+    public List<String> getSortOrder() {
+        return leftChild.getSortOrder();
+    }
+
+    public long getLookupCount() {
+        return lookupCount;
+    }
+
+    @Override
+    public List<Operator> getChildren() {
+        return Arrays.asList(leftChild, innerScan);
+    }
+}
@@ -0,0 +1,380 @@
+package ed.inf.adbs.blazedb.operator;
+
+import ed.inf.adbs.blazedb.BPlusTree;
+import ed.inf.adbs.blazedb.DatabaseCatalog;
+import ed.inf.adbs.blazedb.HashIndex;
+import ed.inf.adbs.blazedb.RangePredicate;
+import ed.inf.adbs.blazedb.TupleBatch;
+import net.sf.jsqlparser.expression.Expression;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The IndexScanOperator class scans the rows of a table whose key lies within a range, found through a BPlusTree
+ * index on the key column instead of reading the whole table file, or the rows of a single key, found through a
+ * HashIndex.
+ * The entries of a range are read leaf by leaf, and the row of every entry is fetched by its row id by a RowFetcher:
+ * parsed at its byte offset in a CSV file, or decoded from its page of a columnar file. For a clustered
+ * index the rows of the range are stored one after the other, so they are read sequentially.
+ * The scan can be moved to another key with seek(), which the IndexNestedLoopJoinOperator does for every outer tuple.
+ * If the scan returns only the key column, the index covers the scan, and the keys are returned straight from the
+ * leaves without fetching any row.
+ * The rows are returned in key order, so the QueryPlanner can merge join them or drop the sort of an ORDER BY on the
+ * key. The range holds only the comparisons of the key with constants, so the rows still have to be filtered by a
+ * SelectOperator. It extends the ScanOperator, so it is also fused by the CompiledPipelineOperator.
+ * <br><br>
+ * The IndexScanOperator class extends the ScanOperator class and implements the following methods:<br>
+ * - forTable(String tableName, Expression selectionCondition, Collection<String> columns): Creates an index scan
+ *   if it is cheaper than a scan of the table.<br>
+ * - forLookup(String column, Collection<String> columns): Creates a scan for lookups through the cheapest index of
+ *   a column.<br>
+ * - estimateLookupCost(String column, boolean indexOnly): Estimates the cost of a lookup of one key.<br>
+ * - seek(long low, long high): Moves the scan to another range of keys.<br>
+ * - getNextBatch(): Retrieves the next batch of rows of the range.<br>
+ * - setColumns(Collection<String> columns): Restricts the output to the given columns.<br>
+ * - isIndexOnly(): Checks if the rows are returned from the index alone.<br>
+ * - reset(): Resets the iterator to the first entry of the range.<br>
+ * - getSortOrder(): Returns the key column.
+ * <br><br>
+ * The IndexScanOperator class also contains the following instance variables:<br>
+ * - index, hashIndex: The B+ tree or the hash index scanned, the other one is null.<br>
+ * - keyColumn: The name of the key column.<br>
+ * - start, end: The position of the first entry of the range and of the entry after the last.<br>
+ * - position: The position of the entry read next.<br>
+ * - lookupKey, lookupRowIds: The key looked up in the hash index and the row ids of its entries.<br>
+ * - leaf, leafKeys, leafRowIds: The number and the entries of the leaf read last.<br>
+ * - indexOnly: Whether the scan returns only the key column.<br>
+ * - fetcher: The reader of the rows of the entries.
+ */
+public class IndexScanOperator extends ScanOperator {
+    static final double SCAN_ROW_COST = 1.0;
+    static final double CLUSTERED_ROW_COST = 1.0;
+    static final double UNCLUSTERED_ROW_COST = 8.0;
+    static final double INDEX_ONLY_ROW_COST = 0.25;
+
+    private static final long[] NO_ROW_IDS = new long[0];
+
+    private final BPlusTree index;
+    private final HashIndex hashIndex;
+    private final String keyColumn;
+    private long start;
+    private long end;
+    private long position;
+    private int lookupKey;
+    private long[] lookupRowIds = NO_ROW_IDS;
+    private int leaf = -1;
+    private final int[] leafKeys = new int[BPlusTree.LEAF_CAPACITY];
+    private final long[] leafRowIds = new long[BPlusTree.LEAF_CAPACITY];
+    private boolean indexOnly;
+    private final RowFetcher fetcher;
+
+    /**
+     * Creates a scan of the rows whose key lies within a range.
+     * @param tableName The name of the table.
+     * @param index The index of the key column, built from the current table file.
+     * @param low The smallest key of the range.
+     * @param high The largest key of the range.
+     */
+    public IndexScanOperator(String tableName, BPlusTree index, long low, long high) throws IOException {
+        this(tableName, index, null);
+        seek(low, high);
+    }
+
+    /**
+     * Creates a scan of the rows of a key.
+     * @param tableName The name of the table.
+     * @param hashIndex The hash index of the key column, built from the current table file.
+     * @param key The key.
+     */
+    public IndexScanOperator(String tableName, HashIndex hashIndex, int key) throws IOException {
+        this(tableName, null, hashIndex);
+        seek(key, key);
+    }
+
+    private IndexScanOperator(String tableName, BPlusTree index, HashIndex hashIndex) throws IOException {
+        super(tableName, false);
+        DatabaseCatalog catalog = DatabaseCatalog.getInstance("");
+        this.index = index;
+        this.hashIndex = hashIndex;
+        this.keyColumn = catalog.getTableSchema(tableName).get(getKeyColumnIndex());
+        this.fetcher = new RowFetcher(tableName);
+        setColumns(getTableSchema());
+    }
+
+    /**
+     * Creates the cheapest index scan for the selection condition of a table.
+     * @param tableName The name of the table.
+     * @param selectionCondition The selection condition pushed down to the table, or null.
+     * @param columns The columns the query needs, or null for all columns.
+     * @return The index scan returning the given columns, or null if no index of the table covers a comparison of the
+     *         condition or a scan of the table is cheaper.
+     *
+     * @Description
+     * The key ranges are taken from the RangePredicate of the condition, and the index counts the entries within
+     * each range exactly. The cost of a scan of the table is one unit per row. The cost of an index scan is one unit
+     * per level of the tree plus, per entry of the range, one unit if the index is clustered, UNCLUSTERED_ROW_COST
+     * for the random reads of an unclustered index, or INDEX_ONLY_ROW_COST if the index covers the scan.
+     * A hash index only serves a range of a single key, for one unit for its bucket plus the same cost per entry.
+     * Resident tables are scanned from memory and never through an index.
+     */
+    public static IndexScanOperator forTable(String tableName, Expression selectionCondition, Collection<String> columns) throws IOException {
+        DatabaseCatalog catalog = DatabaseCatalog.getInstance("");
+        if (selectionCondition == null || catalog.getResidentTable(tableName) != null
+                || catalog.getIndexedColumns(tableName).isEmpty() && catalog.getHashIndexedColumns(tableName).isEmpty()) {
+            return null;
+        }
+        List<String> tableSchema = catalog.getTableSchema(tableName);
+        RangePredicate predicate = RangePredicate.extract(selectionCondition, tableSchema);
+        if (predicate == null) {
+            return null;
+        }
+        int[] outputColumns = columns != null ? selectColumns(tableSchema, columns) : null;
+
+        double bestCost = catalog.getTableRowCount(tableName) * SCAN_ROW_COST;
+        BPlusTree bestIndex = null;
+        for (String column : catalog.getIndexedColumns(tableName)) {
+            int keyColumn = tableSchema.indexOf(column);
+            if (!predicate.isConstrained(keyColumn)) {
+                continue;
+            }
+            BPlusTree index = catalog.getIndex(column);
+            boolean covering = outputColumns != null && outputColumns.length == 1 && outputColumns[0] == keyColumn;
+            double cost = index.getHeight() + index.count(predicate.getLow(keyColumn), predicate.getHigh(keyColumn))
+                    * getRowCost(covering, index.isClustered());
+            if (cost < bestCost) {
+                bestCost = cost;
+                bestIndex = index;
+            }
+        }
+        HashIndex bestHashIndex = null;
+        for (String column : catalog.getHashIndexedColumns(tableName)) {
+            int keyColumn = tableSchema.indexOf(column);
+            long key = predicate.getLow(keyColumn);
+            if (!predicate.isConstrained(keyColumn) || key != predicate.getHigh(keyColumn)
+                    || key < Integer.MIN_VALUE || key > Integer.MAX_VALUE) {
+                continue;
+            }
+            HashIndex index = catalog.getHashIndex(column);
+            boolean covering = outputColumns != null && outputColumns.length == 1 && outputColumns[0] == keyColumn;
+            double cost = 1 + index.lookup((int) key).length * getRowCost(covering, index.isClustered());
+            if (cost < bestCost) {
+                bestCost = cost;
+                bestHashIndex = index;
+            }
+        }
+        IndexScanOperator scan;
+        if (bestHashIndex != null) {
+            scan = new IndexScanOperator(tableName, bestHashIndex, (int) predicate.getLow(bestHashIndex.getKeyColumn()));
+        } else if (bestIndex != null) {
+            int keyColumn = bestIndex.getKeyColumn();
+            scan = new IndexScanOperator(tableName, bestIndex, predicate.getLow(keyColumn), predicate.getHigh(keyColumn));
+        } else {
+            return null;
+        }
+        if (columns != null) {
+            scan.setColumns(columns);
+        }
+        return scan;
+    }
+
+    /**
+     * Creates a scan for lookups of single keys through the cheapest index of a column, see estimateLookupCost().
+     * @param column The fully qualified name of the key column.
+     * @param columns The columns to return, or null for all columns.
+     * @return The scan, positioned on an empty range until seek() is called, or null if the column has no index.
+     */
+    public static IndexScanOperator forLookup(String column, Collection<String> columns) throws IOException {
+        DatabaseCatalog catalog = DatabaseCatalog.getInstance("");
+        String tableName = column.substring(0, column.indexOf('.'));
+        boolean indexOnly = columns != null && columns.size() == 1 && columns.contains(column);
+        HashIndex hashIndex = catalog.getHashIndex(column);
+        BPlusTree index = catalog.getIndex(column);
+        IndexScanOperator scan;
+        if (hashIndex != null && (index == null || getLookupCost(hashIndex, indexOnly) <= getLookupCost(index, indexOnly))) {
+            scan = new IndexScanOperator(tableName, null, hashIndex);
+        } else if (index != null) {
+            scan = new IndexScanOperator(tableName, index, null);
+        } else {
+            return null;
+        }
+        if (columns != null) {
+            scan.setColumns(columns);
+        }
+        return scan;
+    }
+
+    /**
+     * Estimates the cost of looking up the rows of one key through the cheapest index of a column.
+     * @param column The fully qualified name of the key column.
+     * @param indexOnly Whether only the key column is needed.
+     * @return The estimated cost in the units of forTable(), or POSITIVE_INFINITY if the column has no index or its
+     *         table is resident.
+     *
+     * @Description
+     * A lookup reads one bucket of a hash index or one node per level of a B+ tree, plus the average number of
+     * entries per key, each at the cost of forTable().
+     */
+    public static double estimateLookupCost(String column, boolean indexOnly) throws IOException {
+        DatabaseCatalog catalog = DatabaseCatalog.getInstance("");
+        String tableName = column.substring(0, column.indexOf('.'));
+        if (catalog.getResidentTable(tableName) != null) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double cost = Double.POSITIVE_INFINITY;
+        if (catalog.getHashIndexedColumns(tableName).contains(column)) {
+            cost = getLookupCost(catalog.getHashIndex(column), indexOnly);
+        }
+        if (catalog.getIndexedColumns(tableName).contains(column)) {
+            cost = Math.min(cost, getLookupCost(catalog.getIndex(column), indexOnly));
+        }
+        return cost;
+    }
+
+    private static double getLookupCost(HashIndex hashIndex, boolean indexOnly) {
+        return 1 + (double) hashIndex.getEntryCount() / Math.max(hashIndex.getDistinctKeyCount(), 1)
+                * getRowCost(indexOnly, hashIndex.isClustered());
+    }
+
+    private static double getLookupCost(BPlusTree index, boolean indexOnly) {
+        return index.getHeight() + (double) index.getEntryCount() / Math.max(index.getDistinctKeyCount(), 1)
+                * getRowCost(indexOnly, index.isClustered());
+    }
+
+    /**
+     * Returns the cost of fetching the row of an index entry.
+     */
+    private static double getRowCost(boolean indexOnly, boolean clustered) {
+        return indexOnly ? INDEX_ONLY_ROW_COST : clustered ? CLUSTERED_ROW_COST : UNCLUSTERED_ROW_COST;
+    }
+
+    /**
+     * Moves the scan to the rows whose key lies within a range, and resets it to the first of them.
+     * @param low The smallest key of the range.
+     * @param high The largest key of the range.
+     *
+     * @Description
+     * A B+ tree is descended twice for the positions of the first and after the last entry of the range. A hash index
+     * looks up the row ids of the key, and only supports ranges of a single key.
+     */
+    public void seek(long low, long high) {
+        try {
+            if (index != null) {
+                start = index.lowerBound(low);
+                end = Math.max(start, index.upperBound(high));
+            } else if (low != high) {
+                throw new RuntimeException("A hash index only supports lookups of single keys: " + keyColumn);
+            } else {
+                boolean valid = low >= Integer.MIN_VALUE && low <= Integer.MAX_VALUE;
+                lookupKey = (int) low;
+                lookupRowIds = valid ? hashIndex.lookup(lookupKey) : NO_ROW_IDS;
+                start = 0;
+                end = lookupRowIds.length;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading index of table: " + getTableName(), e);
+        }
+        position = start;
+    }
+
+    /**
+     * Returns the position of the key column in the table schema.
+     */
+    private int getKeyColumnIndex() {
+        return index != null ? index.getKeyColumn() : hashIndex.getKeyColumn();
+    }
+
+    /**
+     * Restricts the output of the scan to the given columns, and returns the keys from the index alone if the key
+     * column is the only one.
+     * @param columns The fully qualified names of the columns to return.
+     */
+    @Override
+    public void setColumns(Collection<String> columns) {
+        super.setColumns(columns);
+        if (keyColumn == null) {
+            return; // Called by the constructor of the ScanOperator
+        }
+        int[] outputColumns = getOutputColumns();
+        indexOnly = outputColumns.length == 1 && outputColumns[0] == getKeyColumnIndex();
+        fetcher.setColumns(columns, outputColumns);
+    }
+
+    public boolean isIndexOnly() {
+        return indexOnly;
+    }
+
+    /**
+     * Reads the row of the next entry of the range into the given buffer.
+     * @param values The buffer to fill, one entry per output column.
+     * @return False if the end of the range is reached, true otherwise.
+     */
+    @Override
+    boolean readNextValues(int[] values) {
+        if (position == end) {
+            return false;
+        }
+        try {
+            int key = lookupKey;
+            long rowId;
+            if (index != null) {
+                int entryLeaf = (int) (position / BPlusTree.LEAF_CAPACITY);
+                if (entryLeaf != leaf) {
+                    index.readLeaf(entryLeaf, leafKeys, leafRowIds);
+                    leaf = entryLeaf;
+                }
+                int slot = (int) (position % BPlusTree.LEAF_CAPACITY);
+                key = leafKeys[slot];
+                rowId = leafRowIds[slot];
+            } else {
+                rowId = lookupRowIds[(int) position];
+            }
+            if (indexOnly) {
+                values[0] = key;
+            } else {
+                fetcher.read(rowId, values);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading index of table: " + getTableName(), e);
+        }
+        position++;
+        return true;
+    }
+
+    /**
+     * Retrieves the next batch of rows of the range.
+     * @return A TupleBatch with up to DEFAULT_CAPACITY rows, or NULL if the end of the range is reached.
+     */
+    @Override
+    public TupleBatch getNextBatch() {
+        TupleBatch batch = new TupleBatch(getTableSchema().size());
+        int[][] columns = batch.getColumns();
+        int[] values = new int[columns.length];
+        int row = 0;
+        while (row < TupleBatch.DEFAULT_CAPACITY && readNextValues(values)) {
+            for (int column = 0; column < values.length; column++) {
+                columns[column][row] = values[column];
+            }
+            row++;
+        }
+        batch.setRowCount(row);
+        return row == 0 ? null : batch;
+    }
+
+    @Override
+    public void reset() {
+        position = start;
+    }
+
+    /**
+     * Returns the columns the output is sorted on.
+     * @return The key column, since the entries are read in key order, if the scan returns it.
+     *         The rows of a hash index lookup all hold the same key.
+     */
+    @Override
+    public List<String> getSortOrder() {
+        return getTableSchema().contains(keyColumn) ? Collections.singletonList(keyColumn) : Collections.emptyList();
+    }
+}
@@ -0,0 +1,321 @@
+package ed.inf.adbs.blazedb.operator;
+
+import ed.inf.adbs.blazedb.BlazeDBConfig;
+import ed.inf.adbs.blazedb.ConditionExtractor;
+import ed.inf.adbs.blazedb.ExpressionEvaluator;
+import ed.inf.adbs.blazedb.Tuple;
+import net.sf.jsqlparser.expression.BinaryExpression;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThan;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThanEquals;
+import net.sf.jsqlparser.expression.operators.relational.MinorThan;
+import net.sf.jsqlparser.schema.Column;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The InequalityJoinOperator class joins two inputs on range comparisons (<, <=, >, >=) between their columns,
+ * such as Student.C < Course.E, without evaluating the join condition on every pair of tuples.
+ * One input (the sorted input) is buffered and sorted on the column of the first inequality. For every tuple of the
+ * other input (the probe input), the sorted tuples that satisfy the inequality form a contiguous range that is found
+ * by binary search, so only the matching tuples are visited.
+ * <br><br>
+ * A second inequality on the same sorted column, as in the band join Course.E <= Student.C AND Student.C < Course.F,
+ * narrows the same range from the other end. For such band joins the input that holds the shared column is sorted.
+ * Further inequalities and all other join conditions are applied to the tuples in the range.
+ * If the sorted input exceeds the join memory budget, it is sorted in blocks that fit the budget and the probe
+ * input is scanned once per block.
+ * <br><br>
+ * The InequalityJoinOperator class contains the following methods:<br>
+ * - getNextTuple(): Retrieves the next tuple that satisfies the join condition.<br>
+ * - reset(): Resets the iterator to the start.<br>
+ * - getTableName(): Returns the name of the table.<br>
+ * - getTableSchema(): Returns the schema of the table.<br>
+ * - getChildren(): Returns the child operators.
+ * <br><br>
+ * The InequalityJoinOperator class also contains the following instance variables:<br>
+ * - leftChild, rightChild: The child operators of the InequalityJoinOperator.<br>
+ * - schema: The schema of the joined table.<br>
+ * - sortLeft: Whether the left input is the sorted input.<br>
+ * - sortedKeyIndex: The position of the compared column in the schema of the sorted input.<br>
+ * - comparisons, probeKeyIndexes: The range comparisons between the sorted column and the probe columns
+ *   at the given positions, one or two of them.<br>
+ * - residualEvaluator: The remaining join conditions compiled against the joined schema, or null if there are none.<br>
+ * - memoryBudget: The number of bytes available for a block of sorted tuples.<br>
+ * - block, blockKeys: The current block of sorted tuples and their values of the sorted column.<br>
+ * - sortedExhausted: Whether the last block of the sorted input has been read.<br>
+ * - probeTuple, position, rangeEnd: The current probe tuple and the range of matching sorted tuples still to visit.<br>
+ * - started: Whether the first block has been read.
+ */
+public class InequalityJoinOperator extends Operator {
+
+    /**
+     * The relation of a value of the sorted column to a value of the probe column.
+     */
+    private enum Comparison {
+        LESS, LESS_EQUAL, GREATER, GREATER_EQUAL;
+
+        private Comparison flip() {
+            switch (this) {
+                case LESS: return GREATER;
+                case LESS_EQUAL: return GREATER_EQUAL;
+                case GREATER: return LESS;
+                default: return LESS_EQUAL;
+            }
+        }
+
+        private static Comparison of(Expression condition) {
+            if (condition instanceof MinorThan) return LESS;
+            if (condition instanceof GreaterThan) return GREATER;
+            if (condition instanceof GreaterThanEquals) return GREATER_EQUAL;
+            return LESS_EQUAL;
+        }
+    }
+
+    private final Operator leftChild;
+    private final Operator rightChild;
+    private final List<String> schema;
+    private final boolean sortLeft;
+    private final int sortedKeyIndex;
+    private final Comparison[] comparisons;
+    private final int[] probeKeyIndexes;
+    private final ExpressionEvaluator residualEvaluator;
+    private final long memoryBudget;
+    private List<Tuple> block;
+    private int[] blockKeys;
+    private boolean sortedExhausted;
+    private Tuple probeTuple;
+    private int position;
+    private int rangeEnd;
+    private boolean started;
+
+    public InequalityJoinOperator(Operator leftChild, Operator rightChild, Expression joinCondition) {
+        this(leftChild, rightChild, joinCondition, BlazeDBConfig.getJoinMemoryBudget());
+    }
+
+    public InequalityJoinOperator(Operator leftChild, Operator rightChild, Expression joinCondition, long memoryBudget) {
+        this.leftChild = leftChild;
+        this.rightChild = rightChild;
+        this.memoryBudget = memoryBudget;
+        this.schema = new ArrayList<>();
+        this.schema.addAll(leftChild.getTableSchema());
+        this.schema.addAll(rightChild.getTableSchema());
+
+        // Normalize the inequalities to the form <left column> <comparison> <right column>
+        List<String> leftSchema = leftChild.getTableSchema();
+        List<String> rightSchema = rightChild.getTableSchema();
+        List<int[]> columnPairs = new ArrayList<>();
+        List<Comparison> leftToRight = new ArrayList<>();
+        List<Expression> inequalities = new ArrayList<>();
+        List<Expression> otherConditions = new ArrayList<>();
+        for (Expression condition : ConditionExtractor.getConjuncts(joinCondition)) {
+            if (ConditionExtractor.isInequalityJoinCondition(condition, leftSchema, rightSchema)) {
+                String first = ((Column) ((BinaryExpression) condition).getLeftExpression()).getFullyQualifiedName();
+                String second = ((Column) ((BinaryExpression) condition).getRightExpression()).getFullyQualifiedName();
+                boolean firstOnLeft = leftSchema.contains(first) && rightSchema.contains(second);
+                columnPairs.add(new int[] {
+                        leftSchema.indexOf(firstOnLeft ? first : second),
+                        rightSchema.indexOf(firstOnLeft ? second : first)});
+                leftToRight.add(firstOnLeft ? Comparison.of(condition) : Comparison.of(condition).flip());
+                inequalities.add(condition);
+            } else {
+                otherConditions.add(condition);
+            }
+        }
+        if (columnPairs.isEmpty()) {
+            throw new RuntimeException("Inequality join requires a range comparison between the two inputs.");
+        }
+
+        // Sort the input holding a column shared by the first two inequalities, the right input otherwise
+        int rangeCount = 1;
+        if (columnPairs.size() > 1 && columnPairs.get(0)[0] == columnPairs.get(1)[0]) {
+            sortLeft = true;
+            rangeCount = 2;
+        } else {
+            sortLeft = false;
+            if (columnPairs.size() > 1 && columnPairs.get(0)[1] == columnPairs.get(1)[1]) {
+                rangeCount = 2;
+            }
+        }
+        int sortedSide = sortLeft ? 0 : 1;
+        this.sortedKeyIndex = columnPairs.get(0)[sortedSide];
+        this.comparisons = new Comparison[rangeCount];
+        this.probeKeyIndexes = new int[rangeCount];
+        for (int i = 0; i < rangeCount; i++) {
+            comparisons[i] = sortLeft ? leftToRight.get(i) : leftToRight.get(i).flip();
+            probeKeyIndexes[i] = columnPairs.get(i)[1 - sortedSide];
+        }
+
+        // The inequalities that do not narrow the range are checked with the other conditions
+        otherConditions.addAll(inequalities.subList(rangeCount, inequalities.size()));
+        Expression residual = null;
+        for (Expression condition : otherConditions) {
+            residual = (residual == null) ? condition : new AndExpression(residual, condition);
+        }
+        this.residualEvaluator = residual != null ? ExpressionEvaluator.compile(residual, schema) : null;
+    }
+
+    /**
+     * Retrieves the next tuple that satisfies the join condition.
+     * @return A Tuple object representing the joined row of data, or NULL if EOF reached.
+     *
+     * @Description
+     * The sorted tuples in the range of the current probe tuple are returned one by one if they satisfy the
+     * remaining join conditions. Once the range is used up, the range of the next probe tuple is searched.
+     * When the probe input is exhausted, the next block of the sorted input is read and the probe child rescanned.
+     */
+    @Override
+    public Tuple getNextTuple() {
+        if (!started) {
+            block = new ArrayList<>();
+            started = true;
+            if (!readBlock()) {
+                return null; // Empty sorted input
+            }
+        }
+
+        while (true) {
+            while (probeTuple != null && position < rangeEnd) {
+                Tuple sortedTuple = block.get(position++);
+                Tuple joinedTuple = sortLeft ? sortedTuple.concat(probeTuple) : probeTuple.concat(sortedTuple);
+                if (residualEvaluator == null || residualEvaluator.test(joinedTuple)) {
+                    return joinedTuple;
+                }
+            }
+
+            Operator probeChild = sortLeft ? rightChild : leftChild;
+            probeTuple = probeChild.getNextTuple();
+            if (probeTuple == null) {
+                if (sortedExhausted || !readBlock()) {
+                    return null;
+                }
+                probeChild.reset();
+                continue;
+            }
+            findRange(probeTuple);
+        }
+    }
+
+    /**
+     * Finds the range of sorted tuples that satisfy the inequalities for the given probe tuple.
+     * @param probeTuple The probe tuple.
+     */
+    private void findRange(Tuple probeTuple) {
+        int start = 0;
+        int end = blockKeys.length;
+        for (int i = 0; i < comparisons.length; i++) {
+            int value = probeTuple.getValue(probeKeyIndexes[i]);
+            switch (comparisons[i]) {
+                case LESS:
+                    end = Math.min(end, lowerBound(value));
+                    break;
+                case LESS_EQUAL:
+                    end = Math.min(end, upperBound(value));
+                    break;
+                case GREATER:
+                    start = Math.max(start, upperBound(value));
+                    break;
+                default:
+                    start = Math.max(start, lowerBound(value));
+                    break;
+            }
+        }
+        position = start;
+        rangeEnd = end;
+    }
+
+    /**
+     * Returns the position of the first sorted value that is greater than or equal to the given value.
+     */
+    private int lowerBound(int value) {
+        int low = 0;
+        int high = blockKeys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (blockKeys[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the position of the first sorted value that is greater than the given value.
+     */
+    private int upperBound(int value) {
+        int low = 0;
+        int high = blockKeys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (blockKeys[middle] <= value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Reads and sorts the next block of the sorted input that fills the memory budget.
+     * At least one tuple is read into every block.
+     * @return False if the sorted input is exhausted, true otherwise.
+     */
+    private boolean readBlock() {
+        Operator sortedChild = sortLeft ? leftChild : rightChild;
+        block.clear();
+        long size = 0;
+        Tuple tuple = null;
+        while (size < memoryBudget && (tuple = sortedChild.getNextTuple()) != null) {
+            block.add(tuple);
+            size += tuple.estimateSize();
+        }
+        sortedExhausted = tuple == null;
+
+        int[] keyIndexes = {sortedKeyIndex};
+        block.sort((t1, t2) -> SortOperator.compare(t1, keyIndexes, t2, keyIndexes));
+        blockKeys = new int[block.size()];
+        for (int i = 0; i < blockKeys.length; i++) {
+            blockKeys[i] = block.get(i).getValue(sortedKeyIndex);
+        }
+        probeTuple = null;
+        return !block.isEmpty();
+    }
+
+    @Override
+    public void reset() {
+        leftChild.reset();
+        rightChild.reset();
+        block = null;
+        blockKeys = null;
+        sortedExhausted = false;
+        probeTuple = null;
+        position = 0;
+        rangeEnd = 0;
+        started = false;
+    }
+
+    /**
+     * Returns the name of the two tables with JOIN keyword in between.
+     * @return The name of the table.
+     */
+    @Override
+    public String getTableName() {
+        return leftChild.getTableName() + " JOIN " + rightChild.getTableName();
+    }
+
+    @Override
+    public List<String> getTableSchema() {
+        return schema;
+    }
+
+    @Override
+    public List<Operator> getChildren() {
+        return Arrays.asList(leftChild, rightChild);
+    }
+}
@@ -7,23 +7,33 @@ import net.sf.jsqlparser.expression.Expression;
 import java.io.IOException;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * The JoinOperator class is responsible for performing the join operation between two tables.
  * It takes two child operators as input and a join condition to perform the join operation.
  * <br><br>
+ * The QueryPlanner does not create this operator: it picks the hash, sort-merge, index nested loop,
+ * inequality or block nested loop join instead. The tuple nested loop join is kept as the simplest
+ * correct join, which the tests use as the reference for the other join algorithms and which any
+ * hand-built plan can fall back on. It only joins tuple at a time; batches come from the default
+ * adapter of the Operator class.
+ * <br><br>
  * The JoinOperator class contains the following methods:<br>
  * - getNextTuple(): Retrieves the next tuple that satisfies the join condition.<br>
  * - reset(): Resets the iterator to the start.<br>
  * - getTableName(): Returns the name of the table.<br>
- * - getTableSchema(): Returns the schema of the table.
+ * - getTableSchema(): Returns the schema of the table.<br>
+ * - getChildren(): Returns the child operators.
  * <br><br>
  * The JoinOperator class also contains the following instance variables:<br>
  * - leftChild: The left child operator of the JoinOperator.<br>
  * - rightChild: The right child operator of the JoinOperator.<br>
  * - joinCondition: The join condition to be applied on the tuples.<br>
  * - schema: The schema of the joined table.<br>
- * - leftTuple: The current tuple from the left child operator.
+ * - evaluator: The join condition compiled against the joined schema, or null for a cross product.<br>
+ * - leftTuple: The current tuple from the left child operator.<br>
+ * - started: Whether the first left tuple has been fetched.
  */
 
 public class JoinOperator extends Operator {
@@ -31,7 +41,9 @@ public class JoinOperator extends Operator {
     private final Operator rightChild;
     private final Expression joinCondition;
     private final List<String> schema;
+    private final ExpressionEvaluator evaluator;
     private Tuple leftTuple;
+    private boolean started;
 
     public JoinOperator(Operator leftChild, Operator rightChild, Expression joinCondition) throws IOException {
         this.leftChild = leftChild;
@@ -40,7 +52,8 @@ public class JoinOperator extends Operator {
         this.schema = new ArrayList<>();
         this.schema.addAll(leftChild.getTableSchema());
         this.schema.addAll(rightChild.getTableSchema());
-        this.leftTuple = leftChild.getNextTuple();
+        this.evaluator = joinCondition != null ? ExpressionEvaluator.compile(joinCondition, schema) : null;
+        this.started = false;
     }
 
     /**
@@ -49,23 +62,23 @@ public class JoinOperator extends Operator {
      */
     @Override
     public Tuple getNextTuple() {
+        if (!started) {
+            leftTuple = leftChild.getNextTuple();
+            started = true;
+        }
+
         Tuple rightTuple;
         while (leftTuple != null) {
             while ((rightTuple = rightChild.getNextTuple()) != null) {
                 // Combine the values of the left and right tuples
-                List<Integer> tupleValues = new ArrayList<>();
-                tupleValues.addAll(leftTuple.getValues());
-                tupleValues.addAll(rightTuple.getValues());
-                Tuple joinedTuples = new Tuple(tupleValues);
+                Tuple joinedTuples = leftTuple.concat(rightTuple);
 
                 if (joinCondition == null) {
                     return joinedTuples; // Cross product case
                 }
 
                 // Evaluate the join condition
-                ExpressionEvaluator evaluator = new ExpressionEvaluator(joinedTuples, schema);
-                joinCondition.accept(evaluator);
-                if (evaluator.getResult()) {
+                if (evaluator.test(joinedTuples)) {
                     return joinedTuples; // Return only if the condition holds
                 }
             }
@@ -80,6 +93,8 @@ public class JoinOperator extends Operator {
     public void reset() {
         leftChild.reset();
         rightChild.reset();
+        started = false;
+        leftTuple = null;
     }
 
     /**
@@ -95,4 +110,9 @@ public class JoinOperator extends Operator {
     public List<String> getTableSchema() {
         return schema;
     }
+
+    @Override
+    public List<Operator> getChildren() {
+        return Arrays.asList(leftChild, rightChild);
+    }
 }
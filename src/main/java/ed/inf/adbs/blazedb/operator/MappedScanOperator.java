@@ -0,0 +1,373 @@
+package ed.inf.adbs.blazedb.operator;
+
+import ed.inf.adbs.blazedb.RangePredicate;
+import ed.inf.adbs.blazedb.Tuple;
+import ed.inf.adbs.blazedb.TupleBatch;
+import ed.inf.adbs.blazedb.ZoneMap;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The MappedScanOperator class scans a CSV table through a memory mapping of its file.
+ * The integers are parsed straight from the mapped bytes, so no String lines or split arrays are created, and the
+ * operating system pages the file in without copying it into a read buffer first. A reset only rewinds the position.
+ * <br><br>
+ * Files larger than SEGMENT_SIZE are mapped one segment at a time. A row that crosses the end of a segment is parsed
+ * again from the start of a new segment beginning at that row. The file is only opened while a segment is mapped,
+ * since a mapping stays valid after its channel is closed, so the scan holds no open file between calls.
+ * <br><br>
+ * With a ZoneMap, the scan reads only the given blocks of rows, seeking to the byte offset of each block.
+ * With a byte range, e.g. for a worker of the ParallelScanOperator, the scan reads only the rows whose first byte
+ * lies within the range, so the ranges of the workers can be cut anywhere and every row is read exactly once.
+ * <br><br>
+ * The MappedScanOperator class extends the ScanOperator class and implements the following methods:<br>
+ * - getNextTuple(): Retrieves the next tuple from the table.<br>
+ * - getNextBatch(): Retrieves the next batch of tuples from the table, parsed straight into column vectors.<br>
+ * - setBlocks(ZoneMap zoneMap, int[] blocks): Restricts the scan to the given blocks of the zone map.<br>
+ * - setRange(long start, long end): Restricts the scan to the rows starting within a byte range.<br>
+ * - getFilePosition(): Returns the byte offset of the next row in the file.<br>
+ * - readRowAt(long offset, int[] values): Reads the row at a byte offset, e.g. for the IndexScanOperator.<br>
+ * - reset(): Rewinds the scan to the start of the table.
+ * <br><br>
+ * The MappedScanOperator class also contains the following instance variables:<br>
+ * - segmentSize: The maximum size of a mapped segment.<br>
+ * - path: The path of the table file, opened to map its segments.<br>
+ * - fileSize: The size of the table file in bytes.<br>
+ * - buffer: The mapping of the current segment.<br>
+ * - segmentStart: The offset of the current segment in the file.<br>
+ * - position: The position of the next row within the current segment.<br>
+ * - zoneMap, blocks: The zone map and the blocks of it to read, or null to read the whole file.<br>
+ * - blockIndex: The entry of blocks read next.<br>
+ * - blockRowsLeft: The number of rows of the current block still to read.<br>
+ * - rangeStart, rangeEnd: The offset of the first row of the byte range and the end of the range,
+ *   or 0 and -1 to read the whole file.
+ */
+public class MappedScanOperator extends ScanOperator {
+    private static final long SEGMENT_SIZE = 1L << 30;
+    private static final int ROW = 1;
+    private static final int REJECTED = 0;
+    private static final int EOF = -1;
+
+    private final long segmentSize;
+    private final Path path;
+    private final long fileSize;
+    private MappedByteBuffer buffer;
+    private long segmentStart;
+    private int position;
+    private ZoneMap zoneMap;
+    private int[] blocks;
+    private int blockIndex;
+    private int blockRowsLeft;
+    private long rangeStart;
+    private long rangeEnd = -1;
+
+    public MappedScanOperator(String tableName) throws IOException {
+        this(tableName, SEGMENT_SIZE);
+    }
+
+    /**
+     * Creates a scan that maps segments of at most the given size, e.g. to test rows crossing segments.
+     * @param tableName The name of the table.
+     * @param segmentSize The maximum size of a mapped segment, larger than the longest row.
+     */
+    MappedScanOperator(String tableName, long segmentSize) throws IOException {
+        super(tableName, false);
+        this.segmentSize = segmentSize;
+        this.path = Paths.get(getTableFilePath());
+        this.fileSize = Files.size(path);
+        mapSegment(0);
+    }
+
+    /**
+     * Maps the segment of the file starting at the given offset.
+     * @param start The offset of the segment in the file.
+     */
+    private void mapSegment(long start) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(segmentSize, fileSize - start));
+            segmentStart = start;
+            position = 0;
+        } catch (IOException e) {
+            throw new RuntimeException("Error mapping table file of table: " + getTableName(), e);
+        }
+    }
+
+    /**
+     * Restricts the scan to the given blocks of a zone map of the table file.
+     * @param zoneMap The zone map of the table file.
+     * @param blocks The numbers of the blocks to read, in ascending order.
+     */
+    public void setBlocks(ZoneMap zoneMap, int[] blocks) {
+        this.zoneMap = zoneMap;
+        this.blocks = blocks;
+        reset();
+    }
+
+    /**
+     * Restricts the scan to the rows whose first byte lies within the given byte range of the file.
+     * @param start The offset of the start of the range.
+     * @param end The offset after the end of the range.
+     */
+    public void setRange(long start, long end) {
+        this.zoneMap = null;
+        this.blocks = null;
+        this.rangeEnd = end;
+        this.rangeStart = start == 0 ? 0 : findLineStart(start);
+        reset();
+    }
+
+    /**
+     * Returns the offset of the first line starting at or after the given offset,
+     * which follows the first line break at or after offset - 1.
+     */
+    private long findLineStart(long offset) {
+        seek(offset - 1);
+        while (true) {
+            if (position == buffer.limit()) {
+                if (segmentStart + position == fileSize) {
+                    return fileSize;
+                }
+                mapSegment(segmentStart + position);
+            }
+            if (buffer.get(position++) == '\n') {
+                return segmentStart + position;
+            }
+        }
+    }
+
+    /**
+     * Moves the position over line breaks and blank lines to the first byte of the next row.
+     */
+    private void skipLineBreaks() {
+        while (true) {
+            if (position == buffer.limit()) {
+                if (segmentStart + position == fileSize) {
+                    return;
+                }
+                mapSegment(segmentStart + position);
+            }
+            byte c = buffer.get(position);
+            if (c != '\n' && c != '\r') {
+                return;
+            }
+            position++;
+        }
+    }
+
+    /**
+     * Returns the byte offset in the file of the next row to read.
+     * @return The offset of the next row, or of blank lines before it.
+     */
+    public long getFilePosition() {
+        return segmentStart + position;
+    }
+
+    /**
+     * Reads the row starting at a byte offset of the file, e.g. the row id of an entry of a BPlusTree index.
+     * @param offset The offset of the row, or of blank lines before it.
+     * @param values The buffer to fill, one entry per output column.
+     * @return False if the offset is at the end of the file, true otherwise.
+     */
+    boolean readRowAt(long offset, int[] values) {
+        seek(offset);
+        return parseNextRow(values) == ROW;
+    }
+
+    /**
+     * Moves the scan to the given byte offset in the file, within the current segment if possible.
+     */
+    private void seek(long offset) {
+        if (offset >= segmentStart && offset <= segmentStart + buffer.limit()) {
+            position = (int) (offset - segmentStart);
+        } else {
+            mapSegment(offset);
+        }
+    }
+
+    @Override
+    public Tuple getNextTuple() {
+        int[] values = new int[getTableSchema().size()];
+        return readNextValues(values) ? new Tuple(values) : null;
+    }
+
+    /**
+     * Reads the next row into the given buffer, moving to the next block of the zone map when the current one is done
+     * and stopping at the end of the byte range. The rows rejected by the predicate are skipped.
+     * @param values The buffer to fill, one entry per column.
+     * @return False if EOF or the end of the last block is reached, true otherwise.
+     */
+    @Override
+    boolean readNextValues(int[] values) {
+        while (true) {
+            int result;
+            if (rangeEnd >= 0) {
+                skipLineBreaks();
+                if (getFilePosition() >= rangeEnd) {
+                    return false;
+                }
+                result = parseNextRow(values);
+            } else if (blocks == null) {
+                result = parseNextRow(values);
+            } else {
+                while (blockRowsLeft == 0) {
+                    if (blockIndex == blocks.length) {
+                        return false;
+                    }
+                    int block = blocks[blockIndex++];
+                    seek(zoneMap.getBlockOffset(block));
+                    blockRowsLeft = zoneMap.getBlockRowCount(block);
+                }
+                blockRowsLeft--;
+                result = parseNextRow(values);
+            }
+            if (result != REJECTED) {
+                return result == ROW;
+            }
+        }
+    }
+
+    /**
+     * Parses the next row of the mapped file into the given buffer.
+     * @param values The buffer to fill, one entry per output column.
+     * @return ROW if a row was read, REJECTED if the row lies outside the predicate, EOF if EOF reached.
+     *
+     * @Description
+     * Like ScanOperator.parseLine(), digits are accumulated into the current value, a minus sign in front of the
+     * digits negates it and a comma ends it, while spaces and carriage returns are skipped. Empty lines are skipped,
+     * and any other character, a value without digits or outside the int range, and a wrong number of values fail
+     * with an error naming the table. The columns that setColumns() has left out are parsed over but not stored.
+     * Once a value lies outside the range of its column, the rest of the row is only searched for the line break.
+     */
+    private int parseNextRow(int[] values) {
+        try {
+            return parseNextRowValues(values);
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Invalid row in table " + getTableName() + " at byte " + getFilePosition(), e);
+        }
+    }
+
+    private int parseNextRowValues(int[] values) {
+        int[] slots = getColumnSlots();
+        RangePredicate predicate = getPredicate();
+        while (true) {
+            int limit = buffer.limit();
+            int pos = position;
+            int column = 0;
+            long value = 0;
+            long valueLimit = Integer.MAX_VALUE;
+            boolean negative = false;
+            boolean digits = false;
+            boolean empty = true;
+            boolean rejected = false;
+            while (pos < limit) {
+                byte c = buffer.get(pos++);
+                if (rejected) {
+                    if (c == '\n') {
+                        position = pos;
+                        return REJECTED;
+                    }
+                } else if (c >= '0' && c <= '9') {
+                    value = value * 10 + (c - '0');
+                    if (value > valueLimit) {
+                        throw new NumberFormatException("Value out of int range in column " + (column + 1));
+                    }
+                    digits = true;
+                    empty = false;
+                } else if (c == ',') {
+                    ScanOperator.checkValue(digits, column, slots);
+                    int parsed = (int) (negative ? -value : value);
+                    if (predicate != null && !predicate.contains(column, parsed)) {
+                        rejected = true;
+                        continue;
+                    }
+                    if (slots[column] >= 0) {
+                        values[slots[column]] = parsed;
+                    }
+                    column++;
+                    value = 0;
+                    valueLimit = Integer.MAX_VALUE;
+                    negative = false;
+                    digits = false;
+                    empty = false;
+                } else if (c == '-' && !negative && !digits) {
+                    negative = true;
+                    valueLimit = -(long) Integer.MIN_VALUE;
+                    empty = false;
+                } else if (c == '\n') {
+                    position = pos;
+                    if (empty) {
+                        continue;
+                    }
+                    return finishRow(values, slots, predicate, column, (int) (negative ? -value : value), digits);
+                } else if (c != ' ' && c != '\r') {
+                    throw new NumberFormatException("Unexpected character '" + (char) c + "' in column " + (column + 1));
+                }
+            }
+
+            // The end of the segment is reached in the middle of a row
+            if (segmentStart + limit == fileSize) {
+                position = pos;
+                if (empty) {
+                    return EOF;
+                }
+                if (rejected) {
+                    return REJECTED;
+                }
+                // Last row without a line break
+                return finishRow(values, slots, predicate, column, (int) (negative ? -value : value), digits);
+            }
+            if (position == 0) {
+                throw new RuntimeException("Row longer than a mapped segment in table: " + getTableName());
+            }
+            mapSegment(segmentStart + position);
+        }
+    }
+
+    /**
+     * Stores the last value of a row once its line break or the end of the file is reached.
+     * @return ROW if the row was read, REJECTED if the value lies outside the predicate.
+     * @throws NumberFormatException If the value has no digits or the row has a wrong number of values.
+     */
+    private static int finishRow(int[] values, int[] slots, RangePredicate predicate, int column, int value, boolean digits) {
+        ScanOperator.checkValue(digits, column, slots);
+        if (column != slots.length - 1) {
+            throw new NumberFormatException("Expected " + slots.length + " values, found " + (column + 1));
+        }
+        if (predicate != null && !predicate.contains(column, value)) {
+            return REJECTED;
+        }
+        if (slots[column] >= 0) {
+            values[slots[column]] = value;
+        }
+        return ROW;
+    }
+
+    @Override
+    public TupleBatch getNextBatch() {
+        TupleBatch batch = new TupleBatch(getTableSchema().size());
+        int[][] columns = batch.getColumns();
+        int[] values = new int[columns.length];
+        int row = 0;
+        while (row < TupleBatch.DEFAULT_CAPACITY && readNextValues(values)) {
+            for (int column = 0; column < values.length; column++) {
+                columns[column][row] = values[column];
+            }
+            row++;
+        }
+        batch.setRowCount(row);
+        return row == 0 ? null : batch;
+    }
+
+    @Override
+    public void reset() {
+        blockIndex = 0;
+        blockRowsLeft = 0;
+        seek(rangeStart);
+    }
+}
@@ -1,7 +1,9 @@
 package ed.inf.adbs.blazedb.operator;
 
 import ed.inf.adbs.blazedb.Tuple;
+import ed.inf.adbs.blazedb.TupleBatch;
 
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -10,9 +12,17 @@ import java.util.List;
  * <br><br>
  * The Operator class contains the following methods:<br>
  * - getNextTuple(): Retrieves the next tuple from the iterator.<br>
+ * - getNextBatch(): Retrieves the next batch of tuples from the iterator.<br>
  * - reset(): Resets the iterator to the start.<br>
  * - getTableName(): Returns the name of the table.<br>
- * - getTableSchema(): Returns the schema of the table.
+ * - getTableSchema(): Returns the schema of the table.<br>
+ * - getSortOrder(): Returns the columns the output is known to be sorted on.<br>
+ * - getChildren(): Returns the child operators.
+ * <br><br>
+ * An operator tree is driven either tuple at a time through getNextTuple() or batch at a time through
+ * getNextBatch(), but the two must not be mixed on the same operator between two resets.
+ * Operators with a native batch implementation override getNextBatch(); all others inherit an adapter
+ * that fills the batch from getNextTuple(), so mixed plans keep working.
  */
 public abstract class Operator {
 
@@ -22,6 +32,23 @@ public abstract class Operator {
      */
     public abstract Tuple getNextTuple();
 
+    /**
+     * Retrieves the next batch of tuples from the iterator.
+     * The default implementation adapts getNextTuple() by collecting up to one batch of tuples.
+     * @return A non-empty TupleBatch, or NULL if EOF reached.
+     */
+    public TupleBatch getNextBatch() {
+        Tuple tuple = getNextTuple();
+        if (tuple == null) return null;
+
+        TupleBatch batch = new TupleBatch(tuple.size());
+        batch.appendRow(tuple);
+        while (!batch.isFull() && (tuple = getNextTuple()) != null) {
+            batch.appendRow(tuple);
+        }
+        return batch;
+    }
+
     /**
      * Resets the iterator to the start.
      */
@@ -38,4 +65,22 @@ public abstract class Operator {
      * @return A list of column names representing the schema of the table.
      */
     public abstract List<String> getTableSchema();
-}
\ No newline at end of file
+
+    /**
+     * Returns the columns the output is known to be sorted on, in ascending order of precedence.
+     * The default is an empty list, meaning that nothing is known about the order of the output.
+     * @return A list of column names, each a tie-breaker for the previous ones.
+     */
+    public List<String> getSortOrder() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Returns the child operators, e.g. to collect the statistics of the operators of a plan after it ran.
+     * The default is an empty list, for the scans at the leaves of a plan.
+     * @return The operators this operator reads its input from.
+     */
+    public List<Operator> getChildren() {
+        return Collections.emptyList();
+    }
+}
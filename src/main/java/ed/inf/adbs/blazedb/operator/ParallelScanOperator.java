@@ -0,0 +1,310 @@
+package ed.inf.adbs.blazedb.operator;
+
+import ed.inf.adbs.blazedb.BlazeDBConfig;
+import ed.inf.adbs.blazedb.DatabaseCatalog;
+import ed.inf.adbs.blazedb.RangePredicate;
+import ed.inf.adbs.blazedb.Tuple;
+import ed.inf.adbs.blazedb.TupleBatch;
+import ed.inf.adbs.blazedb.ZoneMap;
+import net.sf.jsqlparser.expression.Expression;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ParallelScanOperator class scans and filters a table on several worker threads and merges their output.
+ * The table file is split into partitions: byte ranges of a CSV file, cut anywhere since every row belongs to the range
+ * holding its first byte, or page ranges of a columnar file. If the table has a ZoneMap, the blocks it selects for the
+ * selection condition are split among the workers instead. Every worker scans its partition with its own
+ * MappedScanOperator, which drops the rows outside the RangePredicate of the condition while parsing them, or
+ * ColumnarScanOperator, which filters the encoded pages by the RangePredicate, and filters the batches with its own
+ * SelectOperator, so the selection runs inside the workers. The batches are handed over through a bounded queue in the
+ * order they are completed, so the output order of the rows is not defined.
+ * <br><br>
+ * The ParallelScanOperator class contains the following methods:<br>
+ * - forTable(String tableName, Expression selectionCondition, Collection<String> columns): Creates a parallel scan
+ *   that returns the given columns if the table is large enough.<br>
+ * - getNextTuple(): Retrieves the next tuple that satisfies the selection condition.<br>
+ * - getNextBatch(): Retrieves the next batch produced by any worker.<br>
+ * - reset(): Stops the workers and resets the iterator to the start.<br>
+ * - getTableName(): Returns the name of the table.<br>
+ * - getTableSchema(): Returns the schema of the table.
+ * <br><br>
+ * The ParallelScanOperator class also contains the following instance variables:<br>
+ * - WORKERS: The thread pool shared by all parallel scans.<br>
+ * - tableName: The name of the table being scanned.<br>
+ * - tableSchema: The schema of the columns returned by the scan.<br>
+ * - partitions: The filtered scans of the partitions, one per worker.<br>
+ * - queue: The batches produced by the workers, or END when a worker is done.<br>
+ * - finished: The latch counting the workers that have stopped, or null before the workers are started.<br>
+ * - stopped: Whether reset() has asked the workers to stop.<br>
+ * - finishedWorkers: The number of END markers taken from the queue.<br>
+ * - failure: The first error thrown by a worker.<br>
+ * - batch, batchPosition: The batch getNextTuple() returns tuples from and the next position in it.
+ */
+public class ParallelScanOperator extends Operator {
+    private static final long MIN_PARTITION_BYTES = 4L * 1024 * 1024;
+    private static final int QUEUE_BATCHES_PER_WORKER = 4;
+    private static final TupleBatch END = new TupleBatch(new int[0][], 0, null, 0);
+    private static final ExecutorService WORKERS = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "blazedb-scan");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String tableName;
+    private final List<String> tableSchema;
+    private final List<Operator> partitions;
+    private final BlockingQueue<TupleBatch> queue;
+    private CountDownLatch finished;
+    private volatile boolean stopped;
+    private int finishedWorkers;
+    private volatile Throwable failure;
+    private TupleBatch batch;
+    private int batchPosition;
+
+    /**
+     * Creates a parallel scan of a table with the given number of partitions.
+     * @param tableName The name of the table.
+     * @param selectionCondition The selection condition evaluated by the workers.
+     * @param partitionCount The number of partitions and worker threads.
+     */
+    public ParallelScanOperator(String tableName, Expression selectionCondition, int partitionCount) throws IOException {
+        this(tableName, selectionCondition, partitionCount, null);
+    }
+
+    /**
+     * Creates a parallel scan of a table with the given number of partitions that returns only the given columns.
+     * @param tableName The name of the table.
+     * @param selectionCondition The selection condition evaluated by the workers.
+     * @param partitionCount The number of partitions and worker threads.
+     * @param columns The columns the query needs, which include the columns of the selection condition, or null for
+     *                all columns.
+     */
+    public ParallelScanOperator(String tableName, Expression selectionCondition, int partitionCount, Collection<String> columns) throws IOException {
+        this.tableName = tableName;
+        this.partitions = new ArrayList<>();
+        for (Operator scan : createPartitionScans(tableName, selectionCondition, partitionCount)) {
+            if (columns != null) {
+                if (scan instanceof ScanOperator) {
+                    ((ScanOperator) scan).setColumns(columns);
+                } else {
+                    ((ColumnarScanOperator) scan).setColumns(columns);
+                }
+            }
+            partitions.add(selectionCondition != null ? new SelectOperator(scan, selectionCondition) : scan);
+        }
+        this.tableSchema = partitions.get(0).getTableSchema();
+        this.queue = new ArrayBlockingQueue<>(QUEUE_BATCHES_PER_WORKER * partitions.size() + partitions.size());
+    }
+
+    /**
+     * Creates a parallel scan of a table if it pays off.
+     * @param tableName The name of the table.
+     * @param selectionCondition The selection condition pushed down to the table.
+     * @param columns The columns the query needs, or null for all columns.
+     * @return A ParallelScanOperator with one partition per MIN_PARTITION_BYTES of the table file, limited by the
+     *         configured parallelism, or null if the table is resident, if the table file is too small for two
+     *         partitions or is a CSV file that BlazeDBConfig selects the buffered scan for.
+     */
+    public static ParallelScanOperator forTable(String tableName, Expression selectionCondition, Collection<String> columns) throws IOException {
+        DatabaseCatalog catalog = DatabaseCatalog.getInstance("");
+        if (catalog.getResidentTable(tableName) != null) {
+            return null;
+        }
+        boolean columnar = catalog.isColumnar(tableName);
+        if (!columnar && BlazeDBConfig.getScanMode() != BlazeDBConfig.ScanMode.MAPPED) {
+            return null;
+        }
+        File tableFile = new File(columnar ? catalog.getColumnarFilePath(tableName) : catalog.getTableFilePath(tableName));
+        long partitionCount = Math.min(BlazeDBConfig.getScanParallelism(), tableFile.length() / MIN_PARTITION_BYTES);
+        if (partitionCount < 2) {
+            return null;
+        }
+        return new ParallelScanOperator(tableName, selectionCondition, (int) partitionCount, columns);
+    }
+
+    /**
+     * Creates the scans of the partitions of a table.
+     * @return At most partitionCount scans that together read every row, or every row in the blocks selected by the
+     *         zone map, exactly once.
+     */
+    private static List<Operator> createPartitionScans(String tableName, Expression selectionCondition, int partitionCount) throws IOException {
+        DatabaseCatalog catalog = DatabaseCatalog.getInstance("");
+        boolean columnar = catalog.isColumnar(tableName);
+        ZoneMap zoneMap = catalog.getZoneMap(tableName);
+        int[] blocks = zoneMap != null && selectionCondition != null
+                ? zoneMap.selectBlocks(selectionCondition, catalog.getTableSchema(tableName)) : null;
+        RangePredicate predicate = RangePredicate.extract(selectionCondition, catalog.getTableSchema(tableName));
+        List<Operator> scans = new ArrayList<>();
+
+        if (columnar) {
+            ColumnarScanOperator first = new ColumnarScanOperator(tableName);
+            int rowsPerPage = first.getFile().getRowsPerPage();
+            int[] pages = blocks != null && zoneMap.getBlockRows() == rowsPerPage ? blocks : null;
+            if (pages == null) {
+                pages = new int[first.getFile().getPageCount()];
+                for (int page = 0; page < pages.length; page++) {
+                    pages[page] = page;
+                }
+            }
+            int count = Math.max(1, Math.min(partitionCount, pages.length));
+            for (int i = 0; i < count; i++) {
+                ColumnarScanOperator scan = i == 0 ? first : new ColumnarScanOperator(tableName);
+                scan.setPages(Arrays.copyOfRange(pages, i * pages.length / count, (i + 1) * pages.length / count));
+                scan.setPredicate(predicate);
+                scans.add(scan);
+            }
+            return scans;
+        }
+
+        if (blocks != null) {
+            int count = Math.max(1, Math.min(partitionCount, blocks.length));
+            for (int i = 0; i < count; i++) {
+                MappedScanOperator scan = new MappedScanOperator(tableName);
+                scan.setBlocks(zoneMap, Arrays.copyOfRange(blocks, i * blocks.length / count, (i + 1) * blocks.length / count));
+                scan.setPredicate(predicate);
+                scans.add(scan);
+            }
+            return scans;
+        }
+        long fileSize = new File(catalog.getTableFilePath(tableName)).length();
+        for (int i = 0; i < partitionCount; i++) {
+            MappedScanOperator scan = new MappedScanOperator(tableName);
+            scan.setRange(fileSize * i / partitionCount, fileSize * (i + 1) / partitionCount);
+            scan.setPredicate(predicate);
+            scans.add(scan);
+        }
+        return scans;
+    }
+
+    /**
+     * Starts one worker per partition. Every worker puts the non-empty batches of its partition into the queue,
+     * followed by END, and stops early once reset() sets stopped.
+     * The workers are stopped with a flag rather than interrupted, since an interrupt during I/O would close the file
+     * channels shared through the BufferPool.
+     */
+    private void startWorkers() {
+        finished = new CountDownLatch(partitions.size());
+        CountDownLatch latch = finished;
+        for (Operator partition : partitions) {
+            WORKERS.execute(() -> {
+                try {
+                    TupleBatch next;
+                    while (!stopped && (next = partition.getNextBatch()) != null) {
+                        if (next.size() > 0) {
+                            offer(next);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure = e;
+                } finally {
+                    offer(END);
+                    latch.countDown();
+                }
+            });
+        }
+    }
+
+    /**
+     * Puts a batch into the queue, waiting while the queue is full unless the workers are stopped.
+     */
+    private void offer(TupleBatch next) {
+        try {
+            while (!stopped && !queue.offer(next, 10, TimeUnit.MILLISECONDS)) {
+                // The consumer is behind, try again
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public Tuple getNextTuple() {
+        while (batch == null || batchPosition == batch.size()) {
+            batch = getNextBatch();
+            batchPosition = 0;
+            if (batch == null) {
+                return null;
+            }
+        }
+        return batch.getTuple(batchPosition++);
+    }
+
+    /**
+     * Retrieves the next batch produced by any worker, starting the workers on the first call.
+     * @return A TupleBatch with the satisfying rows selected, or NULL once all workers are done.
+     */
+    @Override
+    public TupleBatch getNextBatch() {
+        if (finished == null) {
+            startWorkers();
+        }
+        try {
+            while (finishedWorkers < partitions.size()) {
+                TupleBatch next = queue.take();
+                if (failure != null) {
+                    throw new RuntimeException("Error in parallel scan of table: " + tableName, failure);
+                }
+                if (next == END) {
+                    finishedWorkers++;
+                } else {
+                    return next;
+                }
+            }
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted parallel scan of table: " + tableName, e);
+        }
+    }
+
+    /**
+     * Stops the workers, waits until they have let go of their partitions and resets the partitions.
+     */
+    @Override
+    public void reset() {
+        if (finished != null) {
+            stopped = true;
+            try {
+                finished.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            finished = null;
+            stopped = false;
+        }
+        queue.clear();
+        for (Operator partition : partitions) {
+            partition.reset();
+        }
+        finishedWorkers = 0;
+        failure = null;
+        batch = null;
+        batchPosition = 0;
+    }
+
+    int getPartitionCount() {
+        return partitions.size();
+    }
+
+    @Override
+    public String getTableName() {
+        return tableName;
+    }
+
+    @Override
+    public List<String> getTableSchema() {
+        return tableSchema;
+    }
+}
@@ -1,6 +1,7 @@
 package ed.inf.adbs.blazedb.operator;
 
 import ed.inf.adbs.blazedb.Tuple;
+import ed.inf.adbs.blazedb.TupleBatch;
 import net.sf.jsqlparser.expression.Function;
 import net.sf.jsqlparser.expression.LongValue;
 import net.sf.jsqlparser.expression.operators.arithmetic.Multiplication;
@@ -13,6 +14,7 @@ import net.sf.jsqlparser.statement.select.SelectItem;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -25,13 +27,16 @@ import java.util.stream.IntStream;
  * <br><br>
  * The ProjectOperator class contains the following methods:<br>
  * - getNextTuple(): Retrieves the next tuple with the projected columns.<br>
+ * - getNextBatch(): Retrieves the next batch with the projected columns.<br>
  * - reset(): Resets the iterator to the start.<br>
  * - getTableName(): Returns the name of the table.<br>
- * - getTableSchema(): Returns the schema of the table.
+ * - getTableSchema(): Returns the schema of the table.<br>
+ * - getChildren(): Returns the child operators.
  * <br><br>
  * The ProjectOperator class also contains the following instance variables:<br>
  * - childOperator: The child operator of the ProjectOperator.<br>
  * - columnIndexes: A list of column indexes to be projected.<br>
+ * - projectionIndexes: The column indexes to be projected as a primitive array for the per-tuple projection.<br>
  * - schema: The schema of the table.
  */
 
@@ -39,6 +44,7 @@ public class ProjectOperator extends Operator {
     private final Operator childOperator;
     private final List<Integer> columnIndexes;
     private final List<String> schema;
+    private final int[] projectionIndexes;
 
     /**
      * Initializes the ProjectOperator with the child operator and the SELECT clause.
@@ -61,6 +67,23 @@ public class ProjectOperator extends Operator {
         addGroupByColumns(groupByExpressionLists, columnNameSet);
         addOrderByColumns(orderByElements, columnNameSet);
         addSelectedColumns(selectedColumns, groupByExpressionLists, columnNameSet);
+        projectionIndexes = columnIndexes.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Initializes the ProjectOperator to output the given columns in the given order,
+     * e.g. to restore the column order of the FROM clause after the joins have been reordered.
+     * @param childOperator The child operator of the ProjectOperator.
+     * @param columns The names of the columns to be projected.
+     */
+    public ProjectOperator(Operator childOperator, List<String> columns) {
+        this.childOperator = childOperator;
+        this.schema = childOperator.getTableSchema();
+        this.columnIndexes = new ArrayList<>();
+        for (String column : columns) {
+            columnIndexes.add(schema.indexOf(column));
+        }
+        projectionIndexes = columnIndexes.stream().mapToInt(Integer::intValue).toArray();
     }
 
     /**
@@ -200,11 +223,32 @@ public class ProjectOperator extends Operator {
         if (tuple == null) return null;
 
         // Extract only required columns
-        List<Integer> projectedValues = new ArrayList<>();
-        for (int index : columnIndexes) {
-            projectedValues.add(tuple.getValue(index));
+        return tuple.project(projectionIndexes);
+    }
+
+    /**
+     * Retrieves the next batch with the projected columns.
+     * The column vectors of the child batch are reused as they are, so the projection copies no values.
+     * @return A TupleBatch with the projected columns, or NULL if EOF reached.
+     */
+    @Override
+    public TupleBatch getNextBatch() {
+        TupleBatch batch = childOperator.getNextBatch();
+        if (batch == null) return null;
+
+        int[][] projectedColumns = new int[projectionIndexes.length][];
+        for (int i = 0; i < projectionIndexes.length; i++) {
+            projectedColumns[i] = batch.getColumn(projectionIndexes[i]);
         }
-        return new Tuple(projectedValues);
+        return new TupleBatch(projectedColumns, batch.getRowCount(), batch.getSelection(), batch.size());
+    }
+
+    Operator getChildOperator() {
+        return childOperator;
+    }
+
+    int[] getProjectionIndexes() {
+        return projectionIndexes;
     }
 
     @Override
@@ -230,4 +274,27 @@ public class ProjectOperator extends Operator {
         }
         return projectedSchema;
     }
+
+    /**
+     * Returns the columns the output is sorted on.
+     * This is the longest prefix of the sort order of the child whose columns are kept by the projection.
+     * @return The names of the sort columns.
+     */
+    @Override
+    public List<String> getSortOrder() {
+        List<String> projectedSchema = getTableSchema();
+        List<String> sortOrder = new ArrayList<>();
+        for (String column : childOperator.getSortOrder()) {
+            if (!projectedSchema.contains(column)) {
+                break;
+            }
+            sortOrder.add(column);
+        }
+        return sortOrder;
+    }
+
+    @Override
+    public List<Operator> getChildren() {
+        return Collections.singletonList(childOperator);
+    }
 }
@@ -0,0 +1,112 @@
+package ed.inf.adbs.blazedb.operator;
+
+import ed.inf.adbs.blazedb.RangePredicate;
+import ed.inf.adbs.blazedb.ResidentTable;
+import ed.inf.adbs.blazedb.Tuple;
+import ed.inf.adbs.blazedb.TupleBatch;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The ResidentScanOperator class is the ScanOperator for tables held in memory as a ResidentTable.
+ * It returns the rows straight from the column arrays, so it neither reads nor parses the table file, and a reset()
+ * only rewinds the position. Only the arrays of the columns selected with setColumns() are copied, and with
+ * setPredicate() only the rows whose values lie within the ranges.
+ * It extends the ScanOperator, so it feeds the CompiledPipelineOperator like the other scans of a table.
+ * <br><br>
+ * The ResidentScanOperator class extends the ScanOperator class and implements the following methods:<br>
+ * - getNextTuple(): Retrieves the next tuple from the table.<br>
+ * - getNextBatch(): Retrieves the next batch of rows, copied from the column arrays.<br>
+ * - reset(): Resets the iterator to the start of the table.
+ * <br><br>
+ * The ResidentScanOperator class also contains the following instance variables:<br>
+ * - table: The resident table being scanned.<br>
+ * - position: The row returned next.
+ */
+public class ResidentScanOperator extends ScanOperator {
+    private final ResidentTable table;
+    private int position;
+
+    public ResidentScanOperator(ResidentTable table) throws IOException {
+        super(table.getTableName(), false);
+        this.table = table;
+    }
+
+    @Override
+    public Tuple getNextTuple() {
+        int[] values = new int[getTableSchema().size()];
+        return readNextValues(values) ? new Tuple(values) : null;
+    }
+
+    @Override
+    boolean readNextValues(int[] values) {
+        RangePredicate predicate = getPredicate();
+        while (position < table.getRowCount() && predicate != null && !accepts(predicate, position)) {
+            position++;
+        }
+        if (position == table.getRowCount()) {
+            return false; // EOF reached
+        }
+        int[] outputColumns = getOutputColumns();
+        for (int slot = 0; slot < values.length; slot++) {
+            values[slot] = table.getColumn(outputColumns[slot])[position];
+        }
+        position++;
+        return true;
+    }
+
+    /**
+     * Checks if the values of a row lie within the ranges of a predicate.
+     */
+    private boolean accepts(RangePredicate predicate, int row) {
+        for (int column = 0; column < table.getColumnCount(); column++) {
+            if (predicate.isConstrained(column) && !predicate.contains(column, table.getColumn(column)[row])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Retrieves the next batch of rows from the table.
+     * @return A TupleBatch with up to DEFAULT_CAPACITY rows, or NULL if EOF reached.
+     *
+     * @Description
+     * The rows are copied into new column vectors, since the consumer may modify the batch.
+     * With a predicate, the accepted rows are gathered row by row instead.
+     */
+    @Override
+    public TupleBatch getNextBatch() {
+        if (getPredicate() != null) {
+            TupleBatch batch = new TupleBatch(getTableSchema().size());
+            int[][] columns = batch.getColumns();
+            int[] values = new int[columns.length];
+            int row = 0;
+            while (row < TupleBatch.DEFAULT_CAPACITY && readNextValues(values)) {
+                for (int column = 0; column < values.length; column++) {
+                    columns[column][row] = values[column];
+                }
+                row++;
+            }
+            batch.setRowCount(row);
+            return row == 0 ? null : batch;
+        }
+        int rowCount = Math.min(TupleBatch.DEFAULT_CAPACITY, table.getRowCount() - position);
+        if (rowCount == 0) {
+            return null; // EOF reached
+        }
+        int[] outputColumns = getOutputColumns();
+        int[][] columns = new int[outputColumns.length][];
+        for (int slot = 0; slot < columns.length; slot++) {
+            columns[slot] = Arrays.copyOfRange(table.getColumn(outputColumns[slot]), position, position + rowCount);
+        }
+        position += rowCount;
+        return new TupleBatch(columns, rowCount, null, 0);
+    }
+
+    @Override
+    public void reset() {
+        position = 0;
+    }
+}
@@ -0,0 +1,88 @@
+package ed.inf.adbs.blazedb.operator;
+
+import ed.inf.adbs.blazedb.ColumnarFile;
+import ed.inf.adbs.blazedb.DatabaseCatalog;
+
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * The RowFetcher class reads single rows of a table by their row ids, for the scans that find their rows through an
+ * index: the IndexScanOperator and the BitmapScanOperator.
+ * A row of a CSV table file is parsed at its byte offset by a MappedScanOperator, and a row of a columnar table file
+ * is decoded from its page. The output columns of the page read last are kept, so the rows of the same page are
+ * decoded once.
+ * <br><br>
+ * The RowFetcher class contains the following methods:<br>
+ * - setColumns(Collection<String> columns, int[] outputColumns): Restricts the rows read to the given columns.<br>
+ * - read(long rowId, int[] values): Reads a row into a buffer.
+ * <br><br>
+ * The RowFetcher class also contains the following instance variables:<br>
+ * - tableName: The name of the table.<br>
+ * - rowReader: The scan that reads the rows of a CSV table file, or null.<br>
+ * - columnarFile: The columnar table file, or null.<br>
+ * - outputColumns: The index in the table schema of every column read.<br>
+ * - page, pageColumns: The number and the output columns of the page decoded last.
+ */
+class RowFetcher {
+    private final String tableName;
+    private MappedScanOperator rowReader;
+    private ColumnarFile columnarFile;
+    private int[] outputColumns;
+    private int page = -1;
+    private int[][] pageColumns;
+
+    RowFetcher(String tableName) throws IOException {
+        DatabaseCatalog catalog = DatabaseCatalog.getInstance("");
+        this.tableName = tableName;
+        if (catalog.isColumnar(tableName)) {
+            columnarFile = new ColumnarFile(catalog.getColumnarFilePath(tableName));
+        } else {
+            rowReader = new MappedScanOperator(tableName);
+        }
+    }
+
+    /**
+     * Restricts the rows read to the given columns.
+     * @param columns The fully qualified names of the columns.
+     * @param outputColumns The index in the table schema of every column, as selected by the scan.
+     */
+    void setColumns(Collection<String> columns, int[] outputColumns) {
+        this.outputColumns = outputColumns;
+        if (rowReader != null) {
+            rowReader.setColumns(columns);
+        }
+        page = -1;
+        pageColumns = null;
+    }
+
+    /**
+     * Reads a row into the given buffer.
+     * @param rowId The byte offset of the row in a CSV table file, or its number in a columnar table file.
+     * @param values The buffer to fill, one entry per output column.
+     */
+    void read(long rowId, int[] values) throws IOException {
+        if (rowReader != null) {
+            if (!rowReader.readRowAt(rowId, values)) {
+                throw new RuntimeException("Index entry beyond the end of table: " + tableName);
+            }
+            return;
+        }
+        int rowsPerPage = columnarFile.getRowsPerPage();
+        int rowPage = (int) (rowId / rowsPerPage);
+        if (rowPage != page) {
+            columnarFile.loadPage(rowPage);
+            if (pageColumns == null) {
+                pageColumns = new int[outputColumns.length][rowsPerPage];
+            }
+            for (int slot = 0; slot < outputColumns.length; slot++) {
+                columnarFile.decodeColumn(outputColumns[slot], pageColumns[slot]);
+            }
+            page = rowPage;
+        }
+        int row = (int) (rowId % rowsPerPage);
+        for (int slot = 0; slot < outputColumns.length; slot++) {
+            values[slot] = pageColumns[slot][row];
+        }
+    }
+}
@@ -1,27 +1,59 @@
 package ed.inf.adbs.blazedb.operator;
 
+import ed.inf.adbs.blazedb.BlazeDBConfig;
+import ed.inf.adbs.blazedb.BufferPool;
 import ed.inf.adbs.blazedb.DatabaseCatalog;
+import ed.inf.adbs.blazedb.PrefetchInputStream;
+import ed.inf.adbs.blazedb.ResidentTable;
+import ed.inf.adbs.blazedb.RangePredicate;
 import ed.inf.adbs.blazedb.Tuple;
+import ed.inf.adbs.blazedb.TupleBatch;
+import ed.inf.adbs.blazedb.ZoneMap;
+import net.sf.jsqlparser.expression.Expression;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 
 /**
  * The ScanOperator class is responsible for scanning the table and returning the tuples.
- * It reads the table file and returns the tuples one by one.
+ * It reads the table file through the BufferPool and returns the tuples one by one. With a prefetch depth set in
+ * BlazeDBConfig, the file is read ahead on a background thread, so the reads overlap with the parsing.
+ * Tables converted to the binary columnar format are scanned by the ColumnarScanOperator instead, and CSV files
+ * are memory-mapped by the MappedScanOperator subclass unless BlazeDBConfig selects the buffered scan.
+ * Tables held in memory by the DatabaseCatalog are scanned by the ResidentScanOperator subclass.
+ * forTable() creates the scan operator for the format of a table.
+ * With setColumns(), the scan returns only the columns a query needs: the other fields of a row are still skipped
+ * over, but never stored, so the tuples and batches passed through joins and sorts shrink with the unused columns.
+ * With setPredicate(), the scan checks the column-constant comparisons of the selection condition while it parses a
+ * row and drops the row at the first value out of range, without storing its other values or creating a Tuple.
  * <br><br>
  * The ScanOperator class extends the Operator class and implements the following methods:<br>
+ * - forTable(String tableName): Creates the scan operator for a table, from memory if the table is resident.<br>
+ * - forTableFile(String tableName): Creates the scan operator for the storage format of a table file.<br>
+ * - forTable(String tableName, Expression selectionCondition): Creates the scan operator and lets it skip the blocks
+ *   that its ZoneMap excludes for the selection condition, and the rows a columnar scan rules out on encoded pages.<br>
+ * - forTable(String tableName, Expression selectionCondition, Collection<String> columns): Creates the scan operator
+ *   for the selection condition that returns only the given columns.<br>
+ * - setColumns(Collection<String> columns): Restricts the output to the given columns.<br>
+ * - setPredicate(RangePredicate predicate): Drops the rows outside the ranges while parsing.<br>
  * - getNextTuple(): Retrieves the next tuple from the table.<br>
+ * - getNextBatch(): Retrieves the next batch of tuples from the table, parsed straight into column vectors.<br>
  * - reset(): Resets the iterator to the start of the table.<br>
  * - getTableName(): Returns the name of the table.<br>
- * - getTableSchema(): Returns the schema of the table.
+ * - getTableSchema(): Returns the schema of the columns returned by the scan.
  * <br><br>
  * The ScanOperator class also contains the following instance variables:<br>
- * - reader: The BufferedReader object used to read the table file.<br>
+ * - reader: The BufferedReader object used to read the table file from the BufferPool, or from a PrefetchInputStream.<br>
  * - tableName: The name of the table being scanned.<br>
  * - tableFilePath: The file path of the table being scanned.<br>
- * - tableSchema: The schema of the table being scanned.
+ * - tableSchema: The schema of the table being scanned.<br>
+ * - outputSchema: The columns returned by the scan, the tableSchema unless setColumns() restricts them.<br>
+ * - outputColumns: The index in tableSchema of every output column.<br>
+ * - columnSlots: The index in the output of every column of tableSchema, or -1 if it is not returned.<br>
+ * - predicate: The ranges the rows are checked against while parsing, or null to return all rows.
  */
 
 public class ScanOperator extends Operator {
@@ -29,47 +61,355 @@ public class ScanOperator extends Operator {
     private final String tableName;
     private final String tableFilePath;
     private final List<String> tableSchema;
+    private List<String> outputSchema;
+    private int[] outputColumns;
+    private int[] columnSlots;
+    private RangePredicate predicate;
 
     public ScanOperator(String tableName) throws IOException {
+        this(tableName, true);
+    }
+
+    /**
+     * Creates a scan of a table.
+     * @param tableName The name of the table.
+     * @param openReader Whether to open the BufferedReader, false for subclasses that read the file themselves.
+     */
+    ScanOperator(String tableName, boolean openReader) throws IOException {
         this.tableName = tableName;
         this.tableFilePath = DatabaseCatalog.getInstance("").getTableFilePath(tableName);
         this.tableSchema = DatabaseCatalog.getInstance("").getTableSchema(tableName);
-        this.reader = new BufferedReader(new FileReader(tableFilePath));
+        setColumns(tableSchema);
+        if (openReader) {
+            this.reader = openReader();
+        }
+    }
+
+    /**
+     * Opens a reader over the table file that reads its pages through the BufferPool, ahead on a background thread
+     * with a PrefetchInputStream if BlazeDBConfig sets a prefetch depth.
+     */
+    private BufferedReader openReader() throws IOException {
+        int prefetchDepth = BlazeDBConfig.getScanPrefetchDepth();
+        InputStream input = prefetchDepth > 0
+                ? new PrefetchInputStream(tableFilePath, prefetchDepth)
+                : BufferPool.getInstance().openInputStream(tableFilePath);
+        return new BufferedReader(new InputStreamReader(input));
+    }
+
+    /**
+     * Creates the scan operator for a table, served from memory if the table is resident.
+     * @param tableName The name of the table.
+     * @return A ResidentScanOperator if the DatabaseCatalog holds the table in memory, otherwise the scan of its
+     *         table file created by forTableFile().
+     */
+    public static Operator forTable(String tableName) throws IOException {
+        ResidentTable residentTable = DatabaseCatalog.getInstance("").getResidentTable(tableName);
+        if (residentTable != null) {
+            return new ResidentScanOperator(residentTable);
+        }
+        return forTableFile(tableName);
+    }
+
+    /**
+     * Creates the scan operator for the storage format of a table file.
+     * @param tableName The name of the table.
+     * @return A ColumnarScanOperator if the table is stored in the columnar format, otherwise a MappedScanOperator
+     *         or, if BlazeDBConfig selects the buffered scan, a ScanOperator.
+     */
+    public static Operator forTableFile(String tableName) throws IOException {
+        if (DatabaseCatalog.getInstance("").isColumnar(tableName)) {
+            return new ColumnarScanOperator(tableName);
+        }
+        if (BlazeDBConfig.getScanMode() == BlazeDBConfig.ScanMode.MAPPED) {
+            return new MappedScanOperator(tableName);
+        }
+        return new ScanOperator(tableName);
+    }
+
+    /**
+     * Creates the scan operator for the storage format of a table that skips the blocks of rows which cannot satisfy
+     * the selection condition, according to the ZoneMap of the table file.
+     * @param tableName The name of the table.
+     * @param selectionCondition The selection condition pushed down to the table, or null.
+     * @return The scan operator, skipping blocks if the table has a zone map and the condition lets it skip any.
+     *
+     * @Description
+     * Only the MappedScanOperator and the ColumnarScanOperator can seek to a block. The buffered ScanOperator reads
+     * the whole file. Every scan also drops the rows outside the RangePredicate of the condition: the CSV scans while
+     * parsing a row, the ColumnarScanOperator on the encoded pages. The rows returned still have to be filtered by a
+     * SelectOperator, since the RangePredicate holds only the column-constant comparisons.
+     */
+    public static Operator forTable(String tableName, Expression selectionCondition) throws IOException {
+        Operator scan = forTable(tableName);
+        if (selectionCondition == null || !(scan instanceof ScanOperator || scan instanceof ColumnarScanOperator)) {
+            return scan;
+        }
+        List<String> tableSchema = DatabaseCatalog.getInstance("").getTableSchema(tableName);
+        RangePredicate predicate = RangePredicate.extract(selectionCondition, tableSchema);
+        if (scan instanceof ColumnarScanOperator) {
+            ((ColumnarScanOperator) scan).setPredicate(predicate);
+        } else {
+            ((ScanOperator) scan).setPredicate(predicate);
+        }
+        ZoneMap zoneMap = DatabaseCatalog.getInstance("").getZoneMap(tableName);
+        if (zoneMap == null || !(scan instanceof MappedScanOperator || scan instanceof ColumnarScanOperator)) {
+            return scan;
+        }
+        int[] blocks = zoneMap.selectBlocks(selectionCondition, tableSchema);
+        if (blocks == null) {
+            return scan;
+        }
+        if (scan instanceof MappedScanOperator) {
+            ((MappedScanOperator) scan).setBlocks(zoneMap, blocks);
+        } else if (zoneMap.getBlockRows() == ((ColumnarScanOperator) scan).getFile().getRowsPerPage()) {
+            ((ColumnarScanOperator) scan).setPages(blocks);
+        }
+        return scan;
+    }
+
+    /**
+     * Creates the scan operator for the storage format of a table that skips the rows which cannot satisfy the
+     * selection condition, as forTable(tableName, selectionCondition), and returns only the given columns.
+     * @param tableName The name of the table.
+     * @param selectionCondition The selection condition pushed down to the table, or null.
+     * @param columns The columns the query needs, or null for all columns.
+     * @return The scan operator.
+     */
+    public static Operator forTable(String tableName, Expression selectionCondition, Collection<String> columns) throws IOException {
+        Operator scan = forTable(tableName, selectionCondition);
+        if (columns != null) {
+            if (scan instanceof ScanOperator) {
+                ((ScanOperator) scan).setColumns(columns);
+            } else if (scan instanceof ColumnarScanOperator) {
+                ((ColumnarScanOperator) scan).setColumns(columns);
+            }
+        }
+        return scan;
+    }
+
+    /**
+     * Restricts the output of the scan to the given columns.
+     * @param columns The fully qualified names of the columns to return. Names of columns of other tables are
+     *                ignored. The columns are returned in the order of the table schema.
+     */
+    public void setColumns(Collection<String> columns) {
+        outputColumns = selectColumns(tableSchema, columns);
+        outputSchema = new ArrayList<>();
+        columnSlots = new int[tableSchema.size()];
+        Arrays.fill(columnSlots, -1);
+        for (int slot = 0; slot < outputColumns.length; slot++) {
+            outputSchema.add(tableSchema.get(outputColumns[slot]));
+            columnSlots[outputColumns[slot]] = slot;
+        }
+    }
+
+    /**
+     * Returns the indexes of the columns of a table schema that are among the given columns.
+     * @param tableSchema The schema of the table.
+     * @param columns The fully qualified names of the columns to keep.
+     * @return The indexes in ascending order. If no column is kept, the first column is, so the rows keep their count.
+     */
+    static int[] selectColumns(List<String> tableSchema, Collection<String> columns) {
+        List<Integer> indexes = new ArrayList<>();
+        for (int column = 0; column < tableSchema.size(); column++) {
+            if (columns.contains(tableSchema.get(column))) {
+                indexes.add(column);
+            }
+        }
+        if (indexes.isEmpty()) {
+            indexes.add(0);
+        }
+        return indexes.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Drops the rows outside the ranges of a predicate while they are parsed.
+     * @param predicate The ranges of the columns of the table, or null to return all rows.
+     */
+    public void setPredicate(RangePredicate predicate) {
+        this.predicate = predicate;
+    }
+
+    RangePredicate getPredicate() {
+        return predicate;
+    }
+
+    int[] getOutputColumns() {
+        return outputColumns;
+    }
+
+    int[] getColumnSlots() {
+        return columnSlots;
     }
 
     @Override
     public Tuple getNextTuple() {
+        int[] values = new int[outputSchema.size()];
+        return readNextValues(values) ? new Tuple(values) : null;
+    }
+
+    /**
+     * Reads the next row of the table into the given buffer without creating a Tuple.
+     * @param values The buffer to fill, one entry per output column.
+     * @return False if EOF reached, true otherwise.
+     */
+    boolean readNextValues(int[] values) {
         try {
-            String line = reader.readLine();
-            if (line == null) return null;  // EOF or empty file
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (parseRow(line, values)) {
+                    return true;
+                }
+            }
+            return false; // EOF or empty file
+        } catch (IOException e) {
+            return false;
+        }
+    }
 
-            String[] values = line.split(",");
-            List<Integer> tupleValues = new ArrayList<>();
-            for (String value : values) {
-                tupleValues.add(Integer.parseInt(value.trim()));
+    @Override
+    public TupleBatch getNextBatch() {
+        try {
+            TupleBatch batch = new TupleBatch(outputSchema.size());
+            int[][] columns = batch.getColumns();
+            int[] values = new int[outputSchema.size()];
+            String line;
+            int row = 0;
+            while (row < TupleBatch.DEFAULT_CAPACITY && (line = reader.readLine()) != null) {
+                if (!parseRow(line, values)) {
+                    continue;
+                }
+                for (int column = 0; column < values.length; column++) {
+                    columns[column][row] = values[column];
+                }
+                row++;
             }
-            return new Tuple(tupleValues);
+            batch.setRowCount(row);
+            return row == 0 ? null : batch;
         } catch (IOException e) {
             return null;
         }
     }
 
+    /**
+     * Parses a line of the table into the given buffer, naming the table if the line is not a valid row.
+     * @param line The line to parse.
+     * @param values The buffer to fill, one entry per output column.
+     * @return False if the line is empty or a value lies outside its range, true otherwise.
+     */
+    private boolean parseRow(String line, int[] values) {
+        try {
+            return parseLine(line, values, columnSlots, predicate);
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Invalid row in table " + tableName + ": " + line, e);
+        }
+    }
+
+    /**
+     * Parses a comma separated line of integers straight into the given array,
+     * without splitting the line into intermediate strings.
+     * @param line The line to parse.
+     * @param values The array to fill, one entry per output column.
+     * @param slots The entry of values for every column of the line, or -1 to skip the column.
+     * @param predicate The ranges the values must lie in, or null.
+     * @return False if the line is empty or a value lies outside its range, which stops the parsing, true otherwise.
+     * @throws NumberFormatException If the line is not a row of slots.length integers.
+     *
+     * @Description
+     * Digits are accumulated into the current value, a minus sign in front of the digits negates it and a comma ends
+     * it, while spaces and carriage returns are skipped. A line of nothing else is empty. Any other character, a value
+     * without digits or outside the int range, and a wrong number of values are rejected like Integer.parseInt() does.
+     */
+    static boolean parseLine(String line, int[] values, int[] slots, RangePredicate predicate) {
+        int column = 0;
+        long value = 0;
+        long limit = Integer.MAX_VALUE;
+        boolean negative = false;
+        boolean digits = false;
+        boolean empty = true;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                if (value > limit) {
+                    throw new NumberFormatException("Value out of int range in column " + (column + 1));
+                }
+                digits = true;
+                empty = false;
+            } else if (c == ',') {
+                checkValue(digits, column, slots);
+                int parsed = (int) (negative ? -value : value);
+                if (predicate != null && !predicate.contains(column, parsed)) {
+                    return false;
+                }
+                if (slots[column] >= 0) {
+                    values[slots[column]] = parsed;
+                }
+                column++;
+                value = 0;
+                limit = Integer.MAX_VALUE;
+                negative = false;
+                digits = false;
+                empty = false;
+            } else if (c == '-' && !negative && !digits) {
+                negative = true;
+                limit = -(long) Integer.MIN_VALUE;
+                empty = false;
+            } else if (c != ' ' && c != '\r') {
+                throw new NumberFormatException("Unexpected character '" + c + "' in column " + (column + 1));
+            }
+        }
+        if (empty) {
+            return false;
+        }
+        checkValue(digits, column, slots);
+        if (column != slots.length - 1) {
+            throw new NumberFormatException("Expected " + slots.length + " values, found " + (column + 1));
+        }
+        int parsed = (int) (negative ? -value : value);
+        if (predicate != null && !predicate.contains(column, parsed)) {
+            return false;
+        }
+        if (slots[column] >= 0) {
+            values[slots[column]] = parsed;
+        }
+        return true;
+    }
+
+    /**
+     * Checks that a value ending in the given column has digits and that the row has that column.
+     * @throws NumberFormatException If the value has no digits or the row has more columns than slots.
+     */
+    static void checkValue(boolean digits, int column, int[] slots) {
+        if (!digits) {
+            throw new NumberFormatException("Missing value in column " + (column + 1));
+        }
+        if (column >= slots.length) {
+            throw new NumberFormatException("Expected " + slots.length + " values, found more");
+        }
+    }
+
     @Override
     public void reset() {
         try {
             reader.close();
-            reader = new BufferedReader(new FileReader(tableFilePath)); // Reopen the file
+            reader = openReader(); // Start again at the first page
         } catch (IOException e) {
             throw new RuntimeException("Error resetting ScanOperator for table: " + tableName, e);
         }
     }
 
+    String getTableFilePath() {
+        return tableFilePath;
+    }
+
     @Override
     public String getTableName() {
         return tableName;
     }
 
     public List<String> getTableSchema() {
-        return tableSchema;
+        return outputSchema;
     }
 }
@@ -1,10 +1,12 @@
 package ed.inf.adbs.blazedb.operator;
 
 import ed.inf.adbs.blazedb.Tuple;
+import ed.inf.adbs.blazedb.TupleBatch;
 import ed.inf.adbs.blazedb.ExpressionEvaluator;
 import net.sf.jsqlparser.expression.Expression;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
 
 
@@ -14,25 +16,30 @@ import java.util.List;
  * <br><br>
  * The SelectOperator class contains the following methods:<br>
  * - getNextTuple(): Retrieves the next tuple that satisfies the selection condition.<br>
+ * - getNextBatch(): Retrieves the next batch with its selection vector narrowed to the satisfying rows.<br>
  * - reset(): Resets the iterator to the start.<br>
  * - getTableName(): Returns the name of the table.<br>
- * - getTableSchema(): Returns the schema of the table.
+ * - getTableSchema(): Returns the schema of the table.<br>
+ * - getChildren(): Returns the child operators.
  * <br><br>
  * The SelectOperator class also contains the following instance variables:<br>
  * - childOperator: The child operator of the SelectOperator.<br>
  * - selectionCondition: The selection condition to be applied on the tuples.<br>
- * - schema: The schema of the table.
+ * - schema: The schema of the table.<br>
+ * - evaluator: The selection condition compiled against the schema.
  */
 
 public class SelectOperator extends Operator {
     private final Operator childOperator;
     private final Expression selectionCondition;
     private final List<String> schema;
+    private final ExpressionEvaluator evaluator;
 
     public SelectOperator(Operator childOperator, Expression selectionCondition) throws IOException {
         this.childOperator = childOperator;
         this.selectionCondition = selectionCondition;
         this.schema = childOperator.getTableSchema();
+        this.evaluator = ExpressionEvaluator.compile(selectionCondition, schema);
     }
 
     /**
@@ -43,15 +50,46 @@ public class SelectOperator extends Operator {
     public Tuple getNextTuple() {
         Tuple tuple;
         while ((tuple = childOperator.getNextTuple()) != null) {
-            ExpressionEvaluator evaluator = new ExpressionEvaluator(tuple, schema);
-            selectionCondition.accept(evaluator);
-            if (evaluator.getResult()) {
+            if (evaluator.test(tuple)) {
                 return tuple;
             }
         }
         return null;
     }
 
+    /**
+     * Retrieves the next batch that contains at least one tuple satisfying the selection condition.
+     * The rows are not copied, only the selection vector of the child batch is narrowed.
+     * @return A TupleBatch with the satisfying rows selected, or NULL if EOF reached.
+     */
+    @Override
+    public TupleBatch getNextBatch() {
+        TupleBatch batch;
+        while ((batch = childOperator.getNextBatch()) != null) {
+            int[] selection = new int[batch.size()];
+            int selectedCount = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                int row = batch.getRowIndex(i);
+                if (evaluator.test(batch, row)) {
+                    selection[selectedCount++] = row;
+                }
+            }
+            if (selectedCount > 0) {
+                batch.setSelection(selection, selectedCount);
+                return batch;
+            }
+        }
+        return null;
+    }
+
+    Operator getChildOperator() {
+        return childOperator;
+    }
+
+    ExpressionEvaluator getEvaluator() {
+        return evaluator;
+    }
+
     @Override
     public void reset() {
         childOperator.reset();
@@ -66,4 +104,14 @@ public class SelectOperator extends Operator {
     public List<String> getTableSchema() {
         return childOperator.getTableSchema();
     }
+
+    @Override
+    public List<String> getSortOrder() {
+        return childOperator.getSortOrder();
+    }
+
+    @Override
+    public List<Operator> getChildren() {
+        return Collections.singletonList(childOperator);
+    }
 }
@@ -0,0 +1,203 @@
+package ed.inf.adbs.blazedb.operator;
+
+import ed.inf.adbs.blazedb.ConditionExtractor;
+import ed.inf.adbs.blazedb.ExpressionEvaluator;
+import ed.inf.adbs.blazedb.Tuple;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.schema.Column;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The SortMergeJoinOperator class performs an equi-join between two inputs by merging them in join key order.
+ * Each input is sorted on the columns of the equality conditions between the two inputs with a SortOperator,
+ * unless its sort order already starts with these columns, so no hash table on a build input is needed.
+ * The remaining join conditions that are not equalities between the inputs are applied after the merge.
+ * The output is sorted on the join keys, which lets the planner drop an ORDER BY on them.
+ * <br><br>
+ * The SortMergeJoinOperator class contains the following methods:<br>
+ * - getNextTuple(): Retrieves the next tuple that satisfies the join condition.<br>
+ * - reset(): Resets the iterator to the start.<br>
+ * - getTableName(): Returns the name of the table.<br>
+ * - getTableSchema(): Returns the schema of the table.<br>
+ * - getChildren(): Returns the child operators.<br>
+ * - getSortOrder(): Returns the columns the output is sorted on.
+ * <br><br>
+ * The SortMergeJoinOperator class also contains the following instance variables:<br>
+ * - leftChild, rightChild: The inputs of the SortMergeJoinOperator, sorted on the join keys.<br>
+ * - schema: The schema of the joined table.<br>
+ * - leftKeyIndexes, rightKeyIndexes: The positions of the equality columns in the left and right schemas.<br>
+ * - residualEvaluator: The remaining join conditions compiled against the joined schema, or null if there are none.<br>
+ * - leftTuple, rightTuple: The current tuples of the left and right inputs.<br>
+ * - run, runIndex: The right tuples with the join key of the current left tuple and the next one to return.<br>
+ * - started: Whether the first tuples of the inputs have been read.
+ */
+public class SortMergeJoinOperator extends Operator {
+    private final Operator leftChild;
+    private final Operator rightChild;
+    private final List<String> schema;
+    private final int[] leftKeyIndexes;
+    private final int[] rightKeyIndexes;
+    private final ExpressionEvaluator residualEvaluator;
+    private Tuple leftTuple;
+    private Tuple rightTuple;
+    private List<Tuple> run;
+    private int runIndex;
+    private boolean started;
+
+    public SortMergeJoinOperator(Operator leftChild, Operator rightChild, Expression joinCondition) {
+        this.schema = new ArrayList<>();
+        this.schema.addAll(leftChild.getTableSchema());
+        this.schema.addAll(rightChild.getTableSchema());
+
+        // Split the join condition into the equality keys and the residual conditions
+        List<String> leftSchema = leftChild.getTableSchema();
+        List<String> rightSchema = rightChild.getTableSchema();
+        List<Integer> leftKeys = new ArrayList<>();
+        List<Integer> rightKeys = new ArrayList<>();
+        Expression residual = null;
+        for (Expression condition : ConditionExtractor.getConjuncts(joinCondition)) {
+            if (ConditionExtractor.isEquiJoinCondition(condition, leftSchema, rightSchema)) {
+                String first = ((Column) ((EqualsTo) condition).getLeftExpression()).getFullyQualifiedName();
+                String second = ((Column) ((EqualsTo) condition).getRightExpression()).getFullyQualifiedName();
+                boolean firstOnLeft = leftSchema.contains(first) && rightSchema.contains(second);
+                leftKeys.add(leftSchema.indexOf(firstOnLeft ? first : second));
+                rightKeys.add(rightSchema.indexOf(firstOnLeft ? second : first));
+            } else {
+                residual = (residual == null) ? condition : new AndExpression(residual, condition);
+            }
+        }
+        if (leftKeys.isEmpty()) {
+            throw new RuntimeException("Sort-merge join requires an equality between the two inputs.");
+        }
+        this.leftKeyIndexes = leftKeys.stream().mapToInt(Integer::intValue).toArray();
+        this.rightKeyIndexes = rightKeys.stream().mapToInt(Integer::intValue).toArray();
+        this.residualEvaluator = residual != null ? ExpressionEvaluator.compile(residual, schema) : null;
+
+        this.leftChild = isSortedOn(leftChild, leftKeyIndexes) ? leftChild : new SortOperator(leftChild, leftKeyIndexes);
+        this.rightChild = isSortedOn(rightChild, rightKeyIndexes) ? rightChild : new SortOperator(rightChild, rightKeyIndexes);
+    }
+
+    /**
+     * Checks whether the sort order of an input starts with the given columns.
+     * @param input The input of the join.
+     * @param keyIndexes The positions of the key columns in the schema of the input.
+     * @return True if the input needs no sorting on the key columns, false otherwise.
+     */
+    private static boolean isSortedOn(Operator input, int[] keyIndexes) {
+        List<String> sortOrder = input.getSortOrder();
+        if (sortOrder.size() < keyIndexes.length) {
+            return false;
+        }
+        for (int i = 0; i < keyIndexes.length; i++) {
+            if (!sortOrder.get(i).equals(input.getTableSchema().get(keyIndexes[i]))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Retrieves the next tuple that satisfies the join condition.
+     * @return A Tuple object representing the joined row of data, or NULL if EOF reached.
+     *
+     * @Description
+     * The input with the smaller join key is advanced until both current tuples have the same key.<br>
+     * All right tuples with this key are then buffered as a run, and the run is combined with every left tuple
+     * with the same key, so duplicate keys on both sides produce all their combinations.<br>
+     * The next right tuple after the run is kept as the right tuple to merge with the following left keys.
+     */
+    @Override
+    public Tuple getNextTuple() {
+        if (!started) {
+            leftTuple = leftChild.getNextTuple();
+            rightTuple = rightChild.getNextTuple();
+            started = true;
+        }
+
+        while (true) {
+            if (run != null) {
+                while (runIndex < run.size()) {
+                    Tuple joinedTuple = leftTuple.concat(run.get(runIndex++));
+                    if (residualEvaluator == null || residualEvaluator.test(joinedTuple)) {
+                        return joinedTuple;
+                    }
+                }
+
+                // Replay the run for the next left tuple if it has the same key
+                leftTuple = leftChild.getNextTuple();
+                if (leftTuple != null && SortOperator.compare(leftTuple, leftKeyIndexes, run.get(0), rightKeyIndexes) == 0) {
+                    runIndex = 0;
+                    continue;
+                }
+                run = null;
+            }
+
+            if (leftTuple == null || rightTuple == null) {
+                return null;
+            }
+
+            int comparison = SortOperator.compare(leftTuple, leftKeyIndexes, rightTuple, rightKeyIndexes);
+            if (comparison < 0) {
+                leftTuple = leftChild.getNextTuple();
+            } else if (comparison > 0) {
+                rightTuple = rightChild.getNextTuple();
+            } else {
+                run = new ArrayList<>();
+                Tuple first = rightTuple;
+                while (rightTuple != null && SortOperator.compare(rightTuple, rightKeyIndexes, first, rightKeyIndexes) == 0) {
+                    run.add(rightTuple);
+                    rightTuple = rightChild.getNextTuple();
+                }
+                runIndex = 0;
+            }
+        }
+    }
+
+    @Override
+    public void reset() {
+        leftChild.reset();
+        rightChild.reset();
+        leftTuple = null;
+        rightTuple = null;
+        run = null;
+        runIndex = 0;
+        started = false;
+    }
+
+    /**
+     * Returns the name of the two tables with JOIN keyword in between.
+     * @return The name of the table.
+     */
+    @Override
+    public String getTableName() {
+        return leftChild.getTableName() + " JOIN " + rightChild.getTableName();
+    }
+
+    @Override
+    public List<String> getTableSchema() {
+        return schema;
+    }
+
+    /**
+     * Returns the columns the output is sorted on, which are the left join keys.
+     * @return The names of the left join key columns.
+     */
+    @Override
+    public List<String> getSortOrder() {
+        List<String> sortOrder = new ArrayList<>();
+        for (int index : leftKeyIndexes) {
+            sortOrder.add(schema.get(index));
+        }
+        return sortOrder;
+    }
+
+    @Override
+    public List<Operator> getChildren() {
+        return Arrays.asList(leftChild, rightChild);
+    }
+}
@@ -1,92 +1,347 @@
 package ed.inf.adbs.blazedb.operator;
 
+import ed.inf.adbs.blazedb.BlazeDBConfig;
+import ed.inf.adbs.blazedb.SpillFile;
 import ed.inf.adbs.blazedb.Tuple;
+import ed.inf.adbs.blazedb.TupleBatch;
 import net.sf.jsqlparser.schema.Column;
 import net.sf.jsqlparser.statement.select.OrderByElement;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.PriorityQueue;
 
 /**
  * The SortOperator class is responsible for sorting the tuples based on the ORDER BY clause.
  * It takes a child operator as input and sorts the tuples based on the specified columns.
  * <br><br>
+ * If the input exceeds the sort memory budget, the operator performs an external merge sort: every time the buffered
+ * tuples fill the budget, they are sorted and written to a SpillFile as a sorted run. The runs are merged with a heap
+ * of their smallest tuples, reading up to MAX_FAN_IN runs (and no more than the budget has read buffers for) at once.
+ * If there are more runs, consecutive runs are merged into longer runs in further passes until the final merge can
+ * read all of them. The tuples buffered last take part in the final merge from memory. Equal tuples are returned in
+ * the order of the input, as by the in-memory sort. The number of runs, merge passes and spilled bytes is available
+ * from getRunCount(), getMergePassCount() and getSpilledBytes().
+ * <br><br>
  * The SortOperator class contains the following methods:<br>
  * - getNextTuple(): Retrieves the next tuple that satisfies the ORDER BY clause.<br>
+ * - getNextBatch(): Retrieves the next batch of sorted tuples.<br>
  * - reset(): Resets the iterator to the start.<br>
  * - getTableName(): Returns the name of the table.<br>
- * - getTableSchema(): Returns the schema of the table.
+ * - getTableSchema(): Returns the schema of the table.<br>
+ * - getChildren(): Returns the child operators.<br>
+ * - getSortOrder(): Returns the columns the output is sorted on.<br>
+ * - getRunCount(), getMergePassCount(), getSpilledBytes(): Return the number of sorted runs spilled, of merge passes
+ *   before the final merge and of bytes written to spill files.
  * <br><br>
  * The SortOperator class also contains the following instance variables:<br>
  * - childOperator: The child operator of the SortOperator.<br>
- * - columnIndexes: A list of column indexes to be sorted.<br>
+ * - columnIndexes: The column indexes to be sorted.<br>
  * - schema: The schema of the table.<br>
  * - tuplesList: A list of tuples to be sorted.<br>
- * - currentTupleIndex: The index of the current tuple in the sorted list.
+ * - currentTupleIndex: The index of the current tuple in the sorted list.<br>
+ * - memoryBudget: The number of bytes available for the tuples of a run.<br>
+ * - bufferedBytes: The estimated size of the tuples in the sorted list.<br>
+ * - sorted: Whether the input has been read and sorted.<br>
+ * - runs: The sorted runs on disk, in the order of the input.<br>
+ * - merge: The heap of the runs of the final merge by their next tuple, or null if the input is sorted in memory.<br>
+ * - runCount, mergePassCount, spilledBytes: The number of sorted runs spilled, of merge passes and of bytes written.
  */
 public class SortOperator extends Operator{
+    static final int MAX_FAN_IN = 64;
+
     private final Operator childOperator;
-    private final List<Integer> columnIndexes;
+    private final int[] columnIndexes;
     private final List<String> schema;
     private final List<Tuple> tuplesList;
     private int currentTupleIndex;
+    private final long memoryBudget;
+    private long bufferedBytes;
+    private boolean sorted;
+    private List<SpillFile> runs;
+    private PriorityQueue<Run> merge;
+    private int runCount;
+    private int mergePassCount;
+    private long spilledBytes;
 
     public SortOperator(Operator childOperator, List<OrderByElement> orderByElements) {
+        this(childOperator, toColumnIndexes(childOperator.getTableSchema(), orderByElements));
+    }
+
+    /**
+     * Initializes the SortOperator to sort on the columns at the given positions, e.g. on join keys.
+     * @param childOperator The child operator of the SortOperator.
+     * @param columnIndexes The positions of the columns to sort on, in order of precedence.
+     */
+    public SortOperator(Operator childOperator, int[] columnIndexes) {
+        this(childOperator, columnIndexes, BlazeDBConfig.getSortMemoryBudget());
+    }
+
+    /**
+     * Initializes the SortOperator with a given memory budget.
+     * @param childOperator The child operator of the SortOperator.
+     * @param columnIndexes The positions of the columns to sort on, in order of precedence.
+     * @param memoryBudget The number of bytes the tuples of a sorted run may occupy.
+     */
+    public SortOperator(Operator childOperator, int[] columnIndexes, long memoryBudget) {
         this.childOperator = childOperator;
         this.schema = childOperator.getTableSchema();
         this.tuplesList = new ArrayList<>();
         this.currentTupleIndex = 0;
+        this.columnIndexes = columnIndexes;
+        this.memoryBudget = memoryBudget;
+        this.runs = new ArrayList<>();
+    }
 
-        // Convert column names in the ORDER BY clause to indexes for sorting
-        columnIndexes = new ArrayList<>();
-        for (OrderByElement element : orderByElements) {
-            Column column = ((Column) element.getExpression());
-            String columnFullName = column.getFullyQualifiedName();
-            columnIndexes.add(schema.indexOf(columnFullName));
+    /**
+     * Converts the column names in the ORDER BY clause to indexes for sorting.
+     * @param schema The schema of the tuples to sort.
+     * @param orderByElements The ORDER BY elements.
+     * @return The positions of the ORDER BY columns in the schema.
+     */
+    private static int[] toColumnIndexes(List<String> schema, List<OrderByElement> orderByElements) {
+        int[] columnIndexes = new int[orderByElements.size()];
+        for (int i = 0; i < columnIndexes.length; i++) {
+            Column column = ((Column) orderByElements.get(i).getExpression());
+            columnIndexes[i] = schema.indexOf(column.getFullyQualifiedName());
+        }
+        return columnIndexes;
+    }
+
+    /**
+     * Compares two tuples column by column on the given positions.
+     * This is the comparator logic of the sort, shared with the merge of the SortMergeJoinOperator.
+     * @param t1 The first tuple.
+     * @param indexes1 The positions of the compared columns in the first tuple.
+     * @param t2 The second tuple.
+     * @param indexes2 The positions of the compared columns in the second tuple.
+     * @return A negative number, zero or a positive number if the first tuple sorts before, equal to or after the second.
+     */
+    static int compare(Tuple t1, int[] indexes1, Tuple t2, int[] indexes2) {
+        for (int i = 0; i < indexes1.length; i++) {
+            int value1 = t1.getValue(indexes1[i]);
+            int value2 = t2.getValue(indexes2[i]);
+            if (value1 != value2) {
+                return Integer.compare(value1, value2);
+            }
         }
+        return 0;
     }
 
     @Override
     public Tuple getNextTuple() {
-        if (tuplesList.isEmpty()) {
+        if (!sorted) {
             Tuple tuple;
 
             // Read all tuples from the child operator. This is the blocking point
             while ((tuple = childOperator.getNextTuple()) != null) {
-                tuplesList.add(tuple);
+                add(tuple);
             }
-
-            // Sort tuples with customized comparator based on ORDER BY columns
-            Collections.sort(tuplesList, new Comparator<Tuple>() {
-                @Override
-                public int compare(Tuple t1, Tuple t2) {
-                    for (int i = 0; i < columnIndexes.size(); i++) {
-                        int index = columnIndexes.get(i);
-                        int value1 = t1.getValue(index);
-                        int value2 = t2.getValue(index);
-                        if (value1 != value2) {
-                            return Integer.compare(value1, value2);
-                        }
-                    }
-                    return 0;
-                }
-            });
+            finishInput();
         }
 
-        // Return the next tuple from the sorted list
+        // Return the next tuple from the merge or from the sorted list
+        if (merge != null) {
+            return nextMergedTuple();
+        }
         if (currentTupleIndex < tuplesList.size()) {
             return tuplesList.get(currentTupleIndex++);
         }
         return null;
     }
 
+    @Override
+    public TupleBatch getNextBatch() {
+        if (!sorted) {
+            TupleBatch batch;
+
+            // Read all batches from the child operator. This is the blocking point
+            while ((batch = childOperator.getNextBatch()) != null) {
+                for (int i = 0; i < batch.size(); i++) {
+                    add(batch.getTuple(i));
+                }
+            }
+            finishInput();
+        }
+
+        // Return the next batch from the merge or from the sorted list
+        Tuple tuple = getNextTuple();
+        if (tuple == null) return null;
+
+        TupleBatch batch = new TupleBatch(tuple.size());
+        batch.appendRow(tuple);
+        while (!batch.isFull() && (tuple = getNextTuple()) != null) {
+            batch.appendRow(tuple);
+        }
+        return batch;
+    }
+
+    /**
+     * Buffers a tuple of the input, and spills the buffered tuples as a sorted run once they fill the memory budget.
+     * @param tuple The tuple to buffer.
+     */
+    private void add(Tuple tuple) {
+        tuplesList.add(tuple);
+        bufferedBytes += tuple.estimateSize();
+        if (bufferedBytes > memoryBudget) {
+            sortTuples();
+            SpillFile run = new SpillFile();
+            for (Tuple sortedTuple : tuplesList) {
+                run.write(sortedTuple);
+            }
+            run.finishWriting();
+            runs.add(run);
+            runCount++;
+            spilledBytes += run.getSize();
+            tuplesList.clear();
+            bufferedBytes = 0;
+        }
+    }
+
+    /**
+     * Sorts the tuples buffered last and, if runs were spilled, merges the runs down to a final merge.
+     *
+     * @Description
+     * The fan-in of a merge is the number of runs whose read buffers fit the memory budget, between 2 and
+     * MAX_FAN_IN, minus one for the buffered tuples of the final merge. While there are more runs, every group of
+     * consecutive runs is merged into a single run. Runs are kept in input order and ties are broken by run, so
+     * the sort stays stable.
+     */
+    private void finishInput() {
+        sorted = true;
+        sortTuples();
+        if (runs.isEmpty()) {
+            return;
+        }
+        int fanIn = (int) Math.max(2, Math.min(MAX_FAN_IN, memoryBudget / SpillFile.BUFFER_SIZE));
+        int finalFanIn = tuplesList.isEmpty() ? fanIn : fanIn - 1;
+        while (runs.size() > Math.max(1, finalFanIn)) {
+            List<SpillFile> mergedRuns = new ArrayList<>();
+            for (int first = 0; first < runs.size(); first += fanIn) {
+                List<SpillFile> group = runs.subList(first, Math.min(runs.size(), first + fanIn));
+                if (group.size() == 1) {
+                    mergedRuns.add(group.get(0));
+                    continue;
+                }
+                PriorityQueue<Run> groupMerge = openMerge(group, null);
+                SpillFile mergedRun = new SpillFile();
+                Tuple tuple;
+                while ((tuple = nextTuple(groupMerge)) != null) {
+                    mergedRun.write(tuple);
+                }
+                mergedRun.finishWriting();
+                spilledBytes += mergedRun.getSize();
+                for (SpillFile run : group) {
+                    run.delete();
+                }
+                mergedRuns.add(mergedRun);
+            }
+            runs = mergedRuns;
+            mergePassCount++;
+        }
+        merge = openMerge(runs, tuplesList.iterator());
+    }
+
+    /**
+     * Opens a merge of sorted runs.
+     * @param files The runs on disk, in input order.
+     * @param memoryRun The sorted tuples of a run in memory that follows the runs on disk, or null.
+     * @return The heap of the non-empty runs by their next tuple.
+     */
+    private PriorityQueue<Run> openMerge(List<SpillFile> files, Iterator<Tuple> memoryRun) {
+        PriorityQueue<Run> heap = new PriorityQueue<>(files.size() + 1, new Comparator<Run>() {
+            @Override
+            public int compare(Run r1, Run r2) {
+                int comparison = SortOperator.compare(r1.next, columnIndexes, r2.next, columnIndexes);
+                return comparison != 0 ? comparison : Integer.compare(r1.order, r2.order);
+            }
+        });
+        for (int i = 0; i < files.size(); i++) {
+            Run run = new Run(i, files.get(i).openReader(), null);
+            if (run.advance()) {
+                heap.add(run);
+            }
+        }
+        if (memoryRun != null) {
+            Run run = new Run(files.size(), null, memoryRun);
+            if (run.advance()) {
+                heap.add(run);
+            }
+        }
+        return heap;
+    }
+
+    /**
+     * Removes the smallest next tuple of a merge and moves its run to the following tuple.
+     * @param heap The heap of the runs.
+     * @return The tuple, or NULL if all runs are exhausted.
+     */
+    private static Tuple nextTuple(PriorityQueue<Run> heap) {
+        Run run = heap.poll();
+        if (run == null) {
+            return null;
+        }
+        Tuple tuple = run.next;
+        if (run.advance()) {
+            heap.add(run);
+        }
+        return tuple;
+    }
+
+    /**
+     * Returns the next tuple of the final merge, deleting the runs once it is exhausted.
+     */
+    private Tuple nextMergedTuple() {
+        Tuple tuple = nextTuple(merge);
+        if (tuple == null) {
+            deleteRuns();
+        }
+        return tuple;
+    }
+
+    /**
+     * Sorts the buffered tuples with a customized comparator based on the ORDER BY columns.
+     */
+    private void sortTuples() {
+        Collections.sort(tuplesList, new Comparator<Tuple>() {
+            @Override
+            public int compare(Tuple t1, Tuple t2) {
+                return SortOperator.compare(t1, columnIndexes, t2, columnIndexes);
+            }
+        });
+    }
+
+    /**
+     * Closes the readers of the final merge and deletes the runs on disk.
+     */
+    private void deleteRuns() {
+        if (merge != null) {
+            for (Run run : merge) {
+                run.close();
+            }
+            merge.clear();
+        }
+        for (SpillFile run : runs) {
+            run.delete();
+        }
+        runs.clear();
+    }
+
     @Override
     public void reset() {
         childOperator.reset();
+        deleteRuns();
+        merge = null;
         tuplesList.clear();
+        bufferedBytes = 0;
         currentTupleIndex = 0;
+        sorted = false;
+        runCount = 0;
+        mergePassCount = 0;
+        spilledBytes = 0;
     }
 
     @Override
@@ -98,4 +353,73 @@ public class SortOperator extends Operator{
     public List<String> getTableSchema() {
         return schema;
     }
+
+    /**
+     * Returns the columns the output is sorted on, which are the sort columns.
+     * @return The names of the sort columns.
+     */
+    @Override
+    public List<String> getSortOrder() {
+        List<String> sortOrder = new ArrayList<>();
+        for (int index : columnIndexes) {
+            sortOrder.add(schema.get(index));
+        }
+        return sortOrder;
+    }
+
+    public int getRunCount() {
+        return runCount;
+    }
+
+    public int getMergePassCount() {
+        return mergePassCount;
+    }
+
+    public long getSpilledBytes() {
+        return spilledBytes;
+    }
+
+    /**
+     * The Run class is a sorted run in a merge, read from a SpillFile or from the sorted list in memory.
+     */
+    private static class Run {
+        private final int order;
+        private final SpillFile.Reader reader;
+        private final Iterator<Tuple> iterator;
+        private Tuple next;
+
+        private Run(int order, SpillFile.Reader reader, Iterator<Tuple> iterator) {
+            this.order = order;
+            this.reader = reader;
+            this.iterator = iterator;
+        }
+
+        /**
+         * Moves to the next tuple of the run, closing the reader at its end.
+         * @return False if the run is exhausted, true otherwise.
+         */
+        private boolean advance() {
+            if (reader != null) {
+                next = reader.readTuple();
+            } else {
+                next = iterator.hasNext() ? iterator.next() : null;
+            }
+            if (next == null) {
+                close();
+                return false;
+            }
+            return true;
+        }
+
+        private void close() {
+            if (reader != null) {
+                reader.close();
+            }
+        }
+    }
+
+    @Override
+    public List<Operator> getChildren() {
+        return Collections.singletonList(childOperator);
+    }
 }
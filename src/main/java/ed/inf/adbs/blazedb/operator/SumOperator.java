@@ -2,6 +2,7 @@ package ed.inf.adbs.blazedb.operator;
 
 import ed.inf.adbs.blazedb.ExpressionEvaluator;
 import ed.inf.adbs.blazedb.Tuple;
+import ed.inf.adbs.blazedb.TupleBatch;
 import net.sf.jsqlparser.expression.Expression;
 import net.sf.jsqlparser.expression.operators.relational.ExpressionList;
 import net.sf.jsqlparser.schema.Column;
@@ -16,9 +17,11 @@ import java.util.*;
  * <br><br>
  * The SumOperator class contains the following methods:<br>
  * - getNextTuple(): Retrieves the next tuple with the sum of the selected columns.<br>
+ * - getNextBatch(): Retrieves the next batch of tuples with the sum of the selected columns.<br>
  * - reset(): Resets the iterator to the start.<br>
  * - getTableName(): Returns the name of the table.<br>
- * - getTableSchema(): Returns the schema of the table.
+ * - getTableSchema(): Returns the schema of the table.<br>
+ * - getChildren(): Returns the child operators.
  * <br><br>
  * The SumOperator class also contains the following instance variables:<br>
  * - childOperator: The child operator of the SumOperator.<br>
@@ -26,7 +29,10 @@ import java.util.*;
  * - selectedColumns: The selected columns to perform the sum operation.<br>
  * - groupByColumns: The group by columns for the sum operation.<br>
  * - sumExpIndexesList: A list of indexes of the selected columns that contain the sum operation.<br>
- * - groupColToTupleAndSumMapping: A mapping of group by columns to the tuple values and sum values.<br>
+ * - sumEvaluators: The expressions inside the SUM functions compiled against the child schema.<br>
+ * - groupByIndexes: The positions of the group by columns in the child schema.<br>
+ * - outputIndexes: The positions in a group row that make up an output tuple.<br>
+ * - groupColToTupleAndSumMapping: A mapping of group by values to the tuple values and sum values.<br>
  * - groupIterator: An iterator to iterate over the group by columns.
  */
 
@@ -36,8 +42,11 @@ public class SumOperator extends Operator {
     private final List<SelectItem<?>> selectedColumns;
     private final ExpressionList<Column> groupByColumns;
     private final List<Integer> sumExpIndexesList;
-    private final Map<String, List<Integer>> groupColToTupleAndSumMapping;
-    private Iterator<Map.Entry<String, List<Integer>>> groupIterator;
+    private final ExpressionEvaluator[] sumEvaluators;
+    private final int[] groupByIndexes;
+    private final int[] outputIndexes;
+    private final Map<Tuple, int[]> groupColToTupleAndSumMapping;
+    private Iterator<int[]> groupIterator;
 
     public SumOperator(Operator childOperator, List<SelectItem<?>> selectedColumns, ExpressionList groupByColumns) {
         this.childOperator = childOperator;
@@ -57,6 +66,19 @@ public class SumOperator extends Operator {
                 selectColumnsIndex++;
             }
         }
+
+        // Compile the sum expressions against the child schema once
+        this.sumEvaluators = new ExpressionEvaluator[sumExpIndexesList.size()];
+        for (int i = 0; i < sumEvaluators.length; i++) {
+            sumEvaluators[i] = ExpressionEvaluator.compile(selectedColumns.get(sumExpIndexesList.get(i)).getExpression(), schema);
+        }
+
+        // Resolve the group by columns and the output columns to positions once
+        this.groupByIndexes = new int[groupByColumns != null ? groupByColumns.size() : 0];
+        for (int i = 0; i < groupByIndexes.length; i++) {
+            groupByIndexes[i] = schema.indexOf(this.groupByColumns.get(i).getFullyQualifiedName());
+        }
+        this.outputIndexes = computeOutputIndexes();
     }
 
     /**
@@ -65,46 +87,21 @@ public class SumOperator extends Operator {
      *
      * @Description
      * If the groupIterator is null, compute the group sums. This is a blocking operation.<br>
-     * For loop: Pick the values of the columns from the SELECT clause and the SUM clause and combine them
-     * into a single tuple.<br>
-     * If the selected column is an AllColumns, pick all the group by columns because the * indicates a subset
-     * of the group by columns.<br>
-     * If the selected column is a Column, pick the column value based on the column name.<br>
-     * If the selected column contains the SUM operation, pick the sum values, which are stored after
-     * the tuple values.
+     * The values of the columns from the SELECT clause and the SUM clause are picked from the stored group
+     * row with the precomputed outputIndexes and combined into a single tuple.
      */
     @Override
     public Tuple getNextTuple() {
         if (groupIterator == null) {
             computeGroupSums();
-            groupIterator = groupColToTupleAndSumMapping.entrySet().iterator();
+            groupIterator = groupColToTupleAndSumMapping.values().iterator();
         }
 
         if (groupIterator.hasNext()) {
-            Map.Entry<String, List<Integer>> entry = groupIterator.next();
-            List<Integer> pickAndCombinedTuple = new ArrayList<>();
-
-            for (int selectedColumnIndex = 0; selectedColumnIndex < selectedColumns.size(); selectedColumnIndex++) {
-                Expression selectedColumn = selectedColumns.get(selectedColumnIndex).getExpression();
-                if (selectedColumn instanceof AllColumns) {
-                    for (Column groupByColumn : groupByColumns) {
-                        String columnFullName = groupByColumn.getFullyQualifiedName();
-                        int columnIndex = schema.indexOf(columnFullName);
-                        pickAndCombinedTuple.add(entry.getValue().get(columnIndex));
-                    }
-                } else if (selectedColumn instanceof Column) {
-                    String columnName = ((Column) selectedColumns.get(selectedColumnIndex).getExpression()).getFullyQualifiedName();
-                    int columnIndex = schema.indexOf(columnName);
-                    pickAndCombinedTuple.add(entry.getValue().get(columnIndex));
-                } else if (selectedColumn.toString().contains("SUM")) {
-                    int childSchemaSize = schema.size();
-                    int sumExpIndex = 0;
-                    while (selectedColumnIndex < selectedColumns.size()) {
-                        pickAndCombinedTuple.add(entry.getValue().get(childSchemaSize + sumExpIndex));
-                        selectedColumnIndex++;
-                        sumExpIndex++;
-                    }
-                }
+            int[] groupRow = groupIterator.next();
+            int[] pickAndCombinedTuple = new int[outputIndexes.length];
+            for (int i = 0; i < outputIndexes.length; i++) {
+                pickAndCombinedTuple[i] = groupRow[outputIndexes[i]];
             }
             return new Tuple(pickAndCombinedTuple);
         } else {
@@ -112,52 +109,142 @@ public class SumOperator extends Operator {
         }
     }
 
+    /**
+     * Retrieves the next batch of tuples with the sum of the selected columns.
+     * The child is consumed batch at a time, and the group rows are written straight into the output vectors.
+     * @return The next batch of tuples with the sum of the selected columns, or NULL if EOF reached.
+     */
+    @Override
+    public TupleBatch getNextBatch() {
+        if (groupIterator == null) {
+            computeGroupSumsFromBatches();
+            groupIterator = groupColToTupleAndSumMapping.values().iterator();
+        }
+        if (!groupIterator.hasNext()) return null;
+
+        TupleBatch batch = new TupleBatch(outputIndexes.length);
+        int[][] columns = batch.getColumns();
+        int row = 0;
+        while (row < TupleBatch.DEFAULT_CAPACITY && groupIterator.hasNext()) {
+            int[] groupRow = groupIterator.next();
+            for (int i = 0; i < outputIndexes.length; i++) {
+                columns[i][row] = groupRow[outputIndexes[i]];
+            }
+            row++;
+        }
+        batch.setRowCount(row);
+        return batch;
+    }
+
+    /**
+     * Computes the positions in a stored group row that make up an output tuple.
+     * @return The positions of the output values in the group row.
+     *
+     * @Description
+     * The group row holds the values of the first tuple of the group followed by the sum values.<br>
+     * If the selected column is an AllColumns, pick all the group by columns because the * indicates a subset
+     * of the group by columns.<br>
+     * If the selected column is a Column, pick the column value based on the column name.<br>
+     * If the selected column contains the SUM operation, pick the sum values, which are stored after
+     * the tuple values.
+     */
+    private int[] computeOutputIndexes() {
+        List<Integer> indexes = new ArrayList<>();
+        for (int selectedColumnIndex = 0; selectedColumnIndex < selectedColumns.size(); selectedColumnIndex++) {
+            Expression selectedColumn = selectedColumns.get(selectedColumnIndex).getExpression();
+            if (selectedColumn instanceof AllColumns) {
+                for (Column groupByColumn : groupByColumns) {
+                    indexes.add(schema.indexOf(groupByColumn.getFullyQualifiedName()));
+                }
+            } else if (selectedColumn instanceof Column) {
+                indexes.add(schema.indexOf(((Column) selectedColumn).getFullyQualifiedName()));
+            } else if (selectedColumn.toString().contains("SUM")) {
+                int childSchemaSize = schema.size();
+                int sumExpIndex = 0;
+                while (selectedColumnIndex < selectedColumns.size()) {
+                    indexes.add(childSchemaSize + sumExpIndex);
+                    selectedColumnIndex++;
+                    sumExpIndex++;
+                }
+            }
+        }
+        return indexes.stream().mapToInt(Integer::intValue).toArray();
+    }
+
     /**
      * Computes the group sums by iterating through the child operator and storing the sum values
      * in the groupColToTupleAndSumMapping.
-     * If there is a group by clause, the group by columns are used as the key.
-     * If there is no group by clause, an empty string is used as the key.
+     * If there is a group by clause, the projection of the tuple on the group by columns is used as the key.
+     * If there is no group by clause, an empty tuple is used as the key.
      */
     private void computeGroupSums() {
         Tuple tuple;
         while ((tuple = childOperator.getNextTuple()) != null) {
 
             // Initialize the key to the mapping and put into the tuples
-            List<Integer> groupKeyList = new ArrayList<>();
-            String groupKeyString = "";
-            if (groupByColumns != null) {
-                for (Column groupByColumn : groupByColumns) {
-                    String columnFullName = groupByColumn.getFullyQualifiedName();
-                    groupKeyList.add(tuple.getValue(schema.indexOf(columnFullName)));
-                }
-                groupKeyString = groupKeyList.toString();
-                if (!groupColToTupleAndSumMapping.containsKey(groupKeyString)) {
-                    groupColToTupleAndSumMapping.put(groupKeyString, new ArrayList<>(tuple.getValues()));
-                }
-            } else {
-                if (groupColToTupleAndSumMapping.keySet().isEmpty()) {
-                    groupColToTupleAndSumMapping.put(groupKeyString, new ArrayList<>(tuple.getValues()));
-                }
+            Tuple groupKey = tuple.project(groupByIndexes);
+            int[] groupRow = groupColToTupleAndSumMapping.get(groupKey);
+            if (groupRow == null) {
+                groupRow = Arrays.copyOf(tuple.getValues(), tuple.size() + sumExpIndexesList.size());
+                groupColToTupleAndSumMapping.put(groupKey, groupRow);
             }
 
-            // Iterate through the sum expressions, calculate the sum values and append them to the tuple values
-            int tupleLength = tuple.getValues().size();
-            for (int sumExpIndex = 0; sumExpIndex < sumExpIndexesList.size(); sumExpIndex++) {
-                int currentIndex = sumExpIndexesList.get(sumExpIndex);
-                ExpressionEvaluator sumExpEvaluator = new ExpressionEvaluator(tuple, schema);
-                selectedColumns.get(currentIndex).accept(sumExpEvaluator);
+            // Iterate through the sum expressions, calculate the sum values and add them to the group row
+            int tupleLength = tuple.size();
+            for (int sumExpIndex = 0; sumExpIndex < sumEvaluators.length; sumExpIndex++) {
+                groupRow[tupleLength + sumExpIndex] += sumEvaluators[sumExpIndex].evaluate(tuple);
+            }
+        }
+    }
 
-                int sumValue = sumExpEvaluator.getValue();
+    /**
+     * Computes the group sums like computeGroupSums(), but reads the child batch at a time
+     * and evaluates the sum expressions directly on the batch rows.
+     */
+    private void computeGroupSumsFromBatches() {
+        TupleBatch batch;
+        while ((batch = childOperator.getNextBatch()) != null) {
+            int columnCount = batch.getColumnCount();
+            for (int i = 0; i < batch.size(); i++) {
+                int row = batch.getRowIndex(i);
 
-                List<Integer> existingValues = groupColToTupleAndSumMapping.get(groupKeyString);
-                if (existingValues.size() <= tupleLength + sumExpIndex) {
-                    existingValues.add(0);
+                int[] groupKeyValues = new int[groupByIndexes.length];
+                for (int k = 0; k < groupByIndexes.length; k++) {
+                    groupKeyValues[k] = batch.getValue(groupByIndexes[k], row);
+                }
+                Tuple groupKey = new Tuple(groupKeyValues);
+                int[] groupRow = groupColToTupleAndSumMapping.get(groupKey);
+                if (groupRow == null) {
+                    groupRow = new int[columnCount + sumExpIndexesList.size()];
+                    for (int column = 0; column < columnCount; column++) {
+                        groupRow[column] = batch.getValue(column, row);
+                    }
+                    groupColToTupleAndSumMapping.put(groupKey, groupRow);
+                }
+
+                for (int sumExpIndex = 0; sumExpIndex < sumEvaluators.length; sumExpIndex++) {
+                    groupRow[columnCount + sumExpIndex] += sumEvaluators[sumExpIndex].evaluate(batch, row);
                 }
-                existingValues.set(tupleLength + sumExpIndex, existingValues.get(tupleLength + sumExpIndex) + sumValue);
             }
         }
     }
 
+    Operator getChildOperator() {
+        return childOperator;
+    }
+
+    int[] getGroupByIndexes() {
+        return groupByIndexes;
+    }
+
+    ExpressionEvaluator[] getSumEvaluators() {
+        return sumEvaluators;
+    }
+
+    int[] getOutputIndexes() {
+        return outputIndexes;
+    }
+
     @Override
     public void reset() {
         childOperator.reset();
@@ -187,4 +274,9 @@ public class SumOperator extends Operator {
         }
         return schema;
     }
-}
\ No newline at end of file
+
+    @Override
+    public List<Operator> getChildren() {
+        return Collections.singletonList(childOperator);
+    }
+}
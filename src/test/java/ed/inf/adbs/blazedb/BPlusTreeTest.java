@@ -0,0 +1,74 @@
+package ed.inf.adbs.blazedb;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+
+public class BPlusTreeTest extends TestCase {
+
+    public void testBulkLoadAndSearch() throws Exception {
+        // Initialize DatabaseCatalog
+        DatabaseCatalog catalog = DatabaseCatalog.getInstance("samples/db");
+        File tableFile = new File(catalog.getTableFilePath("Student"));
+
+        // Enough entries for three levels, with every key three times so equal keys span leaves
+        int count = 200000;
+        int[] keys = new int[count];
+        long[] rowIds = new long[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = i / 3 - 1000;
+            rowIds[i] = 10L * i;
+        }
+        File file = File.createTempFile("index", ".bptree");
+        file.deleteOnExit();
+        BPlusTree index = BPlusTree.bulkLoad(file.getPath(), 1, keys, rowIds, count, true, tableFile);
+        assertEquals(3, index.getHeight());
+        assertEquals((count + BPlusTree.LEAF_CAPACITY - 1) / BPlusTree.LEAF_CAPACITY, index.getLeafCount());
+
+        for (int key : new int[] {-1000, -999, 0, 113 - 1000, 57913, count / 3 - 1001}) {
+            assertEquals(3L * (key + 1000), index.lowerBound(key));
+            assertEquals(3L * (key + 1001), index.upperBound(key));
+        }
+        assertEquals(0, index.lowerBound(Long.MIN_VALUE));
+        assertEquals(count, index.lowerBound(count));
+        assertEquals(count, index.upperBound(Long.MAX_VALUE));
+        assertEquals(30, index.count(0, 9));
+        assertEquals(0, index.count(9, 0));
+        assertEquals(count, index.count(Long.MIN_VALUE, Long.MAX_VALUE));
+
+        int[] leafKeys = new int[BPlusTree.LEAF_CAPACITY];
+        long[] leafRowIds = new long[BPlusTree.LEAF_CAPACITY];
+        int leaf = index.getLeafCount() - 1;
+        int size = index.readLeaf(leaf, leafKeys, leafRowIds);
+        assertEquals(count - leaf * BPlusTree.LEAF_CAPACITY, size);
+        assertEquals(keys[leaf * BPlusTree.LEAF_CAPACITY + 5], leafKeys[5]);
+        assertEquals(rowIds[count - 1], leafRowIds[size - 1]);
+
+        // The index file round trips and is only valid for an unchanged table file
+        BPlusTree loaded = BPlusTree.load(file.getPath());
+        assertEquals(1, loaded.getKeyColumn());
+        assertTrue(loaded.isClustered());
+        assertEquals(count, loaded.getEntryCount());
+        assertEquals((count + 2) / 3, loaded.getDistinctKeyCount());
+        assertEquals(index.lowerBound(57913), loaded.lowerBound(57913));
+        assertTrue(loaded.matches(tableFile));
+        assertFalse(loaded.matches(new File(catalog.getTableFilePath("Course"))));
+    }
+
+    public void testBuild() throws Exception {
+        // Initialize DatabaseCatalog
+        DatabaseCatalog.getInstance("samples/db");
+
+        File file = File.createTempFile("Student", ".bptree");
+        file.deleteOnExit();
+
+        // Student is stored in the order of A but not of B
+        BPlusTree index = BPlusTree.build("Student", "Student.B", file.getPath());
+        assertFalse(index.isClustered());
+        assertEquals(1, index.getHeight());
+        assertEquals(6, index.getEntryCount());
+        assertEquals(3, index.count(100, 100));
+        assertEquals(5, index.count(100, 250));
+        assertTrue(BPlusTree.build("Student", "Student.A", file.getPath()).isClustered());
+    }
+}
@@ -0,0 +1,140 @@
+package ed.inf.adbs.blazedb;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+public class BitmapIndexTest extends TestCase {
+
+    public void testRoaringBitmap() {
+        // Every third int of the first chunk, and every int of part of the second and third chunks
+        int count = 30000;
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = i < 10000 ? 3 * i : 60000 + i;
+        }
+        RoaringBitmap odd = RoaringBitmap.of(values, 0, count);
+        assertEquals(count, odd.getCardinality());
+        assertEquals(2, odd.getBitmapContainerCount());
+        assertTrue(odd.contains(29997));
+        assertFalse(odd.contains(29998));
+        assertTrue(odd.contains(89999));
+        assertFalse(odd.contains(90000));
+
+        // A sparse set of the same chunks is stored as arrays
+        RoaringBitmap sparse = RoaringBitmap.of(new int[] {3, 4, 70000, 70001, 200000}, 0, 5);
+        assertEquals(0, sparse.getBitmapContainerCount());
+        RoaringBitmap and = odd.and(sparse);
+        assertEquals(3, and.getCardinality());
+        assertTrue(and.contains(70001));
+        assertFalse(and.contains(4));
+        RoaringBitmap or = odd.or(sparse);
+        assertEquals(count + 2, or.getCardinality());
+        assertTrue(or.contains(200000));
+        assertEquals(0, odd.and(new RoaringBitmap()).getCardinality());
+
+        // The cursor reads the ints in ascending order
+        RoaringBitmap.Cursor cursor = or.cursor();
+        int[] buffer = new int[7];
+        int previous = -1;
+        long read = 0;
+        int n;
+        while ((n = cursor.read(buffer)) > 0) {
+            for (int i = 0; i < n; i++) {
+                assertTrue(buffer[i] > previous);
+                previous = buffer[i];
+            }
+            read += n;
+        }
+        assertEquals(or.getCardinality(), read);
+        assertEquals(200000, previous);
+
+        // The set round trips through its serialized form
+        ByteBuffer bytes = ByteBuffer.allocate(or.getSerializedSize());
+        or.serialize(bytes);
+        assertEquals(0, bytes.remaining());
+        bytes.flip();
+        RoaringBitmap loaded = RoaringBitmap.deserialize(bytes);
+        assertEquals(or.getCardinality(), loaded.getCardinality());
+        assertEquals(or.getBitmapContainerCount(), loaded.getBitmapContainerCount());
+        assertTrue(loaded.contains(70000));
+        assertTrue(loaded.contains(4));
+        assertFalse(loaded.contains(5));
+    }
+
+    public void testBulkLoadAndLookup() throws Exception {
+        // Initialize DatabaseCatalog
+        DatabaseCatalog catalog = DatabaseCatalog.getInstance("samples/db");
+        File tableFile = new File(catalog.getTableFilePath("Student"));
+
+        // Ten values over the rows of a columnar table, sorted by value and row
+        int count = 100000;
+        int[] keys = new int[count];
+        long[] rowIds = new long[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = i / 10000;
+            rowIds[i] = (i % 10000) * 10L + keys[i];
+        }
+        File file = File.createTempFile("index", ".bitmap");
+        file.deleteOnExit();
+        BitmapIndex index = BitmapIndex.bulkLoad(file.getPath(),
+                new IndexEntries(2, keys, rowIds, count, 10, false, tableFile));
+        assertEquals(count, index.getRowCount());
+        assertEquals(10, index.getValueCount());
+        assertEquals(10000, index.countRows(3, 3));
+        assertEquals(30000, index.countRows(-5, 2));
+        assertEquals(0, index.countRows(10, 20));
+
+        RoaringBitmap rows = index.lookup(7, 8);
+        assertEquals(20000, rows.getCardinality());
+        assertTrue(rows.contains(17));
+        assertTrue(rows.contains(99998));
+        assertFalse(rows.contains(19));
+        assertEquals(0, index.lookup(4, 3).getCardinality());
+        long[] rowIdBuffer = new long[4];
+        assertEquals(2, index.readRowIds(count - 2, rowIdBuffer));
+        assertEquals(count - 1, rowIdBuffer[1]);
+
+        // The index file round trips and is only valid for an unchanged table file
+        BitmapIndex loaded = BitmapIndex.load(file.getPath());
+        assertEquals(2, loaded.getKeyColumn());
+        assertEquals(10, loaded.getValueCount());
+        assertEquals(10000, loaded.lookup(0, 0).getCardinality());
+        assertTrue(loaded.matches(tableFile));
+        assertFalse(loaded.matches(new File(catalog.getTableFilePath("Course"))));
+
+        // A column of many distinct values is left to the other indexes
+        for (int i = 0; i < count; i++) {
+            keys[i] = i;
+            rowIds[i] = i;
+        }
+        try {
+            BitmapIndex.bulkLoad(file.getPath(), new IndexEntries(2, keys, rowIds, count, count, true, tableFile));
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().startsWith("Too many distinct values"));
+        }
+    }
+
+    public void testBuild() throws Exception {
+        // Initialize DatabaseCatalog
+        DatabaseCatalog.getInstance("samples/db");
+
+        File file = File.createTempFile("Student", ".bitmap");
+        file.deleteOnExit();
+
+        // The rows of a CSV table are numbered, and their offsets are kept in the index
+        BitmapIndex index = BitmapIndex.build("Student", "Student.B", file.getPath());
+        assertEquals(6, index.getRowCount());
+        assertEquals(3, index.getValueCount());
+        RoaringBitmap rows = index.lookup(100, 100);
+        assertEquals(3, rows.getCardinality());
+        assertTrue(rows.contains(2) && rows.contains(3) && rows.contains(4));
+        assertEquals(1, index.lookup(250, 300).getCardinality());
+        long[] rowIds = new long[6];
+        assertEquals(6, index.readRowIds(0, rowIds));
+        assertEquals(0, rowIds[0]);
+        assertTrue(rowIds[1] > 0 && rowIds[5] > rowIds[4]);
+    }
+}
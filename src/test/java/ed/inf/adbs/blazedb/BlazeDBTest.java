@@ -6,6 +6,7 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import static org.junit.Assert.assertEquals;
 
@@ -31,9 +32,14 @@ public class BlazeDBTest {
 				Process process = processBuilder.start();
 				process.waitFor();
 
-				// Compare the actual output with the expected output
+				// Compare the actual output with the expected output. Without ORDER BY the order of the rows is
+				// left to the plan (e.g. the join order and algorithm), so only the rows themselves are compared
 				List<String> expectedOutput = readLines(expectedOutputFile);
 				List<String> actualOutput = readLines(actualOutputFile);
+				if (!isOrdered(queryFile)) {
+					Collections.sort(expectedOutput);
+					Collections.sort(actualOutput);
+				}
 
 				assertEquals("Output mismatch for query" + i, expectedOutput, actualOutput);
 			} catch (AssertionError | IOException | InterruptedException e) {
@@ -42,6 +48,15 @@ public class BlazeDBTest {
 		}
 	}
 
+	private boolean isOrdered(String queryFile) throws IOException {
+		for (String line : readLines(queryFile)) {
+			if (line.toUpperCase().contains("ORDER BY")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	private List<String> readLines(String filePath) throws IOException {
 		List<String> lines = new ArrayList<>();
 		try (BufferedReader reader = new BufferedReader(new FileReader(new File(filePath)))) {
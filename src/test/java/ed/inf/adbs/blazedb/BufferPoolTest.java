@@ -0,0 +1,65 @@
+package ed.inf.adbs.blazedb;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+
+public class BufferPoolTest extends TestCase {
+
+    public void testBufferPool() throws Exception {
+        // A file of three and a half pages
+        File file = File.createTempFile("blazedb", ".pool");
+        file.deleteOnExit();
+        byte[] content = new byte[3 * BufferPool.PAGE_SIZE + BufferPool.PAGE_SIZE / 2];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * 31);
+        }
+        try (FileOutputStream output = new FileOutputStream(file)) {
+            output.write(content);
+        }
+
+        BufferPool pool = new BufferPool(2L * BufferPool.PAGE_SIZE);
+        assertEquals(2, pool.getFrameCount());
+
+        // A read across a page boundary pins both pages
+        byte[] buffer = new byte[100];
+        assertEquals(100, pool.read(file.getPath(), BufferPool.PAGE_SIZE - 50, buffer, 0, 100));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(content[BufferPool.PAGE_SIZE - 50 + i], buffer[i]);
+        }
+        assertEquals(2, pool.getMissCount());
+        pool.read(file.getPath(), 0, buffer, 0, 100);
+        assertEquals(1, pool.getHitCount());
+
+        // A sequential read of the whole file evicts pages, the last page is short
+        byte[] all = new byte[content.length];
+        int length = 0;
+        try (InputStream input = pool.openInputStream(file.getPath())) {
+            int read;
+            while ((read = input.read(all, length, Math.min(1000, all.length - length))) > 0) {
+                length += read;
+            }
+        }
+        assertEquals(content.length, length);
+        for (int i = 0; i < content.length; i++) {
+            assertEquals(content[i], all[i]);
+        }
+        assertTrue(pool.getEvictionCount() > 0);
+        assertEquals(-1, pool.read(file.getPath(), content.length, buffer, 0, 100));
+
+        // Pinned pages are never evicted
+        BufferPool.Page first = pool.pin(file.getPath(), 0);
+        BufferPool.Page second = pool.pin(file.getPath(), 1);
+        try {
+            pool.pin(file.getPath(), 2);
+            fail("Pinned pages must not be evicted");
+        } catch (RuntimeException e) {
+            // Expected, both frames are pinned
+        }
+        pool.unpin(second);
+        assertEquals(BufferPool.PAGE_SIZE / 2, pool.pin(file.getPath(), 3).getLength());
+        assertEquals(content[5], first.getData()[5]);
+    }
+}
@@ -0,0 +1,79 @@
+package ed.inf.adbs.blazedb;
+
+import junit.framework.TestCase;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+public class ColumnCodecTest extends TestCase {
+
+    public void testChooseEncoding() {
+        int count = 1000;
+        int[] runs = new int[count];
+        int[] lowCardinality = new int[count];
+        int[] narrow = new int[count];
+        int[] sorted = new int[count];
+        int[] random = new int[count];
+        Random rng = new Random(42);
+        for (int i = 0; i < count; i++) {
+            runs[i] = i / 250;
+            lowCardinality[i] = new int[]{-70000, 3, 1 << 30}[rng.nextInt(3)];
+            narrow[i] = 100000 + rng.nextInt(1000);
+            sorted[i] = 5000000 + 7 * i + rng.nextInt(3);
+            random[i] = rng.nextInt();
+        }
+        assertEquals(ColumnCodec.Encoding.RUN_LENGTH, ColumnCodec.choose(runs, count));
+        assertEquals(ColumnCodec.Encoding.DICTIONARY, ColumnCodec.choose(lowCardinality, count));
+        assertEquals(ColumnCodec.Encoding.FRAME_OF_REFERENCE, ColumnCodec.choose(narrow, count));
+        assertEquals(ColumnCodec.Encoding.DELTA, ColumnCodec.choose(sorted, count));
+        assertEquals(ColumnCodec.Encoding.PLAIN, ColumnCodec.choose(random, count));
+    }
+
+    public void testEncodeDecodeSelect() {
+        Random rng = new Random(7);
+        int[][] chunks = {
+                {Integer.MIN_VALUE, Integer.MAX_VALUE, 0, -1, Integer.MAX_VALUE},
+                {5},
+                new int[1024],
+                new int[777],
+                new int[100],
+        };
+        for (int i = 0; i < chunks[2].length; i++) {
+            chunks[2][i] = rng.nextInt(40) - 20;
+        }
+        for (int i = 0; i < chunks[3].length; i++) {
+            chunks[3][i] = i % 3 == 0 ? Integer.MIN_VALUE : Integer.MAX_VALUE - i;
+        }
+        for (int i = 0; i < chunks[4].length; i++) {
+            chunks[4][i] = i / 10;
+        }
+
+        for (int[] values : chunks) {
+            for (ColumnCodec.Encoding encoding : ColumnCodec.Encoding.values()) {
+                if (encoding == ColumnCodec.Encoding.DELTA && values.length < 2) {
+                    continue;
+                }
+                ByteBuffer buffer = ByteBuffer.allocate(16 + 8 * values.length);
+                buffer.put((byte) 99);
+                ColumnCodec.encode(encoding, values, values.length, buffer);
+
+                int[] decoded = new int[values.length];
+                ColumnCodec.decode(encoding, buffer, 1, values.length, decoded);
+                assertTrue(encoding.toString(), Arrays.equals(values, decoded));
+
+                // The rows kept by select() are exactly the rows within the range
+                long[][] ranges = {{-5, 5}, {0, 0}, {Long.MIN_VALUE, -1}, {3, Long.MAX_VALUE}, {10, 9}};
+                for (long[] range : ranges) {
+                    boolean[] keep = new boolean[values.length];
+                    Arrays.fill(keep, true);
+                    ColumnCodec.select(encoding, buffer, 1, values.length, range[0], range[1], keep);
+                    for (int i = 0; i < values.length; i++) {
+                        assertEquals(encoding + " " + Arrays.toString(range),
+                                values[i] >= range[0] && values[i] <= range[1], keep[i]);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package ed.inf.adbs.blazedb;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+
+public class HashIndexTest extends TestCase {
+
+    public void testBulkLoadAndLookup() throws Exception {
+        // Initialize DatabaseCatalog
+        DatabaseCatalog catalog = DatabaseCatalog.getInstance("samples/db");
+        File tableFile = new File(catalog.getTableFilePath("Student"));
+
+        // Every key three times, followed by one key with more rows than a bucket holds
+        int count = 90000 + 1000;
+        int[] keys = new int[count];
+        long[] rowIds = new long[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = i < 90000 ? i / 3 - 1000 : 50000;
+            rowIds[i] = 10L * i;
+        }
+        File file = File.createTempFile("index", ".hash");
+        file.deleteOnExit();
+        HashIndex index = HashIndex.bulkLoad(file.getPath(),
+                new IndexEntries(1, keys, rowIds, count, 30001, true, tableFile));
+        assertEquals(count, index.getEntryCount());
+        assertEquals(30001, index.getDistinctKeyCount());
+        assertTrue(index.getGlobalDepth() > 0);
+        assertTrue(index.getBucketCount() >= count / HashIndex.BUCKET_CAPACITY);
+
+        for (int key : new int[] {-1000, -999, 0, 57, 28999}) {
+            long[] matches = index.lookup(key);
+            assertEquals(3, matches.length);
+            assertEquals(30L * (key + 1000), matches[0]);
+            assertEquals(30L * (key + 1000) + 20, matches[2]);
+        }
+        long[] matches = index.lookup(50000);
+        assertEquals(1000, matches.length);
+        assertEquals(900000, matches[0]);
+        assertEquals(10L * (count - 1), matches[999]);
+        assertEquals(0, index.lookup(-1001).length);
+        assertEquals(0, index.lookup(29000).length);
+
+        // The index file round trips and is only valid for an unchanged table file
+        HashIndex loaded = HashIndex.load(file.getPath());
+        assertEquals(1, loaded.getKeyColumn());
+        assertTrue(loaded.isClustered());
+        assertEquals(index.getGlobalDepth(), loaded.getGlobalDepth());
+        assertEquals(index.getBucketCount(), loaded.getBucketCount());
+        assertEquals(1000, loaded.lookup(50000).length);
+        assertEquals(30L * 4242, loaded.lookup(3242)[0]);
+        assertTrue(loaded.matches(tableFile));
+        assertFalse(loaded.matches(new File(catalog.getTableFilePath("Course"))));
+    }
+
+    public void testBuild() throws Exception {
+        // Initialize DatabaseCatalog
+        DatabaseCatalog.getInstance("samples/db");
+
+        File file = File.createTempFile("Student", ".hash");
+        file.deleteOnExit();
+
+        // Student is stored in the order of A but not of B
+        HashIndex index = HashIndex.build("Student", "Student.B", file.getPath());
+        assertFalse(index.isClustered());
+        assertEquals(0, index.getGlobalDepth());
+        assertEquals(6, index.getEntryCount());
+        assertEquals(3, index.getDistinctKeyCount());
+        assertEquals(3, index.lookup(100).length);
+        assertEquals(1, index.lookup(300).length);
+        assertEquals(0, index.lookup(250).length);
+        assertTrue(HashIndex.build("Student", "Student.A", file.getPath()).isClustered());
+    }
+}
@@ -0,0 +1,49 @@
+package ed.inf.adbs.blazedb;
+
+import junit.framework.TestCase;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class JoinOrderOptimizerTest extends TestCase {
+
+    public void testJoinOrderAvoidsCrossProducts() throws Exception {
+        // Initialize DatabaseCatalog
+        DatabaseCatalog.getInstance("samples/db");
+
+        List<String> joinOrder = getJoinOrder("SELECT * FROM Student, Course, Enrolled WHERE Student.A = Enrolled.A AND Enrolled.E = Course.E");
+        // Student and Course have no join condition, so they must not be joined first
+        assertEquals("Enrolled", joinOrder.get(1));
+
+        joinOrder = getJoinOrder("SELECT * FROM Course, Student, Enrolled WHERE Student.A = Enrolled.A AND Enrolled.E = Course.E");
+        assertEquals("Enrolled", joinOrder.get(1));
+    }
+
+    public void testJoinOrderKeepsFromOrderOnTies() throws Exception {
+        // Initialize DatabaseCatalog
+        DatabaseCatalog.getInstance("samples/db");
+
+        assertEquals(Arrays.asList("Student", "Enrolled"), getJoinOrder("SELECT * FROM Student, Enrolled WHERE Student.A = Enrolled.A"));
+        assertEquals(Arrays.asList("Enrolled", "Student"), getJoinOrder("SELECT * FROM Enrolled, Student WHERE Student.A = Enrolled.A"));
+        assertEquals(Arrays.asList("Student", "Course"), getJoinOrder("SELECT * FROM Student, Course"));
+    }
+
+    private List<String> getJoinOrder(String query) throws Exception {
+        PlainSelect select = (PlainSelect) CCJSqlParserUtil.parse(query);
+        Map<String, Expression> selectionConditions = new HashMap<>();
+        List<Expression> joinConditions = new ArrayList<>();
+        if (select.getWhere() != null) {
+            ConditionExtractor.extract(select.getWhere(), select, selectionConditions, joinConditions);
+        }
+        List<String> tables = new ArrayList<>();
+        tables.add(select.getFromItem().toString());
+        select.getJoins().forEach(join -> tables.add(join.toString()));
+        return new JoinOrderOptimizer(tables, selectionConditions, joinConditions).getJoinOrder();
+    }
+}
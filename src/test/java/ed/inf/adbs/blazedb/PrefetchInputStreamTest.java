@@ -0,0 +1,73 @@
+package ed.inf.adbs.blazedb;
+
+import ed.inf.adbs.blazedb.operator.ScanOperator;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+public class PrefetchInputStreamTest extends TestCase {
+
+    public void testPrefetchInputStream() throws Exception {
+        // A file of five and a half pages, more than the read-ahead depth
+        File file = File.createTempFile("blazedb", ".prefetch");
+        file.deleteOnExit();
+        byte[] content = new byte[5 * BufferPool.PAGE_SIZE + BufferPool.PAGE_SIZE / 2];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * 17);
+        }
+        try (FileOutputStream output = new FileOutputStream(file)) {
+            output.write(content);
+        }
+
+        byte[] all = new byte[content.length + 1];
+        int length = 0;
+        try (InputStream input = new PrefetchInputStream(file.getPath(), 2)) {
+            int read;
+            while ((read = input.read(all, length, Math.min(1000, all.length - length))) > 0) {
+                length += read;
+            }
+            assertEquals(-1, input.read());
+        }
+        assertEquals(content.length, length);
+        for (int i = 0; i < content.length; i++) {
+            assertEquals(content[i], all[i]);
+        }
+
+        // Closing before the end stops the reader
+        InputStream input = new PrefetchInputStream(file.getPath(), 1);
+        assertEquals(content[0] & 0xff, input.read());
+        input.close();
+        assertEquals(-1, input.read());
+    }
+
+    public void testPrefetchingScan() throws Exception {
+        // Initialize DatabaseCatalog
+        DatabaseCatalog.getInstance("samples/db");
+
+        List<String> expected = new ArrayList<>();
+        ScanOperator scan = new ScanOperator("Enrolled");
+        Tuple tuple;
+        while ((tuple = scan.getNextTuple()) != null) {
+            expected.add(tuple.toString());
+        }
+
+        System.setProperty("blazedb.scan.prefetch", "4");
+        try {
+            ScanOperator prefetchingScan = new ScanOperator("Enrolled");
+            for (int pass = 0; pass < 2; pass++) {
+                List<String> actual = new ArrayList<>();
+                while ((tuple = prefetchingScan.getNextTuple()) != null) {
+                    actual.add(tuple.toString());
+                }
+                assertEquals(expected, actual);
+                prefetchingScan.reset();
+            }
+        } finally {
+            System.clearProperty("blazedb.scan.prefetch");
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package ed.inf.adbs.blazedb;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The SampleDatabaseCopy class runs tests that write index files or index_info.txt on a temporary copy of the sample
+ * database, so the tracked samples/db is never modified.
+ * <br><br>
+ * The SampleDatabaseCopy class contains the following methods:<br>
+ * - open(): Copies the sample database and opens the DatabaseCatalog on the copy.<br>
+ * - close(File directory): Opens the DatabaseCatalog on the sample database again and deletes the copy.
+ */
+public final class SampleDatabaseCopy {
+    public static final String SAMPLE_DIR = "samples/db";
+
+    private SampleDatabaseCopy() {}
+
+    /**
+     * Copies the sample database into a temporary directory and opens the DatabaseCatalog on the copy.
+     * @return The directory of the copy.
+     */
+    public static File open() throws IOException {
+        Path source = Paths.get(SAMPLE_DIR);
+        Path target = Files.createTempDirectory("blazedb");
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(source)) {
+            paths = walk.collect(Collectors.toList());
+        }
+        for (Path path : paths) {
+            Path copy = target.resolve(source.relativize(path).toString());
+            if (Files.isDirectory(path)) {
+                Files.createDirectories(copy);
+            } else {
+                Files.copy(path, copy);
+            }
+        }
+        DatabaseCatalog.reopen(target.toString());
+        return target.toFile();
+    }
+
+    /**
+     * Opens the DatabaseCatalog on the sample database again, for the other tests of the JVM, and deletes the copy.
+     * @param directory The directory of the copy returned by open().
+     */
+    public static void close(File directory) throws IOException {
+        DatabaseCatalog.reopen(SAMPLE_DIR);
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(directory.toPath())) {
+            paths = walk.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+        }
+        for (Path path : paths) {
+            Files.delete(path);
+        }
+    }
+}
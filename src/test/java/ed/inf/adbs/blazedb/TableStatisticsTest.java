@@ -0,0 +1,36 @@
+package ed.inf.adbs.blazedb;
+
+import junit.framework.TestCase;
+
+public class TableStatisticsTest extends TestCase {
+
+    public void testCollectStatistics() throws Exception {
+        // Initialize DatabaseCatalog
+        DatabaseCatalog.getInstance("samples/db");
+
+        TableStatistics statistics = TableStatistics.collect("Student");
+        assertEquals(6, statistics.getRowCount());
+
+        ColumnStatistics columnA = statistics.getColumnStatistics("Student.A");
+        assertEquals(1, columnA.getMin());
+        assertEquals(6, columnA.getMax());
+        assertEquals(6, columnA.getDistinctCount());
+        assertEquals(0.0, columnA.estimateLessThanSelectivity(1));
+        assertEquals(1.0, columnA.estimateLessThanSelectivity(7));
+
+        ColumnStatistics columnB = statistics.getColumnStatistics("Student.B");
+        assertTrue(columnB.getDistinctCount() < 6);
+
+        // The statistics file format round trips
+        ColumnStatistics parsed = ColumnStatistics.parse(columnA.toString());
+        assertEquals(columnA.toString(), parsed.toString());
+    }
+
+    public void testHyperLogLogEstimate() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 100000; i++) {
+            sketch.add(i % 20000);
+        }
+        assertEquals(20000, sketch.estimate(), 20000 * 0.05);
+    }
+}
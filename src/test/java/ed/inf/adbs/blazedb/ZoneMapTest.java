@@ -0,0 +1,39 @@
+package ed.inf.adbs.blazedb;
+
+import junit.framework.TestCase;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+
+import java.io.File;
+import java.util.List;
+
+public class ZoneMapTest extends TestCase {
+
+    public void testSelectBlocks() throws Exception {
+        // Initialize DatabaseCatalog
+        DatabaseCatalog catalog = DatabaseCatalog.getInstance("samples/db");
+        List<String> schema = catalog.getTableSchema("Student");
+
+        ZoneMap zoneMap = ZoneMap.collect("Student");
+        assertEquals(1, zoneMap.getBlockCount());
+        assertEquals(6, zoneMap.getBlockRowCount(0));
+        assertEquals(1, zoneMap.getMin(0, 0));
+        assertEquals(6, zoneMap.getMax(0, 0));
+        assertEquals(500, zoneMap.getMax(0, 2));
+
+        assertEquals(0, zoneMap.selectBlocks(CCJSqlParserUtil.parseCondExpression("Student.A < 1"), schema).length);
+        assertEquals(0, zoneMap.selectBlocks(CCJSqlParserUtil.parseCondExpression("600 <= Student.C"), schema).length);
+        assertEquals(1, zoneMap.selectBlocks(
+                CCJSqlParserUtil.parseCondExpression("Student.A >= 2 AND Student.B = 200"), schema).length);
+        assertNull(zoneMap.selectBlocks(CCJSqlParserUtil.parseCondExpression("Student.A < Student.B"), schema));
+
+        // The zone map file round trips and is only valid for an unchanged table file
+        File file = File.createTempFile("Student", ".zonemap");
+        file.deleteOnExit();
+        zoneMap.save(file.getPath());
+        ZoneMap loaded = ZoneMap.load(file.getPath());
+        assertEquals(zoneMap.getBlockOffset(0), loaded.getBlockOffset(0));
+        assertEquals(zoneMap.getMax(0, 3), loaded.getMax(0, 3));
+        assertTrue(loaded.matches(new File(catalog.getTableFilePath("Student"))));
+        assertFalse(loaded.matches(new File(catalog.getTableFilePath("Course"))));
+    }
+}
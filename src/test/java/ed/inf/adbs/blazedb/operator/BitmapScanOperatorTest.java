@@ -0,0 +1,92 @@
+package ed.inf.adbs.blazedb.operator;
+
+import ed.inf.adbs.blazedb.DatabaseCatalog;
+import ed.inf.adbs.blazedb.SampleDatabaseCopy;
+import junit.framework.TestCase;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static ed.inf.adbs.blazedb.operator.OperatorTestUtils.collectInOrder;
+
+public class BitmapScanOperatorTest extends TestCase {
+
+    public void testBitmapSelection() throws Exception {
+        // Initialize DatabaseCatalog on a copy of the sample database, which the indexes are written to
+        File databaseDir = SampleDatabaseCopy.open();
+        DatabaseCatalog catalog = DatabaseCatalog.getInstance("");
+
+        try {
+            catalog.createBitmapIndex("Student", "Student.B");
+            catalog.createBitmapIndex("Student", "Student.D");
+            assertEquals(Arrays.asList("Student.B", "Student.D"), catalog.getBitmapIndexedColumns("Student"));
+            assertTrue(catalog.getIndexedColumns("Student").isEmpty());
+
+            // A conjunction of indexed columns intersects their bitmaps
+            BitmapScanOperator scan = BitmapScanOperator.forTable("Student",
+                    CCJSqlParserUtil.parseCondExpression("Student.B = 100 AND Student.D = 44"), null, null);
+            assertNotNull(scan);
+            assertTrue(scan.isExact());
+            assertFalse(scan.isRowsOnly());
+            assertEquals(1, scan.getRowCount());
+            assertEquals("3, 100, 105, 44", scan.getNextTuple().toString());
+            assertNull(scan.getNextTuple());
+            scan.reset();
+            assertEquals(1, scan.getNextBatch().size());
+            assertNull(scan.getNextBatch());
+
+            // A condition on a column without an index leaves a superset of the rows to filter
+            scan = BitmapScanOperator.forTable("Student",
+                    CCJSqlParserUtil.parseCondExpression("(Student.B = 300 AND Student.C > 100)"),
+                    Arrays.asList("Student.A", "Student.C"), Collections.singletonList("Student.A"));
+            assertNotNull(scan);
+            assertFalse(scan.isExact());
+            assertEquals("6, 400", scan.getNextTuple().toString());
+            assertNull(scan.getNextTuple());
+            assertNull(BitmapScanOperator.forTable("Student",
+                    CCJSqlParserUtil.parseCondExpression("Student.C = 50"), null, null));
+            assertNull(BitmapScanOperator.forTable("Student",
+                    CCJSqlParserUtil.parseCondExpression("Student.B = 100 OR Student.C = 50"), null, null));
+
+            // Fetching four of six rows costs more than a scan, unless the rows are only counted
+            assertNull(BitmapScanOperator.forTable("Student",
+                    CCJSqlParserUtil.parseCondExpression("Student.B = 200 OR Student.D = 11"), null, null));
+            scan = BitmapScanOperator.forTable("Student",
+                    CCJSqlParserUtil.parseCondExpression("Student.B = 200 OR Student.D = 11"),
+                    Collections.<String>emptyList(), Collections.<String>emptyList());
+            assertNotNull(scan);
+            assertTrue(scan.isRowsOnly());
+            assertEquals(4, scan.getRowCount());
+            assertEquals(4, collectInOrder(scan).size());
+
+            // An inequality selects the values on either side
+            scan = BitmapScanOperator.forTable("Student",
+                    CCJSqlParserUtil.parseCondExpression("Student.D != 44 AND Student.B <= 100"),
+                    Arrays.asList("Student.A", "Student.D"), Arrays.asList("Student.A", "Student.D"));
+            assertNotNull(scan);
+            assertTrue(scan.isExact());
+            assertEquals(Arrays.asList("4, 11", "5, 22"), collectInOrder(scan));
+
+            // The sums of constants are the numbers of rows times the constants
+            PlainSelect select = (PlainSelect) CCJSqlParserUtil.parse(
+                    "SELECT SUM(1), SUM(2) FROM Student WHERE Student.B = 100");
+            scan = BitmapScanOperator.forTable("Student", select.getWhere(),
+                    Collections.<String>emptyList(), Collections.<String>emptyList());
+            BitmapCountOperator countOperator = new BitmapCountOperator(scan, select.getSelectItems());
+            assertEquals("3, 6", countOperator.getNextTuple().toString());
+            assertNull(countOperator.getNextTuple());
+            assertEquals(Arrays.asList("SUM(1)", "SUM(2)"), countOperator.getTableSchema());
+
+            catalog.dropIndex("Student.B");
+            catalog.dropIndex("Student.D");
+            assertTrue(catalog.getBitmapIndexedColumns("Student").isEmpty());
+            assertFalse(new File(databaseDir, "index_info.txt").exists());
+            assertFalse(new File(databaseDir, "data/Student.csv.B.bitmap").exists());
+        } finally {
+            SampleDatabaseCopy.close(databaseDir);
+        }
+    }
+}
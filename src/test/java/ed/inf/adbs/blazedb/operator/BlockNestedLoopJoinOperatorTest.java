@@ -0,0 +1,38 @@
+package ed.inf.adbs.blazedb.operator;
+
+import junit.framework.TestCase;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+
+import java.util.List;
+
+import static ed.inf.adbs.blazedb.operator.OperatorTestUtils.collect;
+import static ed.inf.adbs.blazedb.operator.OperatorTestUtils.collectNestedLoopJoin;
+import static ed.inf.adbs.blazedb.operator.OperatorTestUtils.openSampleDatabase;
+
+public class BlockNestedLoopJoinOperatorTest extends TestCase {
+
+    public void testBlockNestedLoopJoinOperator() throws Exception {
+        String[] conditions = {
+                "Student.C < Enrolled.E",
+                "Student.A >= Enrolled.A AND Student.B < Enrolled.E",
+                null
+        };
+
+        // Initialize DatabaseCatalog
+        openSampleDatabase();
+
+        for (String condition : conditions) {
+            Expression joinCondition = condition != null ? CCJSqlParserUtil.parseCondExpression(condition) : null;
+            List<String> expected = collectNestedLoopJoin("Student", "Enrolled", joinCondition);
+
+            // Buffer the whole inner input
+            List<String> actual = collect(new BlockNestedLoopJoinOperator(new ScanOperator("Student"), new ScanOperator("Enrolled"), joinCondition));
+            assertEquals("Output mismatch for " + condition, expected, actual);
+
+            // Blocks of two left tuples
+            actual = collect(new BlockNestedLoopJoinOperator(new ScanOperator("Student"), new ScanOperator("Enrolled"), joinCondition, 80));
+            assertEquals("Output mismatch with small blocks for " + condition, expected, actual);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package ed.inf.adbs.blazedb.operator;
+
+import ed.inf.adbs.blazedb.ColumnCodec;
+import ed.inf.adbs.blazedb.ColumnarConverter;
+import ed.inf.adbs.blazedb.RangePredicate;
+import ed.inf.adbs.blazedb.TupleBatch;
+import ed.inf.adbs.blazedb.ZoneMap;
+import junit.framework.TestCase;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static ed.inf.adbs.blazedb.operator.OperatorTestUtils.collect;
+import static ed.inf.adbs.blazedb.operator.OperatorTestUtils.collectBatches;
+import static ed.inf.adbs.blazedb.operator.OperatorTestUtils.collectInOrder;
+import static ed.inf.adbs.blazedb.operator.OperatorTestUtils.collectNestedLoopJoin;
+import static ed.inf.adbs.blazedb.operator.OperatorTestUtils.openSampleDatabase;
+
+public class ColumnarScanOperatorTest extends TestCase {
+
+    public void testColumnarScanOperator() throws Exception {
+        // Initialize DatabaseCatalog
+        openSampleDatabase();
+
+        ScanOperator scan = new ScanOperator("Student");
+        List<String> expected = collectInOrder(scan);
+
+        // Small pages, so the table spans several pages and the last one is partly filled
+        File file = File.createTempFile("Student", ".bin");
+        file.deleteOnExit();
+        new File(ZoneMap.getPath(file.getPath())).deleteOnExit();
+        assertEquals(expected.size(), ColumnarConverter.convert("Student", file.getPath(), 4));
+
+        ColumnarScanOperator columnarScan = new ColumnarScanOperator("Student", file.getPath());
+        assertEquals(scan.getTableSchema(), columnarScan.getTableSchema());
+        assertEquals(expected, collectInOrder(columnarScan));
+        assertNull(columnarScan.getNextTuple());
+        assertNull(columnarScan.getNextTuple());
+        assertNull(columnarScan.getNextBatch());
+
+        // Batches after a reset, starting in the middle of a page
+        columnarScan.reset();
+        List<String> actual = new ArrayList<>();
+        actual.add(columnarScan.getNextTuple().toString());
+        actual.addAll(collectBatches(columnarScan));
+        assertEquals(expected, actual);
+
+        // The zone map written with the file skips the pages outside the selection
+        ZoneMap zoneMap = ZoneMap.load(ZoneMap.getPath(file.getPath()));
+        assertEquals(2, zoneMap.getBlockCount());
+        int[] pages = zoneMap.selectBlocks(CCJSqlParserUtil.parseCondExpression("Student.A > 4"), columnarScan.getTableSchema());
+        columnarScan.setPages(pages);
+        assertEquals(expected.subList(4, 6), collectInOrder(columnarScan));
+
+        // The predicate filters the encoded pages: the first page is ruled out without being decoded,
+        // and the batch of the second page selects its matching rows
+        columnarScan.setPages(null);
+        columnarScan.setPredicate(RangePredicate.extract(
+                CCJSqlParserUtil.parseCondExpression("Student.B >= 150 AND Student.D = 11"), columnarScan.getTableSchema()));
+        assertEquals(expected.subList(5, 6), collectInOrder(columnarScan));
+        columnarScan.reset();
+        TupleBatch batch = columnarScan.getNextBatch();
+        assertEquals(2, batch.getRowCount());
+        assertEquals(1, batch.size());
+        assertEquals(expected.get(5), batch.getTuple(0).toString());
+        assertNull(columnarScan.getNextBatch());
+
+        // Every chunk has the smallest encoding for its values: bit-packing pays off for the four rows of the first
+        // page, not for the two rows of the second
+        columnarScan.getFile().loadPage(0);
+        assertEquals(ColumnCodec.Encoding.FRAME_OF_REFERENCE, columnarScan.getFile().getEncoding(0));
+        columnarScan.getFile().loadPage(1);
+        assertEquals(ColumnCodec.Encoding.PLAIN, columnarScan.getFile().getEncoding(0));
+
+        // Only the chunks of the needed columns are decoded
+        columnarScan.setPredicate(null);
+        columnarScan.setColumns(Arrays.asList("Student.C", "Student.A"));
+        assertEquals(Arrays.asList("Student.A", "Student.C"), columnarScan.getTableSchema());
+        assertEquals("1, 50", columnarScan.getNextTuple().toString());
+        batch = columnarScan.getNextBatch();
+        assertEquals(3, batch.size());
+        assertEquals("4, 50", batch.getTuple(2).toString());
+    }
+
+    public void testJoinOverColumnarTable() throws Exception {
+        // Initialize DatabaseCatalog
+        openSampleDatabase();
+
+        File file = File.createTempFile("Student", ".bin");
+        file.deleteOnExit();
+        new File(ZoneMap.getPath(file.getPath())).deleteOnExit();
+        ColumnarConverter.convert("Student", file.getPath(), 4);
+
+        // The joins poll their inputs again after EOF, on both sides of the join
+        String[] conditions = {null, "Student.C < Course.E"};
+        for (String condition : conditions) {
+            Expression joinCondition = condition != null ? CCJSqlParserUtil.parseCondExpression(condition) : null;
+            List<String> expected = collectNestedLoopJoin("Student", "Course", joinCondition);
+            assertEquals(expected, collect(new BlockNestedLoopJoinOperator(
+                    new ColumnarScanOperator("Student", file.getPath()), new ScanOperator("Course"), joinCondition)));
+            assertEquals(expected, collect(new BlockNestedLoopJoinOperator(
+                    new ColumnarScanOperator("Student", file.getPath()), new ScanOperator("Course"), joinCondition, 80)));
+            if (condition != null) {
+                assertEquals(expected, collect(new InequalityJoinOperator(
+                        new ColumnarScanOperator("Student", file.getPath()), new ScanOperator("Course"), joinCondition)));
+            }
+        }
+        List<String> expected = collectNestedLoopJoin("Course", "Student", null);
+        assertEquals(expected, collect(new BlockNestedLoopJoinOperator(new ScanOperator("Course"),
+                new ColumnarScanOperator("Student", file.getPath()), null, 80)));
+    }
+}
@@ -0,0 +1,84 @@
+package ed.inf.adbs.blazedb.operator;
+
+import ed.inf.adbs.blazedb.DatabaseCatalog;
+import ed.inf.adbs.blazedb.QueryPlanner;
+import junit.framework.TestCase;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+
+import java.util.Collections;
+import java.util.List;
+
+import static ed.inf.adbs.blazedb.operator.OperatorTestUtils.collect;
+import static ed.inf.adbs.blazedb.operator.OperatorTestUtils.collectBatches;
+
+public class CompiledPipelineOperatorTest extends TestCase {
+
+    public void testCompiledPipelineOperator() throws Exception {
+        String databaseDir = "samples/db";
+        String[] queries = {
+                "SELECT * FROM Student WHERE Student.A < 3;",
+                "SELECT Enrolled.E, SUM(Enrolled.H * Enrolled.H) FROM Enrolled GROUP BY Enrolled.E;",
+                "SELECT SUM(1) FROM Student GROUP BY Student.B;",
+                "SELECT SUM(2 * Student.A * Student.C), SUM(Student.B) FROM Student WHERE Student.C > 60;",
+                "SELECT Student.D, Student.A FROM Student WHERE Student.A * Student.B >= 300 OR Student.D != 44;",
+                "SELECT * FROM Enrolled WHERE Enrolled.E = 101 AND Enrolled.H <= 60 AND 1 < 2;"
+        };
+
+        // Initialize DatabaseCatalog
+        DatabaseCatalog.getInstance(databaseDir);
+
+        try {
+            for (String query : queries) {
+                System.setProperty("blazedb.execution", "interpreted");
+                List<String> interpreted = execute(query);
+                System.setProperty("blazedb.execution", "compiled");
+                assertEquals("Output mismatch for " + query, interpreted, execute(query));
+
+                // The pipeline also returns its rows batch at a time
+                List<String> batches = collectBatches(plan(query));
+                Collections.sort(batches);
+                assertEquals("Batch output mismatch for " + query, interpreted, batches);
+            }
+        } finally {
+            System.clearProperty("blazedb.execution");
+        }
+    }
+
+    public void testExecutionModeChoice() throws Exception {
+        // Initialize DatabaseCatalog
+        DatabaseCatalog.getInstance("samples/db");
+        String aggregation = "SELECT SUM(Student.B) FROM Student WHERE Student.C > 60;";
+        String selection = "SELECT Student.A FROM Student WHERE Student.C > 60;";
+
+        try {
+            // Compiled execution fuses every supported chain
+            System.setProperty("blazedb.execution", "compiled");
+            assertTrue(plan(aggregation) instanceof CompiledPipelineOperator);
+            assertTrue(plan(selection) instanceof CompiledPipelineOperator);
+
+            // The pipelines only read a table of one batch
+            CompiledPipelineOperator pipeline = (CompiledPipelineOperator) plan(aggregation);
+            assertFalse(pipeline.isWorthCompiling());
+            pipeline = (CompiledPipelineOperator) plan(selection);
+            assertFalse(pipeline.isWorthCompiling());
+
+            // So the AUTO mode keeps them interpreted, as the interpreted mode always does
+            System.setProperty("blazedb.execution", "auto");
+            assertTrue(plan(aggregation) instanceof SumOperator);
+            assertTrue(plan(selection) instanceof ProjectOperator);
+            System.setProperty("blazedb.execution", "interpreted");
+            assertTrue(plan(aggregation) instanceof SumOperator);
+        } finally {
+            System.clearProperty("blazedb.execution");
+        }
+    }
+
+    private Operator plan(String query) throws Exception {
+        return new QueryPlanner((PlainSelect) CCJSqlParserUtil.parse(query)).generatePlan();
+    }
+
+    private List<String> execute(String query) throws Exception {
+        return collect(plan(query));
+    }
+}
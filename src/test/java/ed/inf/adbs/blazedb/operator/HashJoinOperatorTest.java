@@ -0,0 +1,65 @@
+package ed.inf.adbs.blazedb.operator;
+
+import junit.framework.TestCase;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+
+import java.util.Collections;
+import java.util.List;
+
+import static ed.inf.adbs.blazedb.operator.OperatorTestUtils.collect;
+import static ed.inf.adbs.blazedb.operator.OperatorTestUtils.collectBatches;
+import static ed.inf.adbs.blazedb.operator.OperatorTestUtils.collectNestedLoopJoin;
+import static ed.inf.adbs.blazedb.operator.OperatorTestUtils.openSampleDatabase;
+
+public class HashJoinOperatorTest extends TestCase {
+
+    public void testHashJoinOperator() throws Exception {
+        String[] conditions = {
+                "Student.A = Enrolled.A",
+                "Student.A = Enrolled.A AND Student.B < Enrolled.E",
+                "Enrolled.A = Student.A AND Student.C = Enrolled.H"
+        };
+
+        // Initialize DatabaseCatalog
+        openSampleDatabase();
+
+        for (String condition : conditions) {
+            Expression joinCondition = CCJSqlParserUtil.parseCondExpression(condition);
+            List<String> expected = collectNestedLoopJoin("Student", "Enrolled", joinCondition);
+            List<String> actual = collect(new HashJoinOperator(new ScanOperator("Student"), new ScanOperator("Enrolled"), joinCondition));
+            assertEquals("Output mismatch for " + condition, expected, actual);
+
+            // The join also returns its rows batch at a time
+            actual = collectBatches(new HashJoinOperator(new ScanOperator("Student"), new ScanOperator("Enrolled"), joinCondition));
+            Collections.sort(actual);
+            assertEquals("Batch output mismatch for " + condition, expected, actual);
+        }
+    }
+
+    public void testHashJoinOperatorWithSpilling() throws Exception {
+        String[] conditions = {
+                "Student.A = Enrolled.A",
+                "Student.A = Enrolled.A AND Student.B < Enrolled.E"
+        };
+
+        // Initialize DatabaseCatalog
+        openSampleDatabase();
+
+        for (String condition : conditions) {
+            Expression joinCondition = CCJSqlParserUtil.parseCondExpression(condition);
+            List<String> expected = collectNestedLoopJoin("Student", "Enrolled", joinCondition);
+            // A budget of 80 bytes holds only one tuple, so both inputs are partitioned down to the deepest level
+            HashJoinOperator hashJoin = new HashJoinOperator(new ScanOperator("Student"), new ScanOperator("Enrolled"), joinCondition, 80);
+            List<String> actual = collect(hashJoin);
+            assertEquals("Output mismatch for " + condition, expected, actual);
+            assertTrue(hashJoin.getSpilledBytes() > 0);
+            assertTrue(hashJoin.getPartitionCount() >= 16);
+
+            hashJoin.reset();
+            actual = collectBatches(hashJoin);
+            Collections.sort(actual);
+            assertEquals("Batch output mismatch for " + condition, expected, actual);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package ed.inf.adbs.blazedb.operator;
+
+import ed.inf.adbs.blazedb.BPlusTree;
+import ed.inf.adbs.blazedb.HashIndex;
+import ed.inf.adbs.blazedb.TupleBatch;
+import junit.framework.TestCase;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static ed.inf.adbs.blazedb.operator.OperatorTestUtils.collectInOrder;
+import static ed.inf.adbs.blazedb.operator.OperatorTestUtils.openSampleDatabase;
+
+public class IndexNestedLoopJoinOperatorTest extends TestCase {
+
+    public void testIndexNestedLoopJoinOperator() throws Exception {
+        // Initialize DatabaseCatalog
+        openSampleDatabase();
+
+        File file = File.createTempFile("Student", ".hash");
+        file.deleteOnExit();
+        HashIndex index = HashIndex.build("Student", "Student.A", file.getPath());
+
+        // Every Enrolled row finds its student with one lookup
+        IndexNestedLoopJoinOperator join = new IndexNestedLoopJoinOperator(new ScanOperator("Enrolled"),
+                new IndexScanOperator("Student", index, 0), "Enrolled.A",
+                CCJSqlParserUtil.parseCondExpression("Enrolled.A = Student.A AND Student.C > 60"));
+        List<String> expected = Arrays.asList("1, 101, 75, 1, 200, 50, 33", "1, 102, 82, 1, 200, 50, 33",
+                "1, 103, 92, 1, 200, 50, 33", "2, 101, 12, 2, 200, 200, 44", "3, 102, 52, 3, 100, 105, 44",
+                "4, 104, 27, 4, 100, 50, 11");
+        assertEquals(Arrays.asList(expected.get(3), expected.get(4)), collectInOrder(join));
+        assertEquals(6, join.getLookupCount());
+        assertEquals(Arrays.asList("Enrolled.A", "Enrolled.E", "Enrolled.H", "Student.A", "Student.B", "Student.C",
+                "Student.D"), join.getTableSchema());
+
+        // Batch mode, through a B+ tree
+        File treeFile = File.createTempFile("Student", ".bptree");
+        treeFile.deleteOnExit();
+        BPlusTree tree = BPlusTree.build("Student", "Student.A", treeFile.getPath());
+        join = new IndexNestedLoopJoinOperator(new ScanOperator("Enrolled"),
+                new IndexScanOperator("Student", tree, 0, -1), "Enrolled.A", null);
+        TupleBatch batch = join.getNextBatch();
+        assertEquals(6, batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            assertEquals(expected.get(i), batch.getTuple(i).toString());
+        }
+        assertNull(join.getNextBatch());
+
+        join.reset();
+        assertEquals(expected.get(0), join.getNextTuple().toString());
+    }
+}
@@ -0,0 +1,128 @@
+package ed.inf.adbs.blazedb.operator;
+
+import ed.inf.adbs.blazedb.BPlusTree;
+import ed.inf.adbs.blazedb.DatabaseCatalog;
+import ed.inf.adbs.blazedb.SampleDatabaseCopy;
+import ed.inf.adbs.blazedb.TupleBatch;
+import junit.framework.TestCase;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static ed.inf.adbs.blazedb.operator.OperatorTestUtils.collectInOrder;
+import static ed.inf.adbs.blazedb.operator.OperatorTestUtils.openSampleDatabase;
+
+public class IndexScanOperatorTest extends TestCase {
+
+    public void testIndexScanOperator() throws Exception {
+        // Initialize DatabaseCatalog
+        openSampleDatabase();
+
+        File file = File.createTempFile("Student", ".bptree");
+        file.deleteOnExit();
+        BPlusTree index = BPlusTree.build("Student", "Student.B", file.getPath());
+
+        // The rows are fetched in key order
+        IndexScanOperator scan = new IndexScanOperator("Student", index, 100, 200);
+        List<String> expected = Arrays.asList("3, 100, 105, 44", "4, 100, 50, 11", "5, 100, 500, 22",
+                "1, 200, 50, 33", "2, 200, 200, 44");
+        assertEquals(expected, collectInOrder(scan));
+        assertEquals(Collections.singletonList("Student.B"), scan.getSortOrder());
+        assertFalse(scan.isIndexOnly());
+
+        scan.reset();
+        TupleBatch batch = scan.getNextBatch();
+        assertEquals(5, batch.size());
+        assertEquals(expected.get(4), batch.getTuple(4).toString());
+        assertNull(scan.getNextBatch());
+
+        // Only the key column is returned from the leaves
+        scan.setColumns(Collections.singletonList("Student.B"));
+        scan.reset();
+        assertTrue(scan.isIndexOnly());
+        assertEquals("300", new IndexScanOperator("Student", index, 201, Long.MAX_VALUE).getNextTuple().toString()
+                .split(", ")[1]);
+        assertEquals(Arrays.asList("100", "100", "100", "200", "200"), collectInOrder(scan));
+
+        // A column other than the key needs the rows
+        scan.setColumns(Arrays.asList("Student.B", "Student.D"));
+        scan.reset();
+        assertFalse(scan.isIndexOnly());
+        assertEquals("100, 44", scan.getNextTuple().toString());
+        assertNull(new IndexScanOperator("Student", index, 201, 299).getNextTuple());
+    }
+
+    public void testIndexSelection() throws Exception {
+        // Initialize DatabaseCatalog on a copy of the sample database, which the index is written to
+        File databaseDir = SampleDatabaseCopy.open();
+        DatabaseCatalog catalog = DatabaseCatalog.getInstance("");
+
+        try {
+            catalog.createIndex("Student", "Student.A", false);
+            assertEquals(Collections.singletonList("Student.A"), catalog.getIndexedColumns("Student"));
+            assertTrue(catalog.getIndex("Student.A").isClustered());
+
+            // A point lookup reads one entry instead of the table
+            IndexScanOperator scan = IndexScanOperator.forTable("Student",
+                    CCJSqlParserUtil.parseCondExpression("Student.A = 3 AND Student.B > 0"), null);
+            assertNotNull(scan);
+            assertEquals("3, 100, 105, 44", scan.getNextTuple().toString());
+            assertNull(scan.getNextTuple());
+
+            // A range of every row is cheaper to scan, unless only the key is needed
+            assertNull(IndexScanOperator.forTable("Student", CCJSqlParserUtil.parseCondExpression("Student.A > 0"), null));
+            assertTrue(IndexScanOperator.forTable("Student", CCJSqlParserUtil.parseCondExpression("Student.A > 0"),
+                    Collections.singletonList("Student.A")).isIndexOnly());
+            assertNull(IndexScanOperator.forTable("Student", CCJSqlParserUtil.parseCondExpression("Student.B = 200"), null));
+
+            catalog.dropIndex("Student.A");
+            assertTrue(catalog.getIndexedColumns("Student").isEmpty());
+            assertFalse(new File(databaseDir, "index_info.txt").exists());
+        } finally {
+            SampleDatabaseCopy.close(databaseDir);
+        }
+    }
+
+    public void testHashIndexSelection() throws Exception {
+        // Initialize DatabaseCatalog on a copy of the sample database, which the index is written to
+        File databaseDir = SampleDatabaseCopy.open();
+        DatabaseCatalog catalog = DatabaseCatalog.getInstance("");
+
+        try {
+            catalog.createHashIndex("Student", "Student.B");
+            assertEquals(Collections.singletonList("Student.B"), catalog.getHashIndexedColumns("Student"));
+            assertTrue(catalog.getIndexedColumns("Student").isEmpty());
+
+            // The rows of a key are looked up in one bucket, but fetching three of six rows costs more than a scan
+            assertNull(IndexScanOperator.forTable("Student", CCJSqlParserUtil.parseCondExpression("Student.B = 100"), null));
+            IndexScanOperator scan = IndexScanOperator.forTable("Student",
+                    CCJSqlParserUtil.parseCondExpression("Student.B = 100"), Collections.singletonList("Student.B"));
+            assertNotNull(scan);
+            assertTrue(scan.isIndexOnly());
+            assertEquals(Arrays.asList("100", "100", "100"), collectInOrder(scan));
+
+            // A hash index serves no ranges
+            assertNull(IndexScanOperator.forTable("Student", CCJSqlParserUtil.parseCondExpression("Student.B > 100"),
+                    Collections.singletonList("Student.B")));
+
+            // Lookups for a join fetch the rows of every key
+            scan = IndexScanOperator.forLookup("Student.B", Arrays.asList("Student.A", "Student.B"));
+            scan.seek(200, 200);
+            assertEquals("1, 200", scan.getNextTuple().toString());
+            assertEquals("2, 200", scan.getNextTuple().toString());
+            assertNull(scan.getNextTuple());
+            scan.seek(250, 250);
+            assertNull(scan.getNextTuple());
+
+            catalog.dropIndex("Student.B");
+            assertTrue(catalog.getHashIndexedColumns("Student").isEmpty());
+            assertFalse(new File(databaseDir, "index_info.txt").exists());
+            assertFalse(new File(databaseDir, "data/Student.csv.B.hash").exists());
+        } finally {
+            SampleDatabaseCopy.close(databaseDir);
+        }
+    }
+}
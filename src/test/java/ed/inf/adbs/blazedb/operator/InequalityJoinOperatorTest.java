@@ -0,0 +1,39 @@
+package ed.inf.adbs.blazedb.operator;
+
+import junit.framework.TestCase;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+
+import java.util.List;
+
+import static ed.inf.adbs.blazedb.operator.OperatorTestUtils.collect;
+import static ed.inf.adbs.blazedb.operator.OperatorTestUtils.collectNestedLoopJoin;
+import static ed.inf.adbs.blazedb.operator.OperatorTestUtils.openSampleDatabase;
+
+public class InequalityJoinOperatorTest extends TestCase {
+
+    public void testInequalityJoinOperator() throws Exception {
+        String[] conditions = {
+                "Student.C < Enrolled.E",
+                "Student.A >= Enrolled.A AND Student.B < Enrolled.E",
+                "Enrolled.E <= Student.C AND Student.C < Enrolled.H",
+                "Student.B > Enrolled.E AND Student.D <= Enrolled.E AND Student.A = Enrolled.A"
+        };
+
+        // Initialize DatabaseCatalog
+        openSampleDatabase();
+
+        for (String condition : conditions) {
+            Expression joinCondition = CCJSqlParserUtil.parseCondExpression(condition);
+            List<String> expected = collectNestedLoopJoin("Student", "Enrolled", joinCondition);
+
+            // Sort the whole input at once
+            List<String> actual = collect(new InequalityJoinOperator(new ScanOperator("Student"), new ScanOperator("Enrolled"), joinCondition));
+            assertEquals("Output mismatch for " + condition, expected, actual);
+
+            // Blocks of two sorted tuples
+            actual = collect(new InequalityJoinOperator(new ScanOperator("Student"), new ScanOperator("Enrolled"), joinCondition, 80));
+            assertEquals("Output mismatch with small blocks for " + condition, expected, actual);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package ed.inf.adbs.blazedb.operator;
+
+import ed.inf.adbs.blazedb.DatabaseCatalog;
+import ed.inf.adbs.blazedb.RangePredicate;
+import ed.inf.adbs.blazedb.Tuple;
+import ed.inf.adbs.blazedb.ZoneMap;
+import junit.framework.TestCase;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static ed.inf.adbs.blazedb.operator.OperatorTestUtils.collectBatches;
+import static ed.inf.adbs.blazedb.operator.OperatorTestUtils.collectInOrder;
+
+public class MappedScanOperatorTest extends TestCase {
+
+    public void testMappedScanOperator() throws Exception {
+        // Initialize DatabaseCatalog
+        DatabaseCatalog.getInstance("samples/db");
+
+        for (String table : new String[] {"Student", "Enrolled"}) {
+            List<String> expected = collectInOrder(new ScanOperator(table));
+
+            // The whole file in one segment, and segments so small that rows cross their ends
+            for (long segmentSize : new long[] {1L << 30, 32}) {
+                MappedScanOperator mappedScan = new MappedScanOperator(table, segmentSize);
+                for (int pass = 0; pass < 2; pass++) {
+                    assertEquals(expected, collectInOrder(mappedScan));
+                    mappedScan.reset();
+                }
+                assertEquals(expected, collectBatches(mappedScan));
+            }
+        }
+    }
+
+    public void testZoneMapSkipping() throws Exception {
+        // Initialize DatabaseCatalog
+        DatabaseCatalog.getInstance("samples/db");
+
+        // A zone map with blocks of two rows
+        MappedScanOperator scan = new MappedScanOperator("Student");
+        ZoneMap.Builder builder = new ZoneMap.Builder(4, 2);
+        List<String> expected = new ArrayList<>();
+        long offset = scan.getFilePosition();
+        Tuple tuple;
+        for (int row = 0; (tuple = scan.getNextTuple()) != null; row++) {
+            if (row % 2 == 0) {
+                builder.beginBlock(offset);
+            }
+            builder.addRow(new int[] {tuple.getValue(0), tuple.getValue(1), tuple.getValue(2), tuple.getValue(3)});
+            expected.add(tuple.toString());
+            offset = scan.getFilePosition();
+        }
+        ZoneMap zoneMap = builder.build(new File(DatabaseCatalog.getInstance("").getTableFilePath("Student")));
+
+        String[] conditions = {"Student.A > 4", "3 = Student.A", "Student.C >= 200"};
+        List<List<String>> results = Arrays.asList(expected.subList(4, 6), expected.subList(2, 4),
+                Arrays.asList(expected.get(0), expected.get(1), expected.get(4), expected.get(5)));
+        for (int i = 0; i < conditions.length; i++) {
+            int[] blocks = zoneMap.selectBlocks(CCJSqlParserUtil.parseCondExpression(conditions[i]), scan.getTableSchema());
+            scan.setBlocks(zoneMap, blocks);
+            assertEquals(results.get(i), collectInOrder(scan));
+        }
+    }
+    public void testPredicateFiltering() throws Exception {
+        // Initialize DatabaseCatalog
+        DatabaseCatalog.getInstance("samples/db");
+
+        // The first conjunct rejects row 6 at its second value, the second rows 1 and 4 at their third value
+        List<String> schema = DatabaseCatalog.getInstance("").getTableSchema("Student");
+        RangePredicate predicate = RangePredicate.extract(
+                CCJSqlParserUtil.parseCondExpression("Student.B <= 200 AND Student.C > 60"), schema);
+        List<String> expected = Arrays.asList("2, 200, 200, 44", "3, 100, 105, 44", "5, 100, 500, 22");
+
+        ScanOperator bufferedScan = new ScanOperator("Student");
+        bufferedScan.setPredicate(predicate);
+        assertEquals(expected, collectInOrder(bufferedScan));
+        bufferedScan.reset();
+        assertEquals(expected, collectBatches(bufferedScan));
+
+        for (long segmentSize : new long[] {1L << 30, 32}) {
+            MappedScanOperator mappedScan = new MappedScanOperator("Student", segmentSize);
+            mappedScan.setPredicate(predicate);
+            assertEquals(expected, collectInOrder(mappedScan));
+            mappedScan.reset();
+            assertEquals(expected, collectBatches(mappedScan));
+        }
+
+        // Byte ranges cut in the middle of rows
+        long fileSize = new File(DatabaseCatalog.getInstance("").getTableFilePath("Student")).length();
+        List<String> actual = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            MappedScanOperator rangeScan = new MappedScanOperator("Student");
+            rangeScan.setRange(fileSize * i / 3, fileSize * (i + 1) / 3);
+            rangeScan.setPredicate(predicate);
+            actual.addAll(collectInOrder(rangeScan));
+        }
+        assertEquals(expected, actual);
+    }
+}
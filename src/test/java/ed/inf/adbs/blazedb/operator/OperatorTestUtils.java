@@ -0,0 +1,63 @@
+package ed.inf.adbs.blazedb.operator;
+
+import ed.inf.adbs.blazedb.DatabaseCatalog;
+import ed.inf.adbs.blazedb.Tuple;
+import ed.inf.adbs.blazedb.TupleBatch;
+import net.sf.jsqlparser.expression.Expression;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The OperatorTestUtils class holds the fixture and helpers shared by the operator tests.
+ * <br><br>
+ * The OperatorTestUtils class contains the following methods:<br>
+ * - openSampleDatabase(): Initializes the DatabaseCatalog with the sample database.<br>
+ * - collect(Operator operator): Returns the output of an operator as sorted strings, for outputs without an order.<br>
+ * - collectInOrder(Operator operator): Returns the output of an operator as strings in output order.<br>
+ * - collectBatches(Operator operator): Returns the batches of an operator as strings in output order.<br>
+ * - collectNestedLoopJoin(String leftTable, String rightTable, Expression joinCondition): Returns the output of the
+ *   tuple nested loop join of two tables, the reference for the other join algorithms.
+ */
+final class OperatorTestUtils {
+    static final String DATABASE_DIR = "samples/db";
+
+    private OperatorTestUtils() {}
+
+    static DatabaseCatalog openSampleDatabase() throws IOException {
+        return DatabaseCatalog.getInstance(DATABASE_DIR);
+    }
+
+    static List<String> collect(Operator operator) {
+        List<String> output = collectInOrder(operator);
+        Collections.sort(output);
+        return output;
+    }
+
+    static List<String> collectInOrder(Operator operator) {
+        List<String> output = new ArrayList<>();
+        Tuple tuple;
+        while ((tuple = operator.getNextTuple()) != null) {
+            output.add(tuple.toString());
+        }
+        return output;
+    }
+
+    static List<String> collectBatches(Operator operator) {
+        List<String> output = new ArrayList<>();
+        TupleBatch batch;
+        while ((batch = operator.getNextBatch()) != null) {
+            for (int i = 0; i < batch.size(); i++) {
+                output.add(batch.getTuple(i).toString());
+            }
+        }
+        return output;
+    }
+
+    static List<String> collectNestedLoopJoin(String leftTable, String rightTable, Expression joinCondition)
+            throws IOException {
+        return collect(new JoinOperator(new ScanOperator(leftTable), new ScanOperator(rightTable), joinCondition));
+    }
+}
@@ -0,0 +1,34 @@
+package ed.inf.adbs.blazedb.operator;
+
+import junit.framework.TestCase;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+
+import java.util.List;
+
+import static ed.inf.adbs.blazedb.operator.OperatorTestUtils.collect;
+import static ed.inf.adbs.blazedb.operator.OperatorTestUtils.openSampleDatabase;
+
+public class ParallelScanOperatorTest extends TestCase {
+
+    public void testParallelScanOperator() throws Exception {
+        // Initialize DatabaseCatalog
+        openSampleDatabase();
+
+        String[] conditions = {"Enrolled.H > 50", "Enrolled.A = 2 AND Enrolled.E <> 101", "Enrolled.H < 0"};
+        for (String condition : conditions) {
+            Expression selectionCondition = CCJSqlParserUtil.parseCondExpression(condition);
+            List<String> expected = collect(new SelectOperator(new ScanOperator("Enrolled"), selectionCondition));
+
+            ParallelScanOperator parallelScan = new ParallelScanOperator("Enrolled", selectionCondition, 3);
+            assertEquals(3, parallelScan.getPartitionCount());
+            assertEquals(expected, collect(parallelScan));
+
+            // Reset while the workers may still be running, then scan again
+            parallelScan.reset();
+            parallelScan.getNextTuple();
+            parallelScan.reset();
+            assertEquals(expected, collect(parallelScan));
+        }
+    }
+}
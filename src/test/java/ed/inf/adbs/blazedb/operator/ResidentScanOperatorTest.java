@@ -0,0 +1,58 @@
+package ed.inf.adbs.blazedb.operator;
+
+import ed.inf.adbs.blazedb.DatabaseCatalog;
+import ed.inf.adbs.blazedb.ResidentTable;
+import ed.inf.adbs.blazedb.TupleBatch;
+import junit.framework.TestCase;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+
+import java.util.List;
+
+import static ed.inf.adbs.blazedb.operator.OperatorTestUtils.collectInOrder;
+import static ed.inf.adbs.blazedb.operator.OperatorTestUtils.openSampleDatabase;
+
+public class ResidentScanOperatorTest extends TestCase {
+
+    public void testResidentScanOperator() throws Exception {
+        // Initialize DatabaseCatalog
+        DatabaseCatalog catalog = openSampleDatabase();
+
+        List<String> expected = collectInOrder(new ScanOperator("Course"));
+
+        catalog.markResident("Course");
+        try {
+            Operator residentScan = ScanOperator.forTable("Course");
+            assertTrue(residentScan instanceof ResidentScanOperator);
+            ResidentTable residentTable = catalog.getResidentTable("Course");
+            assertEquals(expected.size(), residentTable.getRowCount());
+            assertEquals(4L * 3 * expected.size(), catalog.getResidentFootprint());
+            assertTrue(catalog.getResidentReport().startsWith("Course: " + expected.size() + " rows"));
+
+            // Rescans, as in the inner loop of a join, are served from the same arrays
+            for (int pass = 0; pass < 2; pass++) {
+                assertEquals(expected, collectInOrder(residentScan));
+                residentScan.reset();
+            }
+            TupleBatch batch = residentScan.getNextBatch();
+            assertEquals(expected.size(), batch.size());
+            assertEquals(expected.get(0), batch.getTuple(0).toString());
+            assertNull(residentScan.getNextBatch());
+            assertSame(residentTable, catalog.getResidentTable("Course"));
+
+            // The rows outside the ranges of the condition are skipped in the arrays
+            Operator filteredScan = ScanOperator.forTable("Course", CCJSqlParserUtil.parseCondExpression("Course.F > 2"));
+            assertEquals(2, filteredScan.getNextBatch().size());
+            assertNull(filteredScan.getNextBatch());
+
+            // A compiled pipeline over the resident table
+            Operator pipeline = CompiledPipelineOperator.compile(new SelectOperator(new ResidentScanOperator(residentTable),
+                    CCJSqlParserUtil.parseCondExpression("Course.F > 2")));
+            assertNotNull(pipeline);
+            assertEquals(2, collectInOrder(pipeline).size());
+        } finally {
+            catalog.releaseResident("Course");
+        }
+        assertNull(catalog.getResidentTable("Course"));
+        assertEquals(0, catalog.getResidentFootprint());
+    }
+}
@@ -2,8 +2,15 @@ package ed.inf.adbs.blazedb.operator;
 
 import ed.inf.adbs.blazedb.DatabaseCatalog;
 import ed.inf.adbs.blazedb.Interpreter;
+import ed.inf.adbs.blazedb.TupleBatch;
 import junit.framework.TestCase;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static ed.inf.adbs.blazedb.operator.OperatorTestUtils.collectInOrder;
+
 public class ScanOperatorTest extends TestCase {
 
     public void testScanOperator() {
@@ -22,4 +29,55 @@ public class ScanOperatorTest extends TestCase {
             e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+
+    public void testColumnPruning() throws Exception {
+        // Initialize DatabaseCatalog
+        DatabaseCatalog.getInstance("samples/db");
+        List<String> columns = Arrays.asList("Student.D", "Student.B", "Course.E");
+
+        // Only the columns of the table among the given ones are returned, in the order of the schema
+        ScanOperator[] scans = {new ScanOperator("Student"), new MappedScanOperator("Student")};
+        for (ScanOperator scan : scans) {
+            scan.setColumns(columns);
+            assertEquals(Arrays.asList("Student.B", "Student.D"), scan.getTableSchema());
+            assertEquals("200, 33", scan.getNextTuple().toString());
+            TupleBatch batch = scan.getNextBatch();
+            assertEquals(2, batch.getColumns().length);
+            assertEquals("200, 44", batch.getTuple(0).toString());
+            scan.reset();
+            assertEquals("200, 33", scan.getNextTuple().toString());
+        }
+
+        // A table none of whose columns are needed still returns its rows
+        ScanOperator scan = new MappedScanOperator("Course");
+        scan.setColumns(columns.subList(0, 2));
+        assertEquals(Collections.singletonList("Course.E"), scan.getTableSchema());
+        assertEquals(5, collectInOrder(scan).size());
+    }
+
+    public void testParseLine() {
+        int[] slots = {0, 1, 2};
+        int[] values = new int[3];
+
+        // Spaces and carriage returns are skipped, and the whole int range is accepted
+        assertTrue(ScanOperator.parseLine("1, -2147483648,2147483647\r", values, slots, null));
+        assertEquals("[1, -2147483648, 2147483647]", Arrays.toString(values));
+
+        // Empty lines are no rows and leave the buffer alone
+        assertFalse(ScanOperator.parseLine("", values, slots, null));
+        assertFalse(ScanOperator.parseLine(" \r", values, slots, null));
+        assertEquals(1, values[0]);
+
+        // Lines that are not rows of three ints are rejected
+        String[] invalid = {"1, 2, 2147483648", "1, -2147483649, 3", "1, 2x, 3", "1, 2-, 3", "1, --2, 3",
+                "1, , 3", "1, 2, 3,", "1, 2", "1, 2, 3, 4"};
+        for (String line : invalid) {
+            try {
+                ScanOperator.parseLine(line, values, slots, null);
+                fail("Accepted " + line);
+            } catch (NumberFormatException e) {
+                // Expected
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package ed.inf.adbs.blazedb.operator;
+
+import junit.framework.TestCase;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+
+import java.util.List;
+
+import static ed.inf.adbs.blazedb.operator.OperatorTestUtils.collect;
+import static ed.inf.adbs.blazedb.operator.OperatorTestUtils.collectNestedLoopJoin;
+import static ed.inf.adbs.blazedb.operator.OperatorTestUtils.openSampleDatabase;
+
+public class SortMergeJoinOperatorTest extends TestCase {
+
+    public void testSortMergeJoinOperator() throws Exception {
+        String[] conditions = {
+                "Student.A = Enrolled.A",
+                "Student.A = Enrolled.A AND Student.B < Enrolled.E",
+                "Enrolled.A = Student.A AND Student.C = Enrolled.H"
+        };
+
+        // Initialize DatabaseCatalog
+        openSampleDatabase();
+
+        for (String condition : conditions) {
+            Expression joinCondition = CCJSqlParserUtil.parseCondExpression(condition);
+            List<String> expected = collectNestedLoopJoin("Student", "Enrolled", joinCondition);
+            List<String> actual = collect(new SortMergeJoinOperator(new ScanOperator("Student"), new ScanOperator("Enrolled"), joinCondition));
+            assertEquals("Output mismatch for " + condition, expected, actual);
+        }
+    }
+}
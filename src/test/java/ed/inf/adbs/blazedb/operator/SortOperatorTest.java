@@ -15,6 +15,10 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.List;
 
+import static ed.inf.adbs.blazedb.operator.OperatorTestUtils.collectBatches;
+import static ed.inf.adbs.blazedb.operator.OperatorTestUtils.collectInOrder;
+import static ed.inf.adbs.blazedb.operator.OperatorTestUtils.openSampleDatabase;
+
 public class SortOperatorTest extends TestCase {
 
     public void testSortOperator() {
@@ -79,4 +83,35 @@ public class SortOperatorTest extends TestCase {
             e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+
+    public void testExternalSort() throws Exception {
+        // Initialize DatabaseCatalog
+        openSampleDatabase();
+
+        // The 36 tuples of Student x Enrolled, sorted on columns with ties to check that the order of equal tuples is kept
+        for (int[] columnIndexes : new int[][] {{1}, {5, 2}, {6}}) {
+            List<String> expected = collectInOrder(new SortOperator(
+                    new JoinOperator(new ScanOperator("Student"), new ScanOperator("Enrolled"), null), columnIndexes));
+            // A budget of 80 bytes holds one tuple, so every run has two tuples and the runs are merged in pairs
+            SortOperator sort = new SortOperator(
+                    new JoinOperator(new ScanOperator("Student"), new ScanOperator("Enrolled"), null), columnIndexes, 80);
+            assertEquals(expected, collectInOrder(sort));
+            assertEquals(18, sort.getRunCount());
+            assertTrue(sort.getMergePassCount() > 1);
+            assertTrue(sort.getSpilledBytes() > 0);
+
+            // A second pass after reset() reads the input in batches, which the join returns in another order
+            sort.reset();
+            assertEquals(collectBatches(new SortOperator(
+                    new JoinOperator(new ScanOperator("Student"), new ScanOperator("Enrolled"), null), columnIndexes)),
+                    collectBatches(sort));
+            assertEquals(18, sort.getRunCount());
+        }
+
+        // An input within the budget is sorted in memory
+        SortOperator sort = new SortOperator(new ScanOperator("Enrolled"), new int[] {1});
+        collectInOrder(sort);
+        assertEquals(0, sort.getRunCount());
+        assertEquals(0, sort.getSpilledBytes());
+    }
+}